@@ -1,11 +0,0 @@
-package xlike.top.werewolf.bean.dto;
-
-import lombok.Data;
-
-@Data
-public class ModelDto {
-    private String id;
-    private String object;
-    private Long created;
-    private String owned_by;
-}
@@ -0,0 +1,20 @@
+package xlike.top.werewolf.bean.dto;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * 批量模型测活请求
+ * @author xlike
+ */
+@Data
+public class ModelTestDto {
+
+    private String key;
+
+    private String url = "https://api.openai.com/v1/chat/completions";
+
+    private List<String> modelNames;
+
+}
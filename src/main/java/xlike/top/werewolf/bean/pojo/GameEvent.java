@@ -0,0 +1,154 @@
+package xlike.top.werewolf.bean.pojo;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.experimental.Accessors;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Consumer;
+
+/**
+ * 游戏事件，按发生顺序追加到每局游戏的事件流中
+ * <p>
+ * 行动类事件（ACTION / VOTE）只做记录；状态类事件（PLAYER_DIED / POTION_USED / DAY_CHANGED / GAME_OVER）
+ * 在快照之上依次应用即可还原游戏状态
+ */
+@Data
+@NoArgsConstructor
+@Accessors(chain = true)
+public class GameEvent {
+
+    public static final String GAME_CREATED = "GAME_CREATED";
+    public static final String GAME_STARTED = "GAME_STARTED";
+    public static final String ACTION = "ACTION";
+    public static final String VOTE = "VOTE";
+    public static final String PLAYER_DIED = "PLAYER_DIED";
+    public static final String POTION_USED = "POTION_USED";
+    public static final String DAY_CHANGED = "DAY_CHANGED";
+    public static final String GAME_OVER = "GAME_OVER";
+
+    private String id; // 事件流中的ID，追加后由 Redis 生成
+    private String type;
+    private int day;
+    private String phase; // "夜晚" / "白天"
+    private String actor; // 行动名称（如 werewolfAction）或玩家ID
+    private String target;
+    private String action;
+    private String reason;
+    private String detail; // 其余结果字段，如 identity=狼人
+    private long timestamp;
+
+    public GameEvent(String type, int day, String phase) {
+        this.type = type;
+        this.day = day;
+        this.phase = phase;
+        this.timestamp = System.currentTimeMillis();
+    }
+
+    /**
+     * 由阶段结果中的单个行动结果生成事件，action / target / targetId / reason 映射到对应字段，其余字段按名称排序写入 detail
+     *
+     * @param type   事件类型
+     * @param day    天数
+     * @param phase  阶段
+     * @param actor  行动名称或玩家ID
+     * @param result 行动结果
+     */
+    public static GameEvent fromResult(String type, int day, String phase, String actor, Map<?, ?> result) {
+        GameEvent event = new GameEvent(type, day, phase).setActor(actor);
+        Map<String, String> detail = new TreeMap<>();
+        for (Map.Entry<?, ?> entry : result.entrySet()) {
+            String name = String.valueOf(entry.getKey());
+            String value = entry.getValue() == null ? "" : String.valueOf(entry.getValue());
+            switch (name) {
+                case "action" -> event.action = value;
+                case "target", "targetId" -> event.target = value;
+                case "reason" -> event.reason = value;
+                case "voterId" -> {
+                }
+                default -> detail.put(name, value);
+            }
+        }
+        if (!detail.isEmpty()) {
+            StringBuilder joined = new StringBuilder();
+            detail.forEach((name, value) -> joined.append(joined.isEmpty() ? "" : ";").append(name).append('=').append(value));
+            event.detail = joined.toString();
+        }
+        return event;
+    }
+
+    /**
+     * 转换为事件流的字段，空值字段不写入
+     */
+    public Map<String, String> toFields() {
+        Map<String, String> fields = new LinkedHashMap<>();
+        fields.put("type", type);
+        fields.put("day", String.valueOf(day));
+        fields.put("ts", String.valueOf(timestamp));
+        putIfPresent(fields, "phase", phase);
+        putIfPresent(fields, "actor", actor);
+        putIfPresent(fields, "target", target);
+        putIfPresent(fields, "action", action);
+        putIfPresent(fields, "reason", reason);
+        putIfPresent(fields, "detail", detail);
+        return fields;
+    }
+
+    public static GameEvent fromFields(String id, Map<String, String> fields) {
+        GameEvent event = new GameEvent();
+        event.id = id;
+        event.type = fields.get("type");
+        event.day = Integer.parseInt(fields.getOrDefault("day", "0"));
+        event.timestamp = Long.parseLong(fields.getOrDefault("ts", "0"));
+        event.phase = fields.get("phase");
+        event.actor = fields.get("actor");
+        event.target = fields.get("target");
+        event.action = fields.get("action");
+        event.reason = fields.get("reason");
+        event.detail = fields.get("detail");
+        return event;
+    }
+
+    /**
+     * 在状态上应用事件，行动类事件不改变状态
+     */
+    public void applyTo(GameState state) {
+        switch (type) {
+            case PLAYER_DIED -> forPlayer(state.getPlayers(), target, player -> player.setAlive(false));
+            case POTION_USED -> forPlayer(state.getPlayers(), actor, player -> {
+                if ("save".equals(action)) {
+                    player.setWitchSaveUsed(true);
+                } else if ("poison".equals(action)) {
+                    player.setWitchPoisonUsed(true);
+                }
+            });
+            case DAY_CHANGED -> state.setDay(day);
+            case GAME_OVER -> {
+                state.setGameOver(true);
+                state.setWinnerCamp(target);
+            }
+            default -> {
+            }
+        }
+    }
+
+    private static void forPlayer(List<PlayerState> players, String roleId, Consumer<PlayerState> action) {
+        if (players == null || roleId == null) {
+            return;
+        }
+        for (PlayerState player : players) {
+            if (roleId.equals(player.getRoleId())) {
+                action.accept(player);
+            }
+        }
+    }
+
+    private static void putIfPresent(Map<String, String> fields, String name, String value) {
+        if (value != null && !value.isEmpty()) {
+            fields.put(name, value);
+        }
+    }
+}
@@ -1,12 +1,36 @@
 package xlike.top.werewolf.bean.pojo;
 
 import lombok.Data;
+
+import java.util.ArrayList;
 import java.util.List;
 
 @Data
 public class GameState {
+    private String gameId; // 每局游戏的唯一ID，用于隔离各局的对话历史
+    private long version; // 每次写入 Redis 递增，阶段提交时用于比较并交换
     private int day;
     private boolean isGameOver;
     private String winnerCamp; // "狼人阵营" 或 "好人阵营"
     private List<PlayerState> players;
+
+    /**
+     * 深拷贝，近端缓存中的状态与调用方持有的状态互不影响
+     */
+    public GameState copy() {
+        GameState copy = new GameState();
+        copy.gameId = gameId;
+        copy.version = version;
+        copy.day = day;
+        copy.isGameOver = isGameOver;
+        copy.winnerCamp = winnerCamp;
+        if (players != null) {
+            List<PlayerState> playerCopies = new ArrayList<>(players.size());
+            for (PlayerState player : players) {
+                playerCopies.add(player.copy());
+            }
+            copy.players = playerCopies;
+        }
+        return copy;
+    }
 }
@@ -4,7 +4,8 @@ import lombok.Data;
 
 @Data
 public class PlayerState {
-    private String roleId; // 对应 RoleEnum 的 id
+    private String roleId; // 玩家ID（座位号）
+    private String role; // 角色，对应 RoleEnum 的名称；旧版状态为 null，按玩家ID推断
     private String roleAI; // 对应的 AI 模型
     private boolean isAlive;
     private String nightTarget; // 夜晚行动目标，空字符串表示无目标
@@ -12,4 +13,18 @@ public class PlayerState {
     private boolean isPoisoned; // 是否被女巫毒
     private boolean witchSaveUsed; // 女巫是否用过解药
     private boolean witchPoisonUsed; // 女巫是否用过毒药
+
+    public PlayerState copy() {
+        PlayerState copy = new PlayerState();
+        copy.roleId = roleId;
+        copy.role = role;
+        copy.roleAI = roleAI;
+        copy.isAlive = isAlive;
+        copy.nightTarget = nightTarget;
+        copy.isSaved = isSaved;
+        copy.isPoisoned = isPoisoned;
+        copy.witchSaveUsed = witchSaveUsed;
+        copy.witchPoisonUsed = witchPoisonUsed;
+        return copy;
+    }
 }
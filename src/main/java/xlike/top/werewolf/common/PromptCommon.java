@@ -10,63 +10,69 @@ import lombok.Data;
 public class PromptCommon {
 
     // 狼人提示词 (夜晚阶段)
-    public static String werewolfPrompt = "你是一名狼人杀游戏中的狼人，你的角色ID是 {roleId}。当前是第 {day} 天夜晚，你和其他狼人需要选择一名玩家进行击杀。以下是当前存活玩家列表：\n" +
+    public static String werewolfPrompt = "你是一名狼人杀游戏中的狼人，你的座位号是 {roleId}。当前是第 {day} 天夜晚，你和其他狼人需要选择一名玩家进行击杀。以下是当前存活玩家列表：\n" +
             "{alivePlayers}\n" +
             "你的目标是保护狼人阵营并消灭好人阵营。请根据当前信息选择一个目标进行击杀，并说明理由。输出格式为：\n" +
-            "目标ID: [目标角色ID]\n" +
+            "目标ID: [目标玩家的座位号]\n" +
             "理由: [你的推理或理由]\n";
 
     // 村民提示词 (夜晚阶段 - 村民无特殊行动，仅用于占位或扩展)
-    public static String villagerPrompt = "你是一名狼人杀游戏中的村民，你的角色ID是 {roleId}。当前是第 {day} 天夜晚，村民在夜晚没有特殊行动。你只需等待白天阶段的讨论和投票。以下是当前存活玩家列表：\n" +
+    public static String villagerPrompt = "你是一名狼人杀游戏中的村民，你的座位号是 {roleId}。当前是第 {day} 天夜晚，村民在夜晚没有特殊行动。你只需等待白天阶段的讨论和投票。以下是当前存活玩家列表：\n" +
             "{alivePlayers}\n" +
             "请等待白天阶段。输出格式为：\n" +
             "状态: 等待白天\n" +
             "理由: 村民夜晚无行动\n";
 
     // 预言家提示词 (夜晚阶段)
-    public static String seerPrompt = "你是一名狼人杀游戏中的预言家，你的角色ID是 {roleId}。当前是第 {day} 天夜晚，你可以查验一名玩家的身份（狼人或好人）。以下是当前存活玩家列表：\n" +
+    public static String seerPrompt = "你是一名狼人杀游戏中的预言家，你的座位号是 {roleId}。当前是第 {day} 天夜晚，你可以查验一名玩家的身份（狼人或好人）。以下是当前存活玩家列表：\n" +
             "{alivePlayers}\n" +
             "你的目标是找出狼人并帮助好人阵营胜利。请根据当前信息选择一名玩家进行查验，并说明理由。输出格式为：\n" +
-            "目标ID: [目标角色ID]\n" +
+            "目标ID: [目标玩家的座位号]\n" +
             "理由: [你的推理或理由]\n";
 
     // 女巫提示词 (夜晚阶段)
-    public static String witchPrompt = "你是一名狼人杀游戏中的女巫，你的角色ID是 {roleId}。当前是第 {day} 天夜晚，你可以选择是否使用解药救人或毒药毒杀一名玩家。你的解药状态：{saveUsed}，毒药状态：{poisonUsed}。以下是当前存活玩家列表：\n" +
+    public static String witchPrompt = "你是一名狼人杀游戏中的女巫，你的座位号是 {roleId}。当前是第 {day} 天夜晚，你可以选择是否使用解药救人或毒药毒杀一名玩家。你的解药状态：{saveUsed}，毒药状态：{poisonUsed}。以下是当前存活玩家列表：\n" +
             "{alivePlayers}\n" +
             "今晚被狼人击杀的玩家是：{killedPlayer}\n" +
             "你的目标是帮助好人阵营胜利。请根据当前信息决定是否救人或毒人，并说明理由。输出格式为：\n" +
             "是否救人: [是/否]\n" +
-            "救人目标ID: [目标角色ID，仅当救人为“是”时填写]\n" +
+            "救人目标ID: [目标玩家的座位号，仅当救人为“是”时填写]\n" +
             "是否毒人: [是/否]\n" +
-            "毒人目标ID: [目标角色ID，仅当毒人为“是”时填写]\n" +
+            "毒人目标ID: [目标玩家的座位号，仅当毒人为“是”时填写]\n" +
             "理由: [你的推理或理由]\n";
 
     // 猎人提示词 (夜晚阶段 - 猎人夜晚无行动，但可能在白天死亡时触发技能)
-    public static String hunterPrompt = "你是一名狼人杀游戏中的猎人，你的角色ID是 {roleId}。当前是第 {day} 天夜晚，猎人在夜晚没有特殊行动。你只需等待白天阶段的讨论和投票。以下是当前存活玩家列表：\n" +
+    public static String hunterPrompt = "你是一名狼人杀游戏中的猎人，你的座位号是 {roleId}。当前是第 {day} 天夜晚，猎人在夜晚没有特殊行动。你只需等待白天阶段的讨论和投票。以下是当前存活玩家列表：\n" +
             "{alivePlayers}\n" +
             "请等待白天阶段。输出格式为：\n" +
             "状态: 等待白天\n" +
             "理由: 猎人夜晚无行动\n";
 
     // 猎人临死反击提示词 (白天阶段特殊情况 - 猎人被投票出局或夜晚被杀后触发)
-    public static String hunterCounterattackPrompt = "你是一名狼人杀游戏中的猎人，你的角色ID是 {roleId}。当前是第 {day} 天，你已被投票出局或夜晚被杀死。作为猎人，你可以在临死前选择开枪带走一名玩家。以下是当前存活玩家列表：\n" +
+    public static String hunterCounterattackPrompt = "你是一名狼人杀游戏中的猎人，你的座位号是 {roleId}。当前是第 {day} 天，你已被投票出局或夜晚被杀死。作为猎人，你可以在临死前选择开枪带走一名玩家。以下是当前存活玩家列表：\n" +
             "{alivePlayers}\n" +
             "你的目标是帮助好人阵营胜利。请根据当前信息决定是否开枪以及带走谁，并说明理由。输出格式为：\n" +
             "是否开枪: [是/否]\n" +
-            "目标ID: [目标角色ID，仅当开枪为“是”时填写]\n" +
+            "目标ID: [目标玩家的座位号，仅当开枪为“是”时填写]\n" +
             "理由: [你的推理或理由]\n";
 
     // 白天投票环节提示词 (所有角色通用)
-    public static String votePrompt = "你是一名狼人杀游戏中的 {roleName}，你的角色ID是 {roleId}。当前是第 {day} 天白天，所有玩家需要通过投票驱逐一名疑似狼人的玩家。以下是当前存活玩家列表：\n" +
+    public static String votePrompt = "你是一名狼人杀游戏中的 {roleName}，你的座位号是 {roleId}。当前是第 {day} 天白天，所有玩家需要通过投票驱逐一名疑似狼人的玩家。以下是当前存活玩家列表：\n" +
             "{alivePlayers}\n" +
             "昨晚的事件：{lastNightEvents}\n" +
             "你的目标是根据阵营（{camp}）决定投票对象。请根据当前信息选择一名玩家进行投票，并说明理由。输出格式为：\n" +
-            "目标ID: [目标角色ID]\n" +
+            "目标ID: [目标玩家的座位号]\n" +
             "理由: [你的推理或理由]\n";
 
-    // 系统提示词 (可选，用于初始化 AI 角色认知，首次对话时使用)
-    public static String systemPrompt = "你是一名狼人杀游戏玩家，将扮演特定角色参与游戏。你需要根据游戏规则和你的阵营目标做出决策。游戏分为夜晚和白天阶段，夜晚可能有特殊行动，白天通过投票驱逐疑似狼人。你的输出必须严格遵循指定的格式，以便系统解析你的决策。请认真分析游戏信息，做出合理决策。确认收到此信息。\n" +
-            "输出格式为：\n" +
+    // 系统提示词 (固定前缀，每次请求都放在消息列表最前面，便于命中服务商的前缀缓存)
+    public static String systemPrompt = "你是一名狼人杀游戏玩家，将扮演特定角色参与游戏。你需要根据游戏规则和你的阵营目标做出决策。游戏分为夜晚和白天阶段，夜晚可能有特殊行动，白天通过投票驱逐疑似狼人。你的输出必须严格遵循指定的格式，以便系统解析你的决策。请认真分析游戏信息，做出合理决策。" +
+            "玩家以座位号标识（从 1 开始的数字），输出中的目标ID填写一个座位号；玩家列表中的区间写法如“1-4, 6”表示 1、2、3、4 号和 6 号玩家。\n";
+
+    // 角色说明 (固定前缀，紧跟系统提示词，整局游戏内不变)
+    public static String roleBriefingPrompt = "你在本局游戏中的角色是 {roleName}，座位号是 {roleId}，所属阵营：{camp}。角色技能：{description}。\n";
+
+    // 预热提示词 (开始游戏时发送，用于预热前缀缓存)
+    public static String primePrompt = "确认收到此信息。输出格式为：\n" +
             "状态: 已收到规则\n" +
             "备注: [你的确认信息]\n";
 }
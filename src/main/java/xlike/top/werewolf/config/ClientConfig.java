@@ -0,0 +1,53 @@
+package xlike.top.werewolf.config;
+
+import jakarta.annotation.PostConstruct;
+import lombok.AllArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import xlike.top.werewolf.utils.ChatCodec;
+import xlike.top.werewolf.utils.ChatHistoryStore;
+import xlike.top.werewolf.utils.CircuitBreaker;
+import xlike.top.werewolf.utils.HedgingPolicy;
+import xlike.top.werewolf.utils.ModelCatalog;
+import xlike.top.werewolf.utils.OkHttpUtils;
+import xlike.top.werewolf.utils.ProviderRateLimiter;
+import xlike.top.werewolf.utils.RequestTracer;
+
+/**
+ * 将配置下发到静态 HTTP / AI 请求工具类
+ * @author xlike
+ */
+@Configuration
+@AllArgsConstructor
+public class ClientConfig {
+
+    private final WerewolfProperties properties;
+
+    @PostConstruct
+    public void init() {
+        WerewolfProperties.Http http = properties.getHttp();
+        OkHttpUtils.configureDispatcher(http.getMaxRequests(), http.getMaxRequestsPerHost());
+        for (String url : http.getPrewarmUrls()) {
+            OkHttpUtils.prewarm(url, null);
+        }
+        ChatCodec.configure(properties.getChat().getGzipThresholdChars(), properties.getChat().isIncludeUsage());
+        WerewolfProperties.History history = properties.getHistory();
+        ChatHistoryStore.configure(history.getTtlSeconds(), history.getCompressThresholdChars());
+        WerewolfProperties.ModelCatalog modelCatalog = properties.getModelCatalog();
+        ModelCatalog.configure(modelCatalog.getTtlSeconds(), modelCatalog.getMaxEntries());
+        WerewolfProperties.RateLimit rateLimit = properties.getRateLimit();
+        ProviderRateLimiter.configure(new ProviderRateLimiter.Settings(rateLimit.isEnabled(),
+                rateLimit.getRequestsPerSecond(), rateLimit.getBurst(), rateLimit.getMaxInFlight(),
+                rateLimit.getMaxQueueWaitMs()));
+        WerewolfProperties.CircuitBreaker breaker = properties.getCircuitBreaker();
+        CircuitBreaker.configure(new CircuitBreaker.Settings(breaker.getFailureThreshold(), breaker.getOpenDurationMs(),
+                breaker.getHalfOpenProbes(), breaker.getMaxAttempts(), breaker.getBaseBackoffMs(),
+                breaker.getMaxBackoffMs(), breaker.getRetryBudgetRatio(), breaker.getRetryBudgetMax()));
+        WerewolfProperties.Hedge hedge = properties.getHedge();
+        HedgingPolicy.configure(new HedgingPolicy.Settings(hedge.isEnabled(), hedge.getBudgetRatio(),
+                hedge.getBudgetMax(), hedge.getMinSamples(), hedge.getMinDelayMs(), hedge.getMaxDelayMs(),
+                hedge.getBackupUrl(), hedge.getBackupKey()));
+        WerewolfProperties.Tracing tracing = properties.getTracing();
+        RequestTracer.configure(new RequestTracer.Settings(tracing.isEnabled(), tracing.getCapacity(),
+                tracing.getBodySampleRate(), tracing.getMaxBodyChars()));
+    }
+}
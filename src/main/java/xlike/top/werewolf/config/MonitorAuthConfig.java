@@ -0,0 +1,55 @@
+package xlike.top.werewolf.config;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.servlet.HandlerInterceptor;
+import org.springframework.web.servlet.config.annotation.InterceptorRegistry;
+import org.springframework.web.servlet.config.annotation.WebMvcConfigurer;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+
+/**
+ * 运行指标接口的访问控制
+ * <p>
+ * /monitor 下的接口包含所有用户的请求追踪（采样的提示词与响应）、凭证缓存与回放日志统计，
+ * 并且可以触发写文件，只允许携带管理令牌的请求访问；回放接口由控制器校验登录用户，不在此拦截
+ *
+ * @author xlike
+ */
+@Configuration
+public class MonitorAuthConfig implements WebMvcConfigurer {
+
+    private static final String TOKEN_HEADER = "X-Monitor-Token";
+
+    private final byte[] adminToken;
+
+    public MonitorAuthConfig(WerewolfProperties properties) {
+        String token = properties.getMonitor().getAdminToken();
+        this.adminToken = token == null || token.isBlank() ? null : token.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    public void addInterceptors(InterceptorRegistry registry) {
+        registry.addInterceptor(new HandlerInterceptor() {
+            @Override
+            public boolean preHandle(HttpServletRequest request, HttpServletResponse response, Object handler) {
+                if (authorized(request.getHeader(TOKEN_HEADER))) {
+                    return true;
+                }
+                response.setStatus(adminToken == null ? HttpStatus.FORBIDDEN.value() : HttpStatus.UNAUTHORIZED.value());
+                return false;
+            }
+        }).addPathPatterns("/monitor/**").excludePathPatterns("/monitor/replay/**");
+    }
+
+    /**
+     * 未配置管理令牌时一律拒绝，比较时不因前缀相同提前返回
+     */
+    private boolean authorized(String token) {
+        return adminToken != null && token != null
+                && MessageDigest.isEqual(adminToken, token.getBytes(StandardCharsets.UTF_8));
+    }
+}
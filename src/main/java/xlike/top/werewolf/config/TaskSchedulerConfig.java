@@ -5,6 +5,9 @@ import org.springframework.context.annotation.Configuration;
 import org.springframework.scheduling.TaskScheduler;
 import org.springframework.scheduling.concurrent.ThreadPoolTaskScheduler;
 
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
 /**
  * @author Administrator
  */
@@ -19,4 +22,12 @@ public class TaskSchedulerConfig {
         scheduler.initialize();
         return scheduler;
     }
+
+    /**
+     * 游戏阶段内角色行动使用的执行器，行动大部分时间在等待 AI 响应，使用虚拟线程
+     */
+    @Bean(destroyMethod = "shutdown")
+    public ExecutorService gameActionExecutor() {
+        return Executors.newThreadPerTaskExecutor(Thread.ofVirtual().name("game-action-", 0).factory());
+    }
 }
\ No newline at end of file
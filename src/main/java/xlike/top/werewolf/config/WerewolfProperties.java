@@ -0,0 +1,418 @@
+package xlike.top.werewolf.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 狼人杀应用自定义配置，对应 application.yml 中的 werewolf 节点
+ * @author xlike
+ */
+@Data
+@Component
+@ConfigurationProperties(prefix = "werewolf")
+public class WerewolfProperties {
+
+    private Http http = new Http();
+
+    private Chat chat = new Chat();
+
+    private Game game = new Game();
+
+    private ModelHealth modelHealth = new ModelHealth();
+
+    private ModelCatalog modelCatalog = new ModelCatalog();
+
+    private RateLimit rateLimit = new RateLimit();
+
+    private CircuitBreaker circuitBreaker = new CircuitBreaker();
+
+    private Hedge hedge = new Hedge();
+
+    private Tracing tracing = new Tracing();
+
+    private History history = new History();
+
+    private NearCache nearCache = new NearCache();
+
+    private StateStorage stateStorage = new StateStorage();
+
+    private EventLog eventLog = new EventLog();
+
+    private Journal journal = new Journal();
+
+    private Credentials credentials = new Credentials();
+
+    private Monitor monitor = new Monitor();
+
+    @Data
+    public static class Http {
+        /**
+         * 最大并发请求数
+         */
+        private int maxRequests = 256;
+        /**
+         * 单个服务商 Host 的最大并发请求数
+         */
+        private int maxRequestsPerHost = 64;
+        /**
+         * 启动时预热连接的服务商地址
+         */
+        private List<String> prewarmUrls = new ArrayList<>();
+    }
+
+    @Data
+    public static class Chat {
+        /**
+         * 是否使用流式响应
+         */
+        private boolean stream = true;
+        /**
+         * 决策字段与理由行都已完整到达后是否立即结束流式响应，不再等待其余内容；默认关闭，读取完整响应以获得 token 用量
+         */
+        private boolean earlyStop = false;
+        /**
+         * 消息内容总长度超过该字符数时 gzip 压缩请求体，0 表示不压缩（需服务商支持 Content-Encoding: gzip）
+         */
+        private int gzipThresholdChars = 0;
+        /**
+         * 流式请求是否要求服务商在最后一个数据块中返回 token 用量（stream_options.include_usage）
+         */
+        private boolean includeUsage = true;
+    }
+
+    @Data
+    public static class Game {
+        /**
+         * 夜晚阶段的总时间预算（秒），到期后未完成的 AI 请求被取消并使用随机兜底逻辑
+         */
+        private long nightPhaseTimeoutSeconds = 120;
+        /**
+         * 白天阶段（投票与猎人反击）的总时间预算（秒）
+         */
+        private long dayPhaseTimeoutSeconds = 120;
+        /**
+         * 开始游戏时是否并发向每个座位发送一次固定前缀（系统规则 + 角色说明），预热服务商的前缀缓存
+         */
+        private boolean primeOnStart = false;
+        /**
+         * 同时向模型发起请求的玩家数上限（投票与预热），大板子下避免一次性发出全部请求，0 表示不限制
+         */
+        private int playerParallelism = 16;
+        /**
+         * 座位数上限，不超过 64
+         */
+        private int maxSeats = 50;
+        /**
+         * 分配角色时是否随机打乱座位与角色的对应关系，关闭时按 狼人、村民、预言家、女巫、猎人 的顺序入座
+         */
+        private boolean shuffleSeats = false;
+        /**
+         * 自定义板子：板子名称 -> 角色（RoleEnum 名称，不区分大小写）-> 数量；
+         * 分配角色时未指定板子则使用对应座位数的标准板子（约三分之一为狼人，预言家、女巫、猎人各一名，其余为村民）
+         */
+        private Map<String, Map<String, Integer>> boards = new LinkedHashMap<>();
+    }
+
+    @Data
+    public static class ModelHealth {
+        /**
+         * 测活结果缓存有效期（秒）
+         */
+        private long ttlSeconds = 600;
+        /**
+         * 同时进行的测活请求数上限
+         */
+        private int parallelism = 4;
+        /**
+         * 后台清理间隔（秒）
+         */
+        private long cleanupIntervalSeconds = 120;
+        /**
+         * 热点窗口（秒），超过该时间未被访问的条目被清理
+         */
+        private long hotWindowSeconds = 1800;
+    }
+
+    @Data
+    public static class ModelCatalog {
+        /**
+         * 模型目录缓存有效期（秒）
+         */
+        private long ttlSeconds = 300;
+        /**
+         * 最多缓存的 服务商 + 密钥 组合数
+         */
+        private int maxEntries = 256;
+    }
+
+    @Data
+    public static class RateLimit {
+        /**
+         * 是否启用服务商限流
+         */
+        private boolean enabled = true;
+        /**
+         * 每个 服务商 + 密钥 每秒放行的请求数上限，遇到 429 时自动下调
+         */
+        private double requestsPerSecond = 10;
+        /**
+         * 令牌桶容量，允许的瞬时突发请求数
+         */
+        private int burst = 20;
+        /**
+         * 每个 服务商 + 密钥 的并发请求上限，遇到 429 时自动减半
+         */
+        private int maxInFlight = 32;
+        /**
+         * 请求排队等待的最长时间（毫秒），超时后按请求失败处理
+         */
+        private long maxQueueWaitMs = 30000;
+    }
+
+    @Data
+    public static class CircuitBreaker {
+        /**
+         * 连续失败多少次后熔断
+         */
+        private int failureThreshold = 5;
+        /**
+         * 熔断持续时间（毫秒），之后进入半开状态放行探测请求
+         */
+        private long openDurationMs = 30000;
+        /**
+         * 半开状态允许的探测请求数
+         */
+        private int halfOpenProbes = 1;
+        /**
+         * 单次调用的最大尝试次数（含首次）
+         */
+        private int maxAttempts = 3;
+        /**
+         * 重试退避基准时间（毫秒），按 2 的幂增长并加随机抖动
+         */
+        private long baseBackoffMs = 500;
+        /**
+         * 重试退避上限（毫秒）
+         */
+        private long maxBackoffMs = 8000;
+        /**
+         * 每个请求为重试预算存入的额度，0.2 表示重试量不超过请求量的约 20%
+         */
+        private double retryBudgetRatio = 0.2;
+        /**
+         * 重试预算上限
+         */
+        private double retryBudgetMax = 10;
+    }
+
+    @Data
+    public static class Hedge {
+        /**
+         * 是否启用对冲请求：请求超过模型 p95 耗时未返回时补发一份
+         */
+        private boolean enabled = false;
+        /**
+         * 每个请求存入的对冲额度，0.1 即最多多发 10% 的请求
+         */
+        private double budgetRatio = 0.1;
+        /**
+         * 对冲额度上限
+         */
+        private double budgetMax = 5;
+        /**
+         * 统计 p95 所需的最少样本数
+         */
+        private int minSamples = 20;
+        /**
+         * 对冲等待时间下限（毫秒）
+         */
+        private long minDelayMs = 500;
+        /**
+         * 对冲等待时间上限（毫秒）
+         */
+        private long maxDelayMs = 30000;
+        /**
+         * 备用服务商地址，为空时对冲请求发往同一服务商
+         */
+        private String backupUrl = "";
+        /**
+         * 备用服务商密钥
+         */
+        private String backupKey = "";
+    }
+
+    @Data
+    public static class Tracing {
+        /**
+         * 是否记录请求追踪
+         */
+        private boolean enabled = true;
+        /**
+         * 环形缓冲区容量（条）
+         */
+        private int capacity = 1024;
+        /**
+         * 记录请求体 / 响应体的采样率，0 表示从不记录
+         */
+        private double bodySampleRate = 0.01;
+        /**
+         * 记录的请求体 / 响应体最大长度
+         */
+        private int maxBodyChars = 2048;
+        /**
+         * 导出追踪记录的目录
+         */
+        private String dumpDir = "logs/traces";
+    }
+
+    @Data
+    public static class History {
+        /**
+         * 对话历史过期时间（秒）
+         */
+        private int ttlSeconds = 7 * 24 * 60 * 60;
+        /**
+         * 单条消息序列化后超过该字符数时 gzip 压缩存储，0 表示不压缩
+         */
+        private int compressThresholdChars = 0;
+    }
+
+    @Data
+    public static class NearCache {
+        /**
+         * 一致性模式：off 直接读写 Redis；write-through 写入时同步写 Redis 并通知其他节点失效；
+         * write-behind 写入先进入本地缓冲，定期合并写回 Redis，其他节点在写回后失效
+         */
+        private Mode mode = Mode.WRITE_THROUGH;
+        /**
+         * 游戏状态最大缓存条目数
+         */
+        private int stateMaxEntries = 1024;
+        /**
+         * 对话历史窗口最大缓存条目数
+         */
+        private int historyMaxEntries = 8192;
+        /**
+         * 缓存条目有效期（秒），兜底防止丢失失效通知时长期读到旧数据
+         */
+        private int ttlSeconds = 60;
+        /**
+         * write-behind 模式下写回 Redis 的间隔（毫秒）
+         */
+        private long flushIntervalMs = 200;
+
+        public enum Mode {
+            OFF, WRITE_THROUGH, WRITE_BEHIND
+        }
+    }
+
+    @Data
+    public static class StateStorage {
+        /**
+         * 存储后端：redis 多节点共享；memory 单节点进程内存储，角色分配与游戏状态不经过 Redis
+         */
+        private Backend backend = Backend.REDIS;
+        /**
+         * redis 后端下游戏状态的布局：json 整体写入带类型信息的 JSON（旧格式）；compact 整体写入紧凑编码；
+         * hash 以哈希存储，游戏级字段与每个玩家各占一个字段，只写回变化的字段。
+         * 读取时兼容其他布局的旧数据，并按当前布局惰性升级
+         */
+        private Layout layout = Layout.COMPACT;
+        /**
+         * memory 后端下角色分配与游戏状态自最后一次写入起的有效期（秒），到期后删除
+         */
+        private long memoryTtlSeconds = 24 * 60 * 60;
+        /**
+         * memory 后端最多保存的游戏数，超过时删除最早写入的
+         */
+        private int memoryMaxGames = 10_000;
+
+        public enum Layout {
+            JSON, COMPACT, HASH
+        }
+
+        public enum Backend {
+            REDIS, MEMORY
+        }
+    }
+
+    @Data
+    public static class EventLog {
+        /**
+         * 是否将每局游戏的行动与状态变化追加到 Redis Streams 事件日志（memory 存储后端下不生效）
+         */
+        private boolean enabled = true;
+        /**
+         * 每追加多少个事件写入一份状态快照
+         */
+        private int snapshotEvery = 20;
+        /**
+         * 事件流与快照的过期时间（秒）
+         */
+        private int ttlSeconds = 7 * 24 * 60 * 60;
+        /**
+         * 读取事件时阻塞等待的最长时间（毫秒）
+         */
+        private long maxWaitMillis = 30_000;
+        /**
+         * 单次读取事件的最大条数
+         */
+        private int maxReadCount = 500;
+    }
+
+    @Data
+    public static class Journal {
+        /**
+         * 是否将提示词、模型原始响应、阶段决策与阶段结束后的状态写入本地回放日志
+         */
+        private boolean enabled = true;
+        /**
+         * 回放日志目录
+         */
+        private String dir = "data/journal";
+        /**
+         * 单个段文件大小（字节），写满后滚动到新的段文件
+         */
+        private int segmentBytes = 64 * 1024 * 1024;
+        /**
+         * 最多保留的段文件数，超过时删除最旧的段及其索引记录
+         */
+        private int maxSegments = 8;
+        /**
+         * 待写入队列容量，队列已满时丢弃记录
+         */
+        private int queueCapacity = 4096;
+    }
+
+    @Data
+    public static class Credentials {
+        /**
+         * 新登录是否使用带认证的 AES-GCM 加密 url 与 key，关闭时使用旧的 AES 格式；两种格式的登录ID都可以解密。
+         * GCM 的 IV 由明文派生，同一 url 与 key 每次登录得到同一登录ID，进行中的游戏不会丢失
+         */
+        private boolean authenticated = true;
+        /**
+         * 解密后的凭证最多缓存的登录数
+         */
+        private int cacheMaxEntries = 1024;
+        /**
+         * 解密后的凭证缓存有效期（秒）
+         */
+        private long cacheTtlSeconds = 1800;
+    }
+
+    @Data
+    public static class Monitor {
+        /**
+         * 访问 /monitor 下运行指标接口的管理令牌，请求头 X-Monitor-Token 必须与之相同；
+         * 为空时这些接口一律拒绝访问。回放接口只校验登录用户自己的游戏，不需要该令牌
+         */
+        private String adminToken = "";
+    }
+}
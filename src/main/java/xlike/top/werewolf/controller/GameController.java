@@ -1,14 +1,16 @@
 package xlike.top.werewolf.controller;
 import cn.dev33.satoken.stp.StpUtil;
 import xlike.top.werewolf.bean.dto.GameRoleDto;
+import xlike.top.werewolf.bean.dto.ModelTestDto;
+import xlike.top.werewolf.bean.pojo.GameEvent;
 import xlike.top.werewolf.bean.pojo.GameState;
 import xlike.top.werewolf.bean.vo.ModelVo;
 import xlike.top.werewolf.config.R;
+import xlike.top.werewolf.service.CredentialResolver;
 import xlike.top.werewolf.service.GameService;
 import xlike.top.werewolf.service.ModelService;
 import lombok.AllArgsConstructor;
 import org.springframework.web.bind.annotation.*;
-import xlike.top.werewolf.utils.AesUtils;
 import java.util.List;
 import java.util.Map;
 
@@ -23,16 +25,19 @@ public class GameController {
 
     private final GameService gameService;
     private final ModelService modelService;
+    private final CredentialResolver credentialResolver;
 
     /**
      * 分配游戏角色
      * 将前端传入的角色和AI模型对应关系存储到Redis中，并初始化游戏状态
-     * @param gameRoleDtoList 角色分配列表，每个角色包含角色ID和对应的AI模型名称
+     * @param gameRoleDtoList 角色分配列表，每个元素包含玩家ID（座位号）和对应的AI模型名称
+     * @param board 板子名称（werewolf.game.boards 中配置），不传时按人数使用标准板子
      * @return 返回操作结果，成功则返回成功消息，失败则返回错误信息
      */
     @PostMapping("/distRole")
-    public R<String> distRole(@RequestBody List<GameRoleDto> gameRoleDtoList) {
-        return gameService.distRole(gameRoleDtoList);
+    public R<String> distRole(@RequestBody List<GameRoleDto> gameRoleDtoList,
+                              @RequestParam(required = false) String board) {
+        return gameService.distRole(gameRoleDtoList, board);
     }
     /**
      * 获取当前分配的角色信息
@@ -80,26 +85,56 @@ public class GameController {
         return gameService.getGameState();
     }
 
+    /**
+     * 获取当前游戏的事件
+     * 按发生顺序返回指定事件之后的行动、投票、死亡等事件，可阻塞等待新事件，无需轮询游戏状态
+     * @param after      起始事件ID（不含），为空时从头读取
+     * @param count      最大条数，不超过配置的上限
+     * @param waitMillis 没有新事件时阻塞等待的时间（毫秒），0 表示不等待
+     * @return 事件列表，事件ID格式错误时返回失败
+     */
+    @GetMapping("/events")
+    public R<List<GameEvent>> getEvents(@RequestParam(required = false) String after,
+                                        @RequestParam(defaultValue = "100") int count,
+                                        @RequestParam(defaultValue = "0") long waitMillis) {
+        return gameService.getEvents(after, count, waitMillis);
+    }
+
+    /**
+     * 回放游戏状态
+     * 由最近的快照与之后的事件还原指定事件处的游戏状态
+     * @param eventId 事件ID（含），为空时还原最新状态
+     * @return 还原的游戏状态
+     */
+    @GetMapping("/stateAt")
+    public R<GameState> getStateAt(@RequestParam(required = false) String eventId) {
+        return gameService.getStateAt(eventId);
+    }
+
     /**
      * 获取模型列表
+     * 结果按 服务商地址 + 密钥 缓存，支持按关键字过滤与分页（size 为 0 时返回全部）
      */
     @GetMapping("/models")
     public R<List<ModelVo>> getModelList(
             @RequestParam String key,
-            @RequestParam(defaultValue = "https://api.openai.com/v1/models") String url) {
+            @RequestParam(defaultValue = "https://api.openai.com/v1/models") String url,
+            @RequestParam(required = false) String keyword,
+            @RequestParam(defaultValue = "1") int page,
+            @RequestParam(defaultValue = "0") int size) {
         if (url == null || url.isEmpty()) {
             return R.failed("url不能为空");
         }
         if (!url.contains("/v1/models")) {
             url = url + "/v1/models";
         }
-        List<ModelVo> modelList = modelService.getModelList(key, url);
+        List<ModelVo> modelList = modelService.getModelList(key, url, keyword, page, size);
         if (modelList == null || modelList.isEmpty()) {
             return R.failed("获取模型列表失败或者为空");
         }
         String[] split = url.split("/v1/models");
         String newUrl = split[0];
-        String encrypted = AesUtils.encryptTogether(newUrl, key);
+        String encrypted = credentialResolver.encrypt(newUrl, key);
         if(encrypted == null){
             return R.failed("业务异常，请联系管理员");
         }
@@ -118,6 +153,19 @@ public class GameController {
         return R.ok(modelService.modelTest(key, url, modelName));
     }
 
+    /**
+     * 批量模型测活，结果按 服务商地址 + 模型 + 密钥指纹 缓存，同一密钥跨对局共享，不同用户的密钥互不影响
+     * @param modelTestDto 包含 key、url 与模型名称列表
+     * @return 模型名称到是否有效的映射
+     */
+    @PostMapping("/model/batchTest")
+    public R<Map<String, Boolean>> batchTestModel(@RequestBody ModelTestDto modelTestDto) {
+        if (modelTestDto.getKey() == null || modelTestDto.getModelNames() == null || modelTestDto.getModelNames().isEmpty()) {
+            return R.failed("key和模型列表不能为空");
+        }
+        return R.ok(modelService.batchModelTest(modelTestDto.getKey(), modelTestDto.getUrl(), modelTestDto.getModelNames()));
+    }
+
 
 
 }
@@ -0,0 +1,186 @@
+package xlike.top.werewolf.controller;
+
+import cn.dev33.satoken.stp.StpUtil;
+import lombok.AllArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RequestParam;
+import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+import xlike.top.werewolf.bean.pojo.GameState;
+import xlike.top.werewolf.config.R;
+import xlike.top.werewolf.config.WerewolfProperties;
+import xlike.top.werewolf.service.CredentialResolver;
+import xlike.top.werewolf.service.GameStateStore;
+import xlike.top.werewolf.service.ReplayJournal;
+import xlike.top.werewolf.utils.CircuitBreaker;
+import xlike.top.werewolf.utils.HedgingPolicy;
+import xlike.top.werewolf.utils.PromptCacheStats;
+import xlike.top.werewolf.utils.ProviderRateLimiter;
+import xlike.top.werewolf.utils.RequestTracer;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 运行状态监控控制器，提供限流、熔断等运行指标
+ * 除回放接口外均需在请求头 X-Monitor-Token 中携带管理令牌，见 {@link xlike.top.werewolf.config.MonitorAuthConfig}
+ * @author xlike
+ */
+@Slf4j
+@RestController
+@RequestMapping("/monitor")
+@AllArgsConstructor
+public class MonitorController {
+
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final WerewolfProperties properties;
+    private final GameStateStore gameStateStore;
+    private final ReplayJournal replayJournal;
+    private final CredentialResolver credentialResolver;
+
+    /**
+     * 服务商限流器状态
+     * 包含当前并发、并发上限、速率、排队数量以及累计排队等待时间等指标
+     * @return 每个 服务商 + 密钥 对应的限流器状态
+     */
+    @GetMapping("/rateLimits")
+    public R<List<Map<String, Object>>> rateLimits() {
+        return R.ok(ProviderRateLimiter.snapshot());
+    }
+
+    /**
+     * 模型熔断器状态
+     * 包含熔断状态（CLOSED/OPEN/HALF_OPEN）、连续失败次数、剩余熔断时间与重试预算
+     * @return 每个 服务商地址 + 模型 对应的熔断器状态
+     */
+    @GetMapping("/circuitBreakers")
+    public R<List<Map<String, Object>>> circuitBreakers() {
+        return R.ok(CircuitBreaker.snapshot());
+    }
+
+    /**
+     * 对冲请求统计
+     * 包含当前对冲等待时间（p95）、对冲额度、对冲请求数以及对冲请求胜出次数
+     * @return 每个 服务商地址 + 模型 对应的对冲统计
+     */
+    @GetMapping("/hedging")
+    public R<List<Map<String, Object>>> hedging() {
+        return R.ok(HedgingPolicy.snapshot());
+    }
+
+    /**
+     * 前缀缓存统计
+     * 包含输入 / 缓存命中 / 输出 token 数、缓存命中比例，以及命中与未命中缓存时的平均耗时
+     * @return 每个模型对应的 token 用量统计
+     */
+    @GetMapping("/promptCache")
+    public R<List<Map<String, Object>>> promptCache() {
+        return R.ok(PromptCacheStats.snapshot());
+    }
+
+    /**
+     * 最近的请求追踪记录，按时间倒序
+     * 包含地址、模型、状态码、字节数、排队 / 首包 / 总耗时，采样的记录附带脱敏后的请求体与响应体
+     * @param limit      最大返回条数
+     * @param model      按模型过滤，可选
+     * @param errorsOnly 只返回失败的调用
+     * @return 追踪记录
+     */
+    @GetMapping("/traces")
+    public R<List<Map<String, Object>>> traces(@RequestParam(defaultValue = "100") int limit,
+                                               @RequestParam(required = false) String model,
+                                               @RequestParam(defaultValue = "false") boolean errorsOnly) {
+        return R.ok(RequestTracer.snapshot(limit, model, errorsOnly));
+    }
+
+    /**
+     * 将当前缓冲区中的追踪记录导出到文件
+     * @return 导出的文件路径
+     */
+    @PostMapping("/traces/dump")
+    public R<String> dumpTraces() {
+        try {
+            Path file = RequestTracer.dump(Path.of(properties.getTracing().getDumpDir()));
+            return R.ok(file.toAbsolutePath().toString());
+        } catch (IOException e) {
+            log.error("导出追踪记录失败：{}", e.getMessage());
+            return R.failed("导出追踪记录失败");
+        }
+    }
+
+    /**
+     * 近端缓存统计
+     * 包含一致性模式、游戏状态与对话历史缓存的命中率、待写回数量以及跨节点失效通知次数
+     * @return 近端缓存统计
+     */
+    @GetMapping("/nearCache")
+    public R<Map<String, Object>> nearCache() {
+        return R.ok(gameStateStore.snapshot());
+    }
+
+    /**
+     * 登录凭证缓存统计
+     * 包含缓存大小、命中率、淘汰次数以及新登录是否使用 AES-GCM
+     * @return 凭证缓存统计
+     */
+    @GetMapping("/credentials")
+    public R<Map<String, Object>> credentials() {
+        return R.ok(credentialResolver.snapshot());
+    }
+
+    /**
+     * 回放日志统计
+     * 包含段文件数、已记录的游戏数、待写入队列长度、已写入记录数与字节数以及丢弃的记录数
+     * @return 回放日志统计
+     */
+    @GetMapping("/journal")
+    public R<Map<String, Object>> journal() {
+        return R.ok(replayJournal.snapshot());
+    }
+
+    /**
+     * 按写入顺序回放一局游戏，每行一条 JSON 记录（application/x-ndjson）
+     * 记录类型包括 EXCHANGE（提示词与模型原始响应）、DECISION（阶段决策）与 STATE（阶段结束后的游戏状态）
+     * 记录中包含完整的提示词与模型响应，只能回放当前登录用户自己的游戏
+     * @param gameId 游戏ID
+     * @return 记录流，未登录时返回 401，游戏不存在或不属于当前登录用户时返回 404
+     */
+    @GetMapping("/replay/{gameId}")
+    public ResponseEntity<StreamingResponseBody> replay(@PathVariable String gameId) {
+        if (!StpUtil.isLogin()) {
+            return ResponseEntity.status(HttpStatus.UNAUTHORIZED).build();
+        }
+        GameState gameState = gameStateStore.get(StpUtil.getLoginIdAsString());
+        if (gameState == null || !gameId.equals(gameState.getGameId()) || !replayJournal.contains(gameId)) {
+            return ResponseEntity.notFound().build();
+        }
+        StreamingResponseBody body = output -> {
+            try {
+                replayJournal.replay(gameId, record -> {
+                    try {
+                        output.write(OBJECT_MAPPER.writeValueAsString(record).getBytes(StandardCharsets.UTF_8));
+                        output.write('\n');
+                    } catch (IOException e) {
+                        throw new UncheckedIOException(e);
+                    }
+                });
+            } catch (UncheckedIOException e) {
+                throw e.getCause();
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.parseMediaType("application/x-ndjson")).body(body);
+    }
+}
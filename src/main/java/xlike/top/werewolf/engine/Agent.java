@@ -0,0 +1,78 @@
+package xlike.top.werewolf.engine;
+
+/**
+ * 无头引擎中的玩家决策
+ * <p>
+ * 玩家以座位标识。每个方法返回一次决策，返回 {@link IndexedGameState#NONE}、null 或无效目标时
+ * 由引擎按与线上一致的兜底规则随机决定；传入的状态仅供读取，决策不应修改它
+ *
+ * @author xlike
+ */
+public interface Agent {
+
+    /**
+     * 狼人击杀目标，由存活狼人中的第一位代表全体狼人决策
+     *
+     * @param state 游戏状态
+     * @param self  决策的狼人
+     * @return 目标座位
+     */
+    int werewolfTarget(IndexedGameState state, int self);
+
+    /**
+     * 预言家查验目标
+     *
+     * @param state 游戏状态
+     * @param self  预言家
+     * @return 目标座位
+     */
+    int seerTarget(IndexedGameState state, int self);
+
+    /**
+     * 女巫用药
+     *
+     * @param state    游戏状态
+     * @param self     女巫
+     * @param killed   今晚被狼人击杀的座位，无人被击杀时为 {@link IndexedGameState#NONE}
+     * @return 用药决策，为 null 时随机用药
+     */
+    WitchDecision witchAction(IndexedGameState state, int self, int killed);
+
+    /**
+     * 白天投票目标
+     *
+     * @param state 投票开始前的游戏状态
+     * @param self  投票的玩家
+     * @return 目标座位
+     */
+    int voteTarget(IndexedGameState state, int self);
+
+    /**
+     * 猎人被投票出局后的反击
+     *
+     * @param state 游戏状态
+     * @param self  猎人
+     * @return 反击决策，为 null 时随机反击
+     */
+    HunterDecision hunterShot(IndexedGameState state, int self);
+
+    /**
+     * 女巫用药决策
+     *
+     * @param save         是否使用解药
+     * @param saveTarget   救人目标，必须是今晚被击杀的玩家
+     * @param poison       是否使用毒药
+     * @param poisonTarget 毒人目标
+     */
+    record WitchDecision(boolean save, int saveTarget, boolean poison, int poisonTarget) {
+    }
+
+    /**
+     * 猎人反击决策
+     *
+     * @param shoot  是否开枪
+     * @param target 目标座位
+     */
+    record HunterDecision(boolean shoot, int target) {
+    }
+}
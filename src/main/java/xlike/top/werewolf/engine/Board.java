@@ -0,0 +1,140 @@
+package xlike.top.werewolf.engine;
+
+import xlike.top.werewolf.enums.RoleEnum;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.random.RandomGenerator;
+
+/**
+ * 板子：一局游戏中每种角色的数量，与座位（玩家ID）无关
+ * <p>
+ * 狼人与村民可以有任意多名；预言家、女巫、猎人每种最多一名，夜晚行动与猎人反击都按单个神职设计。
+ * 座位数为各角色数量之和，不超过 {@link IndexedGameState#MAX_SEATS}
+ *
+ * @author xlike
+ */
+public class Board {
+
+    /**
+     * 单个神职角色的数量上限
+     */
+    private static final int MAX_SPECIAL_COUNT = 1;
+
+    private final String name;
+    private final int[] counts;
+    private final int seats;
+
+    private Board(String name, int[] counts) {
+        this.name = name;
+        this.counts = counts;
+        int total = 0;
+        for (int count : counts) {
+            total += count;
+        }
+        this.seats = total;
+    }
+
+    /**
+     * 按角色数量定义板子
+     *
+     * @param name   板子名称
+     * @param counts 每种角色的数量，未列出的角色为 0
+     * @throws IllegalArgumentException 数量为负、神职重复、没有狼人或好人、座位数超出上限
+     */
+    public static Board of(String name, Map<RoleEnum, Integer> counts) {
+        int[] table = new int[RoleEnum.values().length];
+        counts.forEach((role, count) -> table[role.ordinal()] = count == null ? 0 : count);
+        for (RoleEnum role : RoleEnum.values()) {
+            int count = table[role.ordinal()];
+            if (count < 0) {
+                throw new IllegalArgumentException("Negative count for " + role + " in board " + name);
+            }
+            if (role != RoleEnum.WEREWOLF && role != RoleEnum.VILLAGER && count > MAX_SPECIAL_COUNT) {
+                throw new IllegalArgumentException("At most " + MAX_SPECIAL_COUNT + " " + role + " in board " + name);
+            }
+        }
+        Board board = new Board(name, table);
+        if (board.count(RoleEnum.WEREWOLF) == 0 || board.count(RoleEnum.WEREWOLF) == board.seats) {
+            throw new IllegalArgumentException("Board " + name + " needs both werewolves and good players");
+        }
+        if (board.seats > IndexedGameState.MAX_SEATS) {
+            throw new IllegalArgumentException("Board " + name + " has " + board.seats + " seats, max " + IndexedGameState.MAX_SEATS);
+        }
+        return board;
+    }
+
+    /**
+     * 标准板子：约三分之一为狼人，预言家、女巫、猎人各一名，其余为村民。
+     * 六人局即原来的 2 狼 1 民 + 预言家、女巫、猎人
+     *
+     * @param seats 座位数，至少 6
+     */
+    public static Board standard(int seats) {
+        if (seats < 6) {
+            throw new IllegalArgumentException("Standard board needs at least 6 seats: " + seats);
+        }
+        Map<RoleEnum, Integer> counts = new EnumMap<>(RoleEnum.class);
+        int werewolves = seats / 3;
+        counts.put(RoleEnum.WEREWOLF, werewolves);
+        counts.put(RoleEnum.VILLAGER, seats - werewolves - 3);
+        counts.put(RoleEnum.SEER, 1);
+        counts.put(RoleEnum.WITCH, 1);
+        counts.put(RoleEnum.HUNTER, 1);
+        return of("standard-" + seats, counts);
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int seats() {
+        return seats;
+    }
+
+    public int count(RoleEnum role) {
+        return counts[role.ordinal()];
+    }
+
+    /**
+     * 为每个座位分配角色
+     * <p>
+     * 按 RoleEnum 的顺序排列（狼人、村民、预言家、女巫、猎人），六人局与旧版玩家ID对应的角色一致；
+     * 传入随机数生成器时再随机打乱
+     *
+     * @param random 随机数生成器，为 null 时不打乱
+     * @return 按座位下标的角色
+     */
+    public RoleEnum[] deal(RandomGenerator random) {
+        RoleEnum[] seatRoles = new RoleEnum[seats];
+        int seat = 0;
+        for (RoleEnum role : RoleEnum.values()) {
+            for (int i = 0; i < counts[role.ordinal()]; i++) {
+                seatRoles[seat++] = role;
+            }
+        }
+        if (random != null) {
+            for (int i = seatRoles.length - 1; i > 0; i--) {
+                int j = random.nextInt(i + 1);
+                RoleEnum swap = seatRoles[i];
+                seatRoles[i] = seatRoles[j];
+                seatRoles[j] = swap;
+            }
+        }
+        return seatRoles;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder sb = new StringBuilder(name).append(" (");
+        for (RoleEnum role : RoleEnum.values()) {
+            if (counts[role.ordinal()] > 0) {
+                if (sb.charAt(sb.length() - 1) != '(') {
+                    sb.append(", ");
+                }
+                sb.append(role.getName()).append('×').append(counts[role.ordinal()]);
+            }
+        }
+        return sb.append(')').toString();
+    }
+}
@@ -0,0 +1,174 @@
+package xlike.top.werewolf.engine;
+
+import xlike.top.werewolf.bean.pojo.GameState;
+import xlike.top.werewolf.bean.pojo.PlayerState;
+import xlike.top.werewolf.enums.RoleEnum;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.IntFunction;
+import java.util.random.RandomGenerator;
+
+import static xlike.top.werewolf.engine.IndexedGameState.NONE;
+
+/**
+ * 无头游戏引擎：按 {@link GameRules} 同步推进整局游戏，决策来自可替换的 {@link Agent}
+ * <p>
+ * 不依赖登录、存储与模型调用，用于规则回归、平衡性统计与性能基准。单个实例不是线程安全的，并行模拟时每局使用独立实例
+ *
+ * @author xlike
+ */
+public class GameEngine {
+
+    private final IntFunction<Agent> agents;
+    private final RandomGenerator random;
+
+    /**
+     * 一局游戏的结果
+     *
+     * @param winnerCamp 获胜阵营，达到天数上限仍未结束时为 null
+     * @param days       进行的天数
+     * @param survivors  存活玩家数
+     */
+    public record Outcome(String winnerCamp, int days, int survivors) {
+    }
+
+    /**
+     * @param agents 每个座位对应的决策者
+     * @param random 兜底逻辑使用的随机数生成器
+     */
+    public GameEngine(IntFunction<Agent> agents, RandomGenerator random) {
+        this.agents = agents;
+        this.random = random;
+    }
+
+    /**
+     * 按板子创建一局游戏，玩家ID为 1 起的座位号，第 1 天开始
+     *
+     * @param board  板子
+     * @param roleAI 写入每名玩家的模型名称，模拟时用于区分决策者
+     * @param random 打乱座位与角色对应关系的随机数生成器，为 null 时按 RoleEnum 的顺序入座
+     */
+    public static IndexedGameState newGame(Board board, String roleAI, RandomGenerator random) {
+        RoleEnum[] roles = board.deal(random);
+        List<PlayerState> players = new ArrayList<>(roles.length);
+        for (int seat = 0; seat < roles.length; seat++) {
+            PlayerState player = new PlayerState();
+            player.setRoleId(String.valueOf(seat + 1));
+            player.setRole(roles[seat].name());
+            player.setRoleAI(roleAI);
+            player.setAlive(true);
+            player.setNightTarget("");
+            players.add(player);
+        }
+        GameState gameState = new GameState();
+        gameState.setDay(1);
+        gameState.setWinnerCamp("");
+        gameState.setPlayers(players);
+        return IndexedGameState.from(gameState);
+    }
+
+    /**
+     * 进行游戏直到结束或达到天数上限
+     *
+     * @param state   游戏状态
+     * @param maxDays 天数上限
+     * @return 游戏结果
+     */
+    public Outcome play(IndexedGameState state, int maxDays) {
+        while (!state.isGameOver() && state.getDay() <= maxDays) {
+            nightPhase(state);
+            if (!state.isGameOver()) {
+                dayPhase(state);
+            }
+        }
+        return new Outcome(state.isGameOver() ? state.getWinnerCamp() : null, state.getDay(), state.aliveCount());
+    }
+
+    /**
+     * 夜晚：狼人击杀、预言家查验、女巫用药，然后结算
+     *
+     * @return 今晚死亡的座位掩码
+     */
+    public long nightPhase(IndexedGameState state) {
+        state.resetNight();
+
+        long wolves = state.aliveMask() & state.werewolfMask();
+        if (wolves != 0) {
+            int leadWolf = Long.numberOfTrailingZeros(wolves);
+            int target = agents.apply(leadWolf).werewolfTarget(state, leadWolf);
+            if (GameRules.isValidTarget(state, target)) {
+                GameRules.setWerewolfTarget(state, target);
+            } else {
+                GameRules.randomWerewolfTarget(state, random);
+            }
+        }
+
+        int seer = state.firstAlive(RoleEnum.SEER);
+        if (seer != NONE) {
+            int target = agents.apply(seer).seerTarget(state, seer);
+            if (GameRules.isValidTarget(state, target)) {
+                state.setNightTarget(seer, target);
+            } else {
+                GameRules.randomSeerTarget(state, seer, random);
+            }
+        }
+
+        int witch = state.firstAlive(RoleEnum.WITCH);
+        if (witch != NONE) {
+            Agent.WitchDecision decision = agents.apply(witch).witchAction(state, witch, state.killTarget());
+            if (decision == null) {
+                GameRules.randomWitchAction(state, witch, random);
+            } else {
+                if (decision.save()) {
+                    GameRules.witchSave(state, witch, decision.saveTarget());
+                }
+                if (decision.poison()) {
+                    GameRules.witchPoison(state, witch, decision.poisonTarget());
+                }
+            }
+        }
+
+        return GameRules.resolveNight(state);
+    }
+
+    /**
+     * 白天：存活玩家基于同一状态投票，得票最多者出局，猎人出局时反击，然后进入下一天
+     *
+     * @return 被投票出局的座位，没有时为 {@link IndexedGameState#NONE}
+     */
+    public int dayPhase(IndexedGameState state) {
+        // 先收集全部决策再计票，与线上并发投票的语义一致
+        long voters = state.aliveMask();
+        int[] decisions = new int[state.seats()];
+        for (long mask = voters; mask != 0; mask &= mask - 1) {
+            int voter = Long.numberOfTrailingZeros(mask);
+            decisions[voter] = agents.apply(voter).voteTarget(state, voter);
+        }
+        VoteTally tally = new VoteTally(state.seats());
+        for (long mask = voters; mask != 0; mask &= mask - 1) {
+            int voter = Long.numberOfTrailingZeros(mask);
+            if (GameRules.isValidTarget(state, decisions[voter])) {
+                tally.add(decisions[voter]);
+            } else {
+                GameRules.randomVote(state, voter, tally, random);
+            }
+        }
+
+        int votedOut = tally.leader();
+        if (votedOut != NONE) {
+            state.kill(votedOut);
+            if (GameRules.isHunter(state, votedOut)) {
+                Agent.HunterDecision decision = agents.apply(votedOut).hunterShot(state, votedOut);
+                if (decision == null) {
+                    GameRules.randomHunterShot(state, votedOut, random);
+                } else if (decision.shoot()) {
+                    GameRules.hunterShoot(state, decision.target());
+                }
+            }
+        }
+        state.checkGameOver();
+        state.setDay(state.getDay() + 1);
+        return votedOut;
+    }
+}
@@ -0,0 +1,188 @@
+package xlike.top.werewolf.engine;
+
+import xlike.top.werewolf.enums.RoleEnum;
+
+import java.util.random.RandomGenerator;
+
+import static xlike.top.werewolf.engine.IndexedGameState.NONE;
+import static xlike.top.werewolf.engine.IndexedGameState.bit;
+
+/**
+ * 游戏规则：夜晚结算、投票计票、女巫与猎人技能、胜负判定，以及 AI 决策无效时的随机兜底
+ * <p>
+ * 不依赖 Spring、Redis 与模型调用，线上游戏与无头模拟共用同一套规则；不输出日志，由调用方按需记录。
+ * 规则作用于 {@link IndexedGameState}，玩家以座位标识
+ *
+ * @author xlike
+ */
+public class GameRules {
+
+    public static final String GOOD_CAMP = "好人阵营";
+    public static final String WEREWOLF_CAMP = "狼人阵营";
+
+    private GameRules() {
+    }
+
+    /**
+     * 预言家查验结果
+     */
+    public static String identityOf(IndexedGameState state, int seat) {
+        return state.isWerewolf(seat) ? "狼人" : "好人";
+    }
+
+    /**
+     * 目标有效：存在且存活
+     */
+    public static boolean isValidTarget(IndexedGameState state, int seat) {
+        return state.isAlive(seat);
+    }
+
+    /**
+     * 设置狼人的击杀目标，所有存活狼人的夜晚目标相同
+     */
+    public static void setWerewolfTarget(IndexedGameState state, int target) {
+        for (long wolves = state.aliveMask() & state.werewolfMask(); wolves != 0; wolves &= wolves - 1) {
+            state.setNightTarget(Long.numberOfTrailingZeros(wolves), target);
+        }
+        state.setKillTarget(target);
+    }
+
+    /**
+     * 狼人随机击杀一名存活的好人
+     *
+     * @return 击杀目标，没有存活的好人时为 {@link IndexedGameState#NONE}
+     */
+    public static int randomWerewolfTarget(IndexedGameState state, RandomGenerator random) {
+        int target = IndexedGameState.randomSeat(state.aliveMask() & ~state.werewolfMask(), random);
+        if (target != NONE) {
+            setWerewolfTarget(state, target);
+        }
+        return target;
+    }
+
+    /**
+     * 预言家随机查验一名其他存活玩家
+     *
+     * @return 查验目标，没有其他存活玩家时为 {@link IndexedGameState#NONE}
+     */
+    public static int randomSeerTarget(IndexedGameState state, int seer, RandomGenerator random) {
+        int target = IndexedGameState.randomSeat(state.aliveMask() & ~bit(seer), random);
+        if (target != NONE) {
+            state.setNightTarget(seer, target);
+        }
+        return target;
+    }
+
+    /**
+     * 女巫使用解药，只能救今晚被击杀的玩家
+     *
+     * @return 是否生效
+     */
+    public static boolean witchSave(IndexedGameState state, int witch, int saveTarget) {
+        if (state.isSaveUsed(witch) || saveTarget == NONE || saveTarget != state.killTarget()) {
+            return false;
+        }
+        state.setSaved(saveTarget);
+        state.setSaveUsed(witch);
+        return true;
+    }
+
+    /**
+     * 女巫使用毒药，目标必须存活
+     *
+     * @return 是否生效
+     */
+    public static boolean witchPoison(IndexedGameState state, int witch, int poisonTarget) {
+        if (state.isPoisonUsed(witch) || !isValidTarget(state, poisonTarget)) {
+            return false;
+        }
+        state.setPoisoned(poisonTarget);
+        state.setPoisonUsed(witch);
+        return true;
+    }
+
+    /**
+     * 女巫随机用药：各以一半的概率救下今晚被击杀的玩家、毒死一名其他存活玩家
+     *
+     * @return 实际执行的决策
+     */
+    public static Agent.WitchDecision randomWitchAction(IndexedGameState state, int witch, RandomGenerator random) {
+        int killed = state.killTarget();
+        boolean saved = killed != NONE && random.nextBoolean() && witchSave(state, witch, killed);
+        int poisonTarget = NONE;
+        if (!state.isPoisonUsed(witch) && random.nextBoolean()) {
+            poisonTarget = IndexedGameState.randomSeat(state.aliveMask() & ~bit(witch), random);
+            if (poisonTarget != NONE) {
+                witchPoison(state, witch, poisonTarget);
+            }
+        }
+        return new Agent.WitchDecision(saved, saved ? killed : NONE, poisonTarget != NONE, poisonTarget);
+    }
+
+    /**
+     * 夜晚结算：被毒的玩家死亡，被击杀且未被救的玩家死亡，然后判定胜负
+     *
+     * @return 今晚死亡的座位掩码，死因可由 {@link IndexedGameState#isPoisoned} 区分
+     */
+    public static long resolveNight(IndexedGameState state) {
+        long deaths = state.poisonedMask() & state.aliveMask();
+        int killed = state.killTarget();
+        if (killed != NONE && state.isAlive(killed) && !state.isSaved(killed)) {
+            deaths |= bit(killed);
+        }
+        for (long mask = deaths; mask != 0; mask &= mask - 1) {
+            state.kill(Long.numberOfTrailingZeros(mask));
+        }
+        state.checkGameOver();
+        return deaths;
+    }
+
+    /**
+     * 随机投票给一名其他存活玩家，投票目标暂存在夜晚目标中
+     *
+     * @return 投票目标，没有其他存活玩家时为 {@link IndexedGameState#NONE}
+     */
+    public static int randomVote(IndexedGameState state, int voter, VoteTally tally, RandomGenerator random) {
+        int target = IndexedGameState.randomSeat(state.aliveMask() & ~bit(voter), random);
+        if (target != NONE) {
+            tally.add(target);
+            state.setNightTarget(voter, target);
+        }
+        return target;
+    }
+
+    /**
+     * 猎人开枪带走目标，目标必须存活
+     *
+     * @return 是否生效
+     */
+    public static boolean hunterShoot(IndexedGameState state, int target) {
+        if (!isValidTarget(state, target)) {
+            return false;
+        }
+        state.kill(target);
+        return true;
+    }
+
+    /**
+     * 猎人随机反击：一半的概率开枪带走一名其他存活玩家
+     *
+     * @return 反击目标，不开枪时为 {@link IndexedGameState#NONE}
+     */
+    public static int randomHunterShot(IndexedGameState state, int hunter, RandomGenerator random) {
+        long others = state.aliveMask() & ~bit(hunter);
+        if (others == 0 || !random.nextBoolean()) {
+            return NONE;
+        }
+        int target = IndexedGameState.randomSeat(others, random);
+        hunterShoot(state, target);
+        return target;
+    }
+
+    /**
+     * 玩家出局后是否触发猎人反击
+     */
+    public static boolean isHunter(IndexedGameState state, int seat) {
+        return state.isRole(seat, RoleEnum.HUNTER);
+    }
+}
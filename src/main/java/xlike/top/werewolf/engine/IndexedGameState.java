@@ -0,0 +1,444 @@
+package xlike.top.werewolf.engine;
+
+import xlike.top.werewolf.bean.pojo.GameState;
+import xlike.top.werewolf.bean.pojo.PlayerState;
+import xlike.top.werewolf.enums.RoleEnum;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.random.RandomGenerator;
+
+/**
+ * 规则计算使用的紧凑游戏状态
+ * <p>
+ * 玩家以座位下标（0 起，与 GameState 中玩家列表的顺序一致）标识，存活 / 被救 / 被毒 / 用药情况是按座位的位掩码，
+ * 角色与阵营是按座位的数组；存活的狼人数与好人数随死亡实时维护，胜负判定为 O(1)。
+ * 只在阶段开始（{@link #from}）与结束（{@link #toGameState}）时与 GameState / PlayerState 互相转换，
+ * 提示词与结果中的玩家ID通过 {@link #roleId} / {@link #seatOf} 转换。
+ * <p>
+ * 夜晚行动并发执行时，各行动只写自己的座位的夜晚目标，位掩码只在单个行动内修改
+ *
+ * @author xlike
+ */
+public class IndexedGameState {
+
+    /**
+     * 位掩码支持的最大座位数
+     */
+    public static final int MAX_SEATS = Long.SIZE;
+    /**
+     * 无目标
+     */
+    public static final int NONE = -1;
+
+    /**
+     * 按角色枚举序号下标的阵营表
+     */
+    private static final boolean[] WEREWOLF_ROLE = new boolean[RoleEnum.values().length];
+
+    static {
+        for (RoleEnum role : RoleEnum.values()) {
+            WEREWOLF_ROLE[role.ordinal()] = GameRules.WEREWOLF_CAMP.equals(role.getCamp());
+        }
+    }
+
+    private final String gameId;
+    private final long version;
+    private final int seats;
+    private final String[] roleIds;
+    private final String[] roleAIs;
+    private final RoleEnum[] roles;
+    private final Map<String, Integer> seatById;
+    private final long werewolves;
+    private final int[] nightTargets;
+
+    private long alive;
+    private long saved;
+    private long poisoned;
+    private long saveUsed;
+    private long poisonUsed;
+    private int aliveWerewolves;
+    private int aliveGood;
+    private int killTarget = NONE;
+    private int day;
+    private boolean gameOver;
+    private String winnerCamp;
+
+    private IndexedGameState(String gameId, long version, List<PlayerState> players) {
+        if (players.size() > MAX_SEATS) {
+            throw new IllegalArgumentException("Too many seats: " + players.size());
+        }
+        this.gameId = gameId;
+        this.version = version;
+        this.seats = players.size();
+        this.roleIds = new String[seats];
+        this.roleAIs = new String[seats];
+        this.roles = new RoleEnum[seats];
+        this.seatById = new HashMap<>(seats * 2);
+        this.nightTargets = new int[seats];
+        long werewolfMask = 0;
+        for (int seat = 0; seat < seats; seat++) {
+            PlayerState player = players.get(seat);
+            roleIds[seat] = player.getRoleId();
+            roleAIs[seat] = player.getRoleAI();
+            roles[seat] = player.getRole() != null ? RoleEnum.fromCode(player.getRole()) : RoleEnum.fromLegacyId(player.getRoleId());
+            seatById.put(player.getRoleId(), seat);
+            if (roles[seat] != null && WEREWOLF_ROLE[roles[seat].ordinal()]) {
+                werewolfMask |= bit(seat);
+            }
+        }
+        this.werewolves = werewolfMask;
+    }
+
+    /**
+     * 由游戏状态构建，夜晚目标按玩家ID解析为座位
+     */
+    public static IndexedGameState from(GameState gameState) {
+        IndexedGameState state = new IndexedGameState(gameState.getGameId(), gameState.getVersion(), gameState.getPlayers());
+        List<PlayerState> players = gameState.getPlayers();
+        for (int seat = 0; seat < state.seats; seat++) {
+            PlayerState player = players.get(seat);
+            long mask = bit(seat);
+            if (player.isAlive()) {
+                state.alive |= mask;
+            }
+            if (player.isSaved()) {
+                state.saved |= mask;
+            }
+            if (player.isPoisoned()) {
+                state.poisoned |= mask;
+            }
+            if (player.isWitchSaveUsed()) {
+                state.saveUsed |= mask;
+            }
+            if (player.isWitchPoisonUsed()) {
+                state.poisonUsed |= mask;
+            }
+            state.nightTargets[seat] = state.seatOf(player.getNightTarget());
+        }
+        state.aliveWerewolves = Long.bitCount(state.alive & state.werewolves);
+        state.aliveGood = Long.bitCount(state.alive & ~state.werewolves);
+        // 狼人的击杀目标：第一个有目标的存活狼人
+        for (long wolves = state.alive & state.werewolves; wolves != 0; wolves &= wolves - 1) {
+            int wolf = Long.numberOfTrailingZeros(wolves);
+            if (state.nightTargets[wolf] != NONE) {
+                state.killTarget = state.nightTargets[wolf];
+                break;
+            }
+        }
+        state.day = gameState.getDay();
+        state.gameOver = gameState.isGameOver();
+        state.winnerCamp = gameState.getWinnerCamp();
+        return state;
+    }
+
+    /**
+     * 转换为游戏状态，玩家顺序与构建时一致
+     */
+    public GameState toGameState() {
+        List<PlayerState> players = new ArrayList<>(seats);
+        for (int seat = 0; seat < seats; seat++) {
+            long mask = bit(seat);
+            PlayerState player = new PlayerState();
+            player.setRoleId(roleIds[seat]);
+            player.setRole(roles[seat] == null ? null : roles[seat].name());
+            player.setRoleAI(roleAIs[seat]);
+            player.setAlive((alive & mask) != 0);
+            player.setNightTarget(roleId(nightTargets[seat]));
+            player.setSaved((saved & mask) != 0);
+            player.setPoisoned((poisoned & mask) != 0);
+            player.setWitchSaveUsed((saveUsed & mask) != 0);
+            player.setWitchPoisonUsed((poisonUsed & mask) != 0);
+            players.add(player);
+        }
+        GameState gameState = new GameState();
+        gameState.setGameId(gameId);
+        gameState.setVersion(version);
+        gameState.setDay(day);
+        gameState.setGameOver(gameOver);
+        gameState.setWinnerCamp(winnerCamp);
+        gameState.setPlayers(players);
+        return gameState;
+    }
+
+    public static long bit(int seat) {
+        return 1L << seat;
+    }
+
+    public int seats() {
+        return seats;
+    }
+
+    /**
+     * 玩家ID对应的座位
+     *
+     * @return 座位，玩家不存在时为 {@link #NONE}
+     */
+    public int seatOf(String roleId) {
+        if (roleId == null || roleId.isEmpty()) {
+            return NONE;
+        }
+        Integer seat = seatById.get(roleId);
+        return seat == null ? NONE : seat;
+    }
+
+    /**
+     * 座位对应的玩家ID，{@link #NONE} 为空字符串
+     */
+    public String roleId(int seat) {
+        return seat == NONE ? "" : roleIds[seat];
+    }
+
+    /**
+     * 按座位顺序列出掩码中的玩家ID，连续的数字ID压缩为区间，如 "1-4, 6, 9-12"，
+     * 大板子的提示词长度不随座位数线性增长
+     */
+    public String idRanges(long mask) {
+        StringBuilder sb = new StringBuilder();
+        while (mask != 0) {
+            int first = Long.numberOfTrailingZeros(mask);
+            int last = first;
+            mask &= mask - 1;
+            int firstId = numericId(first);
+            if (firstId > 0) {
+                // 延伸到下一个座位仍在掩码中且ID连续为止
+                while (mask != 0 && Long.numberOfTrailingZeros(mask) == last + 1
+                        && numericId(last + 1) == firstId + (last + 1 - first)) {
+                    last++;
+                    mask &= mask - 1;
+                }
+            }
+            if (!sb.isEmpty()) {
+                sb.append(", ");
+            }
+            sb.append(roleIds[first]);
+            if (last > first + 1) {
+                sb.append('-').append(roleIds[last]);
+            } else if (last == first + 1) {
+                sb.append(", ").append(roleIds[last]);
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 玩家ID的数值，不是正整数时为 -1
+     */
+    private int numericId(int seat) {
+        String roleId = roleIds[seat];
+        if (roleId == null || roleId.isEmpty() || roleId.length() > 9 || roleId.charAt(0) == '0') {
+            return -1;
+        }
+        int id = 0;
+        for (int i = 0; i < roleId.length(); i++) {
+            char c = roleId.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            id = id * 10 + (c - '0');
+        }
+        return id;
+    }
+
+    public String roleAI(int seat) {
+        return roleAIs[seat];
+    }
+
+    /**
+     * 座位的角色，角色无效时为 null
+     */
+    public RoleEnum role(int seat) {
+        return roles[seat];
+    }
+
+    public boolean isRole(int seat, RoleEnum role) {
+        return roles[seat] == role;
+    }
+
+    public boolean isWerewolf(int seat) {
+        return (werewolves & bit(seat)) != 0;
+    }
+
+    public boolean isAlive(int seat) {
+        return seat >= 0 && seat < seats && (alive & bit(seat)) != 0;
+    }
+
+    public long aliveMask() {
+        return alive;
+    }
+
+    public long werewolfMask() {
+        return werewolves;
+    }
+
+    public int aliveCount() {
+        return aliveWerewolves + aliveGood;
+    }
+
+    public int aliveWerewolves() {
+        return aliveWerewolves;
+    }
+
+    public int aliveGood() {
+        return aliveGood;
+    }
+
+    /**
+     * 指定角色的第一个存活座位
+     *
+     * @return 座位，不存在或已死亡时为 {@link #NONE}
+     */
+    public int firstAlive(RoleEnum role) {
+        for (long mask = alive; mask != 0; mask &= mask - 1) {
+            int seat = Long.numberOfTrailingZeros(mask);
+            if (roles[seat] == role) {
+                return seat;
+            }
+        }
+        return NONE;
+    }
+
+    /**
+     * 玩家出局，已出局时不做任何操作
+     */
+    public void kill(int seat) {
+        long mask = bit(seat);
+        if ((alive & mask) == 0) {
+            return;
+        }
+        alive &= ~mask;
+        if ((werewolves & mask) != 0) {
+            aliveWerewolves--;
+        } else {
+            aliveGood--;
+        }
+    }
+
+    public int nightTarget(int seat) {
+        return nightTargets[seat];
+    }
+
+    public void setNightTarget(int seat, int target) {
+        nightTargets[seat] = target;
+    }
+
+    /**
+     * 今晚狼人的击杀目标
+     *
+     * @return 座位，没有时为 {@link #NONE}
+     */
+    public int killTarget() {
+        return killTarget;
+    }
+
+    public void setKillTarget(int target) {
+        this.killTarget = target;
+    }
+
+    public boolean isSaved(int seat) {
+        return (saved & bit(seat)) != 0;
+    }
+
+    public void setSaved(int seat) {
+        saved |= bit(seat);
+    }
+
+    public boolean isPoisoned(int seat) {
+        return (poisoned & bit(seat)) != 0;
+    }
+
+    public void setPoisoned(int seat) {
+        poisoned |= bit(seat);
+    }
+
+    public long poisonedMask() {
+        return poisoned;
+    }
+
+    public boolean isSaveUsed(int seat) {
+        return (saveUsed & bit(seat)) != 0;
+    }
+
+    public void setSaveUsed(int seat) {
+        saveUsed |= bit(seat);
+    }
+
+    public boolean isPoisonUsed(int seat) {
+        return (poisonUsed & bit(seat)) != 0;
+    }
+
+    public void setPoisonUsed(int seat) {
+        poisonUsed |= bit(seat);
+    }
+
+    /**
+     * 重置夜晚状态
+     */
+    public void resetNight() {
+        Arrays.fill(nightTargets, NONE);
+        killTarget = NONE;
+        saved = 0;
+        poisoned = 0;
+    }
+
+    public String getGameId() {
+        return gameId;
+    }
+
+    public int getDay() {
+        return day;
+    }
+
+    public void setDay(int day) {
+        this.day = day;
+    }
+
+    public boolean isGameOver() {
+        return gameOver;
+    }
+
+    public String getWinnerCamp() {
+        return winnerCamp;
+    }
+
+    /**
+     * 判定胜负：狼人全部出局好人胜；存活狼人数不少于存活好人数狼人胜
+     *
+     * @return 本次判定是否结束了游戏
+     */
+    public boolean checkGameOver() {
+        if (gameOver) {
+            return false;
+        }
+        if (aliveWerewolves == 0) {
+            gameOver = true;
+            winnerCamp = GameRules.GOOD_CAMP;
+            return true;
+        }
+        if (aliveWerewolves >= aliveGood) {
+            gameOver = true;
+            winnerCamp = GameRules.WEREWOLF_CAMP;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 在掩码对应的座位中均匀随机选择一个
+     *
+     * @return 座位，掩码为空时为 {@link #NONE}
+     */
+    public static int randomSeat(long mask, RandomGenerator random) {
+        int count = Long.bitCount(mask);
+        if (count == 0) {
+            return NONE;
+        }
+        for (int skip = random.nextInt(count); skip > 0; skip--) {
+            mask &= mask - 1;
+        }
+        return Long.numberOfTrailingZeros(mask);
+    }
+}
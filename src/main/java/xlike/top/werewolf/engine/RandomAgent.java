@@ -0,0 +1,54 @@
+package xlike.top.werewolf.engine;
+
+import java.util.random.RandomGenerator;
+
+import static xlike.top.werewolf.engine.IndexedGameState.NONE;
+import static xlike.top.werewolf.engine.IndexedGameState.bit;
+
+/**
+ * 随机决策：目标在其他存活玩家中均匀选择，女巫与猎人各项技能以一半的概率使用
+ * <p>
+ * 与线上 AI 调用失败时的兜底不同，狼人可能选中狼人，用来覆盖无效决策之外的规则分支
+ *
+ * @author xlike
+ */
+public class RandomAgent implements Agent {
+
+    private final RandomGenerator random;
+
+    public RandomAgent(RandomGenerator random) {
+        this.random = random;
+    }
+
+    @Override
+    public int werewolfTarget(IndexedGameState state, int self) {
+        return pick(state, self);
+    }
+
+    @Override
+    public int seerTarget(IndexedGameState state, int self) {
+        return pick(state, self);
+    }
+
+    @Override
+    public WitchDecision witchAction(IndexedGameState state, int self, int killed) {
+        boolean save = killed != NONE && random.nextBoolean();
+        int poisonTarget = random.nextBoolean() ? pick(state, self) : NONE;
+        return new WitchDecision(save, killed, poisonTarget != NONE, poisonTarget);
+    }
+
+    @Override
+    public int voteTarget(IndexedGameState state, int self) {
+        return pick(state, self);
+    }
+
+    @Override
+    public HunterDecision hunterShot(IndexedGameState state, int self) {
+        int target = random.nextBoolean() ? pick(state, self) : NONE;
+        return new HunterDecision(target != NONE, target);
+    }
+
+    private int pick(IndexedGameState state, int self) {
+        return IndexedGameState.randomSeat(state.aliveMask() & ~bit(self), random);
+    }
+}
@@ -0,0 +1,98 @@
+package xlike.top.werewolf.engine;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 按预先编排的顺序决策，每类决策各有一个队列（目标为座位），队列用完后交给后备决策者
+ * <p>
+ * 用于复现特定对局（如首夜刀预言家、首日全票投狼）并检查规则改动的结果
+ *
+ * @author xlike
+ */
+public class ScriptedAgent implements Agent {
+
+    private final Agent fallback;
+    private final Map<String, Deque<Object>> scripts = new HashMap<>();
+
+    /**
+     * @param fallback 剧本用完后的决策者
+     */
+    public ScriptedAgent(Agent fallback) {
+        this.fallback = fallback;
+    }
+
+    public ScriptedAgent werewolfTargets(int... targets) {
+        for (int target : targets) {
+            script("werewolf", target);
+        }
+        return this;
+    }
+
+    public ScriptedAgent seerTargets(int... targets) {
+        for (int target : targets) {
+            script("seer", target);
+        }
+        return this;
+    }
+
+    public ScriptedAgent witchActions(WitchDecision... decisions) {
+        return script("witch", (Object[]) decisions);
+    }
+
+    public ScriptedAgent voteTargets(int... targets) {
+        for (int target : targets) {
+            script("vote", target);
+        }
+        return this;
+    }
+
+    public ScriptedAgent hunterShots(HunterDecision... decisions) {
+        return script("hunter", (Object[]) decisions);
+    }
+
+    @Override
+    public int werewolfTarget(IndexedGameState state, int self) {
+        Object next = next("werewolf");
+        return next != null ? (Integer) next : fallback.werewolfTarget(state, self);
+    }
+
+    @Override
+    public int seerTarget(IndexedGameState state, int self) {
+        Object next = next("seer");
+        return next != null ? (Integer) next : fallback.seerTarget(state, self);
+    }
+
+    @Override
+    public WitchDecision witchAction(IndexedGameState state, int self, int killed) {
+        Object next = next("witch");
+        return next != null ? (WitchDecision) next : fallback.witchAction(state, self, killed);
+    }
+
+    @Override
+    public int voteTarget(IndexedGameState state, int self) {
+        Object next = next("vote");
+        return next != null ? (Integer) next : fallback.voteTarget(state, self);
+    }
+
+    @Override
+    public HunterDecision hunterShot(IndexedGameState state, int self) {
+        Object next = next("hunter");
+        return next != null ? (HunterDecision) next : fallback.hunterShot(state, self);
+    }
+
+    private ScriptedAgent script(String kind, Object... decisions) {
+        Deque<Object> queue = scripts.computeIfAbsent(kind, key -> new ArrayDeque<>());
+        for (Object decision : decisions) {
+            queue.add(decision);
+        }
+        return this;
+    }
+
+    private Object next(String kind) {
+        Deque<Object> queue = scripts.get(kind);
+        return queue == null ? null : queue.poll();
+    }
+}
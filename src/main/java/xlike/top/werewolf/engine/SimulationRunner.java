@@ -0,0 +1,134 @@
+package xlike.top.werewolf.engine;
+
+import xlike.top.werewolf.enums.RoleEnum;
+
+import java.util.SplittableRandom;
+import java.util.stream.LongStream;
+
+/**
+ * 并行模拟：在所有核心上用无头引擎进行大量对局，输出每秒对局数与胜负、天数、存活人数分布
+ * <p>
+ * 参数：[对局数，默认 1000000] [决策者 random|scripted，默认 random] [随机种子，默认 42] [座位数，默认 6]。
+ * 使用对应座位数的标准板子（{@link Board#standard}），每局随机打乱座位。
+ * 第 i 局的随机数生成器由种子与 i 确定，结果与并行度无关，可以复现。
+ * scripted 为固定开局：首夜狼人击杀预言家，首日全员投票给第一名狼人，之后随机决策
+ *
+ * @author xlike
+ */
+public class SimulationRunner {
+
+    /**
+     * 天数上限，大板子按座位数放宽
+     */
+    private static final int MAX_DAYS = 20;
+    private static final long SEED_STRIDE = 0x9E3779B97F4A7C15L;
+
+    /**
+     * 可合并的统计结果，每个并行分片各自累加后合并
+     */
+    private static final class Report {
+        long games;
+        long goodWins;
+        long werewolfWins;
+        long unfinished;
+        long totalDays;
+        final long[] days = new long[IndexedGameState.MAX_SEATS + 2];
+        final long[] survivors = new long[IndexedGameState.MAX_SEATS + 1];
+
+        void add(GameEngine.Outcome outcome) {
+            games++;
+            if (outcome.winnerCamp() == null) {
+                unfinished++;
+            } else if (GameRules.GOOD_CAMP.equals(outcome.winnerCamp())) {
+                goodWins++;
+            } else {
+                werewolfWins++;
+            }
+            totalDays += outcome.days();
+            days[Math.min(outcome.days(), days.length - 1)]++;
+            survivors[outcome.survivors()]++;
+        }
+
+        void merge(Report other) {
+            games += other.games;
+            goodWins += other.goodWins;
+            werewolfWins += other.werewolfWins;
+            unfinished += other.unfinished;
+            totalDays += other.totalDays;
+            for (int i = 0; i < days.length; i++) {
+                days[i] += other.days[i];
+            }
+            for (int i = 0; i < survivors.length; i++) {
+                survivors[i] += other.survivors[i];
+            }
+        }
+    }
+
+    public static void main(String[] args) {
+        long games = args.length > 0 ? Long.parseLong(args[0]) : 1_000_000;
+        String agent = args.length > 1 ? args[1] : "random";
+        long seed = args.length > 2 ? Long.parseLong(args[2]) : 42;
+        Board board = Board.standard(args.length > 3 ? Integer.parseInt(args[3]) : 6);
+
+        // 预热
+        simulate(Math.min(games, 50_000), agent, seed, board);
+        long start = System.nanoTime();
+        Report report = simulate(games, agent, seed, board);
+        double seconds = (System.nanoTime() - start) / 1e9;
+
+        System.out.printf("games=%d agent=%s seed=%d board=%s threads=%d%n", report.games, agent, seed, board,
+                Runtime.getRuntime().availableProcessors());
+        System.out.printf("elapsed=%.2fs throughput=%.0f games/s%n", seconds, report.games / seconds);
+        System.out.printf("%s=%.4f %s=%.4f unfinished=%.4f avgDays=%.3f%n",
+                GameRules.GOOD_CAMP, ratio(report.goodWins, report.games),
+                GameRules.WEREWOLF_CAMP, ratio(report.werewolfWins, report.games),
+                ratio(report.unfinished, report.games), (double) report.totalDays / report.games);
+        System.out.println("days:");
+        printHistogram(report.days, report.games);
+        System.out.println("survivors:");
+        printHistogram(report.survivors, report.games);
+    }
+
+    private static Report simulate(long games, String agent, long seed, Board board) {
+        return LongStream.range(0, games).parallel()
+                .mapToObj(i -> playOne(agent, seed + i * SEED_STRIDE, board))
+                .collect(Report::new, Report::add, Report::merge);
+    }
+
+    private static GameEngine.Outcome playOne(String agent, long seed, Board board) {
+        SplittableRandom random = new SplittableRandom(seed);
+        IndexedGameState state = GameEngine.newGame(board, agent, random);
+        Agent randomAgent = new RandomAgent(random);
+        GameEngine engine;
+        if ("scripted".equals(agent)) {
+            int seer = state.firstAlive(RoleEnum.SEER);
+            int wolf = state.firstAlive(RoleEnum.WEREWOLF);
+            Agent[] seats = new Agent[state.seats()];
+            for (int seat = 0; seat < seats.length; seat++) {
+                ScriptedAgent scripted = new ScriptedAgent(randomAgent);
+                if (seat == wolf) {
+                    scripted.werewolfTargets(seer);
+                } else {
+                    scripted.voteTargets(wolf);
+                }
+                seats[seat] = scripted;
+            }
+            engine = new GameEngine(seat -> seats[seat], random);
+        } else {
+            engine = new GameEngine(seat -> randomAgent, random);
+        }
+        return engine.play(state, Math.max(MAX_DAYS, board.seats()));
+    }
+
+    private static double ratio(long count, long total) {
+        return total == 0 ? 0 : (double) count / total;
+    }
+
+    private static void printHistogram(long[] histogram, long total) {
+        for (int i = 0; i < histogram.length; i++) {
+            if (histogram[i] > 0) {
+                System.out.printf("  %3d %10d %.4f%n", i, histogram[i], ratio(histogram[i], total));
+            }
+        }
+    }
+}
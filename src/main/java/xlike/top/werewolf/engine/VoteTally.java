@@ -0,0 +1,63 @@
+package xlike.top.werewolf.engine;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 按座位计票，出局者为得票最多的玩家，平票时取最先得到选票的玩家
+ *
+ * @author xlike
+ */
+public class VoteTally {
+
+    private final int[] counts;
+    /**
+     * 按第一次得票的先后排列的座位
+     */
+    private final int[] order;
+    private int candidates;
+
+    public VoteTally(int seats) {
+        this.counts = new int[seats];
+        this.order = new int[seats];
+    }
+
+    public void add(int seat) {
+        if (counts[seat]++ == 0) {
+            order[candidates++] = seat;
+        }
+    }
+
+    public int count(int seat) {
+        return counts[seat];
+    }
+
+    /**
+     * 得票最多的座位
+     *
+     * @return 座位，没有投票时为 {@link IndexedGameState#NONE}
+     */
+    public int leader() {
+        int leader = IndexedGameState.NONE;
+        int most = 0;
+        for (int i = 0; i < candidates; i++) {
+            int seat = order[i];
+            if (counts[seat] > most) {
+                leader = seat;
+                most = counts[seat];
+            }
+        }
+        return leader;
+    }
+
+    /**
+     * 转换为 玩家ID -> 票数，按第一次得票的先后排列
+     */
+    public Map<String, Integer> toMap(IndexedGameState state) {
+        Map<String, Integer> votes = new LinkedHashMap<>();
+        for (int i = 0; i < candidates; i++) {
+            votes.put(state.roleId(order[i]), counts[order[i]]);
+        }
+        return votes;
+    }
+}
@@ -8,8 +8,8 @@ public class RoleAssignment {
     public static void main(String[] args) {
         // 定义6人局角色配置
         List<RoleEnum> roles = new ArrayList<>();
-        roles.add(RoleEnum.WEREWOLF_1); // 2狼
-        roles.add(RoleEnum.WEREWOLF_2);
+        roles.add(RoleEnum.WEREWOLF); // 2狼
+        roles.add(RoleEnum.WEREWOLF);
         roles.add(RoleEnum.SEER);     // 1预言家
         roles.add(RoleEnum.WITCH);    // 1女巫
         roles.add(RoleEnum.HUNTER);   // 1猎人
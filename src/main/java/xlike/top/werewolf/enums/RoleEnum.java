@@ -3,40 +3,38 @@ package xlike.top.werewolf.enums;
 import lombok.Getter;
 
 /**
- * 狼人杀游戏角色枚举类（适合6人局）
+ * 狼人杀游戏角色枚举类
+ * <p>
+ * 只描述角色本身，与座位无关；每局有多少狼人、村民由板子（{@link xlike.top.werewolf.engine.Board}）决定，
+ * 玩家的角色记录在 PlayerState.role 中
  * @author xlike
  */
 @Getter
 public enum RoleEnum {
     /**
-     * 狼人1：夜晚可以与其他狼人一起选择一名玩家进行击杀。
+     * 狼人：夜晚可以与其他狼人一起选择一名玩家进行击杀。
      */
-    WEREWOLF_1("狼人1", "夜晚可以与其他狼人一起选择一名玩家进行击杀", "狼人阵营", 1),
-
-    /**
-     * 狼人2：夜晚可以与其他狼人一起选择一名玩家进行击杀。
-     */
-    WEREWOLF_2("狼人2", "夜晚可以与其他狼人一起选择一名玩家进行击杀", "狼人阵营", 2),
+    WEREWOLF("狼人", "夜晚可以与其他狼人一起选择一名玩家进行击杀", "狼人阵营"),
 
     /**
      * 村民：没有特殊技能，依靠推理和投票驱逐狼人。
      */
-    VILLAGER("村民", "没有特殊技能，依靠推理和投票驱逐狼人", "好人阵营", 3),
+    VILLAGER("村民", "没有特殊技能，依靠推理和投票驱逐狼人", "好人阵营"),
 
     /**
      * 预言家：每晚可以查验一名玩家的身份（狼人或好人）。
      */
-    SEER("预言家", "每晚可以查验一名玩家的身份（狼人或好人）", "好人阵营", 4),
+    SEER("预言家", "每晚可以查验一名玩家的身份（狼人或好人）", "好人阵营"),
 
     /**
      * 女巫：拥有两瓶药水，分别为解药和毒药。解药可以救人，毒药可以毒杀一名玩家。
      */
-    WITCH("女巫", "拥有解药和毒药，解药可以救人，毒药可以毒杀一名玩家", "好人阵营", 5),
+    WITCH("女巫", "拥有解药和毒药，解药可以救人，毒药可以毒杀一名玩家", "好人阵营"),
 
     /**
      * 猎人：死亡时可以开枪带走一名玩家（可以选择不开枪）。
      */
-    HUNTER("猎人", "死亡时可以开枪带走一名玩家（可以选择不开枪）", "好人阵营", 6);
+    HUNTER("猎人", "死亡时可以开枪带走一名玩家（可以选择不开枪）", "好人阵营");
 
     /**
      * 角色名称
@@ -53,21 +51,52 @@ public enum RoleEnum {
      */
     private final String camp;
 
-    /**
-     * 角色ID
-     */
-    private final int id;
-
-    RoleEnum(String name, String description, String camp, int id) {
+    RoleEnum(String name, String description, String camp) {
         this.name = name;
         this.description = description;
         this.camp = camp;
-        this.id = id;
+    }
+
+    /**
+     * 旧版六人局中玩家ID即角色：1、2 为狼人，3 村民，4 预言家，5 女巫，6 猎人
+     */
+    private static final RoleEnum[] LEGACY_BY_ID = {null, WEREWOLF, WEREWOLF, VILLAGER, SEER, WITCH, HUNTER};
+
+    /**
+     * 按角色编码（枚举名称，不区分大小写）查找角色
+     *
+     * @param code 角色编码
+     * @return 角色，编码无效时为 null
+     */
+    public static RoleEnum fromCode(String code) {
+        if (code == null || code.isEmpty()) {
+            return null;
+        }
+        for (RoleEnum role : values()) {
+            if (role.name().equalsIgnoreCase(code)) {
+                return role;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 按旧版六人局的玩家ID查找角色，用于读取没有记录角色的旧游戏状态
+     *
+     * @param roleId 玩家ID
+     * @return 角色，ID 无效时为 null
+     */
+    public static RoleEnum fromLegacyId(String roleId) {
+        if (roleId == null || roleId.length() != 1) {
+            return null;
+        }
+        int id = roleId.charAt(0) - '0';
+        return id > 0 && id < LEGACY_BY_ID.length ? LEGACY_BY_ID[id] : null;
     }
 
     @Override
     public String toString() {
-        return "ID: " + id + " | " + name + " - " + description + " (" + camp + ")";
+        return name() + " | " + name + " - " + description + " (" + camp + ")";
     }
 
     /**
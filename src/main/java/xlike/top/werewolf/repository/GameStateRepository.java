@@ -0,0 +1,78 @@
+package xlike.top.werewolf.repository;
+
+import xlike.top.werewolf.bean.dto.GameRoleDto;
+import xlike.top.werewolf.bean.pojo.GameState;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 角色分配与游戏状态的存储
+ * <p>
+ * 由 werewolf.state-storage.backend 选择实现：redis 为默认的多节点共享存储，memory 为单节点进程内存储，
+ * 不需要 Redis 即可运行游戏流程与压测
+ *
+ * @author xlike
+ */
+public interface GameStateRepository {
+
+    /**
+     * 读取角色分配
+     *
+     * @param urlKey 登录ID
+     * @return 角色列表，不存在时为 null
+     */
+    List<GameRoleDto> getRoles(String urlKey);
+
+    /**
+     * 保存角色分配
+     *
+     * @param urlKey 登录ID
+     * @param roles  角色列表
+     */
+    void saveRoles(String urlKey, List<GameRoleDto> roles);
+
+    /**
+     * 读取游戏状态
+     *
+     * @param urlKey 登录ID
+     * @return 游戏状态，调用方可以自由修改；不存在时为 null
+     */
+    GameState load(String urlKey);
+
+    /**
+     * 写入游戏状态
+     *
+     * @param urlKey          登录ID
+     * @param state           游戏状态，版本号为写入后的版本号
+     * @param previous        存储中当前的状态，支持增量写入的实现只写回相对它变化的部分；为 null 时整体写入
+     * @param expectedVersion 存储中应有的版本号，为 null 时不比较
+     * @return 是否写入，版本号不一致时为 false
+     */
+    boolean save(String urlKey, GameState state, GameState previous, Long expectedVersion);
+
+    /**
+     * 获取单局租约，同一游戏同时只允许一个阶段运行
+     *
+     * @param urlKey 登录ID
+     * @param ttl    租约有效期，持有者异常退出时到期自动释放
+     * @return 租约令牌，已被其他请求持有时为 null
+     */
+    String tryLease(String urlKey, Duration ttl);
+
+    /**
+     * 释放租约，租约已过期并被其他请求获取时不做任何操作
+     */
+    void releaseLease(String urlKey, String token);
+
+    /**
+     * 是否在多个节点间共享，共享存储需要近端缓存与跨节点失效通知
+     */
+    boolean shared();
+
+    /**
+     * 存储统计
+     */
+    Map<String, Object> snapshot();
+}
@@ -0,0 +1,196 @@
+package xlike.top.werewolf.repository;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Repository;
+import xlike.top.werewolf.bean.dto.GameRoleDto;
+import xlike.top.werewolf.bean.pojo.GameState;
+import xlike.top.werewolf.config.WerewolfProperties;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Predicate;
+
+/**
+ * 进程内游戏状态存储，单节点部署或压测时使用
+ * <p>
+ * 状态以副本保存在 ConcurrentHashMap 中，读取不加锁；带版本比较的写入按登录ID哈希到固定数量的分段锁上，
+ * 不同游戏的提交互不阻塞。
+ * <p>
+ * 角色分配与游戏状态自最后一次写入起超过有效期后删除，数量超过上限时删除最早写入的，
+ * 由定时任务清理，进程长时间运行时占用的内存不会无限增长
+ *
+ * @author xlike
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "werewolf.state-storage.backend", havingValue = "memory")
+public class InMemoryGameStateRepository implements GameStateRepository {
+
+    private static final int STRIPES = 64;
+    private static final Duration CLEANUP_INTERVAL = Duration.ofMinutes(1);
+
+    private final WerewolfProperties.StateStorage config;
+    private final TaskScheduler taskScheduler;
+    private final ReentrantLock[] locks = new ReentrantLock[STRIPES];
+    private final Map<String, Written<GameState>> states = new ConcurrentHashMap<>();
+    private final Map<String, Written<List<GameRoleDto>>> roles = new ConcurrentHashMap<>();
+    private final Map<String, Lease> leases = new ConcurrentHashMap<>();
+    private final AtomicLong writes = new AtomicLong();
+    private final AtomicLong versionConflicts = new AtomicLong();
+    private final AtomicLong leaseRejections = new AtomicLong();
+    private final AtomicLong evictions = new AtomicLong();
+
+    private record Lease(String token, long expiresAtMillis) {
+    }
+
+    /**
+     * 保存的值与写入时间
+     */
+    private record Written<T>(T value, long writtenAtMillis) {
+    }
+
+    public InMemoryGameStateRepository(WerewolfProperties properties, TaskScheduler taskScheduler) {
+        this.config = properties.getStateStorage();
+        this.taskScheduler = taskScheduler;
+        for (int i = 0; i < STRIPES; i++) {
+            locks[i] = new ReentrantLock();
+        }
+    }
+
+    @PostConstruct
+    public void scheduleCleanup() {
+        taskScheduler.scheduleAtFixedRate(this::evictExpired, CLEANUP_INTERVAL);
+    }
+
+    @Override
+    public List<GameRoleDto> getRoles(String urlKey) {
+        Written<List<GameRoleDto>> stored = roles.get(urlKey);
+        return stored == null ? null : new ArrayList<>(stored.value());
+    }
+
+    @Override
+    public void saveRoles(String urlKey, List<GameRoleDto> gameRoles) {
+        roles.put(urlKey, new Written<>(List.copyOf(gameRoles), System.currentTimeMillis()));
+    }
+
+    @Override
+    public GameState load(String urlKey) {
+        Written<GameState> stored = states.get(urlKey);
+        return stored == null ? null : stored.value().copy();
+    }
+
+    @Override
+    public boolean save(String urlKey, GameState state, GameState previous, Long expectedVersion) {
+        ReentrantLock lock = locks[Math.floorMod(urlKey.hashCode(), STRIPES)];
+        lock.lock();
+        try {
+            if (expectedVersion != null) {
+                Written<GameState> current = states.get(urlKey);
+                long currentVersion = current == null ? 0 : current.value().getVersion();
+                if (currentVersion != expectedVersion) {
+                    versionConflicts.incrementAndGet();
+                    return false;
+                }
+            }
+            states.put(urlKey, new Written<>(state.copy(), System.currentTimeMillis()));
+            writes.incrementAndGet();
+            return true;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    @Override
+    public String tryLease(String urlKey, Duration ttl) {
+        String token = UUID.randomUUID().toString();
+        long now = System.currentTimeMillis();
+        Lease lease = leases.compute(urlKey, (key, existing) ->
+                existing != null && existing.expiresAtMillis() > now ? existing : new Lease(token, now + ttl.toMillis()));
+        if (token.equals(lease.token())) {
+            return token;
+        }
+        leaseRejections.incrementAndGet();
+        return null;
+    }
+
+    @Override
+    public void releaseLease(String urlKey, String token) {
+        leases.computeIfPresent(urlKey, (key, existing) -> existing.token().equals(token) ? null : existing);
+    }
+
+    /**
+     * 删除超过有效期的角色分配、游戏状态与已过期的租约，数量仍超过上限时删除最早写入的
+     */
+    void evictExpired() {
+        long now = System.currentTimeMillis();
+        long cutoff = now - config.getMemoryTtlSeconds() * 1000;
+        int removed = 0;
+        removed += removeIf(states, written -> written.writtenAtMillis() < cutoff);
+        removed += removeIf(roles, written -> written.writtenAtMillis() < cutoff);
+        removed += trim(states, config.getMemoryMaxGames());
+        removed += trim(roles, config.getMemoryMaxGames());
+        leases.values().removeIf(lease -> lease.expiresAtMillis() <= now);
+        if (removed > 0) {
+            evictions.addAndGet(removed);
+            log.info("清理进程内游戏存储，移除条目数: {}", removed);
+        }
+    }
+
+    private static <T> int removeIf(Map<String, Written<T>> map, Predicate<Written<T>> expired) {
+        int before = map.size();
+        map.values().removeIf(expired);
+        return Math.max(0, before - map.size());
+    }
+
+    /**
+     * 删除最早写入的条目直到不超过上限；只删除排序时看到的那次写入，期间被重新写入的条目保留
+     */
+    private static <T> int trim(Map<String, Written<T>> map, int maxEntries) {
+        int excess = map.size() - Math.max(1, maxEntries);
+        if (excess <= 0) {
+            return 0;
+        }
+        List<Map.Entry<String, Written<T>>> oldest = map.entrySet().stream()
+                .sorted(Comparator.comparingLong(entry -> entry.getValue().writtenAtMillis()))
+                .limit(excess)
+                .map(entry -> Map.entry(entry.getKey(), entry.getValue()))
+                .toList();
+        int removed = 0;
+        for (Map.Entry<String, Written<T>> entry : oldest) {
+            if (map.remove(entry.getKey(), entry.getValue())) {
+                removed++;
+            }
+        }
+        return removed;
+    }
+
+    @Override
+    public boolean shared() {
+        return false;
+    }
+
+    @Override
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("backend", "memory");
+        stats.put("games", states.size());
+        stats.put("roleAssignments", roles.size());
+        stats.put("leases", leases.size());
+        stats.put("writes", writes.get());
+        stats.put("versionConflicts", versionConflicts.get());
+        stats.put("leaseRejections", leaseRejections.get());
+        stats.put("evictions", evictions.get());
+        return stats;
+    }
+}
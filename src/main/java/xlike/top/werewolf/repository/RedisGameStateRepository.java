@@ -0,0 +1,264 @@
+package xlike.top.werewolf.repository;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import org.springframework.stereotype.Repository;
+import xlike.top.werewolf.bean.dto.GameRoleDto;
+import xlike.top.werewolf.bean.pojo.GameState;
+import xlike.top.werewolf.config.WerewolfProperties;
+import xlike.top.werewolf.utils.GameStateCodec;
+import xlike.top.werewolf.utils.RedisUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 基于 Redis 的游戏状态存储，多节点共享
+ * <p>
+ * 布局见 {@link WerewolfProperties.StateStorage}：哈希布局下只写回发生变化的玩家字段；读到其他布局的旧数据时按当前布局重写。
+ * 状态与版本号由 Lua 脚本原子写入，带期望版本号的写入在版本号已变化时放弃；租约为 SET NX PX 的单局键
+ *
+ * @author xlike
+ */
+@Slf4j
+@Repository
+@ConditionalOnProperty(name = "werewolf.state-storage.backend", havingValue = "redis", matchIfMissing = true)
+public class RedisGameStateRepository implements GameStateRepository {
+
+    private static final String GAME_ROLE_KEY = "game:role";
+    private static final String GAME_STATE_KEY = "game:state";
+    private static final String GAME_STATE_HASH_KEY = "game:state:hash";
+    private static final String GAME_STATE_VERSION_KEY = "game:state:version";
+    private static final String GAME_LEASE_KEY = "game:lease";
+    private static final GenericJackson2JsonRedisSerializer JSON_SERIALIZER = new GenericJackson2JsonRedisSerializer();
+    private static final byte[] NO_EXPECTED_VERSION = new byte[0];
+
+    /**
+     * 整体写入：KEYS[1] 状态键，KEYS[2] 版本键；ARGV[1] 期望版本（空表示不比较），ARGV[2] 新版本，ARGV[3] 状态
+     */
+    private static final RedisScript<Long> SET_SCRIPT = new DefaultRedisScript<>(
+            "if ARGV[1] ~= '' and (redis.call('GET', KEYS[2]) or '0') ~= ARGV[1] then return 0 end " +
+            "redis.call('SET', KEYS[1], ARGV[3]) " +
+            "redis.call('SET', KEYS[2], ARGV[2]) " +
+            "return 1", Long.class);
+
+    /**
+     * 哈希写入：KEYS[1] 哈希键，KEYS[2] 版本键；ARGV[1] 期望版本，ARGV[2] 新版本，其后为 字段、值 交替
+     */
+    private static final RedisScript<Long> HSET_SCRIPT = new DefaultRedisScript<>(
+            "if ARGV[1] ~= '' and (redis.call('GET', KEYS[2]) or '0') ~= ARGV[1] then return 0 end " +
+            "for i = 3, #ARGV, 2 do redis.call('HSET', KEYS[1], ARGV[i], ARGV[i + 1]) end " +
+            "redis.call('SET', KEYS[2], ARGV[2]) " +
+            "return 1", Long.class);
+
+    /**
+     * 只释放自己持有的租约
+     */
+    private static final RedisScript<Long> RELEASE_LEASE_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) == ARGV[1] then return redis.call('DEL', KEYS[1]) end return 0",
+            Long.class);
+
+    private final WerewolfProperties.StateStorage.Layout layout;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisTemplate<String, byte[]> byteRedisTemplate;
+    private final AtomicLong fullWrites = new AtomicLong();
+    private final AtomicLong partialWrites = new AtomicLong();
+    private final AtomicLong bytesWritten = new AtomicLong();
+    private final AtomicLong legacyUpgrades = new AtomicLong();
+    private final AtomicLong versionConflicts = new AtomicLong();
+    private final AtomicLong leaseRejections = new AtomicLong();
+
+    public RedisGameStateRepository(WerewolfProperties properties, StringRedisTemplate stringRedisTemplate,
+                                    RedisTemplate<String, byte[]> byteRedisTemplate) {
+        this.layout = properties.getStateStorage().getLayout();
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.byteRedisTemplate = byteRedisTemplate;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public List<GameRoleDto> getRoles(String urlKey) {
+        return (List<GameRoleDto>) RedisUtil.get(GAME_ROLE_KEY + ":" + urlKey);
+    }
+
+    @Override
+    public void saveRoles(String urlKey, List<GameRoleDto> roles) {
+        RedisUtil.set(GAME_ROLE_KEY + ":" + urlKey, roles);
+    }
+
+    @Override
+    public String tryLease(String urlKey, Duration ttl) {
+        String token = UUID.randomUUID().toString();
+        Boolean acquired = stringRedisTemplate.opsForValue().setIfAbsent(leaseKey(urlKey), token, ttl);
+        if (Boolean.TRUE.equals(acquired)) {
+            return token;
+        }
+        leaseRejections.incrementAndGet();
+        return null;
+    }
+
+    @Override
+    public void releaseLease(String urlKey, String token) {
+        try {
+            stringRedisTemplate.execute(RELEASE_LEASE_SCRIPT, List.of(leaseKey(urlKey)), token);
+        } catch (Exception e) {
+            log.warn("释放游戏租约失败，urlKey：{}，异常信息：{}", urlKey, e.getMessage());
+        }
+    }
+
+    @Override
+    public boolean shared() {
+        return true;
+    }
+
+    @Override
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("backend", "redis");
+        stats.put("layout", layout);
+        stats.put("fullWrites", fullWrites.get());
+        stats.put("partialWrites", partialWrites.get());
+        stats.put("bytesWritten", bytesWritten.get());
+        stats.put("legacyUpgrades", legacyUpgrades.get());
+        stats.put("versionConflicts", versionConflicts.get());
+        stats.put("leaseRejections", leaseRejections.get());
+        return stats;
+    }
+
+    /**
+     * 按当前布局从 Redis 读取游戏状态，当前布局下不存在时读取其他布局的旧数据并升级
+     */
+    @Override
+    public GameState load(String urlKey) {
+        if (layout == WerewolfProperties.StateStorage.Layout.HASH) {
+            Map<String, byte[]> fields = byteRedisTemplate.<String, byte[]>opsForHash().entries(hashKey(urlKey));
+            if (!fields.isEmpty()) {
+                return GameStateCodec.fromHash(fields);
+            }
+            byte[] legacy = byteRedisTemplate.opsForValue().get(stateKey(urlKey));
+            if (legacy == null) {
+                return null;
+            }
+            GameState state = decodeValue(legacy);
+            upgrade(urlKey, state, stateKey(urlKey));
+            return state;
+        }
+        byte[] value = byteRedisTemplate.opsForValue().get(stateKey(urlKey));
+        if (value == null) {
+            Map<String, byte[]> fields = byteRedisTemplate.<String, byte[]>opsForHash().entries(hashKey(urlKey));
+            if (fields.isEmpty()) {
+                return null;
+            }
+            GameState state = GameStateCodec.fromHash(fields);
+            upgrade(urlKey, state, hashKey(urlKey));
+            return state;
+        }
+        GameState state = decodeValue(value);
+        if (layout == WerewolfProperties.StateStorage.Layout.COMPACT && !GameStateCodec.isCompact(value)) {
+            upgrade(urlKey, state, null);
+        }
+        return state;
+    }
+
+    private GameState decodeValue(byte[] value) {
+        return GameStateCodec.isCompact(value)
+                ? GameStateCodec.decode(value)
+                : (GameState) JSON_SERIALIZER.deserialize(value);
+    }
+
+    /**
+     * 按当前布局重写旧数据，并删除旧布局的键
+     */
+    private void upgrade(String urlKey, GameState state, String legacyKey) {
+        try {
+            save(urlKey, state, null, null);
+            if (legacyKey != null) {
+                RedisUtil.unlink(List.of(legacyKey));
+            }
+            legacyUpgrades.incrementAndGet();
+            log.debug("游戏状态已升级为 {} 布局，urlKey：{}", layout, urlKey);
+        } catch (Exception e) {
+            log.warn("升级游戏状态布局失败，urlKey：{}，异常信息：{}", urlKey, e.getMessage());
+        }
+    }
+
+    /**
+     * 按当前布局将状态与版本号原子写入 Redis
+     */
+    @Override
+    public boolean save(String urlKey, GameState state, GameState previous, Long expectedVersion) {
+        List<String> keys = List.of(layout == WerewolfProperties.StateStorage.Layout.HASH
+                ? hashKey(urlKey) : stateKey(urlKey), versionKey(urlKey));
+        List<byte[]> args = new ArrayList<>();
+        args.add(expectedVersion == null ? NO_EXPECTED_VERSION : versionBytes(expectedVersion));
+        args.add(versionBytes(state.getVersion()));
+        RedisScript<Long> script = SET_SCRIPT;
+        int bytes;
+        boolean full = true;
+        switch (layout) {
+            case JSON -> {
+                byte[] value = JSON_SERIALIZER.serialize(state);
+                args.add(value);
+                bytes = value.length;
+            }
+            case HASH -> {
+                Map<String, byte[]> fields = GameStateCodec.diffHash(previous, state);
+                for (Map.Entry<String, byte[]> field : fields.entrySet()) {
+                    args.add(field.getKey().getBytes(StandardCharsets.UTF_8));
+                    args.add(field.getValue());
+                }
+                script = HSET_SCRIPT;
+                bytes = fields.values().stream().mapToInt(field -> field.length).sum();
+                full = fields.size() > (state.getPlayers() == null ? 0 : state.getPlayers().size());
+            }
+            default -> {
+                byte[] value = GameStateCodec.encode(state);
+                args.add(value);
+                bytes = value.length;
+            }
+        }
+        Long written = byteRedisTemplate.execute(script, keys, args.toArray());
+        if (written == null || written == 0) {
+            versionConflicts.incrementAndGet();
+            return false;
+        }
+        recordWrite(bytes, full);
+        return true;
+    }
+
+    private void recordWrite(int bytes, boolean full) {
+        bytesWritten.addAndGet(bytes);
+        (full ? fullWrites : partialWrites).incrementAndGet();
+    }
+
+    private String stateKey(String urlKey) {
+        return GAME_STATE_KEY + ":" + urlKey;
+    }
+
+    private String hashKey(String urlKey) {
+        return GAME_STATE_HASH_KEY + ":" + urlKey;
+    }
+
+    private String versionKey(String urlKey) {
+        return GAME_STATE_VERSION_KEY + ":" + urlKey;
+    }
+
+    private String leaseKey(String urlKey) {
+        return GAME_LEASE_KEY + ":" + urlKey;
+    }
+
+    private static byte[] versionBytes(long version) {
+        return Long.toString(version).getBytes(StandardCharsets.US_ASCII);
+    }
+}
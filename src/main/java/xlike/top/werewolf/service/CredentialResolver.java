@@ -0,0 +1,77 @@
+package xlike.top.werewolf.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import xlike.top.werewolf.config.WerewolfProperties;
+import xlike.top.werewolf.utils.AesUtils;
+import xlike.top.werewolf.utils.NearCache;
+
+import java.util.Map;
+
+/**
+ * 登录凭证解析：sa-token 的登录ID即 url 与 key 的密文，每个登录只解密一次
+ * <p>
+ * 解密结果按登录ID缓存在有界、带有效期的 LRU 中，同一会话后续的阶段与请求直接命中缓存；
+ * 解密失败不缓存。日志中只输出服务商地址，不输出密钥
+ *
+ * @author xlike
+ */
+@Slf4j
+@Service
+public class CredentialResolver {
+
+    private static final Map<String, String> EMPTY = Map.of("apiUrl", "", "apiKey", "");
+
+    private final boolean authenticated;
+    private final NearCache<String, Map<String, String>> cache;
+
+    public CredentialResolver(WerewolfProperties properties) {
+        WerewolfProperties.Credentials config = properties.getCredentials();
+        this.authenticated = config.isAuthenticated();
+        this.cache = new NearCache<>("credentials", config.getCacheMaxEntries(), config.getCacheTtlSeconds() * 1000L);
+    }
+
+    /**
+     * 加密 url 与 key 作为登录ID，按配置使用 AES-GCM 或旧的 AES 格式
+     *
+     * @return 登录ID，加密失败时为 null
+     */
+    public String encrypt(String url, String key) {
+        return authenticated ? AesUtils.encryptTogetherAuthenticated(url, key) : AesUtils.encryptTogether(url, key);
+    }
+
+    /**
+     * 获取登录对应的 API URL 和 Key
+     *
+     * @param loginId 登录ID
+     * @return 不可变的 apiUrl / apiKey 映射，无法解密时两者均为空字符串
+     */
+    public Map<String, String> resolve(String loginId) {
+        if (loginId == null) {
+            log.error("无法获取登录ID，可能用户未登录或系统异常");
+            return EMPTY;
+        }
+        Map<String, String> credentials = cache.get(loginId);
+        if (credentials != null) {
+            return credentials;
+        }
+        String[] strings = AesUtils.decryptTogether(loginId);
+        if (strings == null || strings.length != 2) {
+            log.error("解密失败，请检查登录ID是否正确");
+            return EMPTY;
+        }
+        credentials = Map.of("apiUrl", strings[0], "apiKey", strings[1]);
+        cache.put(loginId, credentials);
+        log.debug("解密登录凭证，服务商地址：{}", strings[0]);
+        return credentials;
+    }
+
+    /**
+     * 凭证缓存统计
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = cache.snapshot();
+        stats.put("authenticated", authenticated);
+        return stats;
+    }
+}
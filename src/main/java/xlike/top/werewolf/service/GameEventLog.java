@@ -0,0 +1,248 @@
+package xlike.top.werewolf.service;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.data.domain.Range;
+import org.springframework.data.redis.connection.Limit;
+import org.springframework.data.redis.connection.stream.MapRecord;
+import org.springframework.data.redis.connection.stream.ReadOffset;
+import org.springframework.data.redis.connection.stream.RecordId;
+import org.springframework.data.redis.connection.stream.StreamOffset;
+import org.springframework.data.redis.connection.stream.StreamReadOptions;
+import org.springframework.data.redis.connection.stream.StreamRecords;
+import org.springframework.data.redis.core.RedisOperations;
+import org.springframework.data.redis.core.SessionCallback;
+import org.springframework.data.redis.core.StreamOperations;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.stereotype.Service;
+import xlike.top.werewolf.bean.pojo.GameEvent;
+import xlike.top.werewolf.bean.pojo.GameState;
+import xlike.top.werewolf.bean.pojo.PlayerState;
+import xlike.top.werewolf.config.WerewolfProperties;
+import xlike.top.werewolf.repository.GameStateRepository;
+import xlike.top.werewolf.utils.GameStateCodec;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.regex.Pattern;
+
+/**
+ * 基于 Redis Streams 的游戏事件日志
+ * <p>
+ * 每局游戏一个事件流 game:events:{游戏ID}，阶段提交后把本阶段的行动与状态变化作为事件批量追加（一次往返）。
+ * 事件数每跨过配置的间隔，就在最后一个事件处写入一份状态快照，快照流 game:events:snapshot:{游戏ID} 中的记录ID与对应事件ID相同。
+ * 任意事件处的状态 = 不晚于该事件的最近快照 + 之后的状态类事件。
+ * 其他消费者可以直接 XREAD BLOCK 事件流，无需轮询游戏状态
+ *
+ * @author xlike
+ */
+@Slf4j
+@Service
+public class GameEventLog {
+
+    private static final String EVENTS_KEY = "game:events";
+    private static final String SNAPSHOT_KEY = "game:events:snapshot";
+    private static final String INITIAL_ID = "0-0";
+    /**
+     * 事件ID格式：毫秒时间戳-序号，序号可省略；各段不超过 19 位，不会超出 Redis 的 64 位整数
+     */
+    private static final Pattern EVENT_ID = Pattern.compile("\\d{1,19}(-\\d{1,19})?");
+
+    private final WerewolfProperties.EventLog config;
+    private final boolean enabled;
+    private final StringRedisTemplate stringRedisTemplate;
+
+    public GameEventLog(WerewolfProperties properties, GameStateRepository repository,
+                        StringRedisTemplate stringRedisTemplate) {
+        this.config = properties.getEventLog();
+        // 进程内存储的单节点部署不依赖 Redis，事件日志随之关闭
+        this.enabled = config.isEnabled() && repository.shared();
+        this.stringRedisTemplate = stringRedisTemplate;
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 判断是否为合法的事件ID，为空视为合法（从头读取 / 还原最新状态）
+     */
+    public static boolean isValidId(String eventId) {
+        return eventId == null || eventId.isBlank() || EVENT_ID.matcher(eventId).matches();
+    }
+
+    /**
+     * 新游戏：追加 GAME_CREATED 事件，并以初始状态写入第一份快照
+     *
+     * @param state 初始游戏状态
+     */
+    public void start(GameState state) {
+        append(state, List.of(new GameEvent(GameEvent.GAME_CREATED, state.getDay(), null)), true);
+    }
+
+    /**
+     * 追加一批事件，事件数跨过快照间隔时在最后一个事件处写入快照；写入失败只记录日志，不影响游戏流程
+     *
+     * @param committed 应用这批事件之后、已提交的游戏状态
+     * @param events    事件
+     */
+    public void append(GameState committed, List<GameEvent> events) {
+        append(committed, events, false);
+    }
+
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private void append(GameState committed, List<GameEvent> events, boolean forceSnapshot) {
+        if (!enabled || events.isEmpty() || committed.getGameId() == null) {
+            return;
+        }
+        String key = eventsKey(committed.getGameId());
+        Duration ttl = Duration.ofSeconds(config.getTtlSeconds());
+        try {
+            List<Object> results = stringRedisTemplate.executePipelined(new SessionCallback<Object>() {
+                @Override
+                public Object execute(RedisOperations operations) throws DataAccessException {
+                    StreamOperations<String, String, String> streams = operations.opsForStream();
+                    for (GameEvent event : events) {
+                        streams.add(StreamRecords.newRecord().in(key).ofMap(event.toFields()));
+                    }
+                    streams.size(key);
+                    operations.expire(key, ttl);
+                    return null;
+                }
+            });
+            RecordId lastId = (RecordId) results.get(events.size() - 1);
+            long size = (Long) results.get(events.size());
+            int every = Math.max(1, config.getSnapshotEvery());
+            if (forceSnapshot || size / every > (size - events.size()) / every) {
+                writeSnapshot(committed, lastId, size);
+            }
+        } catch (Exception e) {
+            log.warn("追加游戏事件失败，游戏ID：{}，异常信息：{}", committed.getGameId(), e.getMessage());
+        }
+    }
+
+    private void writeSnapshot(GameState state, RecordId eventId, long eventCount) {
+        String key = snapshotKey(state.getGameId());
+        Map<String, String> fields = Map.of(
+                "state", Base64.getEncoder().encodeToString(GameStateCodec.encode(state)),
+                "events", String.valueOf(eventCount));
+        stringRedisTemplate.opsForStream().add(StreamRecords.newRecord().in(key).withId(eventId).ofMap(fields));
+        stringRedisTemplate.expire(key, Duration.ofSeconds(config.getTtlSeconds()));
+    }
+
+    /**
+     * 读取指定事件之后的事件
+     *
+     * @param gameId     游戏ID
+     * @param afterId    起始事件ID（不含），为空时从头读取，调用方需先用 {@link #isValidId} 校验
+     * @param count      最大条数，限制在 1 到配置的上限之间
+     * @param waitMillis 没有新事件时阻塞等待的时间，0 表示不等待；不超过配置的上限
+     * @return 事件列表
+     */
+    public List<GameEvent> read(String gameId, String afterId, int count, long waitMillis) {
+        if (!enabled) {
+            return List.of();
+        }
+        String from = afterId == null || afterId.isBlank() ? INITIAL_ID : afterId;
+        count = Math.clamp(count, 1, Math.max(1, config.getMaxReadCount()));
+        StreamOperations<String, String, String> streams = stringRedisTemplate.opsForStream();
+        List<MapRecord<String, String, String>> records;
+        if (waitMillis > 0) {
+            long wait = Math.min(waitMillis, config.getMaxWaitMillis());
+            records = streams.read(StreamReadOptions.empty().count(count).block(Duration.ofMillis(wait)),
+                    StreamOffset.create(eventsKey(gameId), ReadOffset.from(from)));
+        } else {
+            records = streams.range(eventsKey(gameId),
+                    Range.of(Range.Bound.exclusive(from), Range.Bound.unbounded()), Limit.limit().count(count));
+        }
+        return toEvents(records);
+    }
+
+    /**
+     * 还原指定事件处的游戏状态：不晚于该事件的最近快照，加上快照之后到该事件为止的事件
+     *
+     * @param gameId  游戏ID
+     * @param untilId 事件ID（含），为空时还原最新状态
+     * @return 游戏状态，没有快照时为 null
+     */
+    public GameState rebuild(String gameId, String untilId) {
+        if (!enabled) {
+            return null;
+        }
+        Range.Bound<String> upper = untilId == null || untilId.isBlank()
+                ? Range.Bound.unbounded() : Range.Bound.inclusive(untilId);
+        StreamOperations<String, String, String> streams = stringRedisTemplate.opsForStream();
+        List<MapRecord<String, String, String>> snapshots = streams.reverseRange(snapshotKey(gameId),
+                Range.of(Range.Bound.unbounded(), upper), Limit.limit().count(1));
+        if (snapshots == null || snapshots.isEmpty()) {
+            return null;
+        }
+        MapRecord<String, String, String> snapshot = snapshots.getFirst();
+        GameState state = GameStateCodec.decode(Base64.getDecoder().decode(snapshot.getValue().get("state")));
+        List<MapRecord<String, String, String>> tail = streams.range(eventsKey(gameId),
+                Range.of(Range.Bound.exclusive(snapshot.getId().getValue()), upper), Limit.unlimited());
+        for (GameEvent event : toEvents(tail)) {
+            event.applyTo(state);
+        }
+        return state;
+    }
+
+    /**
+     * 对比阶段前后的状态，生成状态类事件（死亡、用药、天数变化、游戏结束）
+     *
+     * @param before 阶段开始时的状态
+     * @param after  阶段结束时的状态
+     * @param phase  阶段
+     */
+    public static List<GameEvent> stateEvents(GameState before, GameState after, String phase) {
+        List<GameEvent> events = new ArrayList<>();
+        int day = before.getDay();
+        for (PlayerState player : after.getPlayers()) {
+            PlayerState previous = before.getPlayers().stream()
+                    .filter(p -> Objects.equals(p.getRoleId(), player.getRoleId()))
+                    .findFirst().orElse(null);
+            if (previous == null) {
+                continue;
+            }
+            if (previous.isAlive() && !player.isAlive()) {
+                events.add(new GameEvent(GameEvent.PLAYER_DIED, day, phase).setTarget(player.getRoleId()));
+            }
+            if (!previous.isWitchSaveUsed() && player.isWitchSaveUsed()) {
+                events.add(new GameEvent(GameEvent.POTION_USED, day, phase).setActor(player.getRoleId()).setAction("save"));
+            }
+            if (!previous.isWitchPoisonUsed() && player.isWitchPoisonUsed()) {
+                events.add(new GameEvent(GameEvent.POTION_USED, day, phase).setActor(player.getRoleId()).setAction("poison"));
+            }
+        }
+        if (!before.isGameOver() && after.isGameOver()) {
+            events.add(new GameEvent(GameEvent.GAME_OVER, day, phase).setTarget(after.getWinnerCamp()));
+        }
+        if (before.getDay() != after.getDay()) {
+            events.add(new GameEvent(GameEvent.DAY_CHANGED, after.getDay(), phase));
+        }
+        return events;
+    }
+
+    private static List<GameEvent> toEvents(List<MapRecord<String, String, String>> records) {
+        List<GameEvent> events = new ArrayList<>();
+        if (records == null) {
+            return events;
+        }
+        for (MapRecord<String, String, String> record : records) {
+            events.add(GameEvent.fromFields(record.getId().getValue(), record.getValue()));
+        }
+        return events;
+    }
+
+    private static String eventsKey(String gameId) {
+        return EVENTS_KEY + ":" + gameId;
+    }
+
+    private static String snapshotKey(String gameId) {
+        return SNAPSHOT_KEY + ":" + gameId;
+    }
+}
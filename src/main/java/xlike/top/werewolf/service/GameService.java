@@ -1,28 +1,104 @@
 package xlike.top.werewolf.service;
 
 import xlike.top.werewolf.bean.dto.GameRoleDto;
+import xlike.top.werewolf.bean.pojo.GameEvent;
 import xlike.top.werewolf.bean.pojo.GameState;
 import xlike.top.werewolf.bean.pojo.PlayerState;
 import xlike.top.werewolf.common.PromptCommon;
 import xlike.top.werewolf.config.R;
+import xlike.top.werewolf.config.WerewolfProperties;
+import xlike.top.werewolf.engine.Agent;
+import xlike.top.werewolf.engine.Board;
+import xlike.top.werewolf.engine.GameRules;
+import xlike.top.werewolf.engine.IndexedGameState;
+import xlike.top.werewolf.engine.VoteTally;
 import xlike.top.werewolf.enums.RoleEnum;
-import xlike.top.werewolf.utils.AesUtils;
+import xlike.top.werewolf.repository.GameStateRepository;
+import xlike.top.werewolf.utils.ActionGraph;
+import xlike.top.werewolf.utils.ChatHistoryStore;
+import xlike.top.werewolf.utils.ChatOptions;
 import xlike.top.werewolf.utils.ChatUtils;
-import xlike.top.werewolf.utils.RedisUtil;
+import xlike.top.werewolf.utils.Deadline;
+import xlike.top.werewolf.utils.FanOut;
+import xlike.top.werewolf.utils.OkHttpUtils;
 import cn.dev33.satoken.stp.StpUtil;
+import lombok.AllArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
 import java.io.IOException;
+import java.time.Duration;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Predicate;
 
 @Slf4j
 @Service
+@AllArgsConstructor
 public class GameService {
 
-    private static final String GAME_ROLE_KEY = "game:role";
-    private static final String GAME_STATE_KEY = "game:state";
     private static final int MIN_PLAYER_COUNT = 6;
+    /**
+     * 截止时间到期后等待请求回调完成的宽限时间（毫秒）
+     */
+    private static final long DEADLINE_GRACE_MILLIS = 500;
+
+    /**
+     * 预热请求的最大输出 token 数，只需服务商处理完固定前缀
+     */
+    private static final int PRIME_MAX_TOKENS = 16;
+
+    /**
+     * 阶段租约在时间预算之外额外保留的时间（秒），覆盖兜底逻辑与状态提交
+     */
+    private static final long PHASE_LEASE_SLACK_SECONDS = 30;
+
+    /**
+     * 各类决策在流式响应中的完整条件。
+     * 提示词中理由位于决策字段之后，提前结束流前需等待理由行完整，否则结果与对话历史中都没有理由
+     */
+    private static final Predicate<String> REASON_READY = ChatOptions.fieldsPresent("理由");
+    private static final Predicate<String> TARGET_READY = ChatOptions.fieldsPresent("目标ID");
+    private static final Predicate<String> WITCH_READY = ChatOptions.fieldsPresent("是否救人", "救人目标ID", "是否毒人", "毒人目标ID");
+    private static final Predicate<String> HUNTER_READY = content -> {
+        String shoot = ChatOptions.completedFieldValue(content, "是否开枪");
+        return shoot != null && ("否".equals(shoot) || ChatOptions.completedFieldValue(content, "目标ID") != null);
+    };
+
+    private final WerewolfProperties properties;
+    private final ExecutorService gameActionExecutor;
+    private final GameStateStore gameStateStore;
+    private final GameStateRepository gameStateRepository;
+    private final GameEventLog gameEventLog;
+    private final ReplayJournal replayJournal;
+    private final CredentialResolver credentialResolver;
+
+    /**
+     * 单个游戏阶段的调用上下文：API 凭证、游戏ID（对话历史命名空间）、阶段截止时间，以及因截止时间到期而使用兜底逻辑的行动
+     */
+    private record PhaseContext(Map<String, String> credentials, String gameId, Deadline deadline,
+                                List<String> timedOutActions) {
+
+        PhaseContext(Map<String, String> credentials, String gameId, long budgetSeconds) {
+            this(credentials, gameId, Deadline.afterSeconds(budgetSeconds), Collections.synchronizedList(new ArrayList<>()));
+        }
+
+        /**
+         * 判断请求失败是否由阶段截止时间到期导致，是则记录该行动
+         */
+        boolean timedOut(String action, IOException e) {
+            if (e instanceof Deadline.ExceededException || deadline.isExpired()) {
+                timedOutActions.add(action);
+                return true;
+            }
+            return false;
+        }
+    }
 
     /**
      * 获取登录ID
@@ -37,63 +113,206 @@ public class GameService {
     }
 
     /**
-     * 获取API URL和Key
+     * 调用玩家对应的 AI 模型，凭证缺失时按调用失败处理，由调用方执行随机兜底逻辑
+     *
+     * @param state         游戏状态
+     * @param seat          玩家座位
+     * @param prompt        提示词
+     * @param decisionReady 流式响应中判断决策字段是否已到达
+     * @param phase         当前阶段的凭证与截止时间
+     * @return AI 响应内容
+     * @throws IOException 凭证缺失、请求失败或阶段截止时间到期
      */
-    private Map<String, String> getApiCredentials(String loginId) {
-        Map<String, String> credentials = new HashMap<>();
-        credentials.put("apiUrl", "");
-        credentials.put("apiKey", "");
+    private String askModel(IndexedGameState state, int seat, String prompt, Predicate<String> decisionReady,
+                            PhaseContext phase) throws IOException {
+        return OkHttpUtils.await(askModelAsync(state, seat, prompt, decisionReady, phase));
+    }
 
-        if (loginId == null) {
-            log.error("无法获取登录ID，可能用户未登录或系统异常");
-            return credentials;
+    /**
+     * 异步调用玩家对应的 AI 模型，不占用调用线程，请求只获得阶段剩余的时间，失败时以 IOException 异常完成
+     */
+    private CompletableFuture<String> askModelAsync(IndexedGameState state, int seat, String prompt,
+                                                    Predicate<String> decisionReady, PhaseContext phase) {
+        String roleId = state.roleId(seat);
+        String roleAI = state.roleAI(seat);
+        Map<String, String> credentials = phase.credentials();
+        if (credentials.get("apiUrl").isEmpty() || credentials.get("apiKey").isEmpty()) {
+            log.error("获取API URL或Key失败，无法调用玩家 {} 的AI", roleId);
+            return CompletableFuture.failedFuture(new IOException("API credentials unavailable"));
+        }
+        WerewolfProperties.Chat chat = properties.getChat();
+        ChatOptions options = new ChatOptions()
+                .setStream(chat.isStream())
+                .setEarlyStop(chat.isEarlyStop())
+                .setDecisionReady(decisionReady)
+                .setStopReady(decisionReady.and(REASON_READY))
+                .setDeadline(phase.deadline())
+                .setHistoryNamespace(phase.gameId())
+                .setPrefixMessages(promptPrefix(roleId, state.role(seat)));
+        CompletableFuture<String> response = ChatUtils.sendChatRequestAsync(credentials.get("apiUrl"),
+                credentials.get("apiKey"), roleAI, roleId, prompt, options);
+        if (replayJournal.isEnabled()) {
+            response.whenComplete((content, e) -> replayJournal.recordExchange(phase.gameId(), roleId, roleAI,
+                    prompt, content, e == null ? null : OkHttpUtils.unwrap(e)));
         }
+        return response;
+    }
+
+    /**
+     * 玩家的固定前缀：系统规则 + 角色说明，整局游戏内不变，每次请求都放在历史记录与本轮内容之前
+     */
+    private List<Map<String, String>> promptPrefix(String roleId, RoleEnum role) {
+        String briefing = PromptCommon.roleBriefingPrompt
+                .replace("{roleName}", role == null ? "未知角色" : role.getName())
+                .replace("{roleId}", roleId)
+                .replace("{camp}", role == null ? "未知阵营" : role.getCamp())
+                .replace("{description}", role == null ? "" : role.getDescription());
+        Map<String, String> system = new HashMap<>();
+        system.put("role", "system");
+        system.put("content", PromptCommon.systemPrompt + briefing);
+        return List.of(system);
+    }
 
-        String[] strings = AesUtils.decryptTogether(loginId);
-        if (strings == null || strings.length != 2) {
-            log.error("解密失败，请检查登录ID是否正确");
-            return credentials;
+    /**
+     * 并发向每个座位发送一次固定前缀，预热服务商的前缀缓存；不写入历史记录，结果只记录日志
+     */
+    private void primeSeats(GameState gameState, Map<String, String> credentials) {
+        if (credentials.get("apiUrl").isEmpty() || credentials.get("apiKey").isEmpty()) {
+            return;
         }
+        Deadline deadline = Deadline.afterSeconds(properties.getGame().getNightPhaseTimeoutSeconds());
+        IndexedGameState state = IndexedGameState.from(gameState);
+        FanOut.launch(state.seats(), properties.getGame().getPlayerParallelism(), seat -> {
+            ChatOptions options = new ChatOptions()
+                    .setDeadline(deadline)
+                    .setMaxTokens(PRIME_MAX_TOKENS)
+                    .setPrefixMessages(promptPrefix(state.roleId(seat), state.role(seat)));
+            return ChatUtils.sendChatRequestAsync(credentials.get("apiUrl"), credentials.get("apiKey"), state.roleAI(seat),
+                            state.roleId(seat), PromptCommon.primePrompt, false, 0, null, options)
+                    .whenComplete((response, e) -> {
+                        if (e != null) {
+                            log.warn("预热玩家 {} 的前缀缓存失败：{}", state.roleId(seat), OkHttpUtils.unwrap(e).getMessage());
+                        } else {
+                            log.debug("预热玩家 {} 的前缀缓存完成", state.roleId(seat));
+                        }
+                    });
+        });
+    }
 
-        credentials.put("apiUrl", strings[0]);
-        credentials.put("apiKey", strings[1]);
-        log.info("解密后的URL：{}, 解密后的Key: {}", strings[0], strings[1]);
-        return credentials;
+    /**
+     * 等待一组并发请求完成，阶段截止时间到期后直接返回，由调用方对未完成的请求执行兜底逻辑
+     *
+     * @param futures  并发请求
+     * @param deadline 阶段截止时间
+     */
+    private void awaitAll(List<? extends CompletableFuture<?>> futures, Deadline deadline) {
+        try {
+            CompletableFuture.allOf(futures.toArray(new CompletableFuture[0]))
+                    .get(deadline.remainingMillis() + DEADLINE_GRACE_MILLIS, TimeUnit.MILLISECONDS);
+        } catch (TimeoutException e) {
+            log.warn("阶段截止时间已到，未完成的请求将使用兜底逻辑");
+        } catch (ExecutionException e) {
+            // 单个请求失败由调用方逐个处理
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            futures.forEach(future -> future.cancel(true));
+        }
     }
 
     /**
      * 分配游戏角色
+     *
+     * @param gameRoleDtoList 每个座位的玩家ID与模型
+     * @param boardName       板子名称，为空时使用对应座位数的标准板子
      */
-    public R<String> distRole(List<GameRoleDto> gameRoleDtoList) {
+    public R<String> distRole(List<GameRoleDto> gameRoleDtoList, String boardName) {
         if (gameRoleDtoList == null || gameRoleDtoList.size() < MIN_PLAYER_COUNT) {
             log.warn("角色分配失败，人数不足。当前人数：{}", gameRoleDtoList == null ? 0 : gameRoleDtoList.size());
             return R.failed("人数分配不足，开始游戏至少需要" + MIN_PLAYER_COUNT + "名成员参与");
         }
+        int maxSeats = Math.min(properties.getGame().getMaxSeats(), IndexedGameState.MAX_SEATS);
+        if (gameRoleDtoList.size() > maxSeats) {
+            log.warn("角色分配失败，人数过多。当前人数：{}", gameRoleDtoList.size());
+            return R.failed("人数过多，每局最多" + maxSeats + "名成员参与");
+        }
+        Set<String> roleIds = new HashSet<>();
+        for (GameRoleDto dto : gameRoleDtoList) {
+            if (dto.getRoleId() == null || dto.getRoleId().isEmpty() || !roleIds.add(dto.getRoleId())) {
+                return R.failed("玩家ID不能为空或重复：" + dto.getRoleId());
+            }
+        }
+        Board board;
+        try {
+            board = resolveBoard(boardName, gameRoleDtoList.size());
+        } catch (IllegalArgumentException e) {
+            log.warn("角色分配失败，板子无效：{}", e.getMessage());
+            return R.failed("板子无效：" + e.getMessage());
+        }
         String urlKey = getLoginId();
         if (urlKey == null) {
             log.error("角色分配失败，无法获取登录ID，可能用户未登录或系统异常");
             return R.failed("请先登录或获取模型列表");
         }
+        // 与阶段互斥：阶段进行中重新分配角色会让旧阶段的结果覆盖新游戏
+        String lease = gameStateStore.tryLease(urlKey, phaseLeaseTtl(0));
+        if (lease == null) {
+            return R.failed("当前游戏有其他阶段正在进行，请稍后再试");
+        }
         try {
-            String redisKey = GAME_ROLE_KEY + ":" + urlKey;
-            RedisUtil.set(redisKey, gameRoleDtoList);
-            initializeGameState(urlKey, gameRoleDtoList);
-            log.info("角色分配成功，Redis Key：{}", redisKey);
+            gameStateRepository.saveRoles(urlKey, gameRoleDtoList);
+            initializeGameState(urlKey, gameRoleDtoList, board);
+            log.info("角色分配成功，urlKey：{}，板子：{}", urlKey, board);
             return R.ok("角色分配成功");
         } catch (Exception e) {
-            log.error("角色分配失败，存储到Redis时发生异常，urlKey：{}，异常信息：{}", urlKey, e.getMessage(), e);
+            log.error("角色分配失败，存储时发生异常，urlKey：{}，异常信息：{}", urlKey, e.getMessage(), e);
             return R.failed("角色分配失败，系统异常");
+        } finally {
+            gameStateStore.releaseLease(urlKey, lease);
+        }
+    }
+
+    /**
+     * 按名称查找配置的板子，未指定时使用标准板子，座位数必须与玩家数一致
+     */
+    private Board resolveBoard(String boardName, int seats) {
+        if (boardName == null || boardName.isEmpty()) {
+            return Board.standard(seats);
+        }
+        Map<String, Integer> configured = properties.getGame().getBoards().get(boardName);
+        if (configured == null) {
+            throw new IllegalArgumentException("unknown board " + boardName);
         }
+        Map<RoleEnum, Integer> counts = new EnumMap<>(RoleEnum.class);
+        configured.forEach((code, count) -> {
+            RoleEnum role = RoleEnum.fromCode(code);
+            if (role == null) {
+                throw new IllegalArgumentException("unknown role " + code + " in board " + boardName);
+            }
+            counts.put(role, count);
+        });
+        Board board = Board.of(boardName, counts);
+        if (board.seats() != seats) {
+            throw new IllegalArgumentException("board " + boardName + " has " + board.seats() + " seats, got " + seats + " players");
+        }
+        return board;
     }
 
     /**
-     * 初始化游戏状态
+     * 初始化游戏状态，按板子为每个座位分配角色
      */
-    private void initializeGameState(String urlKey, List<GameRoleDto> gameRoleDtoList) {
+    private void initializeGameState(String urlKey, List<GameRoleDto> gameRoleDtoList, Board board) {
+        // 新游戏开始，清理上一局的对话历史
+        GameState previous = gameStateStore.get(urlKey);
+        if (previous != null && previous.getGameId() != null) {
+            ChatHistoryStore.clearGame(previous.getGameId());
+        }
+        RoleEnum[] roles = board.deal(properties.getGame().isShuffleSeats() ? ThreadLocalRandom.current() : null);
         List<PlayerState> playerStates = new ArrayList<>();
-        for (GameRoleDto dto : gameRoleDtoList) {
+        for (int seat = 0; seat < gameRoleDtoList.size(); seat++) {
+            GameRoleDto dto = gameRoleDtoList.get(seat);
             PlayerState state = new PlayerState();
             state.setRoleId(dto.getRoleId());
+            state.setRole(roles[seat].name());
             state.setRoleAI(dto.getRoleAI());
             state.setAlive(true);
             state.setNightTarget("");
@@ -104,11 +323,15 @@ public class GameService {
             playerStates.add(state);
         }
         GameState gameState = new GameState();
+        gameState.setGameId(newGameId());
+        // 版本号接着上一局递增，上一局进行中的阶段按旧版本号比较并交换时必然失败
+        gameState.setVersion(previous == null ? 0 : previous.getVersion());
         gameState.setDay(0);
         gameState.setGameOver(false);
         gameState.setWinnerCamp("");
         gameState.setPlayers(playerStates);
-        RedisUtil.set(GAME_STATE_KEY + ":" + urlKey, gameState);
+        gameStateStore.save(urlKey, gameState);
+        gameEventLog.start(gameState);
     }
 
     /**
@@ -120,13 +343,11 @@ public class GameService {
             log.error("无法获取登录ID，可能用户未登录或系统异常");
             return R.failed("请先登录或获取模型列表");
         }
-        String redisKey = GAME_ROLE_KEY + ":" + urlKey;
-        Object object = RedisUtil.get(redisKey);
-        if (object == null) {
-            log.error("获取角色失败，Redis Key：{}，可能Redis中不存在该Key", redisKey);
+        List<GameRoleDto> gameRoleDtoList = gameStateRepository.getRoles(urlKey);
+        if (gameRoleDtoList == null) {
+            log.error("获取角色失败，urlKey：{}，尚未分配角色", urlKey);
             return R.failed("获取角色失败，请重新设置");
         }
-        List<GameRoleDto> gameRoleDtoList = (List<GameRoleDto>) object;
         return R.ok(gameRoleDtoList);
     }
 
@@ -138,17 +359,42 @@ public class GameService {
         if (urlKey == null) {
             return R.failed("请先登录");
         }
-        String roleKey = GAME_ROLE_KEY + ":" + urlKey;
-        if (RedisUtil.get(roleKey) == null) {
+        if (gameStateRepository.getRoles(urlKey) == null) {
             return R.failed("请先分配角色");
         }
-        String stateKey = GAME_STATE_KEY + ":" + urlKey;
-        GameState gameState = (GameState) RedisUtil.get(stateKey);
-        if (gameState == null) {
-            return R.failed("游戏状态异常，请重新分配角色");
+        String lease = gameStateStore.tryLease(urlKey, phaseLeaseTtl(0));
+        if (lease == null) {
+            return R.failed("当前游戏有其他阶段正在进行，请稍后再试");
+        }
+        GameState gameState;
+        GameState before;
+        try {
+            gameState = gameStateStore.get(urlKey);
+            if (gameState == null) {
+                return R.failed("游戏状态异常，请重新分配角色");
+            }
+            before = gameState.copy();
+            gameState.setDay(1);
+            ensureGameId(gameState);
+            gameStateStore.save(urlKey, gameState);
+        } finally {
+            gameStateStore.releaseLease(urlKey, lease);
+        }
+        List<GameEvent> events = new ArrayList<>();
+        events.add(new GameEvent(GameEvent.GAME_STARTED, gameState.getDay(), null));
+        events.addAll(GameEventLog.stateEvents(before, gameState, null));
+        gameEventLog.append(gameState, events);
+        replayJournal.recordState(gameState.getGameId(), "开始", gameState.copy());
+        // 预热到服务商的连接，首个夜晚阶段直接复用
+        Map<String, String> credentials = credentialResolver.resolve(urlKey);
+        String apiUrl = credentials.get("apiUrl");
+        if (!apiUrl.isEmpty()) {
+            OkHttpUtils.prewarm(apiUrl, null);
+        }
+        // 凭证需在请求线程中获取，预热请求异步发送，不阻塞开始游戏
+        if (properties.getGame().isPrimeOnStart()) {
+            primeSeats(gameState, credentials);
         }
-        gameState.setDay(1);
-        RedisUtil.set(stateKey, gameState);
         log.info("游戏开始，当前天数：第 1 天");
         return R.ok("游戏开始");
     }
@@ -161,101 +407,94 @@ public class GameService {
         if (urlKey == null) {
             return R.failed("请先登录");
         }
-        String stateKey = GAME_STATE_KEY + ":" + urlKey;
-        GameState gameState = (GameState) RedisUtil.get(stateKey);
-        if (gameState == null || gameState.isGameOver()) {
-            return R.failed("游戏未开始或已结束");
+        long budgetSeconds = properties.getGame().getNightPhaseTimeoutSeconds();
+        String lease = gameStateStore.tryLease(urlKey, phaseLeaseTtl(budgetSeconds));
+        if (lease == null) {
+            return R.failed("当前游戏有其他阶段正在进行，请稍后再试");
         }
-        // 重置夜晚状态
-        for (PlayerState ps : gameState.getPlayers()) {
-            ps.setNightTarget("");
-            ps.setSaved(false);
-            ps.setPoisoned(false);
-        }
-        // 夜晚行动结果
-        Map<String, Object> nightResults = new HashMap<>();
-        nightResults.put("day", gameState.getDay());
-        nightResults.put("phase", "夜晚");
-
-        // 狼人行动
-        Map<String, String> werewolfResult = werewolfAction(gameState);
-        nightResults.put("werewolfAction", werewolfResult);
-
-        // 预言家行动
-        Map<String, String> seerResult = seerAction(gameState);
-        nightResults.put("seerAction", seerResult);
+        try {
+            GameState before = gameStateStore.get(urlKey);
+            if (before == null || before.isGameOver()) {
+                return R.failed("游戏未开始或已结束");
+            }
+            String gameId = ensureGameId(before);
+            // 阶段内使用紧凑状态计算，提交前再转换回 GameState
+            IndexedGameState state = IndexedGameState.from(before);
+            // 重置夜晚状态
+            state.resetNight();
+            // 夜晚行动结果
+            Map<String, Object> nightResults = new HashMap<>();
+            nightResults.put("day", state.getDay());
+            nightResults.put("phase", "夜晚");
 
-        // 女巫行动
-        Map<String, Object> witchResult = witchAction(gameState);
-        nightResults.put("witchAction", witchResult);
+            // 凭证需在请求线程中获取，行动在执行器中运行，所有行动共享夜晚阶段的时间预算
+            PhaseContext phase = new PhaseContext(credentialResolver.resolve(urlKey), gameId, budgetSeconds);
+            // 狼人与预言家相互独立并发执行，女巫依赖狼人的击杀目标
+            ActionGraph nightActions = new ActionGraph()
+                    .add("werewolfAction", () -> werewolfAction(state, phase))
+                    .add("seerAction", () -> seerAction(state, phase))
+                    .add("witchAction", () -> witchAction(state, phase), "werewolfAction");
+            nightResults.putAll(nightActions.run(gameActionExecutor));
+            nightResults.put("timedOutActions", List.copyOf(phase.timedOutActions()));
 
-        // 处理夜晚结果并记录死亡信息
-        List<String> deaths = processNightResults(gameState);
-        nightResults.put("deaths", deaths);
+            // 处理夜晚结果并记录死亡信息
+            List<String> deaths = processNightResults(state);
+            nightResults.put("deaths", deaths);
 
-        RedisUtil.set(stateKey, gameState);
-        log.info("夜晚阶段结束，第 {} 天", gameState.getDay());
-        return R.ok(nightResults);
+            GameState gameState = state.toGameState();
+            if (!gameStateStore.commit(urlKey, gameState)) {
+                return R.failed("游戏状态已被其他请求修改，本次夜晚阶段结果未保存");
+            }
+            gameEventLog.append(gameState, nightEvents(before, gameState, nightResults));
+            replayJournal.recordDecision(gameId, "夜晚", nightResults);
+            replayJournal.recordState(gameId, "夜晚", gameState.copy());
+            log.info("夜晚阶段结束，第 {} 天", gameState.getDay());
+            return R.ok(nightResults);
+        } finally {
+            gameStateStore.releaseLease(urlKey, lease);
+        }
     }
 
     /**
      * 狼人行动逻辑
      */
-    private Map<String, String> werewolfAction(GameState gameState) {
+    private Map<String, String> werewolfAction(IndexedGameState state, PhaseContext phase) {
         Map<String, String> result = new HashMap<>();
         result.put("action", "无行动");
         result.put("target", "");
         result.put("reason", "");
 
-        List<PlayerState> werewolves = gameState.getPlayers().stream()
-                .filter(p -> isWerewolf(p.getRoleId()) && p.isAlive())
-                .toList();
-        if (werewolves.isEmpty()) {
+        long werewolves = state.aliveMask() & state.werewolfMask();
+        if (werewolves == 0) {
             result.put("reason", "没有存活的狼人");
             return result;
         }
 
-        PlayerState leadWolf = werewolves.getFirst();
+        int leadWolf = Long.numberOfTrailingZeros(werewolves);
         String prompt = PromptCommon.werewolfPrompt
-                .replace("{roleId}", leadWolf.getRoleId())
-                .replace("{day}", String.valueOf(gameState.getDay()))
-                .replace("{alivePlayers}", getAlivePlayersString(gameState));
+                .replace("{roleId}", state.roleId(leadWolf))
+                .replace("{day}", String.valueOf(state.getDay()))
+                .replace("{alivePlayers}", getAlivePlayersString(state));
         try {
-            String loginId = getLoginId();
-            Map<String, String> credentials = getApiCredentials(loginId);
-            if (credentials.get("apiUrl").isEmpty() || credentials.get("apiKey").isEmpty()) {
-                log.error("获取API URL或Key失败，无法调用狼人AI");
-                randomWerewolfTarget(gameState, werewolves);
-                result.put("action", "随机选择目标");
-                result.put("target", werewolves.get(0).getNightTarget());
-                result.put("reason", "API调用失败，随机选择");
-                return result;
-            }
-            String apiUrl = credentials.get("apiUrl");
-            String apiKey = credentials.get("apiKey");
-            String response = ChatUtils.sendChatRequest(apiUrl, apiKey, leadWolf.getRoleAI(), leadWolf.getRoleId(), prompt);
-            String targetId = parseTargetIdFromResponse(response);
-            if (targetId != null && isValidTarget(gameState, targetId)) {
-                for (PlayerState wolf : werewolves) {
-                    wolf.setNightTarget(targetId);
-                }
-                log.info("狼人选择了杀死玩家 {}", targetId);
+            String response = askModel(state, leadWolf, prompt, TARGET_READY, phase);
+            int target = state.seatOf(parseTargetIdFromResponse(response));
+            if (GameRules.isValidTarget(state, target)) {
+                GameRules.setWerewolfTarget(state, target);
+                log.info("狼人选择了杀死玩家 {}", state.roleId(target));
                 result.put("action", "选择击杀目标");
-                result.put("target", targetId);
+                result.put("target", state.roleId(target));
                 result.put("reason", extractReasonFromResponse(response));
             } else {
                 log.warn("狼人 AI 返回无效目标，随机选择");
-                randomWerewolfTarget(gameState, werewolves);
                 result.put("action", "随机选择目标");
-                result.put("target", werewolves.getFirst().getNightTarget());
+                result.put("target", randomWerewolfTarget(state));
                 result.put("reason", "AI返回无效目标，随机选择");
             }
         } catch (IOException e) {
             log.error("调用狼人 AI 失败：{}", e.getMessage());
-            randomWerewolfTarget(gameState, werewolves);
             result.put("action", "随机选择目标");
-            result.put("target", werewolves.getFirst().getNightTarget());
-            result.put("reason", "API调用失败，随机选择");
+            result.put("target", randomWerewolfTarget(state));
+            result.put("reason", fallbackReason(phase, "werewolfAction", e));
         }
         return result;
     }
@@ -263,64 +502,47 @@ public class GameService {
     /**
      * 预言家行动逻辑
      */
-    private Map<String, String> seerAction(GameState gameState) {
+    private Map<String, String> seerAction(IndexedGameState state, PhaseContext phase) {
         Map<String, String> result = new HashMap<>();
         result.put("action", "无行动");
         result.put("target", "");
         result.put("reason", "");
         result.put("identity", "");
 
-        PlayerState seer = gameState.getPlayers().stream()
-                .filter(p -> p.getRoleId().equals(String.valueOf(RoleEnum.SEER.getId())) && p.isAlive())
-                .findFirst().orElse(null);
-        if (seer == null) {
+        int seer = state.firstAlive(RoleEnum.SEER);
+        if (seer == IndexedGameState.NONE) {
             result.put("reason", "没有存活的预言家");
             return result;
         }
 
         String prompt = PromptCommon.seerPrompt
-                .replace("{roleId}", seer.getRoleId())
-                .replace("{day}", String.valueOf(gameState.getDay()))
-                .replace("{alivePlayers}", getAlivePlayersString(gameState));
+                .replace("{roleId}", state.roleId(seer))
+                .replace("{day}", String.valueOf(state.getDay()))
+                .replace("{alivePlayers}", getAlivePlayersString(state));
+        int target;
         try {
-            String loginId = getLoginId();
-            Map<String, String> credentials = getApiCredentials(loginId);
-            if (credentials.get("apiUrl").isEmpty() || credentials.get("apiKey").isEmpty()) {
-                log.error("获取API URL或Key失败，无法调用预言家AI");
-                randomSeerTarget(gameState, seer);
-                result.put("action", "随机查验目标");
-                result.put("target", seer.getNightTarget());
-                result.put("reason", "API调用失败，随机选择");
-                result.put("identity", isWerewolf(seer.getNightTarget()) ? "狼人" : "好人");
-                return result;
-            }
-            String apiUrl = credentials.get("apiUrl");
-            String apiKey = credentials.get("apiKey");
-            String response = ChatUtils.sendChatRequest(apiUrl, apiKey, seer.getRoleAI(), seer.getRoleId(), prompt);
-            String targetId = parseTargetIdFromResponse(response);
-            if (targetId != null && isValidTarget(gameState, targetId)) {
-                seer.setNightTarget(targetId);
-                String identity = isWerewolf(targetId) ? "狼人" : "好人";
-                log.info("预言家查验了玩家 {}，身份是：{}", targetId, identity);
+            String response = askModel(state, seer, prompt, TARGET_READY, phase);
+            target = state.seatOf(parseTargetIdFromResponse(response));
+            if (GameRules.isValidTarget(state, target)) {
+                state.setNightTarget(seer, target);
+                log.info("预言家查验了玩家 {}，身份是：{}", state.roleId(target), GameRules.identityOf(state, target));
                 result.put("action", "查验身份");
-                result.put("target", targetId);
                 result.put("reason", extractReasonFromResponse(response));
-                result.put("identity", identity);
             } else {
                 log.warn("预言家 AI 返回无效目标，随机选择");
-                randomSeerTarget(gameState, seer);
+                target = randomSeerTarget(state, seer);
                 result.put("action", "随机查验目标");
-                result.put("target", seer.getNightTarget());
                 result.put("reason", "AI返回无效目标，随机选择");
-                result.put("identity", isWerewolf(seer.getNightTarget()) ? "狼人" : "好人");
             }
         } catch (IOException e) {
             log.error("调用预言家 AI 失败：{}", e.getMessage());
-            randomSeerTarget(gameState, seer);
+            target = randomSeerTarget(state, seer);
             result.put("action", "随机查验目标");
-            result.put("target", seer.getNightTarget());
-            result.put("reason", "API调用失败，随机选择");
-            result.put("identity", isWerewolf(seer.getNightTarget()) ? "狼人" : "好人");
+            result.put("reason", fallbackReason(phase, "seerAction", e));
+        }
+        if (target != IndexedGameState.NONE) {
+            result.put("target", state.roleId(target));
+            result.put("identity", GameRules.identityOf(state, target));
         }
         return result;
     }
@@ -328,7 +550,7 @@ public class GameService {
     /**
      * 女巫行动逻辑
      */
-    private Map<String, Object> witchAction(GameState gameState) {
+    private Map<String, Object> witchAction(IndexedGameState state, PhaseContext phase) {
         Map<String, Object> result = new HashMap<>();
         result.put("action", "无行动");
         result.put("save", false);
@@ -337,80 +559,50 @@ public class GameService {
         result.put("poisonTarget", "");
         result.put("reason", "");
 
-        PlayerState witch = gameState.getPlayers().stream()
-                .filter(p -> p.getRoleId().equals(String.valueOf(RoleEnum.WITCH.getId())) && p.isAlive())
-                .findFirst().orElse(null);
-        if (witch == null) {
+        int witch = state.firstAlive(RoleEnum.WITCH);
+        if (witch == IndexedGameState.NONE) {
             result.put("reason", "没有存活的女巫");
             return result;
         }
 
-        String killedPlayer = getKilledPlayerId(gameState);
+        String killedPlayer = state.roleId(state.killTarget());
         if (killedPlayer.isEmpty()) {
             killedPlayer = "无人被击杀";
         }
         String prompt = PromptCommon.witchPrompt
-                .replace("{roleId}", witch.getRoleId())
-                .replace("{day}", String.valueOf(gameState.getDay()))
-                .replace("{saveUsed}", witch.isWitchSaveUsed() ? "已使用" : "未使用")
-                .replace("{poisonUsed}", witch.isWitchPoisonUsed() ? "已使用" : "未使用")
-                .replace("{alivePlayers}", getAlivePlayersString(gameState))
+                .replace("{roleId}", state.roleId(witch))
+                .replace("{day}", String.valueOf(state.getDay()))
+                .replace("{saveUsed}", state.isSaveUsed(witch) ? "已使用" : "未使用")
+                .replace("{poisonUsed}", state.isPoisonUsed(witch) ? "已使用" : "未使用")
+                .replace("{alivePlayers}", getAlivePlayersString(state))
                 .replace("{killedPlayer}", killedPlayer);
         try {
-            String loginId = getLoginId();
-            Map<String, String> credentials = getApiCredentials(loginId);
-            if (credentials.get("apiUrl").isEmpty() || credentials.get("apiKey").isEmpty()) {
-                log.error("获取API URL或Key失败，无法调用女巫AI");
-                randomWitchAction(gameState, witch);
-                result.put("action", "随机行动");
-                result.put("save", witch.isWitchSaveUsed());
-                result.put("saveTarget", witch.isWitchSaveUsed() ? getKilledPlayerId(gameState) : "");
-                result.put("poison", witch.isWitchPoisonUsed());
-                result.put("poisonTarget", witch.isWitchPoisonUsed() ? findPoisonedPlayer(gameState) : "");
-                result.put("reason", "API调用失败，随机选择");
-                return result;
-            }
-            String apiUrl = credentials.get("apiUrl");
-            String apiKey = credentials.get("apiKey");
-            String response = ChatUtils.sendChatRequest(apiUrl, apiKey, witch.getRoleAI(), witch.getRoleId(), prompt);
+            String response = askModel(state, witch, prompt, WITCH_READY, phase);
             Map<String, String> actions = parseWitchActionsFromResponse(response);
-            if ("是".equals(actions.get("save")) && !witch.isWitchSaveUsed()) {
-                String saveTarget = actions.get("saveTarget");
-                if (saveTarget.equals(getKilledPlayerId(gameState))) {
-                    PlayerState killed = getPlayerById(gameState, saveTarget);
-                    if (killed != null) {
-                        killed.setSaved(true);
-                        witch.setWitchSaveUsed(true);
-                        log.info("女巫救了玩家 {}", saveTarget);
-                        result.put("save", true);
-                        result.put("saveTarget", saveTarget);
-                    }
-                }
+            int saveTarget = state.seatOf(actions.get("saveTarget"));
+            if ("是".equals(actions.get("save")) && GameRules.witchSave(state, witch, saveTarget)) {
+                log.info("女巫救了玩家 {}", state.roleId(saveTarget));
+                result.put("save", true);
+                result.put("saveTarget", state.roleId(saveTarget));
             }
-            if ("是".equals(actions.get("poison")) && !witch.isWitchPoisonUsed()) {
-                String poisonTarget = actions.get("poisonTarget");
-                if (isValidTarget(gameState, poisonTarget)) {
-                    PlayerState target = getPlayerById(gameState, poisonTarget);
-                    if (target != null) {
-                        target.setPoisoned(true);
-                        witch.setWitchPoisonUsed(true);
-                        log.info("女巫毒死了玩家 {}", poisonTarget);
-                        result.put("poison", true);
-                        result.put("poisonTarget", poisonTarget);
-                    }
-                }
+            int poisonTarget = state.seatOf(actions.get("poisonTarget"));
+            if ("是".equals(actions.get("poison")) && GameRules.witchPoison(state, witch, poisonTarget)) {
+                log.info("女巫毒死了玩家 {}", state.roleId(poisonTarget));
+                result.put("poison", true);
+                result.put("poisonTarget", state.roleId(poisonTarget));
             }
             result.put("action", "执行行动");
             result.put("reason", extractReasonFromResponse(response));
         } catch (IOException e) {
             log.error("调用女巫 AI 失败：{}", e.getMessage());
-            randomWitchAction(gameState, witch);
+            Agent.WitchDecision decision = GameRules.randomWitchAction(state, witch, ThreadLocalRandom.current());
+            log.info("女巫随机行动，救人：{}，毒人：{}", state.roleId(decision.saveTarget()), state.roleId(decision.poisonTarget()));
             result.put("action", "随机行动");
-            result.put("save", witch.isWitchSaveUsed());
-            result.put("saveTarget", witch.isWitchSaveUsed() ? getKilledPlayerId(gameState) : "");
-            result.put("poison", witch.isWitchPoisonUsed());
-            result.put("poisonTarget", witch.isWitchPoisonUsed() ? findPoisonedPlayer(gameState) : "");
-            result.put("reason", "API调用失败，随机选择");
+            result.put("save", decision.save());
+            result.put("saveTarget", state.roleId(decision.saveTarget()));
+            result.put("poison", decision.poison());
+            result.put("poisonTarget", state.roleId(decision.poisonTarget()));
+            result.put("reason", fallbackReason(phase, "witchAction", e));
         }
         return result;
     }
@@ -418,20 +610,15 @@ public class GameService {
     /**
      * 处理夜晚结果
      */
-    private List<String> processNightResults(GameState gameState) {
+    private List<String> processNightResults(IndexedGameState state) {
         List<String> deaths = new ArrayList<>();
-        for (PlayerState p : gameState.getPlayers()) {
-            if (p.isPoisoned()) {
-                p.setAlive(false);
-                deaths.add("玩家 " + p.getRoleId() + " 被女巫毒死");
-                log.info("玩家 {} 被女巫毒死！", p.getRoleId());
-            } else if (p.getRoleId().equals(getKilledPlayerId(gameState)) && !p.isSaved()) {
-                p.setAlive(false);
-                deaths.add("玩家 " + p.getRoleId() + " 被狼人杀死");
-                log.info("玩家 {} 被狼人杀死！", p.getRoleId());
-            }
+        for (long mask = GameRules.resolveNight(state); mask != 0; mask &= mask - 1) {
+            int seat = Long.numberOfTrailingZeros(mask);
+            String death = "玩家 " + state.roleId(seat) + (state.isPoisoned(seat) ? " 被女巫毒死" : " 被狼人杀死");
+            deaths.add(death);
+            log.info("{}！", death);
         }
-        checkGameOver(gameState);
+        logGameOver(state);
         return deaths;
     }
 
@@ -443,117 +630,184 @@ public class GameService {
         if (urlKey == null) {
             return R.failed("请先登录");
         }
-        String stateKey = GAME_STATE_KEY + ":" + urlKey;
-        GameState gameState = (GameState) RedisUtil.get(stateKey);
-        if (gameState == null || gameState.isGameOver()) {
-            return R.failed("游戏未开始或已结束");
+        long budgetSeconds = properties.getGame().getDayPhaseTimeoutSeconds();
+        String lease = gameStateStore.tryLease(urlKey, phaseLeaseTtl(budgetSeconds));
+        if (lease == null) {
+            return R.failed("当前游戏有其他阶段正在进行，请稍后再试");
+        }
+        try {
+            GameState before = gameStateStore.get(urlKey);
+            if (before == null || before.isGameOver()) {
+                return R.failed("游戏未开始或已结束");
+            }
+            String gameId = ensureGameId(before);
+            IndexedGameState state = IndexedGameState.from(before);
+            // 白天行动结果
+            Map<String, Object> dayResults = new HashMap<>();
+            dayResults.put("day", state.getDay());
+            dayResults.put("phase", "白天");
+
+            // 投票环节，投票与猎人反击共享白天阶段的时间预算
+            PhaseContext phase = new PhaseContext(credentialResolver.resolve(urlKey), gameId, budgetSeconds);
+            Map<String, Object> voteResults = votePhase(state, phase);
+            dayResults.put("voteResults", voteResults);
+            dayResults.put("timedOutActions", List.copyOf(phase.timedOutActions()));
+
+            state.setDay(state.getDay() + 1);
+            GameState gameState = state.toGameState();
+            if (!gameStateStore.commit(urlKey, gameState)) {
+                return R.failed("游戏状态已被其他请求修改，本次白天阶段结果未保存");
+            }
+            gameEventLog.append(gameState, dayEvents(before, gameState, voteResults));
+            replayJournal.recordDecision(gameId, "白天", dayResults);
+            replayJournal.recordState(gameId, "白天", gameState.copy());
+            log.info("白天阶段结束，第 {} 天", gameState.getDay());
+            return R.ok(dayResults);
+        } finally {
+            gameStateStore.releaseLease(urlKey, lease);
+        }
+    }
+
+    /**
+     * 夜晚阶段的事件：各角色的行动结果，以及阶段前后状态的变化
+     */
+    private List<GameEvent> nightEvents(GameState before, GameState after, Map<String, Object> nightResults) {
+        List<GameEvent> events = new ArrayList<>();
+        for (String action : List.of("werewolfAction", "seerAction", "witchAction")) {
+            if (nightResults.get(action) instanceof Map<?, ?> result) {
+                events.add(GameEvent.fromResult(GameEvent.ACTION, before.getDay(), "夜晚", action, result));
+            }
         }
-        // 白天行动结果
-        Map<String, Object> dayResults = new HashMap<>();
-        dayResults.put("day", gameState.getDay());
-        dayResults.put("phase", "白天");
+        events.addAll(GameEventLog.stateEvents(before, after, "夜晚"));
+        return events;
+    }
 
-        // 投票环节
-        Map<String, Object> voteResults = votePhase(gameState);
-        dayResults.put("voteResults", voteResults);
+    /**
+     * 白天阶段的事件：每名玩家的投票、猎人反击，以及阶段前后状态的变化
+     */
+    private List<GameEvent> dayEvents(GameState before, GameState after, Map<String, Object> voteResults) {
+        List<GameEvent> events = new ArrayList<>();
+        if (voteResults.get("votes") instanceof List<?> votes) {
+            for (Object vote : votes) {
+                if (vote instanceof Map<?, ?> detail) {
+                    events.add(GameEvent.fromResult(GameEvent.VOTE, before.getDay(), "白天",
+                            String.valueOf(detail.get("voterId")), detail));
+                }
+            }
+        }
+        if (voteResults.get("hunterCounterattack") instanceof Map<?, ?> result) {
+            events.add(GameEvent.fromResult(GameEvent.ACTION, before.getDay(), "白天", "hunterCounterattack", result));
+        }
+        events.addAll(GameEventLog.stateEvents(before, after, "白天"));
+        return events;
+    }
 
-        gameState.setDay(gameState.getDay() + 1);
-        RedisUtil.set(stateKey, gameState);
-        log.info("白天阶段结束，第 {} 天", gameState.getDay());
-        return R.ok(dayResults);
+    /**
+     * 阶段租约有效期：阶段时间预算加上兜底与提交所需的时间
+     */
+    private Duration phaseLeaseTtl(long budgetSeconds) {
+        return Duration.ofSeconds(budgetSeconds + PHASE_LEASE_SLACK_SECONDS);
     }
 
     /**
      * 投票环节
      */
-    private Map<String, Object> votePhase(GameState gameState) {
+    private Map<String, Object> votePhase(IndexedGameState state, PhaseContext phase) {
         Map<String, Object> voteResults = new HashMap<>();
         List<Map<String, String>> individualVotes = new ArrayList<>();
         List<String> deaths = new ArrayList<>();
 
-        List<PlayerState> alivePlayers = gameState.getPlayers().stream()
-                .filter(PlayerState::isAlive)
-                .toList();
-        if (alivePlayers.isEmpty()) {
+        long voters = state.aliveMask();
+        if (voters == 0) {
             voteResults.put("summary", "没有存活玩家，无法投票");
             voteResults.put("votes", individualVotes);
             voteResults.put("deaths", deaths);
             return voteResults;
         }
 
-        Map<String, Integer> voteCount = new HashMap<>();
-        for (PlayerState voter : alivePlayers) {
+        // 所有投票提示词基于投票前的同一状态构建，按座位顺序发起请求，同时进行的请求数受限
+        String alivePlayersString = getAlivePlayersString(state);
+        String lastNightEvents = getLastNightEvents(state);
+        String day = String.valueOf(state.getDay());
+        int[] voterSeats = new int[Long.bitCount(voters)];
+        for (int i = 0; i < voterSeats.length; i++) {
+            voterSeats[i] = Long.numberOfTrailingZeros(voters);
+            voters &= voters - 1;
+        }
+        List<CompletableFuture<String>> pendingVotes = FanOut.launch(voterSeats.length,
+                properties.getGame().getPlayerParallelism(), i -> {
+                    int voter = voterSeats[i];
+                    RoleEnum role = state.role(voter);
+                    String prompt = PromptCommon.votePrompt
+                            .replace("{roleName}", role == null ? "未知角色" : role.getName())
+                            .replace("{roleId}", state.roleId(voter))
+                            .replace("{day}", day)
+                            .replace("{alivePlayers}", alivePlayersString)
+                            .replace("{lastNightEvents}", lastNightEvents)
+                            .replace("{camp}", role == null ? "未知阵营" : role.getCamp());
+                    return askModelAsync(state, voter, prompt, TARGET_READY, phase);
+                });
+        awaitAll(pendingVotes, phase.deadline());
+        // 截止时间已到：倒序取消，先取消尚未发起的投票，避免取消进行中的请求时又发起新请求
+        for (int i = pendingVotes.size() - 1; i >= 0; i--) {
+            pendingVotes.get(i).cancel(true);
+        }
+
+        // 按座位顺序统计，保证计票与投票详情顺序确定
+        VoteTally tally = new VoteTally(state.seats());
+        for (int i = 0; i < voterSeats.length; i++) {
+            int voter = voterSeats[i];
+            String voterId = state.roleId(voter);
+            CompletableFuture<String> pendingVote = pendingVotes.get(i);
             Map<String, String> voteDetail = new HashMap<>();
-            voteDetail.put("voterId", voter.getRoleId());
-            String roleName = Arrays.stream(RoleEnum.values())
-                    .filter(r -> String.valueOf(r.getId()).equals(voter.getRoleId()))
-                    .map(RoleEnum::getName)
-                    .findFirst().orElse("未知角色");
-            String camp = Arrays.stream(RoleEnum.values())
-                    .filter(r -> String.valueOf(r.getId()).equals(voter.getRoleId()))
-                    .map(RoleEnum::getCamp)
-                    .findFirst().orElse("未知阵营");
-            String prompt = PromptCommon.votePrompt
-                    .replace("{roleName}", roleName)
-                    .replace("{roleId}", voter.getRoleId())
-                    .replace("{day}", String.valueOf(gameState.getDay()))
-                    .replace("{alivePlayers}", getAlivePlayersString(gameState))
-                    .replace("{lastNightEvents}", getLastNightEvents(gameState))
-                    .replace("{camp}", camp);
+            voteDetail.put("voterId", voterId);
+            if (pendingVote.isCancelled()) {
+                log.warn("玩家 {} AI 投票超时，随机投票", voterId);
+                phase.timedOutActions().add("vote:" + voterId);
+                voteDetail.put("targetId", randomVote(state, voter, tally));
+                voteDetail.put("reason", "投票超时，随机投票");
+                individualVotes.add(voteDetail);
+                continue;
+            }
             try {
-                String loginId = getLoginId();
-                Map<String, String> credentials = getApiCredentials(loginId);
-                if (credentials.get("apiUrl").isEmpty() || credentials.get("apiKey").isEmpty()) {
-                    log.error("获取API URL或Key失败，无法调用投票AI");
-                    randomVote(gameState, voter, voteCount);
-                    voteDetail.put("targetId", voter.getNightTarget());
-                    voteDetail.put("reason", "API调用失败，随机投票");
-                    individualVotes.add(voteDetail);
-                    continue;
-                }
-                String apiUrl = credentials.get("apiUrl");
-                String apiKey = credentials.get("apiKey");
-                String response = ChatUtils.sendChatRequest(apiUrl, apiKey, voter.getRoleAI(), voter.getRoleId(), prompt);
-                String targetId = parseTargetIdFromResponse(response);
-                if (targetId != null && isValidTarget(gameState, targetId)) {
-                    voteCount.merge(targetId, 1, Integer::sum);
-                    log.info("玩家 {} 投票给 {}", voter.getRoleId(), targetId);
-                    voteDetail.put("targetId", targetId);
+                String response = OkHttpUtils.await(pendingVote);
+                int target = state.seatOf(parseTargetIdFromResponse(response));
+                if (GameRules.isValidTarget(state, target)) {
+                    tally.add(target);
+                    log.info("玩家 {} 投票给 {}", voterId, state.roleId(target));
+                    voteDetail.put("targetId", state.roleId(target));
                     voteDetail.put("reason", extractReasonFromResponse(response));
                 } else {
-                    log.warn("玩家 {} AI 返回无效目标，随机投票", voter.getRoleId());
-                    randomVote(gameState, voter, voteCount);
-                    voteDetail.put("targetId", voter.getNightTarget());
+                    log.warn("玩家 {} AI 返回无效目标，随机投票", voterId);
+                    voteDetail.put("targetId", randomVote(state, voter, tally));
                     voteDetail.put("reason", "AI返回无效目标，随机投票");
                 }
             } catch (IOException e) {
-                log.error("调用玩家 {} AI 投票失败：{}", voter.getRoleId(), e.getMessage());
-                randomVote(gameState, voter, voteCount);
-                voteDetail.put("targetId", voter.getNightTarget());
-                voteDetail.put("reason", "API调用失败，随机投票");
+                log.error("调用玩家 {} AI 投票失败：{}", voterId, e.getMessage());
+                voteDetail.put("targetId", randomVote(state, voter, tally));
+                voteDetail.put("reason", phase.timedOut("vote:" + voterId, e) ? "投票超时，随机投票" : "API调用失败，随机投票");
             }
             individualVotes.add(voteDetail);
         }
         // 统计投票结果
-        String votedOutId = getMostVotedPlayer(voteCount);
-        if (votedOutId != null) {
-            PlayerState votedOut = getPlayerById(gameState, votedOutId);
-            if (votedOut != null) {
-                votedOut.setAlive(false);
-                deaths.add("玩家 " + votedOut.getRoleId() + " 被投票出局");
-                log.info("玩家 {} 被投票出局！", votedOut.getRoleId());
-                // 猎人反击技能
-                if (votedOut.getRoleId().equals(String.valueOf(RoleEnum.HUNTER.getId()))) {
-                    Map<String, String> hunterResult = hunterCounterattack(gameState, votedOut);
-                    voteResults.put("hunterCounterattack", hunterResult);
-                    if (hunterResult.get("targetId") != null && !hunterResult.get("targetId").isEmpty()) {
-                        deaths.add("玩家 " + hunterResult.get("targetId") + " 被猎人反击带走");
-                    }
+        int votedOut = tally.leader();
+        if (votedOut != IndexedGameState.NONE) {
+            String votedOutId = state.roleId(votedOut);
+            state.kill(votedOut);
+            deaths.add("玩家 " + votedOutId + " 被投票出局");
+            log.info("玩家 {} 被投票出局！", votedOutId);
+            // 猎人反击技能
+            if (GameRules.isHunter(state, votedOut)) {
+                Map<String, String> hunterResult = hunterCounterattack(state, votedOut, phase);
+                voteResults.put("hunterCounterattack", hunterResult);
+                if (!hunterResult.get("targetId").isEmpty()) {
+                    deaths.add("玩家 " + hunterResult.get("targetId") + " 被猎人反击带走");
                 }
             }
         }
-        checkGameOver(gameState);
-        voteResults.put("summary", votedOutId != null ? "玩家 " + votedOutId + " 被投票出局" : "无玩家被投票出局");
+        state.checkGameOver();
+        logGameOver(state);
+        voteResults.put("summary", votedOut != IndexedGameState.NONE ? "玩家 " + state.roleId(votedOut) + " 被投票出局" : "无玩家被投票出局");
         voteResults.put("votes", individualVotes);
         voteResults.put("deaths", deaths);
         return voteResults;
@@ -562,50 +816,37 @@ public class GameService {
     /**
      * 猎人临死反击
      */
-    private Map<String, String> hunterCounterattack(GameState gameState, PlayerState hunter) {
+    private Map<String, String> hunterCounterattack(IndexedGameState state, int hunter, PhaseContext phase) {
         Map<String, String> result = new HashMap<>();
         result.put("action", "无反击");
         result.put("targetId", "");
         result.put("reason", "");
 
         String prompt = PromptCommon.hunterCounterattackPrompt
-                .replace("{roleId}", hunter.getRoleId())
-                .replace("{day}", String.valueOf(gameState.getDay()))
-                .replace("{alivePlayers}", getAlivePlayersString(gameState));
+                .replace("{roleId}", state.roleId(hunter))
+                .replace("{day}", String.valueOf(state.getDay()))
+                .replace("{alivePlayers}", getAlivePlayersString(state));
         try {
-            String loginId = getLoginId();
-            Map<String, String> credentials = getApiCredentials(loginId);
-            if (credentials.get("apiUrl").isEmpty() || credentials.get("apiKey").isEmpty()) {
-                log.error("获取API URL或Key失败，无法调用猎人AI");
-                randomHunterCounterattack(gameState, hunter);
-                result.put("action", "随机反击");
-                result.put("targetId", findHunterCounterattackTarget(gameState, hunter));
-                result.put("reason", "API调用失败，随机选择");
-                return result;
-            }
-            String apiUrl = credentials.get("apiUrl");
-            String apiKey = credentials.get("apiKey");
-            String response = ChatUtils.sendChatRequest(apiUrl, apiKey, hunter.getRoleAI(), hunter.getRoleId(), prompt);
+            String response = askModel(state, hunter, prompt, HUNTER_READY, phase);
             Map<String, String> actions = parseHunterCounterattackFromResponse(response);
             if ("是".equals(actions.get("shoot"))) {
-                String targetId = actions.get("targetId");
-                if (isValidTarget(gameState, targetId)) {
-                    PlayerState target = getPlayerById(gameState, targetId);
-                    if (target != null) {
-                        target.setAlive(false);
-                        log.info("猎人临死反击，带走了玩家 {}", targetId);
-                        result.put("action", "反击");
-                        result.put("targetId", targetId);
-                        result.put("reason", extractReasonFromResponse(response));
-                    }
+                int target = state.seatOf(actions.get("targetId"));
+                if (GameRules.hunterShoot(state, target)) {
+                    log.info("猎人临死反击，带走了玩家 {}", state.roleId(target));
+                    result.put("action", "反击");
+                    result.put("targetId", state.roleId(target));
+                    result.put("reason", extractReasonFromResponse(response));
                 }
             }
         } catch (IOException e) {
             log.error("调用猎人 AI 反击失败：{}", e.getMessage());
-            randomHunterCounterattack(gameState, hunter);
+            int target = GameRules.randomHunterShot(state, hunter, ThreadLocalRandom.current());
+            if (target != IndexedGameState.NONE) {
+                log.info("猎人随机反击，带走了玩家 {}", state.roleId(target));
+            }
             result.put("action", "随机反击");
-            result.put("targetId", findHunterCounterattackTarget(gameState, hunter));
-            result.put("reason", "API调用失败，随机选择");
+            result.put("targetId", state.roleId(target));
+            result.put("reason", fallbackReason(phase, "hunterCounterattack", e));
         }
         return result;
     }
@@ -618,8 +859,7 @@ public class GameService {
         if (urlKey == null) {
             return R.failed("请先登录");
         }
-        String stateKey = GAME_STATE_KEY + ":" + urlKey;
-        GameState gameState = (GameState) RedisUtil.get(stateKey);
+        GameState gameState = gameStateStore.get(urlKey);
         if (gameState == null) {
             return R.failed("游戏未开始或状态异常");
         }
@@ -627,97 +867,111 @@ public class GameService {
     }
 
     /**
-     * 检查游戏是否结束
+     * 读取当前游戏的事件
+     *
+     * @param afterId    起始事件ID（不含），为空时从头读取
+     * @param count      最大条数
+     * @param waitMillis 没有新事件时阻塞等待的时间（毫秒）
      */
-    private void checkGameOver(GameState gameState) {
-        int werewolfCount = 0;
-        int goodGuyCount = 0;
-        for (PlayerState p : gameState.getPlayers()) {
-            if (p.isAlive()) {
-                if (isWerewolf(p.getRoleId())) {
-                    werewolfCount++;
-                } else {
-                    goodGuyCount++;
-                }
-            }
+    public R<List<GameEvent>> getEvents(String afterId, int count, long waitMillis) {
+        String urlKey = getLoginId();
+        if (urlKey == null) {
+            return R.failed("请先登录");
         }
-        if (werewolfCount == 0) {
-            gameState.setGameOver(true);
-            gameState.setWinnerCamp("好人阵营");
-            log.info("好人阵营胜利！所有狼人被消灭！");
-        } else if (werewolfCount >= goodGuyCount) {
-            gameState.setGameOver(true);
-            gameState.setWinnerCamp("狼人阵营");
-            log.info("狼人阵营胜利！狼人数量大于等于好人数量！");
+        if (!gameEventLog.isEnabled()) {
+            return R.failed("事件日志未启用");
+        }
+        if (!GameEventLog.isValidId(afterId)) {
+            return R.failed("事件ID格式错误");
+        }
+        GameState gameState = gameStateStore.get(urlKey);
+        if (gameState == null || gameState.getGameId() == null) {
+            return R.failed("游戏未开始或状态异常");
         }
+        return R.ok(gameEventLog.read(gameState.getGameId(), afterId, count, waitMillis));
     }
 
     /**
-     * 辅助方法：是否为狼人
+     * 由快照与事件还原当前游戏在指定事件处的状态
+     *
+     * @param eventId 事件ID（含），为空时还原最新状态
      */
-    private boolean isWerewolf(String roleId) {
-        return roleId.equals(String.valueOf(RoleEnum.WEREWOLF_1.getId())) ||
-                roleId.equals(String.valueOf(RoleEnum.WEREWOLF_2.getId()));
+    public R<GameState> getStateAt(String eventId) {
+        String urlKey = getLoginId();
+        if (urlKey == null) {
+            return R.failed("请先登录");
+        }
+        if (!gameEventLog.isEnabled()) {
+            return R.failed("事件日志未启用");
+        }
+        if (!GameEventLog.isValidId(eventId)) {
+            return R.failed("事件ID格式错误");
+        }
+        GameState gameState = gameStateStore.get(urlKey);
+        if (gameState == null || gameState.getGameId() == null) {
+            return R.failed("游戏未开始或状态异常");
+        }
+        GameState rebuilt = gameEventLog.rebuild(gameState.getGameId(), eventId);
+        if (rebuilt == null) {
+            return R.failed("没有该游戏的事件记录");
+        }
+        return R.ok(rebuilt);
     }
 
     /**
-     * 辅助方法：获取存活玩家列表字符串
+     * 游戏结束时记录获胜阵营
      */
-    private String getAlivePlayersString(GameState gameState) {
-        StringBuilder sb = new StringBuilder();
-        for (PlayerState p : gameState.getPlayers()) {
-            if (p.isAlive()) {
-                sb.append("ID: ").append(p.getRoleId()).append(" (未知身份)\n");
-            }
+    private void logGameOver(IndexedGameState state) {
+        if (!state.isGameOver()) {
+            return;
+        }
+        if (GameRules.GOOD_CAMP.equals(state.getWinnerCamp())) {
+            log.info("好人阵营胜利！所有狼人被消灭！");
+        } else {
+            log.info("狼人阵营胜利！狼人数量大于等于好人数量！");
         }
-        return sb.toString();
     }
 
     /**
-     * 辅助方法：获取昨晚事件记录
+     * 辅助方法：生成游戏ID
      */
-    private String getLastNightEvents(GameState gameState) {
-        StringBuilder sb = new StringBuilder();
-        for (PlayerState p : gameState.getPlayers()) {
-            if (!p.isAlive()) {
-                if (p.isPoisoned()) {
-                    sb.append("玩家 ").append(p.getRoleId()).append(" 被毒死；");
-                } else if (p.getRoleId().equals(getKilledPlayerId(gameState)) && !p.isSaved()) {
-                    sb.append("玩家 ").append(p.getRoleId()).append(" 被狼人杀死；");
-                }
-            }
-        }
-        return !sb.isEmpty() ? sb.toString() : "昨晚无人死亡";
+    private String newGameId() {
+        return UUID.randomUUID().toString().replace("-", "");
     }
 
     /**
-     * 辅助方法：获取狼人目标
+     * 辅助方法：获取游戏ID，旧版本保存的游戏状态没有游戏ID时补充生成
      */
-    private String getKilledPlayerId(GameState gameState) {
-        for (PlayerState p : gameState.getPlayers()) {
-            if (isWerewolf(p.getRoleId()) && p.isAlive() && !p.getNightTarget().isEmpty()) {
-                return p.getNightTarget();
-            }
+    private String ensureGameId(GameState gameState) {
+        if (gameState.getGameId() == null) {
+            gameState.setGameId(newGameId());
         }
-        return "";
+        return gameState.getGameId();
     }
 
     /**
-     * 辅助方法：根据ID获取玩家
+     * 辅助方法：获取存活玩家列表字符串，连续的玩家ID压缩为区间
      */
-    private PlayerState getPlayerById(GameState gameState, String roleId) {
-        return gameState.getPlayers().stream()
-                .filter(p -> p.getRoleId().equals(roleId))
-                .findFirst()
-                .orElse(null);
+    private String getAlivePlayersString(IndexedGameState state) {
+        return "共 " + state.aliveCount() + " 名（身份未知），座位号: " + state.idRanges(state.aliveMask());
     }
 
     /**
-     * 辅助方法：验证目标是否有效
+     * 辅助方法：获取昨晚事件记录
      */
-    private boolean isValidTarget(GameState gameState, String targetId) {
-        return gameState.getPlayers().stream()
-                .anyMatch(p -> p.getRoleId().equals(targetId) && p.isAlive());
+    private String getLastNightEvents(IndexedGameState state) {
+        StringBuilder sb = new StringBuilder();
+        int killed = state.killTarget();
+        for (int seat = 0; seat < state.seats(); seat++) {
+            if (!state.isAlive(seat)) {
+                if (state.isPoisoned(seat)) {
+                    sb.append("玩家 ").append(state.roleId(seat)).append(" 被毒死；");
+                } else if (seat == killed && !state.isSaved(seat)) {
+                    sb.append("玩家 ").append(state.roleId(seat)).append(" 被狼人杀死；");
+                }
+            }
+        }
+        return !sb.isEmpty() ? sb.toString() : "昨晚无人死亡";
     }
 
     /**
@@ -809,104 +1063,36 @@ public class GameService {
     }
 
     /**
-     * 辅助方法：统计投票最多的玩家
-     */
-    private String getMostVotedPlayer(Map<String, Integer> voteCount) {
-        return voteCount.entrySet().stream()
-                .max(Map.Entry.comparingByValue())
-                .map(Map.Entry::getKey)
-                .orElse(null);
-    }
-
-    /**
-     * 辅助方法：查找被毒死的玩家
-     */
-    private String findPoisonedPlayer(GameState gameState) {
-        return gameState.getPlayers().stream()
-                .filter(PlayerState::isPoisoned)
-                .map(PlayerState::getRoleId)
-                .findFirst()
-                .orElse("");
-    }
-
-    /**
-     * 辅助方法：查找猎人反击目标
+     * 辅助方法：AI 调用失败时的兜底理由，区分阶段超时与调用失败
      */
-    private String findHunterCounterattackTarget(GameState gameState, PlayerState hunter) {
-        return gameState.getPlayers().stream()
-                .filter(p -> !p.isAlive() && !p.getRoleId().equals(hunter.getRoleId()))
-                .map(PlayerState::getRoleId)
-                .findFirst()
-                .orElse("");
+    private String fallbackReason(PhaseContext phase, String action, IOException e) {
+        return phase.timedOut(action, e) ? "阶段超时，随机选择" : "API调用失败，随机选择";
     }
 
     /**
      * 辅助方法：随机选择目标 (AI 调用失败时的备用逻辑)
      */
-    private void randomWerewolfTarget(GameState gameState, List<PlayerState> werewolves) {
-        List<PlayerState> aliveGoodPlayers = gameState.getPlayers().stream()
-                .filter(p -> p.isAlive() && !isWerewolf(p.getRoleId()))
-                .toList();
-        if (!aliveGoodPlayers.isEmpty()) {
-            PlayerState target = aliveGoodPlayers.get(new Random().nextInt(aliveGoodPlayers.size()));
-            for (PlayerState wolf : werewolves) {
-                wolf.setNightTarget(target.getRoleId());
-            }
-            log.info("狼人随机选择了杀死玩家 {}", target.getRoleId());
-        }
-    }
-
-    private void randomSeerTarget(GameState gameState, PlayerState seer) {
-        List<PlayerState> others = gameState.getPlayers().stream()
-                .filter(p -> p.isAlive() && !p.getRoleId().equals(seer.getRoleId()))
-                .toList();
-        if (!others.isEmpty()) {
-            PlayerState target = others.get(new Random().nextInt(others.size()));
-            seer.setNightTarget(target.getRoleId());
-            log.info("预言家随机查验了玩家 {}", target.getRoleId());
-        }
-    }
-
-    private void randomWitchAction(GameState gameState, PlayerState witch) {
-        PlayerState killed = getPlayerById(gameState, getKilledPlayerId(gameState));
-        if (killed != null && !witch.isWitchSaveUsed() && new Random().nextBoolean()) {
-            killed.setSaved(true);
-            witch.setWitchSaveUsed(true);
-            log.info("女巫随机救了玩家 {}", killed.getRoleId());
-        }
-        if (!witch.isWitchPoisonUsed() && new Random().nextBoolean()) {
-            List<PlayerState> others = gameState.getPlayers().stream()
-                    .filter(p -> p.isAlive() && !p.getRoleId().equals(witch.getRoleId()))
-                    .toList();
-            if (!others.isEmpty()) {
-                PlayerState target = others.get(new Random().nextInt(others.size()));
-                target.setPoisoned(true);
-                witch.setWitchPoisonUsed(true);
-                log.info("女巫随机毒死了玩家 {}", target.getRoleId());
-            }
+    private String randomWerewolfTarget(IndexedGameState state) {
+        int target = GameRules.randomWerewolfTarget(state, ThreadLocalRandom.current());
+        if (target != IndexedGameState.NONE) {
+            log.info("狼人随机选择了杀死玩家 {}", state.roleId(target));
         }
+        return state.roleId(target);
     }
 
-    private void randomVote(GameState gameState, PlayerState voter, Map<String, Integer> voteCount) {
-        List<PlayerState> alivePlayers = gameState.getPlayers().stream()
-                .filter(p -> p.isAlive() && !p.getRoleId().equals(voter.getRoleId()))
-                .toList();
-        if (!alivePlayers.isEmpty()) {
-            PlayerState target = alivePlayers.get(new Random().nextInt(alivePlayers.size()));
-            voteCount.merge(target.getRoleId(), 1, Integer::sum);
-            log.info("玩家 {} 随机投票给 {}", voter.getRoleId(), target.getRoleId());
-            voter.setNightTarget(target.getRoleId()); // 临时存储投票目标
+    private int randomSeerTarget(IndexedGameState state, int seer) {
+        int target = GameRules.randomSeerTarget(state, seer, ThreadLocalRandom.current());
+        if (target != IndexedGameState.NONE) {
+            log.info("预言家随机查验了玩家 {}", state.roleId(target));
         }
+        return target;
     }
 
-    private void randomHunterCounterattack(GameState gameState, PlayerState hunter) {
-        List<PlayerState> alivePlayers = gameState.getPlayers().stream()
-                .filter(p -> p.isAlive() && !p.getRoleId().equals(hunter.getRoleId()))
-                .toList();
-        if (!alivePlayers.isEmpty() && new Random().nextBoolean()) {
-            PlayerState target = alivePlayers.get(new Random().nextInt(alivePlayers.size()));
-            target.setAlive(false);
-            log.info("猎人随机反击，带走了玩家 {}", target.getRoleId());
+    private String randomVote(IndexedGameState state, int voter, VoteTally tally) {
+        int target = GameRules.randomVote(state, voter, tally, ThreadLocalRandom.current());
+        if (target != IndexedGameState.NONE) {
+            log.info("玩家 {} 随机投票给 {}", state.roleId(voter), state.roleId(target));
         }
+        return state.roleId(target);
     }
 }
@@ -0,0 +1,311 @@
+package xlike.top.werewolf.service;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.core.StringRedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import xlike.top.werewolf.bean.pojo.GameState;
+import xlike.top.werewolf.config.WerewolfProperties;
+import xlike.top.werewolf.repository.GameStateRepository;
+import xlike.top.werewolf.utils.ChatHistoryStore;
+import xlike.top.werewolf.utils.NearCache;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 游戏状态存储，在 {@link GameStateRepository} 之前加一层进程内近端缓存
+ * <p>
+ * 活跃游戏的状态（以及对话历史窗口，见 {@link ChatHistoryStore}）缓存在本地有界 LRU 中，轮询与阶段读取不再访问 Redis；
+ * 写入按配置的一致性模式同步写回或合并后延迟写回存储，并通过 Redis 发布订阅通知其他节点失效。
+ * 缓存中保存的是副本，调用方可以自由修改读到的状态。进程内存储不在节点间共享，此时不启用近端缓存。
+ * <p>
+ * 每次写入都会递增状态版本号。阶段结束时通过 {@link #commit} 比较并交换，以近端缓存中同一版本的状态为增量写入的基准，
+ * 版本号已变化（其他请求或节点先提交）时放弃写入；阶段开始前通过 {@link #tryLease} 获取单局租约，拒绝并发的阶段请求。
+ * write-behind 模式下待写回的状态记录写入前存储中的状态，写回时同样以它为增量写入的基准并比较版本号；
+ * 存储已被更新的提交覆盖时丢弃待写回的状态，不会把已提交的阶段结果写回旧版本
+ *
+ * @author xlike
+ */
+@Slf4j
+@Service
+public class GameStateStore {
+
+    private static final String INVALIDATION_CHANNEL = "werewolf:near-cache:invalidate";
+    private static final String STATE_MESSAGE = "state:";
+    private static final String HISTORY_MESSAGE = "history:";
+
+    private final WerewolfProperties.NearCache config;
+    private final WerewolfProperties.NearCache.Mode mode;
+    private final GameStateRepository repository;
+    private final StringRedisTemplate stringRedisTemplate;
+    private final RedisMessageListenerContainer listenerContainer;
+    private final TaskScheduler taskScheduler;
+    private final String nodeId = UUID.randomUUID().toString();
+    private final NearCache<String, GameState> cache;
+    private final Map<String, PendingWrite> pendingWrites = new ConcurrentHashMap<>();
+    private final AtomicLong flushedWrites = new AtomicLong();
+    private final AtomicLong coalescedWrites = new AtomicLong();
+    private final AtomicLong invalidationsPublished = new AtomicLong();
+    private final AtomicLong invalidationsReceived = new AtomicLong();
+    private final AtomicLong commits = new AtomicLong();
+    private final AtomicLong commitConflicts = new AtomicLong();
+
+    /**
+     * 待写回的状态
+     *
+     * @param state 最新的状态
+     * @param base  第一次合并写入前存储中的状态，作为增量写入的基准；未知时为 null，整体写入
+     */
+    private record PendingWrite(GameState state, GameState base) {
+    }
+
+    public GameStateStore(WerewolfProperties properties, GameStateRepository repository,
+                          StringRedisTemplate stringRedisTemplate,
+                          RedisMessageListenerContainer listenerContainer, TaskScheduler taskScheduler) {
+        this.config = properties.getNearCache();
+        this.mode = repository.shared() ? config.getMode() : WerewolfProperties.NearCache.Mode.OFF;
+        this.repository = repository;
+        this.stringRedisTemplate = stringRedisTemplate;
+        this.listenerContainer = listenerContainer;
+        this.taskScheduler = taskScheduler;
+        this.cache = new NearCache<>("gameState", config.getStateMaxEntries(), config.getTtlSeconds() * 1000L);
+    }
+
+    @PostConstruct
+    public void init() {
+        if (mode == WerewolfProperties.NearCache.Mode.OFF) {
+            return;
+        }
+        listenerContainer.addMessageListener(this::onInvalidation, new ChannelTopic(INVALIDATION_CHANNEL));
+        ChatHistoryStore.enableNearCache(config.getHistoryMaxEntries(), config.getTtlSeconds() * 1000L,
+                key -> publish(HISTORY_MESSAGE + key));
+        if (mode == WerewolfProperties.NearCache.Mode.WRITE_BEHIND) {
+            taskScheduler.scheduleWithFixedDelay(this::flush, Duration.ofMillis(config.getFlushIntervalMs()));
+        }
+    }
+
+    /**
+     * 读取游戏状态，依次查找待写回缓冲、近端缓存与存储
+     *
+     * @param urlKey 登录ID
+     * @return 游戏状态副本，不存在时为 null
+     */
+    public GameState get(String urlKey) {
+        if (mode == WerewolfProperties.NearCache.Mode.OFF) {
+            return repository.load(urlKey);
+        }
+        PendingWrite pending = pendingWrites.get(urlKey);
+        if (pending != null) {
+            return pending.state().copy();
+        }
+        GameState cached = cache.get(urlKey);
+        if (cached != null) {
+            return cached.copy();
+        }
+        // 加载期间收到失效通知或本节点写入时，加载到的可能是旧状态，不放回缓存
+        long stamp = cache.stamp(urlKey);
+        GameState loaded = repository.load(urlKey);
+        if (loaded != null) {
+            cache.putIfUnchanged(urlKey, loaded.copy(), stamp);
+        }
+        return loaded;
+    }
+
+    /**
+     * 保存游戏状态，不比较版本号，用于分配角色、开始游戏等写入；调用方需持有单局租约，避免与阶段并发。
+     * 新游戏的版本号应接着上一局，否则上一局进行中的阶段可能按相同的版本号提交成功
+     *
+     * @param urlKey    登录ID
+     * @param gameState 游戏状态，写入后版本号递增
+     */
+    public void save(String urlKey, GameState gameState) {
+        gameState.setVersion(gameState.getVersion() + 1);
+        switch (mode) {
+            case OFF -> repository.save(urlKey, gameState, null, null);
+            case WRITE_THROUGH -> {
+                GameState snapshot = gameState.copy();
+                // 不比较版本号的写入无法确认存储中的内容，整体写入
+                repository.save(urlKey, snapshot, null, null);
+                cache.put(urlKey, snapshot);
+                publish(STATE_MESSAGE + urlKey);
+            }
+            case WRITE_BEHIND -> {
+                GameState snapshot = gameState.copy();
+                // 没有待写回的状态时，近端缓存中的状态即存储中的状态
+                GameState stored = cache.peek(urlKey);
+                cache.put(urlKey, snapshot);
+                pendingWrites.compute(urlKey, (key, replaced) -> {
+                    if (replaced == null) {
+                        return new PendingWrite(snapshot, stored);
+                    }
+                    coalescedWrites.incrementAndGet();
+                    return new PendingWrite(snapshot, replaced.base());
+                });
+            }
+        }
+    }
+
+    /**
+     * 提交阶段结果：仅当存储中的版本号仍为读取时的版本号时写入，写入后版本号递增。
+     * write-behind 模式下先同步写回该游戏待写回的状态，再比较并交换
+     *
+     * @param urlKey    登录ID
+     * @param gameState 阶段开始时读取并修改后的游戏状态
+     * @return 是否提交成功，失败表示状态已被其他请求修改，本次结果被丢弃
+     */
+    public boolean commit(String urlKey, GameState gameState) {
+        PendingWrite pending = pendingWrites.remove(urlKey);
+        if (pending != null && writeBack(urlKey, pending)) {
+            flushedWrites.incrementAndGet();
+        }
+        long expected = gameState.getVersion();
+        GameState snapshot = gameState.copy();
+        snapshot.setVersion(expected + 1);
+        // 近端缓存中与期望版本号相同的状态即存储中的状态，作为增量写入的基准
+        GameState previous = mode == WerewolfProperties.NearCache.Mode.OFF ? null : cache.peek(urlKey);
+        if (previous != null && previous.getVersion() != expected) {
+            previous = null;
+        }
+        if (!repository.save(urlKey, snapshot, previous, expected)) {
+            commitConflicts.incrementAndGet();
+            cache.invalidate(urlKey);
+            log.warn("游戏状态版本冲突，放弃提交，urlKey：{}，期望版本：{}", urlKey, expected);
+            return false;
+        }
+        gameState.setVersion(snapshot.getVersion());
+        commits.incrementAndGet();
+        if (mode != WerewolfProperties.NearCache.Mode.OFF) {
+            cache.put(urlKey, snapshot);
+            publish(STATE_MESSAGE + urlKey);
+        }
+        return true;
+    }
+
+    /**
+     * 获取单局租约，同一游戏同时只允许一个阶段运行
+     *
+     * @param urlKey 登录ID
+     * @param ttl    租约有效期，应覆盖阶段的时间预算，持有者异常退出时到期自动释放
+     * @return 租约令牌，已被其他请求持有时为 null
+     */
+    public String tryLease(String urlKey, Duration ttl) {
+        return repository.tryLease(urlKey, ttl);
+    }
+
+    /**
+     * 释放租约，租约已过期并被其他请求获取时不做任何操作
+     */
+    public void releaseLease(String urlKey, String token) {
+        repository.releaseLease(urlKey, token);
+    }
+
+    /**
+     * 将待写回的状态写入存储，同一游戏在一个周期内的多次写入只写最后一次
+     * <p>
+     * 写回前先从缓冲中取走该条目，与 {@link #commit} 互斥，同一条待写回的状态只会被写回一次；
+     * 写回期间被更新的状态留到下一个周期
+     */
+    @PreDestroy
+    public void flush() {
+        for (Map.Entry<String, PendingWrite> entry : pendingWrites.entrySet()) {
+            String urlKey = entry.getKey();
+            PendingWrite pending = entry.getValue();
+            if (!pendingWrites.remove(urlKey, pending)) {
+                continue;
+            }
+            try {
+                if (writeBack(urlKey, pending)) {
+                    flushedWrites.incrementAndGet();
+                    publish(STATE_MESSAGE + urlKey);
+                }
+            } catch (Exception e) {
+                // 放回缓冲等待下一个周期，期间又有新的写入时保留最新的状态与最早的基准
+                pendingWrites.merge(urlKey, pending, (current, failed) -> new PendingWrite(current.state(), failed.base()));
+                log.error("写回游戏状态失败，urlKey：{}，异常信息：{}", urlKey, e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 写回待写回的状态：以写入前存储中的状态为基准、按其版本号比较并交换，只写变化的部分。
+     * 比较失败时重新读取存储，存储中的版本号不超过基准版本号时按其版本号整体写入；
+     * 否则存储已被更新的提交覆盖，丢弃待写回的状态并使近端缓存失效
+     *
+     * @return 是否写入
+     */
+    private boolean writeBack(String urlKey, PendingWrite pending) {
+        GameState state = pending.state();
+        GameState base = pending.base();
+        if (base != null && repository.save(urlKey, state, base, base.getVersion())) {
+            return true;
+        }
+        long baseVersion = base != null ? base.getVersion() : state.getVersion() - 1;
+        GameState stored = repository.load(urlKey);
+        if (stored == null) {
+            return repository.save(urlKey, state, null, null);
+        }
+        if (stored.getVersion() <= baseVersion && repository.save(urlKey, state, null, stored.getVersion())) {
+            return true;
+        }
+        commitConflicts.incrementAndGet();
+        cache.invalidate(urlKey);
+        log.warn("待写回的游戏状态已过期，放弃写回，urlKey：{}，基准版本：{}，存储版本：{}",
+                urlKey, baseVersion, stored.getVersion());
+        return false;
+    }
+
+    private void publish(String payload) {
+        try {
+            stringRedisTemplate.convertAndSend(INVALIDATION_CHANNEL, nodeId + "|" + payload);
+            invalidationsPublished.incrementAndGet();
+        } catch (Exception e) {
+            log.warn("发布缓存失效通知失败：{}", e.getMessage());
+        }
+    }
+
+    private void onInvalidation(Message message, byte[] pattern) {
+        String body = new String(message.getBody(), StandardCharsets.UTF_8);
+        int separator = body.indexOf('|');
+        if (separator < 0 || nodeId.equals(body.substring(0, separator))) {
+            return;
+        }
+        invalidationsReceived.incrementAndGet();
+        String payload = body.substring(separator + 1);
+        if (payload.startsWith(STATE_MESSAGE)) {
+            cache.invalidate(payload.substring(STATE_MESSAGE.length()));
+        } else if (payload.startsWith(HISTORY_MESSAGE)) {
+            ChatHistoryStore.invalidateLocal(payload.substring(HISTORY_MESSAGE.length()));
+        }
+    }
+
+    /**
+     * 近端缓存统计
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("mode", mode);
+        stats.put("nodeId", nodeId);
+        stats.put("gameState", cache.snapshot());
+        stats.put("chatHistory", ChatHistoryStore.nearCacheSnapshot());
+        stats.put("pendingWrites", pendingWrites.size());
+        stats.put("flushedWrites", flushedWrites.get());
+        stats.put("coalescedWrites", coalescedWrites.get());
+        stats.put("invalidationsPublished", invalidationsPublished.get());
+        stats.put("invalidationsReceived", invalidationsReceived.get());
+        stats.put("commits", commits.get());
+        stats.put("commitConflicts", commitConflicts.get());
+        stats.put("storage", repository.snapshot());
+        return stats;
+    }
+}
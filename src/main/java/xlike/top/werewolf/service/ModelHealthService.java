@@ -0,0 +1,167 @@
+package xlike.top.werewolf.service;
+
+import jakarta.annotation.PostConstruct;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.TaskScheduler;
+import org.springframework.stereotype.Service;
+import xlike.top.werewolf.config.WerewolfProperties;
+import xlike.top.werewolf.utils.ChatUtils;
+import xlike.top.werewolf.utils.KeyFingerprint;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * 模型健康状态注册表
+ * <p>
+ * 按 服务商地址 + 模型 + 密钥指纹 缓存测活结果，同一密钥跨对局共享，不同用户的密钥互不影响；
+ * 注册表中只保存指纹，不保存明文密钥。同一条目的并发测活合并为一次请求，批量测活并发执行并限制并行度；
+ * 后台任务只清理长时间未访问的条目，过期的条目在下次访问时用调用方自己的密钥重新测活
+ *
+ * @author xlike
+ */
+@Slf4j
+@Service
+public class ModelHealthService {
+
+    private final WerewolfProperties.ModelHealth config;
+    private final ExecutorService gameActionExecutor;
+    private final TaskScheduler taskScheduler;
+    private final Semaphore checkPermits;
+    private final Map<String, HealthEntry> registry = new ConcurrentHashMap<>();
+
+    public ModelHealthService(WerewolfProperties properties, ExecutorService gameActionExecutor,
+                              TaskScheduler taskScheduler) {
+        this.config = properties.getModelHealth();
+        this.gameActionExecutor = gameActionExecutor;
+        this.taskScheduler = taskScheduler;
+        this.checkPermits = new Semaphore(Math.max(1, config.getParallelism()));
+    }
+
+    /**
+     * 健康状态条目，以及正在进行的测活请求
+     */
+    private static class HealthEntry {
+        private final String apiUrl;
+        private final String model;
+        private final AtomicReference<CompletableFuture<Boolean>> inFlight = new AtomicReference<>();
+        private volatile boolean valid;
+        private volatile long checkedAt;
+        private volatile long lastAccessAt;
+
+        HealthEntry(String apiUrl, String model) {
+            this.apiUrl = apiUrl;
+            this.model = model;
+        }
+    }
+
+    @PostConstruct
+    public void scheduleCleanup() {
+        taskScheduler.scheduleAtFixedRate(this::evictColdEntries, Duration.ofSeconds(config.getCleanupIntervalSeconds()));
+    }
+
+    /**
+     * 测试单个模型，缓存有效期内直接返回缓存结果
+     *
+     * @param apiUrl API地址
+     * @param apiKey API密钥
+     * @param model  模型名称
+     * @return 是否有效，API地址为空时为 false
+     */
+    public boolean test(String apiUrl, String apiKey, String model) {
+        if (apiUrl == null || apiUrl.isBlank()) {
+            log.warn("模型 {} 测活失败，API地址为空", model);
+            return false;
+        }
+        HealthEntry entry = entryFor(apiUrl, apiKey, model);
+        entry.lastAccessAt = System.currentTimeMillis();
+        if (isFresh(entry)) {
+            log.info("模型 {} 命中健康状态缓存，结果: {}", model, entry.valid);
+            return entry.valid;
+        }
+        return check(entry, apiKey);
+    }
+
+    /**
+     * 批量测试模型，未命中缓存的模型以受限的并行度并发测活
+     *
+     * @param apiUrl API地址
+     * @param apiKey API密钥
+     * @param models 模型名称列表
+     * @return 模型名称到是否有效的映射，顺序与传入顺序一致
+     */
+    public Map<String, Boolean> batchTest(String apiUrl, String apiKey, List<String> models) {
+        Map<String, CompletableFuture<Boolean>> pending = new LinkedHashMap<>();
+        for (String model : models) {
+            if (!pending.containsKey(model)) {
+                pending.put(model, CompletableFuture.supplyAsync(() -> test(apiUrl, apiKey, model), gameActionExecutor));
+            }
+        }
+        Map<String, Boolean> results = new LinkedHashMap<>();
+        pending.forEach((model, future) -> results.put(model, future.join()));
+        return results;
+    }
+
+    /**
+     * 清理长时间未访问的条目
+     */
+    void evictColdEntries() {
+        long now = System.currentTimeMillis();
+        long hotWindowMillis = config.getHotWindowSeconds() * 1000;
+        int before = registry.size();
+        registry.entrySet().removeIf(e -> now - e.getValue().lastAccessAt > hotWindowMillis);
+        if (registry.size() < before) {
+            log.info("清理模型健康状态，移除条目数: {}", before - registry.size());
+        }
+    }
+
+    /**
+     * 测活，同一条目已有测活请求进行中时等待其结果，不再重复发起
+     */
+    private boolean check(HealthEntry entry, String apiKey) {
+        CompletableFuture<Boolean> probe = new CompletableFuture<>();
+        CompletableFuture<Boolean> running = entry.inFlight.compareAndExchange(null, probe);
+        if (running != null) {
+            return running.join();
+        }
+        try {
+            checkPermits.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            entry.inFlight.set(null);
+            probe.complete(entry.valid);
+            return entry.valid;
+        }
+        try {
+            boolean valid = ChatUtils.isModelValid(entry.apiUrl, apiKey, entry.model);
+            entry.valid = valid;
+            entry.checkedAt = System.currentTimeMillis();
+            entry.inFlight.set(null);
+            probe.complete(valid);
+            return valid;
+        } catch (RuntimeException e) {
+            entry.inFlight.set(null);
+            probe.completeExceptionally(e);
+            throw e;
+        } finally {
+            checkPermits.release();
+        }
+    }
+
+    private boolean isFresh(HealthEntry entry) {
+        return entry.checkedAt > 0 && System.currentTimeMillis() - entry.checkedAt < config.getTtlSeconds() * 1000;
+    }
+
+    private HealthEntry entryFor(String apiUrl, String apiKey, String model) {
+        String endpoint = ChatUtils.completeApiUrl(apiUrl, "chat");
+        return registry.computeIfAbsent(endpoint + "|" + model + "|" + KeyFingerprint.of(apiKey),
+                k -> new HealthEntry(endpoint, model));
+    }
+}
@@ -1,61 +1,64 @@
 package xlike.top.werewolf.service;
 
-import com.fasterxml.jackson.databind.ObjectMapper;
-import okhttp3.Response;
+import lombok.AllArgsConstructor;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
-import xlike.top.werewolf.bean.dto.ModelResponseDto;
 import xlike.top.werewolf.bean.vo.ModelVo;
-import xlike.top.werewolf.utils.ChatUtils;
+import xlike.top.werewolf.utils.ModelCatalog;
 import xlike.top.werewolf.utils.OkHttpUtils;
 
-import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 /**
  * @author xlike
  */
 @Service
+@AllArgsConstructor
 public class ModelService {
 
     private static final Logger logger = LoggerFactory.getLogger(ModelService.class);
-    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final ModelHealthService modelHealthService;
 
 
     public List<ModelVo> getModelList(String key, String url) {
         try {
-            // 构建请求头
-            Map<String, String> headers = new HashMap<>();
-            headers.put("Authorization", "Bearer " + key);
-            headers.put("Content-Type", "application/json");
-            // 发送请求
-            Response response = OkHttpUtils.get(url, headers);
-            String responseBody = OkHttpUtils.getResponseBodyAsString(response);
-            if (responseBody == null) {
-                throw new RuntimeException("Response body is null");
-            }
-            // 解析响应
-            System.out.println("responseBody : " + responseBody);
-            ModelResponseDto responseDto = objectMapper.readValue(responseBody, ModelResponseDto.class);
-            // 转换为 VO
-            return responseDto.getData().stream()
-                    .map(modelDto -> {
-                        ModelVo vo = new ModelVo();
-                        vo.setId(modelDto.getId());
-                        vo.setOwnedBy(modelDto.getOwned_by());
-                        return vo;
-                    })
-                    .collect(Collectors.toList());
+            return OkHttpUtils.await(ModelCatalog.getModels(url, key, null));
         } catch (Exception e) {
             logger.error("Failed to get OpenAI models from URL {}: {}", url, e.getMessage(), e);
             throw new RuntimeException("Failed to get models: " + e.getMessage());
         }
     }
 
+    /**
+     * 获取模型列表并在服务端过滤、分页
+     *
+     * @param key     API密钥
+     * @param url     模型列表地址
+     * @param keyword 模型ID关键字，忽略大小写，可为空
+     * @param page    页码，从 1 开始
+     * @param size    每页数量，小于等于 0 表示不分页
+     * @return 过滤、分页后的模型列表
+     */
+    public List<ModelVo> getModelList(String key, String url, String keyword, int page, int size) {
+        Stream<ModelVo> models = getModelList(key, url).stream();
+        if (keyword != null && !keyword.isBlank()) {
+            String lowerKeyword = keyword.trim().toLowerCase();
+            models = models.filter(model -> model.getId().toLowerCase().contains(lowerKeyword));
+        }
+        if (size > 0) {
+            models = models.skip((long) (Math.max(page, 1) - 1) * size).limit(size);
+        }
+        return models.toList();
+    }
+
     public boolean modelTest(String key, String url, String modelName) {
-        return ChatUtils.isModelValid(url, key, modelName);
+        return modelHealthService.test(url, key, modelName);
+    }
+
+    public Map<String, Boolean> batchModelTest(String key, String url, List<String> modelNames) {
+        return modelHealthService.batchTest(url, key, modelNames);
     }
 }
@@ -0,0 +1,536 @@
+package xlike.top.werewolf.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import xlike.top.werewolf.bean.pojo.GameState;
+import xlike.top.werewolf.config.WerewolfProperties;
+import xlike.top.werewolf.utils.GameStateCodec;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+
+/**
+ * 本地磁盘上的对局回放日志，记录完整的提示词、模型原始响应、解析后的决策以及每个阶段结束后的游戏状态，供离线分析模型行为
+ * <p>
+ * 日志只追加，按大小滚动为多个段文件 {起始偏移}.seg，段文件通过内存映射写入。记录格式：
+ * [int 记录体长度][byte 类型][long 时间戳][short+UTF-8 游戏ID][short+UTF-8 玩家ID][byte 字段数]([int 长度][字节])*，
+ * 记录体先写入，长度最后写入，长度为 0 处即为日志末尾，进程异常退出时不会读到半条记录。
+ * 每条记录的全局偏移按游戏追加到索引文件 index.idx，回放时按索引直接定位，不扫描其他游戏的记录。
+ * 段文件数超过上限时删除最旧的段，并重写索引去掉其中的记录，日志占用的磁盘空间不超过 段大小 × 段数上限。
+ * <p>
+ * 请求线程只把记录放入有界队列，编码与写盘都由单独的写入线程完成；队列已满时丢弃记录并计数，不阻塞游戏阶段
+ *
+ * @author xlike
+ */
+@Slf4j
+@Service
+public class ReplayJournal {
+
+    public static final byte EXCHANGE = 1;
+    public static final byte DECISION = 2;
+    public static final byte STATE = 3;
+
+    private static final String SEGMENT_SUFFIX = ".seg";
+    private static final String INDEX_FILE = "index.idx";
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    private final WerewolfProperties.Journal config;
+    private final BlockingQueue<Entry> queue;
+    /**
+     * 段起始偏移 -> 段文件
+     */
+    private final ConcurrentSkipListMap<Long, Path> segments = new ConcurrentSkipListMap<>();
+    /**
+     * 游戏ID -> 该游戏各条记录的全局偏移，按写入顺序
+     */
+    private final Map<String, List<Long>> index = new ConcurrentHashMap<>();
+    private final AtomicLong written = new AtomicLong();
+    private final AtomicLong writtenBytes = new AtomicLong();
+    private final AtomicLong dropped = new AtomicLong();
+
+    private Path dir;
+    private FileChannel indexChannel;
+    private long segmentBase;
+    private MappedByteBuffer segment;
+    private Thread writer;
+    private volatile boolean enabled;
+    private volatile boolean running;
+
+    /**
+     * 待写入的记录，字段在写入线程中生成
+     */
+    private record Entry(byte type, String gameId, String actor, long timestamp, Supplier<List<byte[]>> fields) {
+    }
+
+    public ReplayJournal(WerewolfProperties properties) {
+        this.config = properties.getJournal();
+        this.queue = new ArrayBlockingQueue<>(Math.max(1, config.getQueueCapacity()));
+    }
+
+    @PostConstruct
+    public void init() {
+        if (!config.isEnabled()) {
+            return;
+        }
+        try {
+            dir = Path.of(config.getDir());
+            Files.createDirectories(dir);
+            try (Stream<Path> files = Files.list(dir)) {
+                files.filter(file -> file.getFileName().toString().endsWith(SEGMENT_SUFFIX))
+                        .forEach(file -> segments.put(segmentBase(file), file));
+            }
+            long lastIndexed = loadIndex();
+            indexChannel = FileChannel.open(dir.resolve(INDEX_FILE), StandardOpenOption.CREATE,
+                    StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+            if (segments.isEmpty()) {
+                openSegment(0);
+            } else {
+                recover(segments.lastKey(), lastIndexed);
+                enforceRetention();
+            }
+        } catch (IOException e) {
+            log.error("打开回放日志失败，目录：{}，回放日志不可用，异常信息：{}", config.getDir(), e.getMessage());
+            return;
+        }
+        running = true;
+        enabled = true;
+        writer = new Thread(this::writeLoop, "replay-journal-writer");
+        writer.setDaemon(true);
+        writer.start();
+        log.info("回放日志已启用，目录：{}，段文件 {} 个，游戏 {} 局", dir.toAbsolutePath(), segments.size(), index.size());
+    }
+
+    @PreDestroy
+    public void close() {
+        if (!enabled) {
+            return;
+        }
+        // 不中断写入线程：中断正在进行 FileChannel 读写的线程会关闭索引文件，之后的记录都无法写入；
+        // 写入线程最多在一次轮询超时（1 秒）后看到 running 为 false 并退出
+        running = false;
+        try {
+            writer.join(TimeUnit.SECONDS.toMillis(5));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        enabled = false;
+        if (writer.isAlive()) {
+            // 写入线程仍在写段文件，当前线程不能再写，否则两个线程会同时写同一段；剩余记录丢弃
+            log.warn("回放日志写入线程未在 5 秒内退出，丢弃队列中剩余的 {} 条记录", queue.size());
+            return;
+        }
+        Entry entry;
+        while ((entry = queue.poll()) != null) {
+            write(entry);
+        }
+        segment.force();
+        try {
+            indexChannel.close();
+        } catch (IOException e) {
+            log.warn("关闭回放日志索引失败：{}", e.getMessage());
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * 记录一次模型调用：提示词与原始响应，调用失败时记录异常信息
+     *
+     * @param gameId   游戏ID
+     * @param roleId   玩家ID
+     * @param model    模型
+     * @param prompt   提示词
+     * @param response 原始响应，失败时为 null
+     * @param error    异常，成功时为 null
+     */
+    public void recordExchange(String gameId, String roleId, String model, String prompt, String response,
+                               Throwable error) {
+        String failure = error == null ? null : String.valueOf(error.getMessage());
+        offer(EXCHANGE, gameId, roleId, () -> List.of(utf8(model), utf8(prompt), utf8(response), utf8(failure)));
+    }
+
+    /**
+     * 记录一个阶段解析后的决策（阶段结果）
+     *
+     * @param gameId  游戏ID
+     * @param phase   阶段
+     * @param results 阶段结果，写入前不应再被修改
+     */
+    public void recordDecision(String gameId, String phase, Map<String, Object> results) {
+        offer(DECISION, gameId, null, () -> {
+            try {
+                return List.of(utf8(phase), OBJECT_MAPPER.writeValueAsBytes(results));
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+        });
+    }
+
+    /**
+     * 记录阶段结束后的游戏状态
+     *
+     * @param gameId 游戏ID
+     * @param phase  阶段
+     * @param state  游戏状态，调用方之后仍会修改时需传入副本
+     */
+    public void recordState(String gameId, String phase, GameState state) {
+        offer(STATE, gameId, null, () -> List.of(utf8(phase), GameStateCodec.encode(state)));
+    }
+
+    private void offer(byte type, String gameId, String actor, Supplier<List<byte[]>> fields) {
+        if (!enabled || gameId == null) {
+            return;
+        }
+        if (!queue.offer(new Entry(type, gameId, actor, System.currentTimeMillis(), fields))) {
+            dropped.incrementAndGet();
+        }
+    }
+
+    /**
+     * 按写入顺序回放一局游戏的全部记录
+     *
+     * @param gameId 游戏ID
+     * @param sink   接收每条记录
+     * @return 回放的记录数
+     * @throws IOException 读取段文件失败
+     */
+    public int replay(String gameId, Consumer<Map<String, Object>> sink) throws IOException {
+        List<Long> offsets = index.get(gameId);
+        if (offsets == null) {
+            return 0;
+        }
+        List<Long> snapshot;
+        synchronized (offsets) {
+            snapshot = new ArrayList<>(offsets);
+        }
+        Map<Long, FileChannel> channels = new HashMap<>();
+        int count = 0;
+        try {
+            for (long offset : snapshot) {
+                Map.Entry<Long, Path> located = segments.floorEntry(offset);
+                if (located == null) {
+                    continue;
+                }
+                FileChannel channel = channels.get(located.getKey());
+                if (channel == null) {
+                    channel = FileChannel.open(located.getValue(), StandardOpenOption.READ);
+                    channels.put(located.getKey(), channel);
+                }
+                ByteBuffer record = readRecord(channel, offset - located.getKey());
+                if (record != null) {
+                    sink.accept(toMap(offset, record));
+                    count++;
+                }
+            }
+        } finally {
+            for (FileChannel channel : channels.values()) {
+                channel.close();
+            }
+        }
+        return count;
+    }
+
+    public boolean contains(String gameId) {
+        return index.containsKey(gameId);
+    }
+
+    /**
+     * 回放日志统计
+     */
+    public Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("enabled", enabled);
+        stats.put("dir", config.getDir());
+        stats.put("segments", segments.size());
+        stats.put("games", index.size());
+        stats.put("queued", queue.size());
+        stats.put("written", written.get());
+        stats.put("writtenBytes", writtenBytes.get());
+        stats.put("dropped", dropped.get());
+        return stats;
+    }
+
+    private void writeLoop() {
+        while (running) {
+            try {
+                Entry entry = queue.poll(1, TimeUnit.SECONDS);
+                if (entry != null) {
+                    write(entry);
+                }
+            } catch (InterruptedException e) {
+                // 停止写入只通过 running，忽略意外的中断，继续写入
+                log.warn("回放日志写入线程被中断，已忽略");
+            }
+        }
+    }
+
+    private void write(Entry entry) {
+        try {
+            List<byte[]> fields = entry.fields().get();
+            byte[] gameId = entry.gameId().getBytes(StandardCharsets.UTF_8);
+            byte[] actor = utf8(entry.actor());
+            int length = 1 + 8 + 2 + gameId.length + 2 + actor.length + 1;
+            for (byte[] field : fields) {
+                length += 4 + field.length;
+            }
+            // 段末尾保留 4 字节的 0 作为结束标记
+            if (4L + length + 4 > config.getSegmentBytes()) {
+                dropped.incrementAndGet();
+                log.warn("回放记录过大（{} 字节），超过段文件大小，已丢弃，游戏ID：{}", length, entry.gameId());
+                return;
+            }
+            if (segment.remaining() < 4 + length + 4) {
+                openSegment(segmentBase + segment.position());
+                enforceRetention();
+            }
+            int start = segment.position();
+            segment.position(start + 4);
+            segment.put(entry.type()).putLong(entry.timestamp())
+                    .putShort((short) gameId.length).put(gameId)
+                    .putShort((short) actor.length).put(actor)
+                    .put((byte) fields.size());
+            for (byte[] field : fields) {
+                segment.putInt(field.length).put(field);
+            }
+            segment.putInt(start, length);
+            long offset = segmentBase + start;
+            appendIndex(entry.gameId(), offset);
+            written.incrementAndGet();
+            writtenBytes.addAndGet(4 + length);
+        } catch (Exception e) {
+            dropped.incrementAndGet();
+            log.warn("写入回放记录失败，游戏ID：{}，异常信息：{}", entry.gameId(), e.getMessage());
+        }
+    }
+
+    private void openSegment(long base) throws IOException {
+        if (segment != null) {
+            segment.force();
+        }
+        Path file = dir.resolve(String.format("%020d%s", base, SEGMENT_SUFFIX));
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                StandardOpenOption.WRITE)) {
+            segment = channel.map(FileChannel.MapMode.READ_WRITE, 0, Math.max(channel.size(), config.getSegmentBytes()));
+        }
+        segmentBase = base;
+        segments.put(base, file);
+    }
+
+    /**
+     * 段文件数超过上限时删除最旧的段，索引中只保留仍在段文件中的记录并重写索引文件；只在写入线程或初始化时调用
+     */
+    private void enforceRetention() throws IOException {
+        int maxSegments = Math.max(1, config.getMaxSegments());
+        if (segments.size() <= maxSegments) {
+            return;
+        }
+        while (segments.size() > maxSegments) {
+            Map.Entry<Long, Path> oldest = segments.pollFirstEntry();
+            Files.deleteIfExists(oldest.getValue());
+            log.info("回放日志段文件数超过上限 {}，删除最旧的段：{}", maxSegments, oldest.getValue().getFileName());
+        }
+        long floor = segments.firstKey();
+        Iterator<Map.Entry<String, List<Long>>> games = index.entrySet().iterator();
+        while (games.hasNext()) {
+            List<Long> offsets = games.next().getValue();
+            synchronized (offsets) {
+                offsets.removeIf(offset -> offset < floor);
+                if (offsets.isEmpty()) {
+                    games.remove();
+                }
+            }
+        }
+        rewriteIndex();
+    }
+
+    /**
+     * 按内存中的索引重写索引文件：先写临时文件再原子替换，然后重新打开追加通道
+     */
+    private void rewriteIndex() throws IOException {
+        Path file = dir.resolve(INDEX_FILE);
+        Path temp = dir.resolve(INDEX_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            for (Map.Entry<String, List<Long>> game : index.entrySet()) {
+                List<Long> snapshot;
+                synchronized (game.getValue()) {
+                    snapshot = new ArrayList<>(game.getValue());
+                }
+                for (long offset : snapshot) {
+                    ByteBuffer buffer = indexRecord(game.getKey(), offset);
+                    while (buffer.hasRemaining()) {
+                        channel.write(buffer);
+                    }
+                }
+            }
+            channel.force(true);
+        }
+        indexChannel.close();
+        Files.move(temp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        indexChannel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+    }
+
+    /**
+     * 重新打开最后一个段文件，扫描到第一个长度为 0 的位置继续写入；索引中缺失的记录（写入后、索引追加前退出）补回索引
+     */
+    private void recover(long base, long lastIndexed) throws IOException {
+        openSegment(base);
+        int position = 0;
+        while (position + 4 <= segment.capacity()) {
+            int length = segment.getInt(position);
+            if (length <= 0 || position + 4L + length > segment.capacity()) {
+                break;
+            }
+            long offset = base + position;
+            if (offset > lastIndexed) {
+                ByteBuffer record = segment.slice(position + 4, length);
+                record.position(1 + 8);
+                appendIndex(readString(record), offset);
+            }
+            position += 4 + length;
+        }
+        segment.position(position);
+    }
+
+    private long loadIndex() throws IOException {
+        Path file = dir.resolve(INDEX_FILE);
+        if (!Files.exists(file)) {
+            return -1;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        long lastIndexed = -1;
+        while (buffer.remaining() >= 2) {
+            int length = buffer.getShort(buffer.position()) & 0xFFFF;
+            if (buffer.remaining() < 2 + length + 8) {
+                break;
+            }
+            String gameId = readString(buffer);
+            long offset = buffer.getLong();
+            index.computeIfAbsent(gameId, key -> new ArrayList<>()).add(offset);
+            lastIndexed = Math.max(lastIndexed, offset);
+        }
+        return lastIndexed;
+    }
+
+    private void appendIndex(String gameId, long offset) throws IOException {
+        ByteBuffer buffer = indexRecord(gameId, offset);
+        while (buffer.hasRemaining()) {
+            indexChannel.write(buffer);
+        }
+        List<Long> offsets = index.computeIfAbsent(gameId, key -> new ArrayList<>());
+        synchronized (offsets) {
+            offsets.add(offset);
+        }
+    }
+
+    private static ByteBuffer indexRecord(String gameId, long offset) {
+        byte[] id = gameId.getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buffer = ByteBuffer.allocate(2 + id.length + 8);
+        return buffer.putShort((short) id.length).put(id).putLong(offset).flip();
+    }
+
+    private static ByteBuffer readRecord(FileChannel channel, long position) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(4);
+        if (channel.read(header, position) < 4) {
+            return null;
+        }
+        int length = header.getInt(0);
+        if (length <= 0) {
+            return null;
+        }
+        ByteBuffer record = ByteBuffer.allocate(length);
+        long at = position + 4;
+        while (record.hasRemaining()) {
+            int read = channel.read(record, at + record.position());
+            if (read < 0) {
+                return null;
+            }
+        }
+        return record.flip();
+    }
+
+    private static Map<String, Object> toMap(long offset, ByteBuffer record) throws IOException {
+        byte type = record.get();
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("offset", offset);
+        map.put("timestamp", record.getLong());
+        map.put("gameId", readString(record));
+        String actor = readString(record);
+        List<byte[]> fields = new ArrayList<>();
+        int count = record.get() & 0xFF;
+        for (int i = 0; i < count; i++) {
+            byte[] field = new byte[record.getInt()];
+            record.get(field);
+            fields.add(field);
+        }
+        switch (type) {
+            case EXCHANGE -> {
+                map.put("type", "EXCHANGE");
+                map.put("roleId", actor);
+                map.put("model", text(fields.get(0)));
+                map.put("prompt", text(fields.get(1)));
+                map.put("response", text(fields.get(2)));
+                map.put("error", text(fields.get(3)));
+            }
+            case DECISION -> {
+                map.put("type", "DECISION");
+                map.put("phase", text(fields.get(0)));
+                map.put("results", OBJECT_MAPPER.readTree(fields.get(1)));
+            }
+            case STATE -> {
+                map.put("type", "STATE");
+                map.put("phase", text(fields.get(0)));
+                map.put("state", GameStateCodec.decode(fields.get(1)));
+            }
+            default -> map.put("type", "UNKNOWN(" + type + ")");
+        }
+        return map;
+    }
+
+    private static long segmentBase(Path file) {
+        String name = file.getFileName().toString();
+        return Long.parseLong(name.substring(0, name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static String readString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort() & 0xFFFF];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static byte[] utf8(String value) {
+        return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static String text(byte[] bytes) {
+        return bytes.length == 0 ? null : new String(bytes, StandardCharsets.UTF_8);
+    }
+}
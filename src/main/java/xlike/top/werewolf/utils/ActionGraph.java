@@ -0,0 +1,71 @@
+package xlike.top.werewolf.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Executor;
+import java.util.function.Supplier;
+
+/**
+ * 角色行动依赖图：无依赖的行动并发执行，有依赖的行动在其依赖全部完成后立即开始
+ * <p>
+ * 节点必须在其依赖之后加入，因此图天然无环
+ *
+ * @author xlike
+ */
+public class ActionGraph {
+
+    private final Map<String, Node> nodes = new LinkedHashMap<>();
+
+    private record Node(Supplier<?> action, List<String> dependsOn) {
+    }
+
+    /**
+     * 添加行动节点
+     *
+     * @param name      节点名称，同时作为结果中的键
+     * @param action    行动逻辑
+     * @param dependsOn 依赖的节点名称，必须已加入
+     * @return 当前依赖图
+     */
+    public ActionGraph add(String name, Supplier<?> action, String... dependsOn) {
+        if (nodes.containsKey(name)) {
+            throw new IllegalArgumentException("Duplicate action: " + name);
+        }
+        for (String dependency : dependsOn) {
+            if (!nodes.containsKey(dependency)) {
+                throw new IllegalArgumentException("Action " + name + " depends on unknown action: " + dependency);
+            }
+        }
+        nodes.put(name, new Node(action, List.of(dependsOn)));
+        return this;
+    }
+
+    /**
+     * 执行依赖图并等待全部节点完成
+     *
+     * @param executor 执行行动的线程池
+     * @return 节点名称到行动结果的映射，顺序与加入顺序一致
+     */
+    public Map<String, Object> run(Executor executor) {
+        Map<String, CompletableFuture<Object>> futures = new LinkedHashMap<>();
+        for (Map.Entry<String, Node> entry : nodes.entrySet()) {
+            Node node = entry.getValue();
+            List<CompletableFuture<Object>> dependencies = new ArrayList<>();
+            for (String dependency : node.dependsOn()) {
+                dependencies.add(futures.get(dependency));
+            }
+            CompletableFuture<Object> future = CompletableFuture
+                    .allOf(dependencies.toArray(new CompletableFuture[0]))
+                    .thenApplyAsync(ignored -> node.action().get(), executor);
+            futures.put(entry.getKey(), future);
+        }
+        Map<String, Object> results = new LinkedHashMap<>();
+        for (Map.Entry<String, CompletableFuture<Object>> entry : futures.entrySet()) {
+            results.put(entry.getKey(), entry.getValue().join());
+        }
+        return results;
+    }
+}
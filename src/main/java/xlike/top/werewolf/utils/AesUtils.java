@@ -1,22 +1,79 @@
 package xlike.top.werewolf.utils;
 
 import javax.crypto.Cipher;
+import javax.crypto.Mac;
+import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.Arrays;
 import java.util.Base64;
 
 /**
+ * url 与 key 的加解密，密文作为 sa-token 的登录ID
+ * <p>
+ * 支持两种格式：旧的 AES（ECB）密文，以及带认证的 AES-GCM 密文（以 {@link #GCM_PREFIX} 开头，
+ * IV 与密文、认证标签拼接后 Base64 编码，篡改后无法解密）。解密时按前缀自动区分。
+ * <p>
+ * 登录ID同时是游戏状态、角色与租约的键，同一 url + key 必须得到同一密文，因此 GCM 的 IV 不随机生成，
+ * 而是取明文的 HMAC-SHA256 前 12 字节（SIV 方式）：相同明文得到相同 IV 与密文，不同明文的 IV 不会重复。
+ * 密钥只创建一次，解密使用的 Cipher 与派生 IV 的 Mac 按线程复用，每次调用只需重新 init
+ *
  * @author xlike
  */
 public class AesUtils {
     // 密钥（必须是 16、24 或 32 字节长度，这里使用 16 字节）
     private static final String SECRET_KEY = "xLikeSecKey12345";
     private static final String ALGORITHM = "AES";
+    private static final String GCM_TRANSFORMATION = "AES/GCM/NoPadding";
+    /**
+     * AES-GCM 密文前缀，Base64 字母表中没有 ':'，不会与旧格式混淆
+     */
+    public static final String GCM_PREFIX = "g:";
+    private static final int GCM_IV_BYTES = 12;
+    private static final int GCM_TAG_BITS = 128;
     // 用于拼接和拆分 url 和 key 的分隔符
     private static final String DELIMITER = "|";
 
+    private static final String IV_MAC_ALGORITHM = "HmacSHA256";
+
+    private static final SecretKeySpec KEY = new SecretKeySpec(SECRET_KEY.getBytes(StandardCharsets.UTF_8), ALGORITHM);
+    /**
+     * 派生 IV 的 MAC 密钥，与加密密钥分开
+     */
+    private static final SecretKeySpec IV_KEY = new SecretKeySpec(ivKey(), IV_MAC_ALGORITHM);
+    private static final ThreadLocal<Cipher> ECB_CIPHER = ThreadLocal.withInitial(() -> newCipher(ALGORITHM));
+    private static final ThreadLocal<Cipher> GCM_CIPHER = ThreadLocal.withInitial(() -> newCipher(GCM_TRANSFORMATION));
+    private static final ThreadLocal<Mac> IV_MAC = ThreadLocal.withInitial(() -> {
+        try {
+            Mac mac = Mac.getInstance(IV_MAC_ALGORITHM);
+            mac.init(IV_KEY);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Mac unavailable: " + IV_MAC_ALGORITHM, e);
+        }
+    });
+
+    private static byte[] ivKey() {
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(("iv|" + SECRET_KEY).getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+
+    private static Cipher newCipher(String transformation) {
+        try {
+            return Cipher.getInstance(transformation);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cipher unavailable: " + transformation, e);
+        }
+    }
+
     /**
-     * 加密方法：将 url 和 key 一起加密
+     * 加密方法：将 url 和 key 一起加密（AES，无认证）
      * @param url 需要加密的 URL
      * @param key 需要加密的 Key
      * @return 加密后的 Base64 字符串，发生异常时返回 null
@@ -25,11 +82,8 @@ public class AesUtils {
         try {
             // 将 url 和 key 拼接成一个字符串
             String combinedData = url + DELIMITER + key;
-            // 创建密钥
-            SecretKeySpec secretKey = new SecretKeySpec(SECRET_KEY.getBytes(StandardCharsets.UTF_8), ALGORITHM);
-            // 初始化加密器
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.ENCRYPT_MODE, secretKey);
+            Cipher cipher = ECB_CIPHER.get();
+            cipher.init(Cipher.ENCRYPT_MODE, KEY);
             // 加密数据
             byte[] encryptedData = cipher.doFinal(combinedData.getBytes(StandardCharsets.UTF_8));
             // 将加密后的字节数组转为 Base64 字符串
@@ -40,21 +94,45 @@ public class AesUtils {
     }
 
     /**
-     * 解密方法：将加密后的字符串解密回 url 和 key
-     * @param encryptedData 加密后的 Base64 字符串
-     * @return 包含 url 和 key 的字符串数组，索引 0 为 url，索引 1 为 key，发生异常时返回 null
+     * 加密方法：将 url 和 key 一起以 AES-GCM 加密，IV 由明文派生，同一 url 和 key 总是得到同一密文
+     * @param url 需要加密的 URL
+     * @param key 需要加密的 Key
+     * @return {@link #GCM_PREFIX} + Base64(IV + 密文 + 认证标签)，发生异常时返回 null
+     */
+    public static String encryptTogetherAuthenticated(String url, String key) {
+        try {
+            byte[] plain = (url + DELIMITER + key).getBytes(StandardCharsets.UTF_8);
+            byte[] iv = Arrays.copyOf(IV_MAC.get().doFinal(plain), GCM_IV_BYTES);
+            // JDK 拒绝同一 Cipher 以相同密钥与 IV 再次加密，加密只在登录时发生，每次使用新的实例
+            Cipher cipher = newCipher(GCM_TRANSFORMATION);
+            cipher.init(Cipher.ENCRYPT_MODE, KEY, new GCMParameterSpec(GCM_TAG_BITS, iv));
+            ByteBuffer out = ByteBuffer.allocate(GCM_IV_BYTES + cipher.getOutputSize(plain.length));
+            out.put(iv);
+            cipher.doFinal(ByteBuffer.wrap(plain), out);
+            return GCM_PREFIX + Base64.getEncoder().encodeToString(out.array());
+        } catch (Exception e) {
+            return null;
+        }
+    }
+
+    /**
+     * 解密方法：将加密后的字符串解密回 url 和 key，按前缀区分 AES-GCM 与旧格式
+     * @param encryptedData 加密后的字符串
+     * @return 包含 url 和 key 的字符串数组，索引 0 为 url，索引 1 为 key，发生异常或认证失败时返回 null
      */
     public static String[] decryptTogether(String encryptedData) {
         try {
-            // 创建密钥
-            SecretKeySpec secretKey = new SecretKeySpec(SECRET_KEY.getBytes(StandardCharsets.UTF_8), ALGORITHM);
-            // 初始化解密器
-            Cipher cipher = Cipher.getInstance(ALGORITHM);
-            cipher.init(Cipher.DECRYPT_MODE, secretKey);
-            // 将 Base64 字符串解码为字节数组
-            byte[] decodedData = Base64.getDecoder().decode(encryptedData);
-            // 解密数据
-            byte[] decryptedData = cipher.doFinal(decodedData);
+            byte[] decryptedData;
+            if (encryptedData.startsWith(GCM_PREFIX)) {
+                byte[] decodedData = Base64.getDecoder().decode(encryptedData.substring(GCM_PREFIX.length()));
+                Cipher cipher = GCM_CIPHER.get();
+                cipher.init(Cipher.DECRYPT_MODE, KEY, new GCMParameterSpec(GCM_TAG_BITS, decodedData, 0, GCM_IV_BYTES));
+                decryptedData = cipher.doFinal(decodedData, GCM_IV_BYTES, decodedData.length - GCM_IV_BYTES);
+            } else {
+                Cipher cipher = ECB_CIPHER.get();
+                cipher.init(Cipher.DECRYPT_MODE, KEY);
+                decryptedData = cipher.doFinal(Base64.getDecoder().decode(encryptedData));
+            }
             // 将解密后的字节数组转为字符串
             String combinedData = new String(decryptedData, StandardCharsets.UTF_8);
             // 按分隔符拆分为 url 和 key
@@ -71,19 +149,16 @@ public class AesUtils {
         // 测试数据
         String url = "https://api.openai.com/v1/models";
         String key = "sk-123456";
-        // 加密
-        String encryptedData = encryptTogether(url, key);
-        if (encryptedData != null) {
+        for (String encryptedData : new String[]{encryptTogether(url, key), encryptTogetherAuthenticated(url, key)}) {
+            if (encryptedData == null) {
+                System.out.println("Encryption failed.");
+                continue;
+            }
             System.out.println("Encrypted Data: " + encryptedData);
-        } else {
-            System.out.println("Encryption failed.");
-        }
-        // 解密
-        if (encryptedData != null) {
             String[] decryptedData = decryptTogether(encryptedData);
             if (decryptedData != null && decryptedData.length == 2) {
                 System.out.println("Decrypted URL: " + decryptedData[0]);
-                System.out.println("Decrypted Key: " + decryptedData[1]);
+                System.out.println("Decrypted Key matches: " + key.equals(decryptedData[1]));
             } else {
                 System.out.println("Decryption failed: Invalid data format or error occurred.");
             }
@@ -0,0 +1,323 @@
+package xlike.top.werewolf.utils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okio.BufferedSink;
+import okio.GzipSink;
+import okio.Okio;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 对话请求 / 响应的流式 JSON 编解码
+ * <p>
+ * 请求体在发送时直接写入 OkHttp 的输出流，不生成中间字符串；长历史记录可选 gzip 压缩。
+ * 响应只提取需要的字段（choices[0].message.content 或 choices[0].delta.content 以及 usage），其余字段不构建对象，
+ * 但解析器仍会逐个读完整个响应体（usage 通常位于 choices 之后），流式响应的每个数据块也都会完整解析
+ *
+ * @author xlike
+ */
+public final class ChatCodec {
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final MediaType JSON_MEDIA_TYPE = MediaType.get("application/json; charset=utf-8");
+
+    /**
+     * 消息内容总长度超过该值时压缩请求体，0 表示不压缩
+     */
+    private static volatile int gzipThresholdChars = 0;
+
+    /**
+     * 流式请求是否要求服务商在最后一个数据块中返回 usage（stream_options.include_usage）
+     */
+    private static volatile boolean includeStreamUsage = true;
+
+    /**
+     * Token 用量
+     *
+     * @param promptTokens     输入 token 数
+     * @param completionTokens 输出 token 数
+     * @param cachedTokens     命中服务商前缀缓存的输入 token 数
+     */
+    public record Usage(int promptTokens, int completionTokens, int cachedTokens) {
+    }
+
+    /**
+     * 解析结果
+     *
+     * @param content 回复内容（流式时为本块的增量内容），没有时为 null
+     * @param usage   token 用量，响应中没有时为 null
+     */
+    public record Completion(String content, Usage usage) {
+    }
+
+    private ChatCodec() {
+    }
+
+    public static void configure(int thresholdChars, boolean streamUsage) {
+        gzipThresholdChars = thresholdChars;
+        includeStreamUsage = streamUsage;
+    }
+
+    /**
+     * 流式请求是否会在最后一个数据块中带回 usage
+     */
+    public static boolean isStreamUsageIncluded() {
+        return includeStreamUsage;
+    }
+
+    /**
+     * 根据消息内容总长度判断是否压缩请求体
+     */
+    public static boolean shouldGzip(List<Map<String, String>> messages) {
+        int threshold = gzipThresholdChars;
+        if (threshold <= 0) {
+            return false;
+        }
+        long total = 0;
+        for (Map<String, String> message : messages) {
+            String content = message.get("content");
+            total += content == null ? 0 : content.length();
+        }
+        return total > threshold;
+    }
+
+    /**
+     * 构建对话请求体，每次发送（包括重试与对冲）时直接序列化到连接的输出流
+     *
+     * @param model     模型名称
+     * @param messages  消息列表
+     * @param stream    是否请求流式响应
+     * @param maxTokens 最大输出 token 数，0 表示不限制
+     * @param gzip      是否 gzip 压缩，调用方需同时设置 Content-Encoding: gzip
+     */
+    public static RequestBody requestBody(String model, List<Map<String, String>> messages, boolean stream,
+                                          int maxTokens, boolean gzip) {
+        return new RequestBody() {
+            @Override
+            public MediaType contentType() {
+                return JSON_MEDIA_TYPE;
+            }
+
+            @Override
+            public void writeTo(BufferedSink sink) throws IOException {
+                if (!gzip) {
+                    writeRequest(sink.outputStream(), model, messages, stream, maxTokens);
+                    return;
+                }
+                try (BufferedSink gzipSink = Okio.buffer(new GzipSink(sink))) {
+                    writeRequest(gzipSink.outputStream(), model, messages, stream, maxTokens);
+                }
+            }
+        };
+    }
+
+    private static void writeRequest(OutputStream out, String model, List<Map<String, String>> messages,
+                                     boolean stream, int maxTokens) throws IOException {
+        // 不关闭底层流，由 OkHttp 管理
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(out)
+                .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET)) {
+            generator.writeStartObject();
+            generator.writeStringField("model", model);
+            generator.writeArrayFieldStart("messages");
+            for (Map<String, String> message : messages) {
+                writeMessage(generator, message);
+            }
+            generator.writeEndArray();
+            generator.writeBooleanField("stream", stream);
+            if (stream && includeStreamUsage) {
+                generator.writeObjectFieldStart("stream_options");
+                generator.writeBooleanField("include_usage", true);
+                generator.writeEndObject();
+            }
+            if (maxTokens > 0) {
+                generator.writeNumberField("max_tokens", maxTokens);
+            }
+            generator.writeEndObject();
+        }
+    }
+
+    private static void writeMessage(JsonGenerator generator, Map<String, String> message) throws IOException {
+        generator.writeStartObject();
+        for (Map.Entry<String, String> field : message.entrySet()) {
+            generator.writeStringField(field.getKey(), field.getValue());
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * 从完整响应中提取 choices[0].message.content 与 usage，读到对象结束为止，不会在取得 content 后提前返回
+     */
+    public static Completion readCompletion(InputStream in) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(in)) {
+            return readCompletion(parser, "message");
+        }
+    }
+
+    /**
+     * 从流式响应的一个 data 块中提取 choices[0].delta.content 与 usage（通常只在最后一个块中出现）
+     */
+    public static Completion readChunk(String data) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(data)) {
+            return readCompletion(parser, "delta");
+        }
+    }
+
+    /**
+     * 判断响应中是否包含至少一个 choice，用于模型测活
+     */
+    public static boolean hasChoices(InputStream in) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(in)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return false;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken token = parser.nextToken();
+                if ("choices".equals(field) && token == JsonToken.START_ARRAY) {
+                    return parser.nextToken() == JsonToken.START_OBJECT;
+                }
+                parser.skipChildren();
+            }
+            return false;
+        }
+    }
+
+    private static Completion readCompletion(JsonParser parser, String container) throws IOException {
+        String content = null;
+        Usage usage = null;
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            return new Completion(null, null);
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            if ("choices".equals(field) && token == JsonToken.START_ARRAY) {
+                content = readChoices(parser, container);
+            } else if ("usage".equals(field) && token == JsonToken.START_OBJECT) {
+                usage = readUsage(parser);
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return new Completion(content, usage);
+    }
+
+    /**
+     * 读取 choices 数组，只保留第一个 choice 中 {container}.content 的值
+     */
+    private static String readChoices(JsonParser parser, String container) throws IOException {
+        String content = null;
+        boolean first = true;
+        while (parser.nextToken() == JsonToken.START_OBJECT) {
+            if (!first) {
+                parser.skipChildren();
+                continue;
+            }
+            first = false;
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken token = parser.nextToken();
+                if (container.equals(field) && token == JsonToken.START_OBJECT) {
+                    content = readStringField(parser, "content");
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return content;
+    }
+
+    /**
+     * 读取 usage，兼容 prompt_tokens_details.cached_tokens 与 prompt_cache_hit_tokens 两种缓存命中字段
+     */
+    private static Usage readUsage(JsonParser parser) throws IOException {
+        int promptTokens = 0;
+        int completionTokens = 0;
+        int cachedTokens = 0;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            if (token == JsonToken.VALUE_NUMBER_INT && "prompt_tokens".equals(field)) {
+                promptTokens = parser.getIntValue();
+            } else if (token == JsonToken.VALUE_NUMBER_INT && "completion_tokens".equals(field)) {
+                completionTokens = parser.getIntValue();
+            } else if (token == JsonToken.VALUE_NUMBER_INT && "prompt_cache_hit_tokens".equals(field)) {
+                cachedTokens = parser.getIntValue();
+            } else if (token == JsonToken.START_OBJECT && "prompt_tokens_details".equals(field)) {
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String detail = parser.currentName();
+                    JsonToken detailToken = parser.nextToken();
+                    if ("cached_tokens".equals(detail) && detailToken == JsonToken.VALUE_NUMBER_INT) {
+                        cachedTokens = parser.getIntValue();
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return new Usage(promptTokens, completionTokens, cachedTokens);
+    }
+
+    /**
+     * 读取对象中的字符串字段，并消费到对象结束
+     */
+    private static String readStringField(JsonParser parser, String name) throws IOException {
+        String value = null;
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            if (name.equals(field) && token == JsonToken.VALUE_STRING) {
+                value = parser.getText();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return value;
+    }
+
+    /**
+     * 序列化单条历史消息
+     */
+    public static String encodeMessage(Map<String, String> message) throws IOException {
+        StringWriter writer = new StringWriter();
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(writer)) {
+            writeMessage(generator, message);
+        }
+        return writer.toString();
+    }
+
+    /**
+     * 反序列化单条历史消息
+     */
+    public static Map<String, String> decodeMessage(String json) throws IOException {
+        Map<String, String> message = new HashMap<>();
+        try (JsonParser parser = JSON_FACTORY.createParser(json)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                return message;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String field = parser.currentName();
+                JsonToken token = parser.nextToken();
+                if (token == JsonToken.VALUE_STRING) {
+                    message.put(field, parser.getText());
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        return message;
+    }
+}
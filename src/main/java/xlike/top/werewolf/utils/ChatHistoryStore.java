@@ -0,0 +1,265 @@
+package xlike.top.werewolf.utils;
+
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * 对话历史存储，按 游戏 + 玩家 划分命名空间
+ * <p>
+ * 历史记录为固定长度的滑动窗口：追加用户与 AI 两条消息、LTRIM 截断、刷新过期时间并登记到游戏索引，
+ * 在一次 Lua 调用中完成；读取时只取最新的 N 条。较长的消息可选 gzip 压缩后存储。
+ * 游戏索引集合记录该游戏下的所有历史键，新游戏开始时可一次性 UNLINK。
+ * 启用近端缓存后，最近读取过的历史窗口保存在进程内，写入时同步更新并通知其他节点失效
+ *
+ * @author xlike
+ */
+public final class ChatHistoryStore {
+
+    private static final String KEY_PREFIX = "ai:chat:history:";
+    private static final String INDEX_PREFIX = "ai:chat:history:index:";
+    private static final String COMPRESSED_PREFIX = "gz:";
+
+    /**
+     * KEYS[1] 历史键，KEYS[2] 游戏索引键（可选）；
+     * ARGV[1] 用户消息，ARGV[2] AI 消息，ARGV[3] 窗口大小，ARGV[4] 过期时间（秒），ARGV[5] 历史键（登记到索引）
+     */
+    private static final RedisScript<Long> APPEND_SCRIPT = new DefaultRedisScript<>("""
+            redis.call('RPUSH', KEYS[1], ARGV[1], ARGV[2])
+            redis.call('LTRIM', KEYS[1], -tonumber(ARGV[3]), -1)
+            redis.call('EXPIRE', KEYS[1], tonumber(ARGV[4]))
+            if #KEYS > 1 then
+                redis.call('SADD', KEYS[2], ARGV[5])
+                redis.call('EXPIRE', KEYS[2], tonumber(ARGV[4]))
+            end
+            return redis.call('LLEN', KEYS[1])
+            """, Long.class);
+
+    // 聊天历史默认缓存7天
+    private static volatile int ttlSeconds = 7 * 24 * 60 * 60;
+    private static volatile int compressThresholdChars = 0;
+    private static volatile NearCache<String, CachedWindow> nearCache;
+    private static volatile Consumer<String> invalidationPublisher = key -> {
+    };
+
+    /**
+     * 近端缓存中的历史窗口
+     *
+     * @param messages 最新的若干条消息
+     * @param window   读取时的窗口大小，消息数小于窗口说明已包含全部历史
+     */
+    private record CachedWindow(List<Map<String, String>> messages, int window) {
+
+        boolean covers(int maxMessages) {
+            return window >= maxMessages || messages.size() < window;
+        }
+    }
+
+    private ChatHistoryStore() {
+    }
+
+    /**
+     * 配置过期时间与压缩阈值
+     *
+     * @param ttl       历史记录过期时间（秒）
+     * @param threshold 消息序列化后超过该长度时压缩，0 表示不压缩
+     */
+    public static void configure(int ttl, int threshold) {
+        ttlSeconds = ttl;
+        compressThresholdChars = threshold;
+    }
+
+    /**
+     * 启用近端缓存
+     *
+     * @param maxEntries 最大缓存的历史窗口数
+     * @param ttlMillis  缓存有效期（毫秒）
+     * @param publisher  本节点写入后通知其他节点失效，参数为历史键或以 ":*" 结尾的前缀
+     */
+    public static void enableNearCache(int maxEntries, long ttlMillis, Consumer<String> publisher) {
+        nearCache = new NearCache<>("chatHistory", maxEntries, ttlMillis);
+        invalidationPublisher = publisher;
+    }
+
+    /**
+     * 使本地缓存的历史失效，参数为历史键或以 ":*" 结尾的前缀
+     */
+    public static void invalidateLocal(String keyOrPrefix) {
+        NearCache<String, CachedWindow> cache = nearCache;
+        if (cache == null) {
+            return;
+        }
+        if (keyOrPrefix.endsWith(":*")) {
+            String prefix = keyOrPrefix.substring(0, keyOrPrefix.length() - 1);
+            cache.invalidateIf(key -> key.startsWith(prefix));
+        } else {
+            cache.invalidate(keyOrPrefix);
+        }
+    }
+
+    /**
+     * 近端缓存统计，未启用时为 null
+     */
+    public static Map<String, Object> nearCacheSnapshot() {
+        NearCache<String, CachedWindow> cache = nearCache;
+        return cache == null ? null : cache.snapshot();
+    }
+
+    /**
+     * 历史记录键：ai:chat:history:{游戏}:{玩家}，未指定游戏时为 ai:chat:history:{玩家}
+     */
+    public static String historyKey(String namespace, String userId) {
+        return namespace == null || namespace.isEmpty()
+                ? KEY_PREFIX + userId
+                : KEY_PREFIX + namespace + ":" + userId;
+    }
+
+    /**
+     * 读取最新的若干条历史消息，按时间顺序返回
+     */
+    public static List<Map<String, String>> load(String namespace, String userId, int maxMessages) {
+        List<Map<String, String>> messages = new ArrayList<>();
+        if (maxMessages <= 0) {
+            return messages;
+        }
+        String key = historyKey(namespace, userId);
+        NearCache<String, CachedWindow> cache = nearCache;
+        long stamp = 0;
+        if (cache != null) {
+            CachedWindow cached = cache.get(key);
+            if (cached != null && cached.covers(maxMessages)) {
+                messages.addAll(tail(cached.messages(), maxMessages));
+                return messages;
+            }
+            stamp = cache.stamp(key);
+        }
+        List<Object> history = RedisUtil.lget(key, -maxMessages, -1);
+        if (history != null) {
+            for (Object entry : history) {
+                messages.add(decode(entry.toString()));
+            }
+        }
+        if (cache != null) {
+            cache.putIfUnchanged(key, new CachedWindow(List.copyOf(messages), maxMessages), stamp);
+        }
+        return messages;
+    }
+
+    /**
+     * 追加一轮对话并截断到窗口大小，一次往返完成
+     *
+     * @return 追加后的历史条数
+     */
+    public static long append(String namespace, String userId, Map<String, String> userMessage,
+                              Map<String, String> assistantMessage, int maxMessages) {
+        String key = historyKey(namespace, userId);
+        int window = Math.max(2, maxMessages);
+        Long size;
+        if (namespace == null || namespace.isEmpty()) {
+            size = RedisUtil.execute(APPEND_SCRIPT, List.of(key),
+                    encode(userMessage), encode(assistantMessage), window, ttlSeconds, key);
+        } else {
+            size = RedisUtil.execute(APPEND_SCRIPT, List.of(key, INDEX_PREFIX + namespace),
+                    encode(userMessage), encode(assistantMessage), window, ttlSeconds, key);
+        }
+        NearCache<String, CachedWindow> cache = nearCache;
+        if (cache != null) {
+            CachedWindow cached = cache.peek(key);
+            if (cached != null) {
+                List<Map<String, String>> updated = new ArrayList<>(cached.messages());
+                updated.add(userMessage);
+                updated.add(assistantMessage);
+                int cachedWindow = Math.min(cached.window(), window);
+                cache.put(key, new CachedWindow(List.copyOf(tail(updated, cachedWindow)), cachedWindow));
+            }
+            invalidationPublisher.accept(key);
+        }
+        return size == null ? 0 : size;
+    }
+
+    private static <T> List<T> tail(List<T> list, int count) {
+        return list.size() <= count ? list : list.subList(list.size() - count, list.size());
+    }
+
+    /**
+     * 删除单个玩家的历史记录
+     */
+    public static void clear(String namespace, String userId) {
+        String key = historyKey(namespace, userId);
+        RedisUtil.del(key);
+        if (nearCache != null) {
+            invalidateLocal(key);
+            invalidationPublisher.accept(key);
+        }
+    }
+
+    /**
+     * 删除整个游戏的历史记录，通过索引集合定位所有历史键并 UNLINK
+     *
+     * @return 删除的键数量（含索引本身）
+     */
+    public static long clearGame(String namespace) {
+        if (namespace == null || namespace.isEmpty()) {
+            return 0;
+        }
+        String indexKey = INDEX_PREFIX + namespace;
+        Set<Object> members = RedisUtil.sget(indexKey);
+        List<String> keys = new ArrayList<>();
+        if (members != null) {
+            for (Object member : members) {
+                keys.add(member.toString());
+            }
+        }
+        keys.add(indexKey);
+        if (nearCache != null) {
+            String pattern = KEY_PREFIX + namespace + ":*";
+            invalidateLocal(pattern);
+            invalidationPublisher.accept(pattern);
+        }
+        return RedisUtil.unlink(keys);
+    }
+
+    private static String encode(Map<String, String> message) {
+        try {
+            String json = ChatCodec.encodeMessage(message);
+            int threshold = compressThresholdChars;
+            if (threshold <= 0 || json.length() <= threshold) {
+                return json;
+            }
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(json.length() / 2);
+            try (GZIPOutputStream gzip = new GZIPOutputStream(bytes)) {
+                gzip.write(json.getBytes(StandardCharsets.UTF_8));
+            }
+            return COMPRESSED_PREFIX + Base64.getEncoder().encodeToString(bytes.toByteArray());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Map<String, String> decode(String stored) {
+        try {
+            if (!stored.startsWith(COMPRESSED_PREFIX)) {
+                return ChatCodec.decodeMessage(stored);
+            }
+            byte[] compressed = Base64.getDecoder().decode(stored.substring(COMPRESSED_PREFIX.length()));
+            try (GZIPInputStream gzip = new GZIPInputStream(new ByteArrayInputStream(compressed))) {
+                return ChatCodec.decodeMessage(new String(gzip.readAllBytes(), StandardCharsets.UTF_8));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+}
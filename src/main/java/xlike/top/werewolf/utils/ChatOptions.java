@@ -0,0 +1,102 @@
+package xlike.top.werewolf.utils;
+
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * AI 对话请求的可选参数
+ *
+ * @author xlike
+ */
+@Data
+@Accessors(chain = true)
+public class ChatOptions {
+
+    /**
+     * 是否使用流式（text/event-stream）响应
+     */
+    private boolean stream;
+
+    /**
+     * 流式响应中判断决策字段是否已完整到达，为 null 表示需要完整响应
+     */
+    private Predicate<String> decisionReady;
+
+    /**
+     * 满足提前结束条件后是否立即结束流，不再等待剩余内容
+     */
+    private boolean earlyStop;
+
+    /**
+     * 提前结束流的条件，为 null 时使用 {@link #decisionReady}；需要保留理由等决策之后的字段时应包含这些字段
+     */
+    private Predicate<String> stopReady;
+
+    /**
+     * 请求截止时间，为 null 表示只受客户端超时限制；到期后请求被取消并以 {@link Deadline.ExceededException} 失败
+     */
+    private Deadline deadline;
+
+    /**
+     * 历史记录命名空间（如游戏ID），历史键为 ai:chat:history:{命名空间}:{用户ID}，为 null 时按用户ID存储
+     */
+    private String historyNamespace;
+
+    /**
+     * 固定前缀消息（系统规则、角色说明），放在历史记录之前；同一玩家的前缀保持不变，以便命中服务商的前缀缓存
+     */
+    private List<Map<String, String>> prefixMessages;
+
+    /**
+     * 最大输出 token 数，0 表示不限制
+     */
+    private int maxTokens;
+
+    public static ChatOptions defaults() {
+        return new ChatOptions();
+    }
+
+    /**
+     * 判断内容中是否已包含指定字段的完整行（以换行结尾的 "字段: 值"）
+     *
+     * @param fields 字段名，如 "目标ID"
+     * @return 判断条件
+     */
+    public static Predicate<String> fieldsPresent(String... fields) {
+        return content -> {
+            for (String field : fields) {
+                if (completedFieldValue(content, field) == null) {
+                    return false;
+                }
+            }
+            return true;
+        };
+    }
+
+    /**
+     * 获取已完整到达的字段值，字段所在行未结束时返回 null
+     *
+     * @param content 当前已接收的内容
+     * @param field   字段名
+     * @return 字段值
+     */
+    public static String completedFieldValue(String content, String field) {
+        int from = 0;
+        while (from < content.length()) {
+            int lineEnd = content.indexOf('\n', from);
+            if (lineEnd < 0) {
+                return null;
+            }
+            String line = content.substring(from, lineEnd).trim();
+            if (line.startsWith(field + ":")) {
+                return line.substring(field.length() + 1).trim();
+            }
+            from = lineEnd + 1;
+        }
+        return null;
+    }
+}
@@ -1,15 +1,22 @@
 package xlike.top.werewolf.utils;
 
-import com.alibaba.fastjson2.JSON;
-import com.alibaba.fastjson2.JSONArray;
-import com.alibaba.fastjson2.JSONObject;
 import okhttp3.RequestBody;
 import okhttp3.Response;
+import okio.BufferedSource;
+import xlike.top.werewolf.bean.vo.ModelVo;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import java.io.IOException;
 import java.net.Proxy;
 import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
 
 /**
  * AI 请求工具类，支持模型列表查询、模型有效性检查和带历史记录的对话
@@ -19,11 +26,18 @@ import java.util.*;
 public class ChatUtils {
 
     private static final Logger logger = LoggerFactory.getLogger(ChatUtils.class);
-    private static final String CHAT_HISTORY_PREFIX = "ai:chat:history:";
-    // 聊天历史缓存7天
-    private static final long CHAT_HISTORY_EXPIRE_SECONDS = 7 * 24 * 60 * 60;
     private static final String MODELS_ENDPOINT = "/v1/models";
     private static final String CHAT_ENDPOINT = "/v1/chat/completions";
+    private static final String SSE_DATA_PREFIX = "data:";
+    private static final String SSE_DONE = "[DONE]";
+    /**
+     * 历史记录读写等阻塞操作使用虚拟线程执行，避免占用 OkHttp 回调线程
+     */
+    private static final Executor REDIS_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
+    /**
+     * 提前结束的流式响应在虚拟线程中读完剩余内容，只为获取最后一个数据块中的 usage
+     */
+    private static final Executor DRAIN_EXECUTOR = Executors.newVirtualThreadPerTaskExecutor();
 
     /**
      * 智能补全API URL，确保正确的后缀
@@ -32,7 +46,7 @@ public class ChatUtils {
      * @param endpointType 端点类型（models 或 chat）
      * @return 补全后的URL
      */
-    private static String completeApiUrl(String baseUrl, String endpointType) {
+    public static String completeApiUrl(String baseUrl, String endpointType) {
         if (baseUrl == null || baseUrl.trim().isEmpty()) {
             throw new IllegalArgumentException("API URL cannot be empty");
         }
@@ -68,7 +82,7 @@ public class ChatUtils {
 
 
     /**
-     * 获取AI模型列表，不使用缓存
+     * 获取AI模型列表，结果来自模型目录缓存
      *
      * @param apiUrl API地址
      * @param apiKey API密钥
@@ -77,36 +91,21 @@ public class ChatUtils {
      * @throws IOException 请求异常
      */
     public static List<String> getModelList(String apiUrl, String apiKey, Proxy proxy) throws IOException {
-        // 智能补全URL
-        String completeUrl = completeApiUrl(apiUrl, "models");
-        logger.info("请求模型列表，URL: {}", completeUrl);
-
-        // 构建请求头
-        Map<String, String> headers = new HashMap<>();
-        headers.put("Authorization", "Bearer " + apiKey);
-        headers.put("Content-Type", "application/json");
-
-        // 发送请求
-        Response response = OkHttpUtils.get(completeUrl, headers, proxy);
-        String responseBody = OkHttpUtils.getResponseBodyAsString(response);
+        return OkHttpUtils.await(getModelListAsync(apiUrl, apiKey, proxy));
+    }
 
-        try {
-            // 解析响应
-            JSONObject jsonObject = JSON.parseObject(responseBody);
-            JSONArray modelsArray = jsonObject.getJSONArray("data");
-            List<String> modelList = new ArrayList<>();
-            for (int i = 0; i < modelsArray.size(); i++) {
-                JSONObject model = modelsArray.getJSONObject(i);
-                String modelId = model.getString("id");
-                if (modelId != null) {
-                    modelList.add(modelId);
-                }
-            }
-            logger.info("获取模型列表成功，数量: {}", modelList.size());
-            return modelList;
-        } finally {
-            OkHttpUtils.closeResponse(response);
-        }
+    /**
+     * 异步获取AI模型列表
+     *
+     * @param apiUrl API地址
+     * @param apiKey API密钥
+     * @param proxy  代理服务器，可选
+     * @return 模型列表的异步结果
+     */
+    public static CompletableFuture<List<String>> getModelListAsync(String apiUrl, String apiKey, Proxy proxy) {
+        // 与模型目录接口共用缓存
+        return ModelCatalog.getModels(apiUrl, apiKey, proxy)
+                .thenApply(models -> models.stream().map(ModelVo::getId).toList());
     }
 
     public static boolean isModelValid(String apiUrl, String apiKey, String model){
@@ -124,49 +123,57 @@ public class ChatUtils {
     * @return 是否有效
     */
     public static boolean isModelValid(String apiUrl, String apiKey, String model, Proxy proxy) {
+        return isModelValidAsync(apiUrl, apiKey, model, proxy).join();
+    }
+
+    /**
+     * 异步检查模型是否有效，任何异常都视为无效，返回的 Future 不会异常完成
+     *
+     * @param apiUrl API地址
+     * @param apiKey API密钥
+     * @param model  模型名称
+     * @param proxy  代理服务器，可选
+     * @return 是否有效的异步结果
+     */
+    public static CompletableFuture<Boolean> isModelValidAsync(String apiUrl, String apiKey, String model, Proxy proxy) {
+        CompletableFuture<Response> responseFuture;
         try {
             // 智能补全URL
             String completeUrl = completeApiUrl(apiUrl, "chat");
 
             // 构建简单的测试消息
             List<Map<String, String>> messages = new ArrayList<>();
-            Map<String, String> userMessage = new HashMap<>();
-            userMessage.put("role", "user");
-            userMessage.put("content", "Hello");
-            messages.add(userMessage);
-
-            // 发送请求
-            JSONObject requestBody = new JSONObject();
-            requestBody.put("model", model);
-            requestBody.put("messages", messages);
-            requestBody.put("stream", false);
-
-            // 构建请求头
-            Map<String, String> headers = new HashMap<>();
-            headers.put("Authorization", "Bearer " + apiKey);
-            headers.put("Content-Type", "application/json");
+            messages.add(buildMessage("user", "Hello"));
 
             // 发送请求
             logger.info("测试模型有效性，模型: {}, URL: {}", model, completeUrl);
-            RequestBody body = OkHttpUtils.createJsonRequestBody(requestBody.toJSONString());
-            Response response = OkHttpUtils.post(completeUrl, headers, body, proxy);
-            String responseBody = OkHttpUtils.getResponseBodyAsString(response);
-
-            // 检查响应状态码和内容
-            if (response.code() == 200 && responseBody != null) {
-                JSONObject jsonResponse = JSON.parseObject(responseBody);
-                JSONArray choices = jsonResponse.getJSONArray("choices");
-                if (choices != null && !choices.isEmpty()) {
-                    logger.info("模型 {} 测试通过", model);
-                    return true;
-                }
-            }
-            logger.warn("模型 {} 测试失败，状态码: {}", model, response.code());
-            return false;
+            RequestBody body = ChatCodec.requestBody(model, messages, false, 0, false);
+            responseFuture = OkHttpUtils.postAsync(completeUrl, buildHeaders(apiKey), body, proxy);
         } catch (Exception e) {
             logger.error("测试模型 {} 时发生错误: {}", model, e.getMessage());
-            return false;
+            return CompletableFuture.completedFuture(false);
         }
+        return responseFuture
+                .thenApply(response -> {
+                    try {
+                        // 检查响应状态码和内容
+                        if (response.code() == 200 && response.body() != null
+                                && ChatCodec.hasChoices(response.body().byteStream())) {
+                            logger.info("模型 {} 测试通过", model);
+                            return true;
+                        }
+                        logger.warn("模型 {} 测试失败，状态码: {}", model, response.code());
+                        return false;
+                    } catch (Exception e) {
+                        throw new CompletionException(e);
+                    } finally {
+                        OkHttpUtils.closeResponse(response);
+                    }
+                })
+                .exceptionally(throwable -> {
+                    logger.error("测试模型 {} 时发生错误: {}", model, OkHttpUtils.unwrap(throwable).getMessage());
+                    return false;
+                });
     }
 
     public static String sendChatRequest(String apiUrl, String apiKey, String model, String userId, String message)
@@ -190,84 +197,297 @@ public class ChatUtils {
      */
     public static String sendChatRequest(String apiUrl, String apiKey, String model, String userId, String message,
                                          boolean useHistory, int maxHistoryMessages, Proxy proxy) throws IOException {
-        // 智能补全URL
-        String completeUrl = completeApiUrl(apiUrl, "chat");
+        return OkHttpUtils.await(sendChatRequestAsync(apiUrl, apiKey, model, userId, message, useHistory,
+                maxHistoryMessages, proxy));
+    }
 
-        // 构建消息列表
-        List<Map<String, String>> messages = new ArrayList<>();
+    public static CompletableFuture<String> sendChatRequestAsync(String apiUrl, String apiKey, String model,
+                                                                 String userId, String message) {
+        return sendChatRequestAsync(apiUrl, apiKey, model, userId, message, true, 10, null);
+    }
 
-        // 获取历史记录
-        if (useHistory && userId != null) {
-            String historyKey = CHAT_HISTORY_PREFIX + userId;
-            List<Object> history = RedisUtil.lget(historyKey, 0, maxHistoryMessages - 1);
-            if (history != null && !history.isEmpty()) {
-                for (Object historyMsg : history) {
-                    Map<String, String> msgMap = JSON.parseObject(historyMsg.toString(), Map.class);
-                    messages.add(msgMap);
-                }
-                logger.info("用户 {} 加载历史记录，数量: {}", userId, history.size());
-            }
-        }
+    /**
+     * 异步发送AI对话请求，历史记录的读取与保存作为独立的异步阶段执行，HTTP 请求基于 enqueue，不占用调用线程
+     *
+     * @param apiUrl             API地址
+     * @param apiKey             API密钥
+     * @param model              模型名称
+     * @param userId             用户ID，用于存储历史记录
+     * @param message            当前用户消息
+     * @param useHistory         是否使用历史记录
+     * @param maxHistoryMessages 最大历史记录消息数
+     * @param proxy              代理服务器，可选
+     * @return AI响应消息的异步结果，失败时以 IOException 异常完成
+     */
+    public static CompletableFuture<String> sendChatRequestAsync(String apiUrl, String apiKey, String model,
+                                                                 String userId, String message, boolean useHistory,
+                                                                 int maxHistoryMessages, Proxy proxy) {
+        return sendChatRequestAsync(apiUrl, apiKey, model, userId, message, useHistory, maxHistoryMessages, proxy,
+                ChatOptions.defaults());
+    }
 
-        // 添加当前用户消息
-        Map<String, String> userMessage = new HashMap<>();
-        userMessage.put("role", "user");
-        userMessage.put("content", message);
-        messages.add(userMessage);
+    public static CompletableFuture<String> sendChatRequestAsync(String apiUrl, String apiKey, String model,
+                                                                 String userId, String message, ChatOptions options) {
+        return sendChatRequestAsync(apiUrl, apiKey, model, userId, message, true, 10, null, options);
+    }
 
-        // 构建请求体
-        JSONObject requestBody = new JSONObject();
-        requestBody.put("model", model);
-        requestBody.put("messages", messages);
-        requestBody.put("stream", false);
+    /**
+     * 异步发送AI对话请求，支持流式响应与决策字段的提前提取
+     *
+     * @param apiUrl             API地址
+     * @param apiKey             API密钥
+     * @param model              模型名称
+     * @param userId             用户ID，与请求选项中的历史命名空间共同确定历史记录
+     * @param message            当前用户消息
+     * @param useHistory         是否使用历史记录
+     * @param maxHistoryMessages 历史记录窗口大小，只保留并发送最新的若干条
+     * @param proxy              代理服务器，可选
+     * @param options            请求选项
+     * @return AI响应消息的异步结果；提前结束时为已接收的部分内容。取消该结果会取消正在进行的 HTTP 请求（OkHttp Call）
+     */
+    public static CompletableFuture<String> sendChatRequestAsync(String apiUrl, String apiKey, String model,
+                                                                 String userId, String message, boolean useHistory,
+                                                                 int maxHistoryMessages, Proxy proxy,
+                                                                 ChatOptions options) {
+        String completeUrl;
+        try {
+            // 智能补全URL
+            completeUrl = completeApiUrl(apiUrl, "chat");
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(new IOException(e.getMessage(), e));
+        }
+        boolean withHistory = useHistory && userId != null;
+        Map<String, String> userMessage = buildMessage("user", message);
 
-        // 构建请求头
-        Map<String, String> headers = new HashMap<>();
-        headers.put("Authorization", "Bearer " + apiKey);
-        headers.put("Content-Type", "application/json");
+        // 获取历史记录
+        CompletableFuture<List<Map<String, String>>> historyFuture = withHistory
+                ? CompletableFuture.supplyAsync(() -> ChatHistoryStore.load(options.getHistoryNamespace(), userId,
+                        maxHistoryMessages), REDIS_EXECUTOR)
+                : CompletableFuture.completedFuture(new ArrayList<>());
+
+        CompletableFuture<String> result = new CompletableFuture<>();
+        // 当前正在进行的阶段，取消结果时一并取消，HTTP 请求阶段的取消经熔断器、对冲策略传递到 OkHttp Call
+        AtomicReference<CompletableFuture<?>> inFlight = new AtomicReference<>(historyFuture);
+        result.whenComplete((value, throwable) -> {
+            if (result.isCancelled()) {
+                inFlight.get().cancel(true);
+            }
+        });
+        historyFuture
+                .thenCompose(history -> {
+                    // 构建消息列表：固定前缀 + 历史记录 + 本轮内容，变化的部分始终在最后
+                    List<Map<String, String>> messages = new ArrayList<>();
+                    if (options.getPrefixMessages() != null) {
+                        messages.addAll(options.getPrefixMessages());
+                    }
+                    messages.addAll(history);
+                    messages.add(userMessage);
+
+                    // 发送请求，经过 服务商地址 + 模型 的熔断器，临时错误按退避策略重试；慢请求按对冲策略补发
+                    logger.debug("发送对话请求，模型: {}, 用户: {}", model, userId);
+                    boolean gzip = ChatCodec.shouldGzip(messages);
+                    RequestBody body = ChatCodec.requestBody(model, messages, options.isStream(),
+                            options.getMaxTokens(), gzip);
+                    Map<String, String> headers = buildHeaders(apiKey, gzip);
+                    HedgingPolicy.Settings hedge = HedgingPolicy.settings();
+                    String hedgeUrl = hedge.hasBackup() ? completeApiUrl(hedge.backupUrl(), "chat") : completeUrl;
+                    Map<String, String> hedgeHeaders = hedge.hasBackup() ? buildHeaders(hedge.backupKey(), gzip) : headers;
+                    CompletableFuture<String> request = CircuitBreaker.forModel(completeUrl, model).execute(() ->
+                            HedgingPolicy.forModel(completeUrl, model).execute(
+                                    () -> postChat(completeUrl, headers, body, proxy, model, options),
+                                    () -> postChat(hedgeUrl, hedgeHeaders, body, proxy, model, options)),
+                            options.getDeadline());
+                    inFlight.set(request);
+                    if (result.isCancelled()) {
+                        request.cancel(true);
+                    }
+                    return request;
+                })
+                .thenCompose(aiResponse -> {
+                    if (!withHistory) {
+                        return CompletableFuture.completedFuture(aiResponse);
+                    }
+                    // 保存到历史记录
+                    return CompletableFuture
+                            .runAsync(() -> ChatHistoryStore.append(options.getHistoryNamespace(), userId, userMessage,
+                                    buildMessage("assistant", aiResponse), maxHistoryMessages), REDIS_EXECUTOR)
+                            .thenApply(ignored -> aiResponse);
+                })
+                .whenComplete((aiResponse, throwable) -> {
+                    if (throwable != null) {
+                        result.completeExceptionally(throwable);
+                    } else {
+                        result.complete(aiResponse);
+                    }
+                });
+        return result;
+    }
 
-        // 发送请求
-        logger.info("发送对话请求，模型: {}, 用户: {}, 消息: {}", model, userId, message);
-        RequestBody body = OkHttpUtils.createJsonRequestBody(requestBody.toJSONString());
-        Response response = OkHttpUtils.post(completeUrl, headers, body, proxy);
-        String responseBody = OkHttpUtils.getResponseBodyAsString(response);
+    private static CompletableFuture<String> postChat(String url, Map<String, String> headers, RequestBody body,
+                                                      Proxy proxy, String model, ChatOptions options) {
+        long start = System.nanoTime();
+        // 流式响应中已接收的内容，截止时间到达时若决策字段已到达则直接使用
+        AtomicReference<String> received = new AtomicReference<>();
+        Predicate<String> decisionReady = options.getDecisionReady();
+        Supplier<String> partial = options.isStream() && decisionReady != null ? () -> {
+            String content = received.get();
+            return content != null && decisionReady.test(content) ? content : null;
+        } : null;
+        Consumer<ChatCodec.Usage> recordUsage = usage ->
+                PromptCacheStats.record(model, usage, (System.nanoTime() - start) / 1_000_000);
+        return OkHttpUtils.postAsync(url, headers, body, proxy, options.getDeadline(), response -> {
+            RequestTracer.Span span = RequestTracer.of(response);
+            if (span != null) {
+                span.model(model);
+            }
+            ChatCodec.Completion completion = options.isStream()
+                    ? parseStreamResponse(response, model, options, received, recordUsage)
+                    : parseChatResponse(response);
+            recordUsage.accept(completion.usage());
+            if (span != null) {
+                span.responseBody(completion.content());
+            }
+            return completion.content();
+        }, partial);
+    }
 
+    /**
+     * 解析对话响应，提取 choices[0].message.content 与 usage
+     */
+    private static ChatCodec.Completion parseChatResponse(Response response) {
         try {
-            // 解析响应
-            if (response.code() == 200 && responseBody != null) {
-                JSONObject jsonResponse = JSON.parseObject(responseBody);
-                JSONArray choices = jsonResponse.getJSONArray("choices");
-                if (choices != null && !choices.isEmpty()) {
-                    JSONObject choice = choices.getJSONObject(0);
-                    JSONObject messageObj = choice.getJSONObject("message");
-                    String aiResponse = messageObj.getString("content");
+            // 直接从响应流中提取回复内容
+            if (response.code() == 200 && response.body() != null) {
+                ChatCodec.Completion completion = ChatCodec.readCompletion(response.body().byteStream());
+                if (completion.content() != null) {
+                    return completion;
+                }
+                logger.error("对话请求失败，响应中没有回复内容");
+            } else {
+                logger.error("对话请求失败，状态码: {}, 响应: {}", response.code(), OkHttpUtils.getResponseBodyAsString(response));
+            }
+            throw new CompletionException(new HttpStatusException(response.code(),
+                    "AI chat request failed, status code: " + response.code()));
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        } finally {
+            OkHttpUtils.closeResponse(response);
+        }
+    }
 
-                    // 保存到历史记录
-                    if (useHistory && userId != null) {
-                        String historyKey = CHAT_HISTORY_PREFIX + userId;
-                        // 保存用户消息
-                        RedisUtil.rpush(historyKey, JSON.toJSONString(userMessage));
-                        // 保存AI响应
-                        Map<String, String> aiMessage = new HashMap<>();
-                        aiMessage.put("role", "assistant");
-                        aiMessage.put("content", aiResponse);
-                        RedisUtil.rpush(historyKey, JSON.toJSONString(aiMessage));
-                        // 设置过期时间
-                        RedisUtil.expire(historyKey, CHAT_HISTORY_EXPIRE_SECONDS);
-                        logger.info("用户 {} 聊天记录已保存", userId);
+    /**
+     * 逐块解析流式响应（text/event-stream），累积 choices[0].delta.content。
+     * 决策字段到达后可提前结束；读取超时或连接中断时，若决策字段已到达则使用已接收的部分内容。
+     * usage 只在最后一个数据块中返回：提前结束时返回的结果没有 usage，开启 include_usage 时剩余的流交给后台读完后记录
+     *
+     * @param received    每收到一段内容后更新为已接收的全部内容，供截止时间到达时使用
+     * @param recordUsage 后台读完剩余的流后记录 usage
+     */
+    private static ChatCodec.Completion parseStreamResponse(Response response, String model, ChatOptions options,
+                                                            AtomicReference<String> received,
+                                                            Consumer<ChatCodec.Usage> recordUsage) {
+        StringBuilder content = new StringBuilder();
+        ChatCodec.Usage usage = null;
+        Predicate<String> decisionReady = options.getDecisionReady();
+        Predicate<String> stopReady = options.getStopReady() != null ? options.getStopReady() : decisionReady;
+        try {
+            if (response.code() != 200 || response.body() == null) {
+                String responseBody = OkHttpUtils.getResponseBodyAsString(response);
+                logger.error("流式对话请求失败，状态码: {}, 响应: {}", response.code(), responseBody);
+                throw new HttpStatusException(response.code(), "AI chat request failed, status code: " + response.code());
+            }
+            BufferedSource source = response.body().source();
+            String line;
+            while ((line = source.readUtf8Line()) != null) {
+                if (!line.startsWith(SSE_DATA_PREFIX)) {
+                    continue;
+                }
+                String data = line.substring(SSE_DATA_PREFIX.length()).trim();
+                if (SSE_DONE.equals(data)) {
+                    break;
+                }
+                ChatCodec.Completion chunk = ChatCodec.readChunk(data);
+                if (chunk.usage() != null) {
+                    usage = chunk.usage();
+                }
+                String piece = chunk.content();
+                if (piece == null || piece.isEmpty()) {
+                    continue;
+                }
+                content.append(piece);
+                if (decisionReady != null) {
+                    received.set(content.toString());
+                }
+                if (options.isEarlyStop() && stopReady != null && stopReady.test(content.toString())) {
+                    logger.debug("模型 {} 提前结束条件已满足，结束流式响应", model);
+                    if (ChatCodec.isStreamUsageIncluded()) {
+                        drainUsage(response, source, model, recordUsage);
+                        response = null;
                     }
-
-                    logger.info("对话成功，模型: {}, 响应: {}", model, aiResponse);
-                    return aiResponse;
+                    break;
                 }
             }
-            logger.error("对话请求失败，状态码: {}, 响应: {}", response.code(), responseBody);
-            throw new IOException("AI chat request failed, status code: " + response.code());
+            return new ChatCodec.Completion(content.toString(), usage);
+        } catch (IOException e) {
+            if (decisionReady != null && decisionReady.test(content.toString())) {
+                logger.warn("模型 {} 流式响应中断（{}），决策字段已到达，使用部分响应", model, e.getMessage());
+                return new ChatCodec.Completion(content.toString(), usage);
+            }
+            throw new CompletionException(e);
         } finally {
+            // 提前结束时关闭响应会取消剩余的流
             OkHttpUtils.closeResponse(response);
         }
     }
 
+    /**
+     * 在后台读完提前结束的流式响应，只解析带 usage 的数据块，读完后记录 usage 并关闭响应
+     */
+    private static void drainUsage(Response response, BufferedSource source, String model,
+                                   Consumer<ChatCodec.Usage> recordUsage) {
+        DRAIN_EXECUTOR.execute(() -> {
+            ChatCodec.Usage usage = null;
+            try {
+                String line;
+                while ((line = source.readUtf8Line()) != null) {
+                    if (!line.startsWith(SSE_DATA_PREFIX) || !line.contains("\"usage\"")) {
+                        continue;
+                    }
+                    ChatCodec.Completion chunk = ChatCodec.readChunk(line.substring(SSE_DATA_PREFIX.length()).trim());
+                    if (chunk.usage() != null) {
+                        usage = chunk.usage();
+                    }
+                }
+            } catch (IOException e) {
+                logger.debug("读取模型 {} 剩余的流式响应失败（{}），本次不记录 usage", model, e.getMessage());
+            } finally {
+                OkHttpUtils.closeResponse(response);
+            }
+            recordUsage.accept(usage);
+        });
+    }
+
+    private static Map<String, String> buildMessage(String role, String content) {
+        Map<String, String> message = new HashMap<>();
+        message.put("role", role);
+        message.put("content", content);
+        return message;
+    }
+
+    private static Map<String, String> buildHeaders(String apiKey) {
+        return buildHeaders(apiKey, false);
+    }
+
+    private static Map<String, String> buildHeaders(String apiKey, boolean gzip) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Authorization", "Bearer " + apiKey);
+        headers.put("Content-Type", "application/json");
+        if (gzip) {
+            headers.put("Content-Encoding", "gzip");
+        }
+        return headers;
+    }
+
     /**
      * 清除用户聊天历史记录
      *
@@ -279,8 +499,7 @@ public class ChatUtils {
             logger.warn("用户ID为空，无法清除历史记录");
             return false;
         }
-        String historyKey = CHAT_HISTORY_PREFIX + userId;
-        RedisUtil.del(historyKey);
+        ChatHistoryStore.clear(null, userId);
         logger.info("用户 {} 聊天历史记录已清除", userId);
         return true;
     }
@@ -297,15 +516,7 @@ public class ChatUtils {
             logger.warn("用户ID为空，无法获取历史记录");
             return new ArrayList<>();
         }
-        String historyKey = CHAT_HISTORY_PREFIX + userId;
-        List<Object> history = RedisUtil.lget(historyKey, 0, limit - 1);
-        List<Map<String, String>> result = new ArrayList<>();
-        if (history != null && !history.isEmpty()) {
-            for (Object historyMsg : history) {
-                Map<String, String> msgMap = JSON.parseObject(historyMsg.toString(), Map.class);
-                result.add(msgMap);
-            }
-        }
+        List<Map<String, String>> result = ChatHistoryStore.load(null, userId, limit);
         logger.info("获取用户 {} 聊天历史记录，数量: {}", userId, result.size());
         return result;
     }
@@ -0,0 +1,273 @@
+package xlike.top.werewolf.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * 按 服务商地址 + 模型 划分的熔断器，附带指数退避重试与重试预算
+ * <p>
+ * 关闭：正常放行，连续失败（5xx、408、网络错误与超时）达到阈值后打开；打开：直接失败，由调用方走兜底逻辑，冷却结束后进入半开；
+ * 半开：仅放行少量探测请求，成功则关闭，失败则重新打开。
+ * 重试预算：每个请求存入固定比例的重试额度，每次重试消耗 1，避免故障时重试放大流量
+ *
+ * @author xlike
+ */
+public class CircuitBreaker {
+
+    private static final Logger logger = LoggerFactory.getLogger(CircuitBreaker.class);
+    private static final Map<String, CircuitBreaker> BREAKERS = new ConcurrentHashMap<>();
+
+    private static volatile Settings settings = new Settings(5, 30_000, 1, 3, 500, 8_000, 0.2, 10);
+
+    /**
+     * 熔断与重试配置
+     *
+     * @param failureThreshold   连续失败多少次后打开
+     * @param openDurationMs     打开状态持续时间（毫秒）
+     * @param halfOpenProbes     半开状态允许的探测请求数
+     * @param maxAttempts        单次调用的最大尝试次数（含首次）
+     * @param baseBackoffMs      退避基准时间（毫秒）
+     * @param maxBackoffMs       退避上限（毫秒）
+     * @param retryBudgetRatio   每个请求存入的重试额度
+     * @param retryBudgetMax     重试额度上限（同时为初始额度）
+     */
+    public record Settings(int failureThreshold, long openDurationMs, int halfOpenProbes, int maxAttempts,
+                           long baseBackoffMs, long maxBackoffMs, double retryBudgetRatio, double retryBudgetMax) {
+    }
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    public static void configure(Settings newSettings) {
+        settings = newSettings;
+        BREAKERS.clear();
+    }
+
+    private final String name;
+    private final Settings config;
+    private State state = State.CLOSED;
+    private int consecutiveFailures;
+    private int probesInFlight;
+    private long openedAt;
+    private double retryTokens;
+    private long totalCalls;
+    private long rejectedCalls;
+    private long retries;
+    private long failures;
+
+    private CircuitBreaker(String name, Settings config) {
+        this.name = name;
+        this.config = config;
+        this.retryTokens = config.retryBudgetMax();
+    }
+
+    /**
+     * 获取服务商地址 + 模型对应的熔断器
+     */
+    public static CircuitBreaker forModel(String endpoint, String model) {
+        return BREAKERS.computeIfAbsent(endpoint + "|" + model, k -> new CircuitBreaker(k, settings));
+    }
+
+    /**
+     * 通过熔断器执行调用，可重试的失败按指数退避加随机抖动重试，重试次数受重试预算限制
+     *
+     * @param attempt 单次调用
+     * @return 调用结果；熔断打开时以 {@link CircuitOpenException} 异常完成
+     */
+    public <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> attempt) {
+        return execute(attempt, null);
+    }
+
+    /**
+     * 通过熔断器执行调用，截止时间剩余不足一次退避等待时不再重试（包括截止时间到达时的读取超时）
+     *
+     * @param attempt  单次调用
+     * @param deadline 调用方的截止时间，可选
+     * @return 调用结果；熔断打开时以 {@link CircuitOpenException} 异常完成
+     */
+    public <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> attempt, Deadline deadline) {
+        synchronized (this) {
+            totalCalls++;
+            retryTokens = Math.min(config.retryBudgetMax(), retryTokens + config.retryBudgetRatio());
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        runAttempt(attempt, deadline, result, 1);
+        return result;
+    }
+
+    private <T> void runAttempt(Supplier<CompletableFuture<T>> attempt, Deadline deadline, CompletableFuture<T> result,
+                                int attemptNo) {
+        if (result.isDone()) {
+            return;
+        }
+        boolean probe;
+        synchronized (this) {
+            if (!tryAcquire()) {
+                rejectedCalls++;
+                result.completeExceptionally(new CircuitOpenException("Circuit open for " + name));
+                return;
+            }
+            probe = state == State.HALF_OPEN;
+        }
+        CompletableFuture<T> current = attempt.get();
+        // 调用方取消时同时取消正在进行的尝试
+        result.whenComplete((value, throwable) -> {
+            if (result.isCancelled()) {
+                current.cancel(true);
+            }
+        });
+        current.whenComplete((value, throwable) -> {
+            if (throwable == null) {
+                onSuccess(probe);
+                result.complete(value);
+                return;
+            }
+            IOException error = OkHttpUtils.unwrap(throwable);
+            if (throwable instanceof CancellationException || result.isDone()) {
+                releaseProbe(probe);
+                result.completeExceptionally(error);
+                return;
+            }
+            onFailure(probe, error);
+            long delay = backoffMillis(attemptNo);
+            if (attemptNo < config.maxAttempts() && isRetryable(error)
+                    && (deadline == null || deadline.remainingMillis() > delay) && tryAcquireRetry()) {
+                logger.warn("{} 第 {} 次调用失败（{}），{} 毫秒后重试", name, attemptNo, error.getMessage(), delay);
+                CompletableFuture.delayedExecutor(delay, TimeUnit.MILLISECONDS)
+                        .execute(() -> runAttempt(attempt, deadline, result, attemptNo + 1));
+            } else {
+                result.completeExceptionally(error);
+            }
+        });
+    }
+
+    private boolean tryAcquire() {
+        if (state == State.OPEN) {
+            if (System.currentTimeMillis() - openedAt < config.openDurationMs()) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probesInFlight = 0;
+            logger.info("熔断器 {} 进入半开状态", name);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesInFlight >= config.halfOpenProbes()) {
+                return false;
+            }
+            probesInFlight++;
+        }
+        return true;
+    }
+
+    private synchronized void onSuccess(boolean probe) {
+        consecutiveFailures = 0;
+        if (probe || state == State.HALF_OPEN) {
+            state = State.CLOSED;
+            probesInFlight = 0;
+            logger.info("熔断器 {} 已关闭", name);
+        }
+    }
+
+    private synchronized void onFailure(boolean probe, IOException error) {
+        failures++;
+        // 429 与本地排队超时由限流器处理，截止时间由调用方的阶段预算决定，均不代表模型不可用；
+        // 其余 4xx（密钥无效、参数错误等）只与单个请求或用户有关，不能让共用同一模型的其他用户被熔断
+        if (error instanceof HttpStatusException statusException
+                && (statusException.getStatusCode() == 429 || !statusException.isRetryable())
+                || error instanceof ProviderRateLimiter.QueueTimeoutException
+                || error instanceof Deadline.ExceededException) {
+            releaseProbe(probe);
+            return;
+        }
+        consecutiveFailures++;
+        if (probe || state == State.HALF_OPEN || consecutiveFailures >= config.failureThreshold()) {
+            if (state != State.OPEN) {
+                logger.warn("熔断器 {} 打开，连续失败 {} 次，最近错误: {}", name, consecutiveFailures, error.getMessage());
+            }
+            state = State.OPEN;
+            openedAt = System.currentTimeMillis();
+            probesInFlight = 0;
+        }
+    }
+
+    private synchronized void releaseProbe(boolean probe) {
+        if (probe && probesInFlight > 0) {
+            probesInFlight--;
+        }
+    }
+
+    private synchronized boolean tryAcquireRetry() {
+        if (retryTokens < 1) {
+            logger.warn("{} 重试预算已耗尽，不再重试", name);
+            return false;
+        }
+        retryTokens -= 1;
+        retries++;
+        return true;
+    }
+
+    private static boolean isRetryable(IOException error) {
+        if (error instanceof CircuitOpenException || error instanceof Deadline.ExceededException
+                || error instanceof ProviderRateLimiter.QueueTimeoutException) {
+            return false;
+        }
+        if (error instanceof HttpStatusException statusException) {
+            return statusException.isRetryable();
+        }
+        return true;
+    }
+
+    /**
+     * 指数退避加全抖动：[0, min(上限, 基准 * 2^(n-1))]
+     */
+    private long backoffMillis(int attemptNo) {
+        long ceiling = Math.min(config.maxBackoffMs(), config.baseBackoffMs() << Math.min(attemptNo - 1, 20));
+        return ThreadLocalRandom.current().nextLong(ceiling + 1);
+    }
+
+    /**
+     * 所有熔断器的状态快照
+     */
+    public static List<Map<String, Object>> snapshot() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (CircuitBreaker breaker : BREAKERS.values()) {
+            synchronized (breaker) {
+                Map<String, Object> stats = new LinkedHashMap<>();
+                stats.put("name", breaker.name);
+                stats.put("state", breaker.state);
+                stats.put("consecutiveFailures", breaker.consecutiveFailures);
+                stats.put("openRemainingMillis", breaker.state == State.OPEN
+                        ? Math.max(0, breaker.config.openDurationMs() - (System.currentTimeMillis() - breaker.openedAt)) : 0);
+                stats.put("retryTokens", breaker.retryTokens);
+                stats.put("totalCalls", breaker.totalCalls);
+                stats.put("rejectedCalls", breaker.rejectedCalls);
+                stats.put("failures", breaker.failures);
+                stats.put("retries", breaker.retries);
+                result.add(stats);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 熔断器打开时的快速失败异常
+     */
+    public static class CircuitOpenException extends IOException {
+        public CircuitOpenException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,53 @@
+package xlike.top.werewolf.utils;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 请求截止时间（墙钟预算），由游戏阶段创建并向下传递到每个 AI 请求，
+ * 每个请求只获得剩余的时间，到期后未完成的请求在 OkHttp Call 层面取消
+ *
+ * @author xlike
+ */
+public final class Deadline {
+
+    private final long deadlineNanos;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    /**
+     * 从当前时间起经过指定毫秒数后到期
+     */
+    public static Deadline afterMillis(long millis) {
+        return new Deadline(System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, millis)));
+    }
+
+    /**
+     * 从当前时间起经过指定秒数后到期
+     */
+    public static Deadline afterSeconds(long seconds) {
+        return afterMillis(TimeUnit.SECONDS.toMillis(seconds));
+    }
+
+    /**
+     * 剩余时间（毫秒），已到期时为 0
+     */
+    public long remainingMillis() {
+        return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()));
+    }
+
+    public boolean isExpired() {
+        return deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * 截止时间已到的异常，不参与重试
+     */
+    public static class ExceededException extends IOException {
+        public ExceededException(String message) {
+            super(message);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package xlike.top.werewolf.utils;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.IntFunction;
+
+/**
+ * 限制并发数的异步扇出：一组异步任务最多同时进行指定数量，一个完成后立即发起下一个
+ * <p>
+ * 返回的结果按任务下标排列，调用时即可拿到全部结果，尚未发起的任务同样可以等待或取消。
+ * 取消某个结果时，已发起的任务随之取消，未发起的任务不再发起
+ *
+ * @author xlike
+ */
+public class FanOut {
+
+    private FanOut() {
+    }
+
+    /**
+     * 按下标依次发起异步任务
+     *
+     * @param count       任务数
+     * @param parallelism 同时进行的任务数上限，不大于 0 时不限制
+     * @param task        按下标发起任务，抛出的异常作为该任务的结果
+     * @return 按下标排列的任务结果
+     */
+    public static <T> List<CompletableFuture<T>> launch(int count, int parallelism, IntFunction<CompletableFuture<T>> task) {
+        List<CompletableFuture<T>> results = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            results.add(new CompletableFuture<>());
+        }
+        Launcher<T> launcher = new Launcher<>(results, task);
+        int initial = parallelism <= 0 ? count : Math.min(parallelism, count);
+        for (int i = 0; i < initial; i++) {
+            launcher.next();
+        }
+        return results;
+    }
+
+    private static final class Launcher<T> {
+
+        private final List<CompletableFuture<T>> results;
+        private final IntFunction<CompletableFuture<T>> task;
+        private final AtomicInteger cursor = new AtomicInteger();
+
+        Launcher(List<CompletableFuture<T>> results, IntFunction<CompletableFuture<T>> task) {
+            this.results = results;
+            this.task = task;
+        }
+
+        /**
+         * 发起下一个未被取消的任务，完成后接着发起下一个；没有剩余任务时直接返回
+         */
+        void next() {
+            int index;
+            while ((index = cursor.getAndIncrement()) < results.size()) {
+                CompletableFuture<T> result = results.get(index);
+                if (result.isDone()) {
+                    continue;
+                }
+                CompletableFuture<T> running;
+                try {
+                    running = task.apply(index);
+                } catch (RuntimeException e) {
+                    result.completeExceptionally(e);
+                    continue;
+                }
+                result.whenComplete((value, e) -> {
+                    if (result.isCancelled()) {
+                        running.cancel(true);
+                    }
+                });
+                running.whenComplete((value, e) -> {
+                    if (e != null) {
+                        result.completeExceptionally(e);
+                    } else {
+                        result.complete(value);
+                    }
+                    next();
+                });
+                return;
+            }
+        }
+    }
+}
@@ -0,0 +1,305 @@
+package xlike.top.werewolf.utils;
+
+import xlike.top.werewolf.bean.pojo.GameState;
+import xlike.top.werewolf.bean.pojo.PlayerState;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * 游戏状态的紧凑二进制编码
+ * <p>
+ * 按字段顺序写入，不带字段名与类名：字符串为 变长长度 + UTF-8 字节（长度 0 表示 null），整数为变长编码，
+ * 布尔值合并为标志位。整体编码以魔数开头，可与旧的 JSON 格式（以 '{' 开头）区分。
+ * 哈希布局下游戏级字段与每个玩家分别编码为一个字段，只有变化的字段需要写回
+ *
+ * @author xlike
+ */
+public class GameStateCodec {
+
+    /**
+     * 哈希布局中游戏级字段的字段名
+     */
+    public static final String HEADER_FIELD = "h";
+
+    private static final int MAGIC = 0xC5;
+    private static final int VERSION = 3;
+    /**
+     * 第 2 版玩家没有角色字段，读取时为 null，由玩家ID推断
+     */
+    private static final int VERSION_WITHOUT_ROLE = 2;
+    /**
+     * 第 1 版没有状态版本号，读取时按 0 处理
+     */
+    private static final int VERSION_WITHOUT_STATE_VERSION = 1;
+
+    private static final int GAME_OVER = 1;
+
+    private static final int ALIVE = 1;
+    private static final int SAVED = 1 << 1;
+    private static final int POISONED = 1 << 2;
+    private static final int WITCH_SAVE_USED = 1 << 3;
+    private static final int WITCH_POISON_USED = 1 << 4;
+
+    private GameStateCodec() {
+    }
+
+    /**
+     * 判断是否为紧凑编码，否则按旧的 JSON 格式读取
+     */
+    public static boolean isCompact(byte[] bytes) {
+        return bytes != null && bytes.length > 1 && (bytes[0] & 0xFF) == MAGIC;
+    }
+
+    /**
+     * 整体编码：游戏级字段后依次跟随每个玩家
+     */
+    public static byte[] encode(GameState state) {
+        Writer writer = new Writer();
+        writeHeader(writer, state);
+        if (state.getPlayers() != null) {
+            for (PlayerState player : state.getPlayers()) {
+                writePlayer(writer, player);
+            }
+        }
+        return writer.toByteArray();
+    }
+
+    public static GameState decode(byte[] bytes) {
+        Reader reader = new Reader(bytes);
+        GameState state = new GameState();
+        int version = readHeader(reader, state);
+        int count = reader.readVarInt();
+        List<PlayerState> players = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            players.add(readPlayer(reader, version));
+        }
+        state.setPlayers(players);
+        return state;
+    }
+
+    /**
+     * 哈希布局的字段名，玩家按座位顺序编号
+     */
+    public static String playerField(int index) {
+        return "p" + index;
+    }
+
+    /**
+     * 哈希布局的全部字段
+     */
+    public static Map<String, byte[]> toHash(GameState state) {
+        return diffHash(null, state);
+    }
+
+    /**
+     * 哈希布局中相对上一次写入发生变化的字段；上一次状态为 null、玩家数量变化或含旧版玩家字段时返回全部字段
+     *
+     * @param previous 上一次写入 Redis 的状态
+     * @param current  当前状态
+     * @return 需要写回的字段
+     */
+    public static Map<String, byte[]> diffHash(GameState previous, GameState current) {
+        Map<String, byte[]> fields = new LinkedHashMap<>();
+        List<PlayerState> players = current.getPlayers() == null ? List.of() : current.getPlayers();
+        List<PlayerState> previousPlayers = previous == null || previous.getPlayers() == null
+                ? null : previous.getPlayers();
+        // 旧版编码的玩家字段没有角色，与新字段混用会读错，整体重写为当前版本
+        boolean full = previousPlayers == null || previousPlayers.size() != players.size()
+                || previousPlayers.stream().anyMatch(player -> player.getRole() == null);
+        if (full || !sameHeader(previous, current)) {
+            Writer writer = new Writer();
+            writeHeader(writer, current);
+            fields.put(HEADER_FIELD, writer.toByteArray());
+        }
+        for (int i = 0; i < players.size(); i++) {
+            if (full || !Objects.equals(previousPlayers.get(i), players.get(i))) {
+                Writer writer = new Writer();
+                writePlayer(writer, players.get(i));
+                fields.put(playerField(i), writer.toByteArray());
+            }
+        }
+        return fields;
+    }
+
+    /**
+     * 从哈希布局还原，玩家数量以游戏级字段为准，多余的旧玩家字段被忽略
+     */
+    public static GameState fromHash(Map<String, byte[]> fields) {
+        byte[] header = fields.get(HEADER_FIELD);
+        if (header == null) {
+            throw new IllegalStateException("game state hash has no header field");
+        }
+        GameState state = new GameState();
+        Reader headerReader = new Reader(header);
+        int version = readHeader(headerReader, state);
+        int count = headerReader.readVarInt();
+        List<PlayerState> players = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            byte[] player = fields.get(playerField(i));
+            if (player == null) {
+                throw new IllegalStateException("game state hash has no field " + playerField(i));
+            }
+            players.add(readPlayer(new Reader(player), version));
+        }
+        state.setPlayers(players);
+        return state;
+    }
+
+    private static boolean sameHeader(GameState a, GameState b) {
+        return Objects.equals(a.getGameId(), b.getGameId())
+                && a.getVersion() == b.getVersion()
+                && a.getDay() == b.getDay()
+                && a.isGameOver() == b.isGameOver()
+                && Objects.equals(a.getWinnerCamp(), b.getWinnerCamp());
+    }
+
+    private static void writeHeader(Writer writer, GameState state) {
+        writer.writeByte(MAGIC);
+        writer.writeByte(VERSION);
+        writer.writeString(state.getGameId());
+        writer.writeVarLong(state.getVersion());
+        writer.writeVarInt(state.getDay());
+        writer.writeByte(state.isGameOver() ? GAME_OVER : 0);
+        writer.writeString(state.getWinnerCamp());
+        writer.writeVarInt(state.getPlayers() == null ? 0 : state.getPlayers().size());
+    }
+
+    /**
+     * 读取游戏级字段，之后紧跟玩家数量
+     *
+     * @return 编码版本
+     */
+    private static int readHeader(Reader reader, GameState state) {
+        if (reader.readByte() != MAGIC) {
+            throw new IllegalArgumentException("not a compact game state");
+        }
+        int version = reader.readByte();
+        if (version != VERSION && version != VERSION_WITHOUT_ROLE && version != VERSION_WITHOUT_STATE_VERSION) {
+            throw new IllegalArgumentException("unsupported game state version " + version);
+        }
+        state.setGameId(reader.readString());
+        state.setVersion(version == VERSION ? reader.readVarLong() : 0);
+        state.setDay(reader.readVarInt());
+        state.setGameOver((reader.readByte() & GAME_OVER) != 0);
+        state.setWinnerCamp(reader.readString());
+        return version;
+    }
+
+    private static void writePlayer(Writer writer, PlayerState player) {
+        writer.writeString(player.getRoleId());
+        writer.writeString(player.getRole());
+        writer.writeString(player.getRoleAI());
+        writer.writeString(player.getNightTarget());
+        int flags = (player.isAlive() ? ALIVE : 0)
+                | (player.isSaved() ? SAVED : 0)
+                | (player.isPoisoned() ? POISONED : 0)
+                | (player.isWitchSaveUsed() ? WITCH_SAVE_USED : 0)
+                | (player.isWitchPoisonUsed() ? WITCH_POISON_USED : 0);
+        writer.writeByte(flags);
+    }
+
+    private static PlayerState readPlayer(Reader reader, int version) {
+        PlayerState player = new PlayerState();
+        player.setRoleId(reader.readString());
+        if (version == VERSION) {
+            player.setRole(reader.readString());
+        }
+        player.setRoleAI(reader.readString());
+        player.setNightTarget(reader.readString());
+        int flags = reader.readByte();
+        player.setAlive((flags & ALIVE) != 0);
+        player.setSaved((flags & SAVED) != 0);
+        player.setPoisoned((flags & POISONED) != 0);
+        player.setWitchSaveUsed((flags & WITCH_SAVE_USED) != 0);
+        player.setWitchPoisonUsed((flags & WITCH_POISON_USED) != 0);
+        return player;
+    }
+
+    private static final class Writer {
+
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream(64);
+
+        void writeByte(int value) {
+            out.write(value);
+        }
+
+        void writeVarInt(int value) {
+            writeVarLong(value & 0xFFFFFFFFL);
+        }
+
+        void writeVarLong(long value) {
+            while ((value & ~0x7FL) != 0) {
+                out.write((int) (value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            out.write((int) value);
+        }
+
+        void writeString(String value) {
+            if (value == null) {
+                writeVarInt(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length + 1);
+            out.write(bytes, 0, bytes.length);
+        }
+
+        byte[] toByteArray() {
+            return out.toByteArray();
+        }
+    }
+
+    private static final class Reader {
+
+        private final byte[] bytes;
+        private int position;
+
+        Reader(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        int readByte() {
+            if (position >= bytes.length) {
+                throw new IllegalArgumentException("truncated game state");
+            }
+            return bytes[position++] & 0xFF;
+        }
+
+        int readVarInt() {
+            return (int) readVarLong();
+        }
+
+        long readVarLong() {
+            long value = 0;
+            for (int shift = 0; shift < 64; shift += 7) {
+                int b = readByte();
+                value |= (long) (b & 0x7F) << shift;
+                if ((b & 0x80) == 0) {
+                    return value;
+                }
+            }
+            throw new IllegalArgumentException("malformed varint in game state");
+        }
+
+        String readString() {
+            int length = readVarInt();
+            if (length == 0) {
+                return null;
+            }
+            length--;
+            if (position + length > bytes.length) {
+                throw new IllegalArgumentException("truncated game state");
+            }
+            String value = new String(bytes, position, length, StandardCharsets.UTF_8);
+            position += length;
+            return value;
+        }
+    }
+}
@@ -0,0 +1,200 @@
+package xlike.top.werewolf.utils;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+/**
+ * 按 服务商地址 + 模型 划分的对冲请求策略
+ * <p>
+ * 记录最近成功请求的耗时，请求超过 p95 仍未返回时再发送一份相同请求（同一模型或备用服务商），
+ * 先成功返回的结果生效并取消另一个请求。对冲请求数受预算限制：每个请求存入固定比例的额度，每次对冲消耗 1
+ *
+ * @author xlike
+ */
+public class HedgingPolicy {
+
+    private static final Logger logger = LoggerFactory.getLogger(HedgingPolicy.class);
+    private static final Map<String, HedgingPolicy> POLICIES = new ConcurrentHashMap<>();
+    private static final int WINDOW_SIZE = 128;
+
+    private static volatile Settings settings = new Settings(false, 0.1, 5, 20, 500, 30_000, null, null);
+
+    /**
+     * 对冲配置
+     *
+     * @param enabled       是否启用
+     * @param budgetRatio   每个请求存入的对冲额度，0.1 即最多多发 10% 的请求
+     * @param budgetMax     对冲额度上限（同时为初始额度）
+     * @param minSamples    统计 p95 所需的最少样本数，样本不足时不对冲
+     * @param minDelayMs    对冲等待时间下限（毫秒）
+     * @param maxDelayMs    对冲等待时间上限（毫秒）
+     * @param backupUrl     备用服务商地址，为空时对冲请求发往同一服务商
+     * @param backupKey     备用服务商密钥
+     */
+    public record Settings(boolean enabled, double budgetRatio, double budgetMax, int minSamples,
+                           long minDelayMs, long maxDelayMs, String backupUrl, String backupKey) {
+
+        public boolean hasBackup() {
+            return backupUrl != null && !backupUrl.isBlank();
+        }
+    }
+
+    public static void configure(Settings newSettings) {
+        settings = newSettings;
+        POLICIES.clear();
+    }
+
+    public static Settings settings() {
+        return settings;
+    }
+
+    private final String name;
+    private final Settings config;
+    private final long[] latencies = new long[WINDOW_SIZE];
+    private int sampleCount;
+    private int nextSample;
+    private double hedgeTokens;
+    private long totalCalls;
+    private long hedgesSent;
+    private long hedgesWon;
+    private long primaryWon;
+    private long budgetExhausted;
+
+    private HedgingPolicy(String name, Settings config) {
+        this.name = name;
+        this.config = config;
+        this.hedgeTokens = config.budgetMax();
+    }
+
+    /**
+     * 获取服务商地址 + 模型对应的对冲策略
+     */
+    public static HedgingPolicy forModel(String endpoint, String model) {
+        return POLICIES.computeIfAbsent(endpoint + "|" + model, k -> new HedgingPolicy(k, settings));
+    }
+
+    /**
+     * 执行请求，主请求超过 p95 未返回时发送对冲请求，先成功的结果生效
+     *
+     * @param primary 主请求
+     * @param hedge   对冲请求
+     * @return 先成功的请求结果；两个请求都失败时以最后一个错误异常完成
+     */
+    public <T> CompletableFuture<T> execute(Supplier<CompletableFuture<T>> primary, Supplier<CompletableFuture<T>> hedge) {
+        long hedgeDelay;
+        synchronized (this) {
+            totalCalls++;
+            hedgeTokens = Math.min(config.budgetMax(), hedgeTokens + config.budgetRatio());
+            hedgeDelay = config.enabled() ? hedgeDelayMillis() : -1;
+        }
+        CompletableFuture<T> result = new CompletableFuture<>();
+        AtomicInteger pending = new AtomicInteger(1);
+        CompletableFuture<T> primaryFuture = start(primary, result, pending, false);
+        result.whenComplete((value, throwable) -> primaryFuture.cancel(true));
+        if (hedgeDelay >= 0) {
+            CompletableFuture.delayedExecutor(hedgeDelay, TimeUnit.MILLISECONDS).execute(() -> {
+                if (result.isDone() || !tryAcquireHedge()) {
+                    return;
+                }
+                logger.info("{} 请求超过 {} 毫秒未返回，发送对冲请求", name, hedgeDelay);
+                pending.incrementAndGet();
+                CompletableFuture<T> hedgeFuture = start(hedge, result, pending, true);
+                result.whenComplete((value, throwable) -> hedgeFuture.cancel(true));
+            });
+        }
+        return result;
+    }
+
+    private <T> CompletableFuture<T> start(Supplier<CompletableFuture<T>> attempt, CompletableFuture<T> result,
+                                           AtomicInteger pending, boolean hedged) {
+        long startNanos = System.nanoTime();
+        CompletableFuture<T> future = attempt.get();
+        future.whenComplete((value, throwable) -> {
+            if (throwable == null) {
+                recordLatency(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos));
+                if (result.complete(value)) {
+                    recordWinner(hedged);
+                }
+            } else if (pending.decrementAndGet() == 0) {
+                // 另一个请求仍在进行时等待其结果，都失败时才失败
+                IOException error = OkHttpUtils.unwrap(throwable);
+                result.completeExceptionally(error);
+            }
+        });
+        return future;
+    }
+
+    /**
+     * 当前 p95 耗时，限定在配置的上下限之间；样本不足时返回 -1 表示不对冲
+     */
+    private long hedgeDelayMillis() {
+        if (sampleCount < Math.max(1, config.minSamples())) {
+            return -1;
+        }
+        long[] sorted = Arrays.copyOf(latencies, sampleCount);
+        Arrays.sort(sorted);
+        long p95 = sorted[Math.min(sampleCount - 1, (int) Math.ceil(sampleCount * 0.95) - 1)];
+        return Math.max(config.minDelayMs(), Math.min(config.maxDelayMs(), p95));
+    }
+
+    private synchronized void recordLatency(long millis) {
+        latencies[nextSample] = millis;
+        nextSample = (nextSample + 1) % WINDOW_SIZE;
+        sampleCount = Math.min(WINDOW_SIZE, sampleCount + 1);
+    }
+
+    private synchronized void recordWinner(boolean hedged) {
+        if (hedged) {
+            hedgesWon++;
+        } else {
+            primaryWon++;
+        }
+    }
+
+    private synchronized boolean tryAcquireHedge() {
+        if (hedgeTokens < 1) {
+            budgetExhausted++;
+            return false;
+        }
+        hedgeTokens -= 1;
+        hedgesSent++;
+        return true;
+    }
+
+    /**
+     * 所有对冲策略的统计快照
+     */
+    public static List<Map<String, Object>> snapshot() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (HedgingPolicy policy : POLICIES.values()) {
+            synchronized (policy) {
+                Map<String, Object> stats = new LinkedHashMap<>();
+                stats.put("name", policy.name);
+                stats.put("enabled", policy.config.enabled());
+                stats.put("samples", policy.sampleCount);
+                stats.put("hedgeDelayMillis", policy.hedgeDelayMillis());
+                stats.put("hedgeTokens", policy.hedgeTokens);
+                stats.put("totalCalls", policy.totalCalls);
+                stats.put("hedgesSent", policy.hedgesSent);
+                stats.put("hedgesWon", policy.hedgesWon);
+                stats.put("primaryWon", policy.primaryWon);
+                stats.put("budgetExhausted", policy.budgetExhausted);
+                stats.put("hedgeWinRate", policy.hedgesSent == 0 ? 0.0 : (double) policy.hedgesWon / policy.hedgesSent);
+                result.add(stats);
+            }
+        }
+        return result;
+    }
+}
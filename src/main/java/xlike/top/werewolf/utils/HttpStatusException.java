@@ -0,0 +1,29 @@
+package xlike.top.werewolf.utils;
+
+import java.io.IOException;
+
+/**
+ * 服务商返回非 200 状态码时抛出，携带状态码以便判断是否可重试
+ *
+ * @author xlike
+ */
+public class HttpStatusException extends IOException {
+
+    private final int statusCode;
+
+    public HttpStatusException(int statusCode, String message) {
+        super(message);
+        this.statusCode = statusCode;
+    }
+
+    public int getStatusCode() {
+        return statusCode;
+    }
+
+    /**
+     * 429、408 与 5xx 视为临时错误，可以重试
+     */
+    public boolean isRetryable() {
+        return statusCode == 429 || statusCode == 408 || statusCode >= 500;
+    }
+}
@@ -0,0 +1,38 @@
+package xlike.top.werewolf.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * API 密钥指纹：缓存键、限流器名称与健康状态中以指纹代替明文密钥
+ * <p>
+ * 取 SHA-256 的前 8 字节（16 位十六进制），同一密钥无论是否带 "Bearer " 前缀得到同一指纹
+ *
+ * @author xlike
+ */
+public class KeyFingerprint {
+
+    private static final String BEARER_PREFIX = "Bearer ";
+
+    private KeyFingerprint() {
+    }
+
+    /**
+     * @param apiKey API 密钥或 Authorization 请求头，null 按字符串 "null" 处理
+     * @return 16 位十六进制指纹
+     */
+    public static String of(String apiKey) {
+        String key = String.valueOf(apiKey);
+        if (key.startsWith(BEARER_PREFIX)) {
+            key = key.substring(BEARER_PREFIX.length());
+        }
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(key.getBytes(StandardCharsets.UTF_8));
+            return HexFormat.of().formatHex(digest, 0, 8);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package xlike.top.werewolf.utils;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import xlike.top.werewolf.bean.vo.ModelVo;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Proxy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 模型目录缓存
+ * <p>
+ * 按 服务商地址 + 密钥指纹 缓存 /v1/models 结果，并发的未命中请求合并为一次远程调用；
+ * 响应以流式方式解析，仅保留 id 与 owned_by
+ *
+ * @author xlike
+ */
+public class ModelCatalog {
+
+    private static final Logger logger = LoggerFactory.getLogger(ModelCatalog.class);
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+
+    private static volatile long ttlMillis = 300_000;
+    private static volatile int maxEntries = 256;
+
+    private static final Map<String, CatalogEntry> CATALOGS = new ConcurrentHashMap<>();
+    private static final Map<String, CompletableFuture<List<ModelVo>>> IN_FLIGHT = new ConcurrentHashMap<>();
+
+    private record CatalogEntry(List<ModelVo> models, long loadedAt) {
+    }
+
+    /**
+     * 配置缓存有效期与最大条目数
+     *
+     * @param ttlSeconds 缓存有效期（秒）
+     * @param entries    最大条目数
+     */
+    public static void configure(long ttlSeconds, int entries) {
+        ttlMillis = ttlSeconds * 1000;
+        maxEntries = entries;
+    }
+
+    /**
+     * 获取模型目录，缓存有效期内直接返回，未命中时同一 服务商 + 密钥 只发起一次远程请求
+     *
+     * @param apiUrl API地址
+     * @param apiKey API密钥
+     * @param proxy  代理服务器，可选
+     * @return 不可变的模型列表
+     */
+    public static CompletableFuture<List<ModelVo>> getModels(String apiUrl, String apiKey, Proxy proxy) {
+        String completeUrl;
+        try {
+            completeUrl = ChatUtils.completeApiUrl(apiUrl, "models");
+        } catch (IllegalArgumentException e) {
+            return CompletableFuture.failedFuture(new IOException(e.getMessage(), e));
+        }
+        String cacheKey = completeUrl + "|" + KeyFingerprint.of(apiKey);
+        CatalogEntry entry = CATALOGS.get(cacheKey);
+        if (entry != null && System.currentTimeMillis() - entry.loadedAt() < ttlMillis) {
+            logger.debug("模型目录命中缓存，URL: {}", completeUrl);
+            return CompletableFuture.completedFuture(entry.models());
+        }
+        CompletableFuture<List<ModelVo>> created = new CompletableFuture<>();
+        CompletableFuture<List<ModelVo>> inFlight = IN_FLIGHT.putIfAbsent(cacheKey, created);
+        if (inFlight != null) {
+            return inFlight;
+        }
+        logger.info("请求模型目录，URL: {}", completeUrl);
+        OkHttpUtils.getAsync(completeUrl, authHeaders(apiKey), proxy)
+                .thenApply(ModelCatalog::parseModels)
+                .whenComplete((models, throwable) -> {
+                    if (throwable != null) {
+                        IN_FLIGHT.remove(cacheKey);
+                        created.completeExceptionally(OkHttpUtils.unwrap(throwable));
+                        return;
+                    }
+                    evictIfFull();
+                    // 先写缓存再移除进行中的请求，避免间隙内的请求重复加载
+                    CATALOGS.put(cacheKey, new CatalogEntry(models, System.currentTimeMillis()));
+                    IN_FLIGHT.remove(cacheKey);
+                    logger.info("获取模型目录成功，URL: {}，数量: {}", completeUrl, models.size());
+                    created.complete(models);
+                });
+        return created;
+    }
+
+    /**
+     * 使指定 服务商 + 密钥 的缓存失效
+     */
+    public static void invalidate(String apiUrl, String apiKey) {
+        CATALOGS.remove(ChatUtils.completeApiUrl(apiUrl, "models") + "|" + KeyFingerprint.of(apiKey));
+    }
+
+    /**
+     * 流式解析 {"data":[{"id":..,"owned_by":..}, ...]}，跳过其他所有字段
+     */
+    private static List<ModelVo> parseModels(Response response) {
+        try (response) {
+            if (response.code() != 200 || response.body() == null) {
+                throw new IOException("Failed to get models, status code: " + response.code());
+            }
+            List<ModelVo> models = new ArrayList<>();
+            try (InputStream in = response.body().byteStream(); JsonParser parser = JSON_FACTORY.createParser(in)) {
+                if (parser.nextToken() != JsonToken.START_OBJECT) {
+                    throw new IOException("Unexpected models response");
+                }
+                while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                    String field = parser.currentName();
+                    JsonToken token = parser.nextToken();
+                    if ("data".equals(field) && token == JsonToken.START_ARRAY) {
+                        while (parser.nextToken() == JsonToken.START_OBJECT) {
+                            ModelVo model = readModel(parser);
+                            if (model.getId() != null) {
+                                models.add(model);
+                            }
+                        }
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+            return Collections.unmodifiableList(models);
+        } catch (IOException e) {
+            throw new CompletionException(e);
+        }
+    }
+
+    private static ModelVo readModel(JsonParser parser) throws IOException {
+        ModelVo model = new ModelVo();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            JsonToken token = parser.nextToken();
+            if ("id".equals(field) && token == JsonToken.VALUE_STRING) {
+                model.setId(parser.getText());
+            } else if ("owned_by".equals(field) && token == JsonToken.VALUE_STRING) {
+                model.setOwnedBy(parser.getText());
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return model;
+    }
+
+    private static void evictIfFull() {
+        if (CATALOGS.size() < maxEntries) {
+            return;
+        }
+        long now = System.currentTimeMillis();
+        CATALOGS.entrySet().removeIf(e -> now - e.getValue().loadedAt() >= ttlMillis);
+        if (CATALOGS.size() >= maxEntries) {
+            CATALOGS.entrySet().stream()
+                    .min(Map.Entry.comparingByValue((a, b) -> Long.compare(a.loadedAt(), b.loadedAt())))
+                    .ifPresent(oldest -> CATALOGS.remove(oldest.getKey()));
+        }
+    }
+
+    private static Map<String, String> authHeaders(String apiKey) {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Authorization", "Bearer " + apiKey);
+        headers.put("Content-Type", "application/json");
+        return headers;
+    }
+}
@@ -0,0 +1,164 @@
+package xlike.top.werewolf.utils;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * 进程内近端缓存：按访问顺序淘汰的有界 LRU，条目带有效期，并统计命中、未命中与淘汰次数
+ * <p>
+ * 未命中后从存储加载的值通过 {@link #stamp} 与 {@link #putIfUnchanged} 写入：加载期间该键被写入或失效时放弃写入，
+ * 避免把加载到的旧值放回缓存。代次按键的哈希分段记录，内存占用固定
+ *
+ * @author xlike
+ */
+public class NearCache<K, V> {
+
+    private static final int GENERATION_STRIPES = 64;
+
+    private final String name;
+    private final int maxEntries;
+    private final long ttlMillis;
+    private final LinkedHashMap<K, Entry<V>> entries;
+    /**
+     * 每段的写入与失效代次，同一段内任一键的写入或失效都会递增
+     */
+    private final long[] generations = new long[GENERATION_STRIPES];
+    private long stalePuts;
+    private long hits;
+    private long misses;
+    private long evictions;
+    private long invalidations;
+
+    private record Entry<V>(V value, long storedAt) {
+    }
+
+    /**
+     * @param name       缓存名称，用于监控
+     * @param maxEntries 最大条目数
+     * @param ttlMillis  条目有效期（毫秒），0 表示不过期
+     */
+    public NearCache(String name, int maxEntries, long ttlMillis) {
+        this.name = name;
+        this.maxEntries = Math.max(1, maxEntries);
+        this.ttlMillis = ttlMillis;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                if (size() > NearCache.this.maxEntries) {
+                    evictions++;
+                    return true;
+                }
+                return false;
+            }
+        };
+    }
+
+    /**
+     * 读取缓存，过期或不存在时返回 null 并计为未命中
+     */
+    public synchronized V get(K key) {
+        Entry<V> entry = entries.get(key);
+        if (entry == null || isExpired(entry)) {
+            if (entry != null) {
+                entries.remove(key);
+            }
+            misses++;
+            return null;
+        }
+        hits++;
+        return entry.value();
+    }
+
+    /**
+     * 读取缓存但不计入命中统计，用于写入前合并已有内容
+     */
+    public synchronized V peek(K key) {
+        Entry<V> entry = entries.get(key);
+        return entry == null || isExpired(entry) ? null : entry.value();
+    }
+
+    public synchronized void put(K key, V value) {
+        generations[stripe(key)]++;
+        entries.put(key, new Entry<>(value, System.currentTimeMillis()));
+    }
+
+    /**
+     * 读取键当前的代次，在从存储加载之前调用
+     */
+    public synchronized long stamp(K key) {
+        return generations[stripe(key)];
+    }
+
+    /**
+     * 代次仍为加载前的代次时写入，否则说明加载期间已有更新的写入或失效，放弃写入
+     *
+     * @param stamp 加载前通过 {@link #stamp} 读取的代次
+     * @return 是否写入
+     */
+    public synchronized boolean putIfUnchanged(K key, V value, long stamp) {
+        if (generations[stripe(key)] != stamp) {
+            stalePuts++;
+            return false;
+        }
+        put(key, value);
+        return true;
+    }
+
+    /**
+     * 删除条目；条目不存在时同样递增代次，使正在进行的加载不再写入
+     */
+    public synchronized void invalidate(K key) {
+        generations[stripe(key)]++;
+        if (entries.remove(key) != null) {
+            invalidations++;
+        }
+    }
+
+    /**
+     * 删除满足条件的所有条目，如某局游戏下的全部历史记录
+     */
+    public synchronized void invalidateIf(Predicate<K> predicate) {
+        for (int i = 0; i < GENERATION_STRIPES; i++) {
+            generations[i]++;
+        }
+        Iterator<K> iterator = entries.keySet().iterator();
+        while (iterator.hasNext()) {
+            if (predicate.test(iterator.next())) {
+                iterator.remove();
+                invalidations++;
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        entries.clear();
+    }
+
+    private static int stripe(Object key) {
+        int hash = key.hashCode();
+        return (hash ^ (hash >>> 16)) & (GENERATION_STRIPES - 1);
+    }
+
+    private boolean isExpired(Entry<V> entry) {
+        return ttlMillis > 0 && System.currentTimeMillis() - entry.storedAt() > ttlMillis;
+    }
+
+    /**
+     * 缓存统计快照
+     */
+    public synchronized Map<String, Object> snapshot() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("name", name);
+        stats.put("size", entries.size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("hits", hits);
+        stats.put("misses", misses);
+        stats.put("hitRate", hits + misses == 0 ? 0.0 : (double) hits / (hits + misses));
+        stats.put("evictions", evictions);
+        stats.put("invalidations", invalidations);
+        stats.put("stalePuts", stalePuts);
+        return stats;
+    }
+}
@@ -1,18 +1,29 @@
 package xlike.top.werewolf.utils;
 import okhttp3.*;
+import okio.Buffer;
+import okio.BufferedSource;
+import okio.ForwardingSource;
+import okio.Okio;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.File;
 import java.io.IOException;
+import java.io.InterruptedIOException;
 import java.net.InetSocketAddress;
 import java.net.Proxy;
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+import java.util.function.Supplier;
 
 /**
  * @author xlike
@@ -23,49 +34,362 @@ public class OkHttpUtils {
     private static final int DEFAULT_READ_TIMEOUT = 300;
     private static final int DEFAULT_CONNECT_TIMEOUT = 300;
 
+    /**
+     * 全局共享的连接池与调度器，所有客户端共用，避免每次请求都重新握手
+     */
+    private static final ConnectionPool CONNECTION_POOL = new ConnectionPool(32, 5, TimeUnit.MINUTES);
+    private static final Dispatcher DISPATCHER = createDispatcher(256, 64);
+    private static final OkHttpClient BASE_CLIENT = new OkHttpClient.Builder()
+            .connectionPool(CONNECTION_POOL)
+            .dispatcher(DISPATCHER)
+            .protocols(List.of(Protocol.HTTP_2, Protocol.HTTP_1_1))
+            .pingInterval(30, TimeUnit.SECONDS)
+            .retryOnConnectionFailure(true)
+            .build();
+
+    /**
+     * 客户端注册表，按超时与代理配置复用客户端
+     */
+    private static final Map<ClientKey, OkHttpClient> CLIENTS = new ConcurrentHashMap<>();
+
+    /**
+     * 截止时间计时器，请求正常结束时取消对应的计时任务，已取消的任务立即从队列中移除
+     */
+    private static final ScheduledThreadPoolExecutor DEADLINE_TIMER = createDeadlineTimer();
+
+    private record ClientKey(int connectTimeout, int readTimeout, Proxy proxy) {
+    }
+
+    private static ScheduledThreadPoolExecutor createDeadlineTimer() {
+        ScheduledThreadPoolExecutor timer = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "okhttp-deadline");
+            thread.setDaemon(true);
+            return thread;
+        });
+        timer.setRemoveOnCancelPolicy(true);
+        return timer;
+    }
+
+    private static Dispatcher createDispatcher(int maxRequests, int maxRequestsPerHost) {
+        Dispatcher dispatcher = new Dispatcher();
+        dispatcher.setMaxRequests(maxRequests);
+        dispatcher.setMaxRequestsPerHost(maxRequestsPerHost);
+        return dispatcher;
+    }
+
+    /**
+     * 调整调度器并发上限（同一 Host 上的并发请求数决定了投票等扇出阶段的并行度）
+     *
+     * @param maxRequests        最大并发请求数
+     * @param maxRequestsPerHost 单个 Host 最大并发请求数
+     */
+    public static void configureDispatcher(int maxRequests, int maxRequestsPerHost) {
+        DISPATCHER.setMaxRequests(maxRequests);
+        DISPATCHER.setMaxRequestsPerHost(maxRequestsPerHost);
+    }
+
     static OkHttpClient getClient(Integer connectTimeout, Integer readTimeout, Proxy proxy) {
-        OkHttpClient.Builder builder = new OkHttpClient.Builder();
-        builder.connectTimeout(Objects.requireNonNullElse(connectTimeout, DEFAULT_CONNECT_TIMEOUT), TimeUnit.SECONDS);
-        builder.readTimeout(Objects.requireNonNullElse(readTimeout, DEFAULT_READ_TIMEOUT), TimeUnit.SECONDS);
-        if (proxy != null) {
-            builder.proxy(proxy);
-            logger.info("使用代理服务器 {}:{}", proxy.address().toString(), ((InetSocketAddress) proxy.address()).getPort());
+        ClientKey clientKey = new ClientKey(Objects.requireNonNullElse(connectTimeout, DEFAULT_CONNECT_TIMEOUT),
+                Objects.requireNonNullElse(readTimeout, DEFAULT_READ_TIMEOUT), proxy);
+        return CLIENTS.computeIfAbsent(clientKey, OkHttpUtils::buildClient);
+    }
+
+    private static OkHttpClient buildClient(ClientKey clientKey) {
+        // 基于共享客户端派生，连接池与调度器保持共用
+        OkHttpClient.Builder builder = BASE_CLIENT.newBuilder();
+        builder.connectTimeout(clientKey.connectTimeout(), TimeUnit.SECONDS);
+        builder.readTimeout(clientKey.readTimeout(), TimeUnit.SECONDS);
+        if (clientKey.proxy() != null) {
+            builder.proxy(clientKey.proxy());
+            logger.info("使用代理服务器 {}:{}", clientKey.proxy().address().toString(),
+                    ((InetSocketAddress) clientKey.proxy().address()).getPort());
         }
+        logger.info("创建 OkHttpClient，连接超时: {} 秒，读取超时: {} 秒", clientKey.connectTimeout(), clientKey.readTimeout());
         return builder.build();
     }
 
+    /**
+     * 预热到指定服务商的连接，提前完成 DNS、TCP 与 TLS 握手
+     *
+     * @param url   服务商地址
+     * @param proxy 代理服务器，可选
+     */
+    public static void prewarm(String url, Proxy proxy) {
+        HttpUrl httpUrl = url == null ? null : HttpUrl.parse(url.trim());
+        if (httpUrl == null) {
+            logger.warn("预热连接失败，URL 无效: {}", url);
+            return;
+        }
+        HttpUrl origin = new HttpUrl.Builder().scheme(httpUrl.scheme()).host(httpUrl.host()).port(httpUrl.port()).build();
+        Request request = new Request.Builder().url(origin).head().build();
+        getClient(null, null, proxy).newCall(request).enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                logger.warn("预热连接 {} 失败: {}", origin, e.getMessage());
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                response.close();
+                logger.info("预热连接 {} 完成，协议: {}", origin, response.protocol());
+            }
+        });
+    }
+
     private static Response sendRequest(String url, String method, Map<String, String> headers, RequestBody body,
                                         Integer connectTimeout, Integer readTimeout, Proxy proxy) throws IOException {
-        logger.info("准备发送 {} 请求到 URL: {}", method, url);
         Request.Builder requestBuilder = new Request.Builder().url(url).method(method, body);
         if (headers != null) {
             for (Map.Entry<String, String> header : headers.entrySet()) {
                 requestBuilder.addHeader(header.getKey(), header.getValue());
-                logger.debug("添加请求头：{} = {}", header.getKey(), header.getValue());
             }
         }
-
-        Request request = requestBuilder.build();
+        RequestTracer.Span span = trace(requestBuilder, method, url, headers, body);
         OkHttpClient client = getClient(connectTimeout, readTimeout, proxy);
-        long startTimeMillis = System.currentTimeMillis();
-        LocalDateTime startTime = LocalDateTime.now();
-        DateTimeFormatter beginFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
         try {
-            logger.info("请求开始，当前时间: {}", startTime.format(beginFormatter));
-            Response response = client.newCall(request).execute();
-            long endTimeMillis = System.currentTimeMillis();
-            LocalDateTime endTime = LocalDateTime.now();
-            DateTimeFormatter endFormatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-            logger.info("请求结束，当前时间: {} ,耗时 {} 毫秒，返回状态码: {}",
-                    endTime.format(endFormatter), (endTimeMillis - startTimeMillis), response.code());
-            return response;
+            Response response = client.newCall(requestBuilder.build()).execute();
+            return instrument(response, null, span);
         } catch (IOException e) {
-            long errorTimeMillis = System.currentTimeMillis();
-            logger.error("请求失败，耗时 {} 毫秒，错误信息: {}", (errorTimeMillis - startTimeMillis), e.getMessage());
+            if (span != null) {
+                span.finish(e);
+            }
+            logger.warn("{} 请求 {} 失败: {}", method, url, e.getMessage());
             throw e;
         }
     }
 
+    /**
+     * 开始追踪请求，追踪记录作为 tag 挂在请求上，供上层通过 {@link RequestTracer#of(Response)} 补充信息；
+     * 请求体替换为统计写出字节数的包装
+     */
+    private static RequestTracer.Span trace(Request.Builder requestBuilder, String method, String url,
+                                            Map<String, String> headers, RequestBody body) {
+        RequestTracer.Span span = RequestTracer.start(method, url);
+        if (span != null) {
+            requestBuilder.tag(RequestTracer.Span.class, span);
+            boolean compressed = headers != null && "gzip".equalsIgnoreCase(headers.get("Content-Encoding"));
+            requestBuilder.method(method, span.requestBody(body, compressed));
+        }
+        return span;
+    }
+
+    /**
+     * 异步发送请求，基于 OkHttp 的 enqueue，不占用调用线程。
+     * 响应由 handler 在回调线程中处理；取消返回的 Future 会取消底层 Call，包括 handler 正在读取响应体的情况。
+     * 请求先经过服务商限流器，超出限额时短暂排队；限流许可在响应体关闭时释放。
+     * 指定截止时间时，请求（含排队与读取响应）只获得剩余时间，到期后取消 Call：partial 能给出已读取的部分结果时以该结果完成，
+     * 否则以 {@link Deadline.ExceededException} 失败
+     */
+    private static <T> CompletableFuture<T> sendRequestAsync(String url, String method, Map<String, String> headers,
+                                                             RequestBody body, Proxy proxy, Deadline deadline,
+                                                             Function<Response, T> handler, Supplier<T> partial) {
+        Request.Builder requestBuilder = new Request.Builder().url(url).method(method, body);
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                requestBuilder.addHeader(header.getKey(), header.getValue());
+            }
+        }
+        RequestTracer.Span span = trace(requestBuilder, method, url, headers, body);
+        Call call = getClient(null, null, proxy).newCall(requestBuilder.build());
+        CompletableFuture<T> future = new CompletableFuture<>();
+        future.whenComplete((value, throwable) -> {
+            if (future.isCancelled()) {
+                call.cancel();
+            }
+            if (throwable != null && span != null) {
+                span.finish(throwable);
+            }
+        });
+        if (deadline != null) {
+            long remainingMillis = deadline.remainingMillis();
+            if (remainingMillis <= 0) {
+                future.completeExceptionally(new Deadline.ExceededException("Deadline exceeded before request: " + url));
+                return future;
+            }
+            call.timeout().timeout(remainingMillis, TimeUnit.MILLISECONDS);
+            ScheduledFuture<?> timer = DEADLINE_TIMER.schedule(() -> {
+                T received = partial == null ? null : partial.get();
+                boolean completed = received != null
+                        ? future.complete(received)
+                        : future.completeExceptionally(new Deadline.ExceededException("Deadline exceeded: " + url));
+                if (completed) {
+                    if (received != null) {
+                        logger.warn("请求 {} 已到截止时间，使用已接收的部分响应", url);
+                    }
+                    call.cancel();
+                }
+            }, remainingMillis, TimeUnit.MILLISECONDS);
+            future.whenComplete((value, throwable) -> timer.cancel(false));
+        }
+        ProviderRateLimiter limiter = ProviderRateLimiter.forRequest(url, headers == null ? null : headers.get("Authorization"));
+        if (limiter == null) {
+            enqueue(call, future, null, span, handler);
+            return future;
+        }
+        limiter.acquire().whenComplete((permit, throwable) -> {
+            if (throwable != null) {
+                future.completeExceptionally(throwable);
+            } else if (future.isDone()) {
+                permit.release(null);
+            } else {
+                enqueue(call, future, permit, span, handler);
+            }
+        });
+        return future;
+    }
+
+    private static <T> void enqueue(Call call, CompletableFuture<T> future, ProviderRateLimiter.Permit permit,
+                                    RequestTracer.Span span, Function<Response, T> handler) {
+        if (span != null) {
+            span.dispatched();
+        }
+        call.enqueue(new Callback() {
+            @Override
+            public void onFailure(Call call, IOException e) {
+                if (permit != null) {
+                    permit.release(null);
+                }
+                if (future.completeExceptionally(e)) {
+                    logger.warn("异步请求 {} 失败: {}", call.request().url(), e.getMessage());
+                }
+            }
+
+            @Override
+            public void onResponse(Call call, Response response) {
+                Response result = instrument(response, permit, span);
+                if (future.isDone()) {
+                    // Future 已被取消，直接释放连接
+                    result.close();
+                    return;
+                }
+                try {
+                    future.complete(handler.apply(result));
+                } catch (Throwable throwable) {
+                    if (span != null) {
+                        span.finish(throwable);
+                    }
+                    result.close();
+                    future.completeExceptionally(unwrap(throwable));
+                }
+            }
+        });
+    }
+
+    /**
+     * 包装响应体：统计读取的字节数，在响应体关闭时释放限流许可并结束追踪，
+     * 流式响应在整个流结束前都占用并发额度
+     */
+    private static Response instrument(Response response, ProviderRateLimiter.Permit permit, RequestTracer.Span span) {
+        if (span != null) {
+            span.headers(response.code(), response.protocol().toString());
+        }
+        if (permit == null && span == null) {
+            return response;
+        }
+        ResponseBody body = response.body();
+        if (body == null) {
+            if (permit != null) {
+                permit.release(response);
+            }
+            if (span != null) {
+                span.finish(null);
+            }
+            return response;
+        }
+        BufferedSource source = Okio.buffer(new ForwardingSource(body.source()) {
+            @Override
+            public long read(Buffer sink, long byteCount) throws IOException {
+                long read = super.read(sink, byteCount);
+                if (span != null) {
+                    span.bytesRead(read);
+                }
+                return read;
+            }
+
+            @Override
+            public void close() throws IOException {
+                try {
+                    super.close();
+                } finally {
+                    if (permit != null) {
+                        permit.release(response);
+                    }
+                    if (span != null) {
+                        span.finish(null);
+                    }
+                }
+            }
+        });
+        return response.newBuilder()
+                .body(ResponseBody.Companion.create(source, body.contentType(), body.contentLength()))
+                .build();
+    }
+
+    public static CompletableFuture<Response> getAsync(String url, Map<String, String> headers, Proxy proxy) {
+        return sendRequestAsync(url, "GET", headers, null, proxy, null, Function.identity(), null);
+    }
+
+    public static CompletableFuture<Response> postAsync(String url, Map<String, String> headers, RequestBody body, Proxy proxy) {
+        return postAsync(url, headers, body, proxy, null, Function.identity());
+    }
+
+    /**
+     * 异步 POST 并在回调中处理响应，取消返回的 Future 会中止请求及正在进行的响应读取（如流式响应）
+     *
+     * @param deadline 截止时间，可选
+     * @param handler  响应处理逻辑，负责关闭响应；抛出的异常会使 Future 异常完成
+     */
+    public static <T> CompletableFuture<T> postAsync(String url, Map<String, String> headers, RequestBody body, Proxy proxy,
+                                                     Deadline deadline, Function<Response, T> handler) {
+        return postAsync(url, headers, body, proxy, deadline, handler, null);
+    }
+
+    /**
+     * 异步 POST，截止时间到达时先通过 partial 获取已读取的部分结果
+     *
+     * @param partial 截止时间到达时调用（计时线程中），返回可用的部分结果，没有可用结果时返回 null；为 null 时到期直接失败
+     */
+    public static <T> CompletableFuture<T> postAsync(String url, Map<String, String> headers, RequestBody body, Proxy proxy,
+                                                     Deadline deadline, Function<Response, T> handler, Supplier<T> partial) {
+        if (body == null) {
+            body = RequestBody.create("", MediaType.get("application/json; charset=utf-8"));
+        }
+        return sendRequestAsync(url, "POST", headers, body, proxy, deadline, handler, partial);
+    }
+
+    /**
+     * 同步等待异步结果，将异步阶段中的异常还原为 IOException
+     *
+     * @param future 异步结果
+     * @return 结果值
+     * @throws IOException 请求异常或等待被中断
+     */
+    public static <T> T await(CompletableFuture<T> future) throws IOException {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            future.cancel(true);
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("request interrupted");
+        } catch (ExecutionException e) {
+            throw unwrap(e);
+        }
+    }
+
+    /**
+     * 从异步异常中取出原始 IOException，其他异常包装为 IOException
+     */
+    public static IOException unwrap(Throwable throwable) {
+        Throwable cause = throwable;
+        while ((cause instanceof CompletionException || cause instanceof ExecutionException) && cause.getCause() != null) {
+            cause = cause.getCause();
+        }
+        if (cause instanceof IOException ioException) {
+            return ioException;
+        }
+        return new IOException(cause.getMessage(), cause);
+    }
+
     // 添加 multipart 文件上传支持
     public static RequestBody createMultipartRequestBody(Map<String, String> formData, File file, String fileFieldName) {
         MultipartBody.Builder builder = new MultipartBody.Builder()
@@ -136,7 +460,6 @@ public class OkHttpUtils {
     }
 
     public static RequestBody createJsonRequestBody(String json) {
-        logger.info("创建JSON请求体: {}", json);
         return RequestBody.create(json, MediaType.get("application/json; charset=utf-8"));
     }
 
@@ -196,7 +519,6 @@ public class OkHttpUtils {
 
     public static void closeResponse(Response response) {
         if (response != null && response.body() != null) {
-            logger.info("关闭响应，URL: {}", response.request().url());
             response.close();
         }
     }
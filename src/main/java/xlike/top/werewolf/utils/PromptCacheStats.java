@@ -0,0 +1,83 @@
+package xlike.top.werewolf.utils;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按模型统计服务商返回的 token 用量与前缀缓存命中情况
+ * <p>
+ * 只统计带 usage 的响应；流式请求提前结束时，剩余的流在后台读完后再记录 usage，
+ * 未开启 include_usage 或剩余的流未能读完（如截止时间到达）时不计入
+ *
+ * @author xlike
+ */
+public class PromptCacheStats {
+
+    private static final Map<String, PromptCacheStats> STATS = new ConcurrentHashMap<>();
+
+    private final String model;
+    private long requests;
+    private long promptTokens;
+    private long cachedTokens;
+    private long completionTokens;
+    private long cacheHitRequests;
+    private long cacheHitMillis;
+    private long cacheMissMillis;
+
+    private PromptCacheStats(String model) {
+        this.model = model;
+    }
+
+    /**
+     * 记录一次请求的用量
+     *
+     * @param model         模型名称
+     * @param usage         响应中的 usage，为 null 时忽略
+     * @param elapsedMillis 请求耗时（毫秒）
+     */
+    public static void record(String model, ChatCodec.Usage usage, long elapsedMillis) {
+        if (usage == null) {
+            return;
+        }
+        PromptCacheStats stats = STATS.computeIfAbsent(model, PromptCacheStats::new);
+        synchronized (stats) {
+            stats.requests++;
+            stats.promptTokens += usage.promptTokens();
+            stats.cachedTokens += usage.cachedTokens();
+            stats.completionTokens += usage.completionTokens();
+            if (usage.cachedTokens() > 0) {
+                stats.cacheHitRequests++;
+                stats.cacheHitMillis += elapsedMillis;
+            } else {
+                stats.cacheMissMillis += elapsedMillis;
+            }
+        }
+    }
+
+    /**
+     * 所有模型的统计快照
+     */
+    public static List<Map<String, Object>> snapshot() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (PromptCacheStats stats : STATS.values()) {
+            synchronized (stats) {
+                long missRequests = stats.requests - stats.cacheHitRequests;
+                Map<String, Object> item = new LinkedHashMap<>();
+                item.put("model", stats.model);
+                item.put("requests", stats.requests);
+                item.put("promptTokens", stats.promptTokens);
+                item.put("cachedTokens", stats.cachedTokens);
+                item.put("completionTokens", stats.completionTokens);
+                item.put("cachedTokenRatio", stats.promptTokens == 0 ? 0.0 : (double) stats.cachedTokens / stats.promptTokens);
+                item.put("cacheHitRequests", stats.cacheHitRequests);
+                item.put("avgCacheHitMillis", stats.cacheHitRequests == 0 ? 0 : stats.cacheHitMillis / stats.cacheHitRequests);
+                item.put("avgCacheMissMillis", missRequests == 0 ? 0 : stats.cacheMissMillis / missRequests);
+                result.add(item);
+            }
+        }
+        return result;
+    }
+}
@@ -0,0 +1,314 @@
+package xlike.top.werewolf.utils;
+
+import okhttp3.HttpUrl;
+import okhttp3.Response;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * 按 服务商 Host + 密钥 划分的自适应限流器（令牌桶 + 并发上限）
+ * <p>
+ * 并发上限按 AIMD 调整：成功响应缓慢增加，429 减半；同时根据 retry-after 与
+ * x-ratelimit-remaining-* / x-ratelimit-reset-* 响应头暂停放行。超出限额的请求短暂排队而不是直接失败
+ *
+ * @author xlike
+ */
+public class ProviderRateLimiter {
+
+    private static final Logger logger = LoggerFactory.getLogger(ProviderRateLimiter.class);
+    private static final Pattern DURATION_PART = Pattern.compile("(\\d+(?:\\.\\d+)?)(ms|h|m|s)");
+    private static final Map<String, ProviderRateLimiter> LIMITERS = new ConcurrentHashMap<>();
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "rate-limiter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private static volatile Settings settings = new Settings(true, 10, 20, 32, 30_000);
+
+    /**
+     * 限流配置
+     *
+     * @param enabled           是否启用
+     * @param requestsPerSecond 每秒放行的请求数上限
+     * @param burst             令牌桶容量
+     * @param maxInFlight       并发请求上限
+     * @param maxQueueWaitMs    排队等待的最长时间（毫秒）
+     */
+    public record Settings(boolean enabled, double requestsPerSecond, int burst, int maxInFlight, long maxQueueWaitMs) {
+    }
+
+    public static void configure(Settings newSettings) {
+        settings = newSettings;
+        LIMITERS.clear();
+    }
+
+    private final String name;
+    private final Settings config;
+    private final Deque<Waiter> waiters = new ArrayDeque<>();
+    private double tokens;
+    private double rate;
+    private double inFlightLimit;
+    private int inFlight;
+    private long lastRefillNanos;
+    private long blockedUntilMillis;
+    private boolean drainScheduled;
+
+    private long admitted;
+    private long throttled;
+    private long rejected;
+    private long totalWaitMillis;
+    private long tooManyRequests;
+
+    private record Waiter(CompletableFuture<Permit> future, long enqueuedAt) {
+    }
+
+    private ProviderRateLimiter(String name, Settings config) {
+        this.name = name;
+        this.config = config;
+        this.tokens = config.burst();
+        this.rate = config.requestsPerSecond();
+        this.inFlightLimit = config.maxInFlight();
+        this.lastRefillNanos = System.nanoTime();
+    }
+
+    /**
+     * 获取请求对应的限流器，未启用限流时返回 null
+     *
+     * @param url           请求地址
+     * @param authorization Authorization 请求头
+     * @return 限流器
+     */
+    public static ProviderRateLimiter forRequest(String url, String authorization) {
+        Settings current = settings;
+        HttpUrl httpUrl = HttpUrl.parse(url);
+        if (!current.enabled() || httpUrl == null) {
+            return null;
+        }
+        String name = httpUrl.host() + ":" + httpUrl.port() + "|" + KeyFingerprint.of(authorization);
+        return LIMITERS.computeIfAbsent(name, k -> new ProviderRateLimiter(k, current));
+    }
+
+    /**
+     * 已放行的请求许可，请求结束后必须释放
+     */
+    public final class Permit {
+        private final AtomicBoolean released = new AtomicBoolean();
+
+        /**
+         * 释放许可并根据响应调整限额
+         *
+         * @param response 响应，请求失败时为 null
+         */
+        public void release(Response response) {
+            if (released.compareAndSet(false, true)) {
+                onRelease(response);
+            }
+        }
+    }
+
+    /**
+     * 申请许可，超出限额时排队，超过最长等待时间后以 {@link QueueTimeoutException} 异常完成
+     */
+    public CompletableFuture<Permit> acquire() {
+        CompletableFuture<Permit> future = new CompletableFuture<>();
+        synchronized (this) {
+            if (waiters.isEmpty() && tryAdmit(System.currentTimeMillis())) {
+                admitted++;
+                future.complete(new Permit());
+                return future;
+            }
+            throttled++;
+            waiters.addLast(new Waiter(future, System.currentTimeMillis()));
+            scheduleDrain(nextAdmitDelayMillis(System.currentTimeMillis()));
+        }
+        return future;
+    }
+
+    private boolean tryAdmit(long nowMillis) {
+        refill();
+        if (nowMillis < blockedUntilMillis || inFlight >= (int) inFlightLimit || tokens < 1) {
+            return false;
+        }
+        tokens -= 1;
+        inFlight++;
+        return true;
+    }
+
+    private void refill() {
+        long now = System.nanoTime();
+        tokens = Math.min(config.burst(), tokens + (now - lastRefillNanos) / 1e9 * rate);
+        lastRefillNanos = now;
+    }
+
+    private long nextAdmitDelayMillis(long nowMillis) {
+        long delay = tokens >= 1 ? 0 : (long) Math.ceil((1 - tokens) / rate * 1000);
+        return Math.max(1, Math.max(delay, blockedUntilMillis - nowMillis));
+    }
+
+    private void scheduleDrain(long delayMillis) {
+        if (!drainScheduled) {
+            drainScheduled = true;
+            SCHEDULER.schedule(this::drain, Math.min(delayMillis, config.maxQueueWaitMs()), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void drain() {
+        List<Runnable> completions = new ArrayList<>();
+        synchronized (this) {
+            drainScheduled = false;
+            long now = System.currentTimeMillis();
+            while (!waiters.isEmpty()) {
+                Waiter waiter = waiters.peekFirst();
+                if (waiter.future().isDone()) {
+                    waiters.pollFirst();
+                    continue;
+                }
+                if (now - waiter.enqueuedAt() >= config.maxQueueWaitMs()) {
+                    waiters.pollFirst();
+                    rejected++;
+                    // 本地排队超时，不重试，熔断器也不会因本地限流而打开
+                    completions.add(() -> waiter.future().completeExceptionally(
+                            new QueueTimeoutException("Rate limit queue wait exceeded for " + name)));
+                    continue;
+                }
+                if (!tryAdmit(now)) {
+                    break;
+                }
+                waiters.pollFirst();
+                admitted++;
+                totalWaitMillis += now - waiter.enqueuedAt();
+                Permit permit = new Permit();
+                completions.add(() -> {
+                    if (!waiter.future().complete(permit)) {
+                        permit.release(null);
+                    }
+                });
+            }
+            if (!waiters.isEmpty() && inFlight < (int) inFlightLimit) {
+                scheduleDrain(nextAdmitDelayMillis(now));
+            } else if (!waiters.isEmpty()) {
+                // 等待并发释放触发，同时保证排队超时能被检查到
+                scheduleDrain(config.maxQueueWaitMs() - (now - waiters.peekFirst().enqueuedAt()));
+            }
+        }
+        completions.forEach(Runnable::run);
+    }
+
+    private void onRelease(Response response) {
+        synchronized (this) {
+            inFlight--;
+            if (response != null) {
+                adapt(response);
+            }
+        }
+        drain();
+    }
+
+    /**
+     * AIMD：成功时并发上限与速率加性增长，429 时乘性减半，并根据响应头暂停放行
+     */
+    private void adapt(Response response) {
+        long now = System.currentTimeMillis();
+        if (response.code() == 429) {
+            tooManyRequests++;
+            inFlightLimit = Math.max(1, inFlightLimit / 2);
+            rate = Math.max(config.requestsPerSecond() / 20, rate / 2);
+            long retryAfter = parseDurationMillis(response.header("retry-after"), true);
+            blockedUntilMillis = Math.max(blockedUntilMillis, now + (retryAfter > 0 ? retryAfter : 1000));
+            logger.warn("服务商 {} 返回 429，并发上限调整为 {}，速率调整为 {}/s", name, (int) inFlightLimit, String.format("%.2f", rate));
+            return;
+        }
+        if (response.isSuccessful()) {
+            inFlightLimit = Math.min(config.maxInFlight(), inFlightLimit + 1 / inFlightLimit);
+            rate = Math.min(config.requestsPerSecond(), rate + config.requestsPerSecond() / 20);
+        }
+        for (String kind : new String[]{"requests", "tokens"}) {
+            String remaining = response.header("x-ratelimit-remaining-" + kind);
+            if (remaining != null && remaining.trim().matches("0+(\\.0+)?")) {
+                long reset = parseDurationMillis(response.header("x-ratelimit-reset-" + kind), false);
+                blockedUntilMillis = Math.max(blockedUntilMillis, now + (reset > 0 ? reset : 1000));
+            }
+        }
+    }
+
+    /**
+     * 解析 retry-after（秒）或 x-ratelimit-reset-*（如 "1s"、"6m0s"、"20ms"）
+     */
+    static long parseDurationMillis(String value, boolean plainSeconds) {
+        if (value == null || value.isBlank()) {
+            return 0;
+        }
+        String trimmed = value.trim();
+        try {
+            return (long) (Double.parseDouble(trimmed) * 1000);
+        } catch (NumberFormatException ignored) {
+            // 非纯数字，按时长格式解析
+        }
+        if (plainSeconds) {
+            return 0;
+        }
+        long millis = 0;
+        Matcher matcher = DURATION_PART.matcher(trimmed);
+        while (matcher.find()) {
+            double amount = Double.parseDouble(matcher.group(1));
+            millis += (long) switch (matcher.group(2)) {
+                case "h" -> amount * 3_600_000;
+                case "m" -> amount * 60_000;
+                case "s" -> amount * 1000;
+                default -> amount;
+            };
+        }
+        return millis;
+    }
+
+    /**
+     * 所有限流器的状态快照，包含排队等待时间指标
+     */
+    public static List<Map<String, Object>> snapshot() {
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (ProviderRateLimiter limiter : LIMITERS.values()) {
+            synchronized (limiter) {
+                Map<String, Object> stats = new LinkedHashMap<>();
+                stats.put("provider", limiter.name);
+                stats.put("inFlight", limiter.inFlight);
+                stats.put("inFlightLimit", (int) limiter.inFlightLimit);
+                stats.put("ratePerSecond", limiter.rate);
+                stats.put("queued", limiter.waiters.size());
+                stats.put("admitted", limiter.admitted);
+                stats.put("throttled", limiter.throttled);
+                stats.put("rejected", limiter.rejected);
+                stats.put("tooManyRequests", limiter.tooManyRequests);
+                stats.put("throttleWaitMillis", limiter.totalWaitMillis);
+                stats.put("blockedForMillis", Math.max(0, limiter.blockedUntilMillis - System.currentTimeMillis()));
+                result.add(stats);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * 本地限流排队超时的异常：请求未发出，重试只会再次排队，因此不参与重试，也不计入熔断失败
+     */
+    public static class QueueTimeoutException extends IOException {
+        public QueueTimeoutException(String message) {
+            super(message);
+        }
+    }
+}
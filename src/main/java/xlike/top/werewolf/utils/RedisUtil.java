@@ -2,6 +2,7 @@ package xlike.top.werewolf.utils;
 
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.stereotype.Component;
 import org.springframework.util.CollectionUtils;
 
@@ -88,6 +89,30 @@ public class RedisUtil {
         }
     }
 
+    /**
+     * 非阻塞删除缓存（UNLINK），大键的内存回收在 Redis 后台线程完成
+     * @param keys 键集合
+     * @return 删除的键数量
+     */
+    public static long unlink(Collection<String> keys) {
+        if (keys == null || keys.isEmpty()) {
+            return 0;
+        }
+        Long count = redisTemplate.unlink(keys);
+        return count == null ? 0 : count;
+    }
+
+    /**
+     * 执行 Lua 脚本，参数使用值序列化器序列化（字符串参数在脚本中为 JSON 字符串，整数参数可直接 tonumber）
+     * @param script 脚本
+     * @param keys 键列表
+     * @param args 参数
+     * @return 脚本返回值
+     */
+    public static <T> T execute(RedisScript<T> script, List<String> keys, Object... args) {
+        return redisTemplate.execute(script, keys, args);
+    }
+
     // ============================== String 操作 ==============================
 
     /**
@@ -0,0 +1,318 @@
+package xlike.top.werewolf.utils;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import okhttp3.MediaType;
+import okhttp3.RequestBody;
+import okhttp3.Response;
+import okio.Buffer;
+import okio.BufferedSink;
+import okio.ForwardingSink;
+import okio.Okio;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.regex.Pattern;
+
+/**
+ * 请求追踪环形缓冲区，记录每次 HTTP 调用的元数据（地址、模型、状态码、字节数、耗时）
+ * <p>
+ * 热路径上只记录数值与引用，不做字符串格式化；请求体与响应体按采样率记录，并在截断后脱敏。
+ * 缓冲区大小固定，新记录覆盖最旧的记录，通过监控接口查询或导出
+ *
+ * @author xlike
+ */
+public final class RequestTracer {
+
+    private static final AtomicLong SEQUENCE = new AtomicLong();
+    private static final ObjectMapper OBJECT_MAPPER = new ObjectMapper();
+
+    /**
+     * 脱敏规则：API 密钥、Bearer 令牌以及 JSON 中的密钥 / 密码 / 令牌字段。
+     * sk- 必须位于单词开头且后跟至少 8 个密钥字符，不会误伤 task-1 之类的普通文本
+     */
+    private static final Pattern SECRET = Pattern.compile(
+            "(?i)(\\bsk-(?=[A-Za-z0-9_-]{8,})|\\bbearer\\s+|\"(?:api_?key|password|token|secret)\"\\s*:\\s*\")[^\"\\s,}]+");
+
+    private static volatile Settings settings = new Settings(true, 1024, 0.01, 2048);
+    private static volatile AtomicReferenceArray<Span> ring = new AtomicReferenceArray<>(1024);
+
+    /**
+     * 追踪配置
+     *
+     * @param enabled        是否启用
+     * @param capacity       环形缓冲区容量
+     * @param bodySampleRate 记录请求体 / 响应体的采样率，0 表示从不记录
+     * @param maxBodyChars   记录的请求体 / 响应体最大长度
+     */
+    public record Settings(boolean enabled, int capacity, double bodySampleRate, int maxBodyChars) {
+    }
+
+    private RequestTracer() {
+    }
+
+    public static void configure(Settings newSettings) {
+        settings = newSettings;
+        ring = new AtomicReferenceArray<>(Math.max(1, newSettings.capacity()));
+    }
+
+    /**
+     * 开始追踪一次调用，未启用时返回 null
+     */
+    public static Span start(String method, String url) {
+        Settings current = settings;
+        if (!current.enabled()) {
+            return null;
+        }
+        boolean sampled = current.bodySampleRate() > 0 && ThreadLocalRandom.current().nextDouble() < current.bodySampleRate();
+        return new Span(SEQUENCE.incrementAndGet(), method, url, sampled, current.maxBodyChars());
+    }
+
+    /**
+     * 获取响应对应的追踪记录，请求未被追踪时返回 null
+     */
+    public static Span of(Response response) {
+        return response == null ? null : response.request().tag(Span.class);
+    }
+
+    private static void record(Span span) {
+        AtomicReferenceArray<Span> current = ring;
+        current.set((int) (span.id % current.length()), span);
+    }
+
+    /**
+     * 查询最近的追踪记录，按时间倒序
+     *
+     * @param limit     最大返回条数
+     * @param model     按模型过滤，可选
+     * @param errorOnly 只返回失败（异常或非 2xx）的调用
+     */
+    public static List<Map<String, Object>> snapshot(int limit, String model, boolean errorOnly) {
+        AtomicReferenceArray<Span> current = ring;
+        List<Span> spans = new ArrayList<>();
+        for (int i = 0; i < current.length(); i++) {
+            Span span = current.get(i);
+            if (span != null
+                    && (model == null || model.isEmpty() || model.equals(span.model))
+                    && (!errorOnly || span.isError())) {
+                spans.add(span);
+            }
+        }
+        spans.sort(Comparator.comparingLong((Span span) -> span.id).reversed());
+        List<Map<String, Object>> result = new ArrayList<>();
+        for (Span span : spans.subList(0, Math.min(Math.max(limit, 0), spans.size()))) {
+            result.add(span.toMap());
+        }
+        return result;
+    }
+
+    /**
+     * 将缓冲区中的全部记录导出为 JSON Lines 文件
+     *
+     * @param dir 导出目录
+     * @return 导出的文件路径
+     */
+    public static Path dump(Path dir) throws IOException {
+        List<Map<String, Object>> traces = snapshot(Integer.MAX_VALUE, null, false);
+        Files.createDirectories(dir);
+        Path file = dir.resolve("traces-" + System.currentTimeMillis() + ".jsonl");
+        try (BufferedWriter writer = Files.newBufferedWriter(file)) {
+            for (Map<String, Object> trace : traces) {
+                writer.write(OBJECT_MAPPER.writeValueAsString(trace));
+                writer.newLine();
+            }
+        }
+        return file;
+    }
+
+    /**
+     * 截断并脱敏请求体 / 响应体
+     */
+    static String redact(String text, int maxChars) {
+        if (text == null) {
+            return null;
+        }
+        String truncated = text.length() > maxChars ? text.substring(0, maxChars) + "...(truncated)" : text;
+        return SECRET.matcher(truncated).replaceAll("$1***");
+    }
+
+    /**
+     * 单次调用的追踪记录，调用结束（响应体关闭或请求失败）时写入缓冲区
+     */
+    public static final class Span {
+        private final long id;
+        private final long startEpochMillis = System.currentTimeMillis();
+        private final long startNanos = System.nanoTime();
+        private final String method;
+        private final String url;
+        private final boolean sampled;
+        private final int maxBodyChars;
+        private final AtomicBoolean finished = new AtomicBoolean();
+        private volatile String model;
+        private volatile long dispatchNanos;
+        private volatile long headersNanos;
+        private volatile long endNanos;
+        private volatile int status;
+        private volatile String protocol;
+        private volatile long requestBytes = -1;
+        private final AtomicLong responseBytes = new AtomicLong();
+        private volatile Throwable error;
+        private volatile String requestBody;
+        private volatile String responseBody;
+
+        private Span(long id, String method, String url, boolean sampled, int maxBodyChars) {
+            this.id = id;
+            this.method = method;
+            int query = url.indexOf('?');
+            this.url = query < 0 ? url : url.substring(0, query);
+            this.sampled = sampled;
+            this.maxBodyChars = maxBodyChars;
+        }
+
+        public boolean isSampled() {
+            return sampled;
+        }
+
+        public Span model(String model) {
+            this.model = model;
+            return this;
+        }
+
+        /**
+         * 包装请求体，在 OkHttp 发送时统计实际写出的字节数；采样时顺带复制前 maxBodyChars * 4 个字节，
+         * 不额外序列化请求体。压缩过的请求体不记录内容
+         *
+         * @param body       请求体
+         * @param compressed 请求体是否已压缩（Content-Encoding: gzip）
+         * @return 包装后的请求体，body 为 null 时返回 null
+         */
+        public RequestBody requestBody(RequestBody body, boolean compressed) {
+            if (body == null) {
+                return null;
+            }
+            long captureLimit = sampled && !compressed ? maxBodyChars * 4L : 0;
+            return new RequestBody() {
+                @Override
+                public MediaType contentType() {
+                    return body.contentType();
+                }
+
+                @Override
+                public long contentLength() throws IOException {
+                    return body.contentLength();
+                }
+
+                @Override
+                public boolean isOneShot() {
+                    return body.isOneShot();
+                }
+
+                @Override
+                public void writeTo(BufferedSink sink) throws IOException {
+                    Buffer captured = new Buffer();
+                    long[] written = {0};
+                    BufferedSink counting = Okio.buffer(new ForwardingSink(sink) {
+                        @Override
+                        public void write(Buffer source, long byteCount) throws IOException {
+                            long copy = Math.min(byteCount, captureLimit - captured.size());
+                            if (copy > 0) {
+                                source.copyTo(captured, 0, copy);
+                            }
+                            written[0] += byteCount;
+                            super.write(source, byteCount);
+                        }
+                    });
+                    body.writeTo(counting);
+                    // 压缩的请求体写完后会关闭输出流，关闭时已写出缓冲的内容
+                    if (counting.isOpen()) {
+                        counting.emit();
+                    }
+                    // 连接失败重试时会再次写出，以最后一次为准
+                    requestBytes = written[0];
+                    if (captureLimit > 0) {
+                        requestBody = captured.readUtf8();
+                    }
+                }
+            };
+        }
+
+        /**
+         * 采样时记录响应内容，如解析后的模型回复
+         */
+        public void responseBody(String content) {
+            if (sampled) {
+                responseBody = content;
+            }
+        }
+
+        public void dispatched() {
+            dispatchNanos = System.nanoTime();
+        }
+
+        public void headers(int status, String protocol) {
+            this.headersNanos = System.nanoTime();
+            this.status = status;
+            this.protocol = protocol;
+        }
+
+        public void bytesRead(long bytes) {
+            if (bytes > 0) {
+                responseBytes.addAndGet(bytes);
+            }
+        }
+
+        /**
+         * 结束追踪并写入缓冲区，重复调用只生效一次
+         */
+        public void finish(Throwable throwable) {
+            if (!finished.compareAndSet(false, true)) {
+                return;
+            }
+            endNanos = System.nanoTime();
+            error = throwable;
+            record(this);
+        }
+
+        private boolean isError() {
+            return error != null || status < 200 || status >= 300;
+        }
+
+        private Long millisSinceStart(long nanos) {
+            return nanos == 0 ? null : TimeUnit.NANOSECONDS.toMillis(nanos - startNanos);
+        }
+
+        private Map<String, Object> toMap() {
+            Map<String, Object> map = new LinkedHashMap<>();
+            map.put("id", id);
+            map.put("startTime", Instant.ofEpochMilli(startEpochMillis).toString());
+            map.put("method", method);
+            map.put("url", url);
+            map.put("model", model);
+            map.put("status", status);
+            map.put("protocol", protocol);
+            map.put("requestBytes", requestBytes);
+            map.put("responseBytes", responseBytes.get());
+            map.put("queueMillis", millisSinceStart(dispatchNanos));
+            map.put("headersMillis", millisSinceStart(headersNanos));
+            map.put("totalMillis", millisSinceStart(endNanos));
+            map.put("error", error == null ? null : error.getClass().getSimpleName() + ": " + error.getMessage());
+            if (sampled) {
+                map.put("requestBody", redact(requestBody, maxBodyChars));
+                map.put("responseBody", redact(responseBody, maxBodyChars));
+            }
+            return map;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package xlike.top.werewolf.engine;
+
+import org.junit.jupiter.api.Test;
+import xlike.top.werewolf.enums.RoleEnum;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 板子校验与发牌
+ *
+ * @author xlike
+ */
+class BoardTest {
+
+    @Test
+    void standardSixSeatsMatchesLegacyRoles() {
+        Board board = Board.standard(6);
+
+        assertEquals(6, board.seats());
+        assertEquals(2, board.count(RoleEnum.WEREWOLF));
+        assertEquals(1, board.count(RoleEnum.VILLAGER));
+        assertArrayEquals(new RoleEnum[]{RoleEnum.WEREWOLF, RoleEnum.WEREWOLF, RoleEnum.VILLAGER, RoleEnum.SEER,
+                RoleEnum.WITCH, RoleEnum.HUNTER}, board.deal(null));
+    }
+
+    @Test
+    void standardBoardScalesWerewolves() {
+        Board board = Board.standard(50);
+
+        assertEquals(50, board.seats());
+        assertEquals(16, board.count(RoleEnum.WEREWOLF));
+        assertEquals(31, board.count(RoleEnum.VILLAGER));
+        assertThrows(IllegalArgumentException.class, () -> Board.standard(5));
+    }
+
+    @Test
+    void shuffledDealKeepsRoleCounts() {
+        Board board = Board.standard(12);
+
+        RoleEnum[] dealt = board.deal(new SplittableRandom(42));
+
+        RoleEnum[] sorted = dealt.clone();
+        Arrays.sort(sorted);
+        assertArrayEquals(board.deal(null), sorted);
+    }
+
+    @Test
+    void ofRejectsInvalidBoards() {
+        assertThrows(IllegalArgumentException.class,
+                () -> Board.of("negative", counts(2, -1, 0)));
+        assertThrows(IllegalArgumentException.class,
+                () -> Board.of("two-seers", counts(2, 2, 2)));
+        assertThrows(IllegalArgumentException.class,
+                () -> Board.of("no-wolves", counts(0, 4, 1)));
+        assertThrows(IllegalArgumentException.class,
+                () -> Board.of("only-wolves", counts(3, 0, 0)));
+        assertThrows(IllegalArgumentException.class,
+                () -> Board.of("too-many-seats", counts(30, 40, 1)));
+    }
+
+    @Test
+    void ofTreatsMissingAndNullCountsAsZero() {
+        Map<RoleEnum, Integer> counts = new EnumMap<>(RoleEnum.class);
+        counts.put(RoleEnum.WEREWOLF, 1);
+        counts.put(RoleEnum.VILLAGER, 3);
+        counts.put(RoleEnum.HUNTER, null);
+
+        Board board = Board.of("small", counts);
+
+        assertEquals(4, board.seats());
+        assertEquals(0, board.count(RoleEnum.HUNTER));
+        assertEquals(0, board.count(RoleEnum.SEER));
+    }
+
+    private static Map<RoleEnum, Integer> counts(int werewolves, int villagers, int seers) {
+        Map<RoleEnum, Integer> counts = new EnumMap<>(RoleEnum.class);
+        counts.put(RoleEnum.WEREWOLF, werewolves);
+        counts.put(RoleEnum.VILLAGER, villagers);
+        counts.put(RoleEnum.SEER, seers);
+        return counts;
+    }
+}
@@ -0,0 +1,163 @@
+package xlike.top.werewolf.engine;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static xlike.top.werewolf.engine.IndexedGameState.NONE;
+import static xlike.top.werewolf.engine.IndexedGameState.bit;
+
+/**
+ * 夜晚结算、女巫用药与胜负判定
+ * <p>
+ * 六人标准局按 RoleEnum 的顺序入座：座位 0、1 狼人，2 村民，3 预言家，4 女巫，5 猎人
+ *
+ * @author xlike
+ */
+class GameRulesTest {
+
+    private static final int WOLF = 0;
+    private static final int VILLAGER = 2;
+    private static final int SEER = 3;
+    private static final int WITCH = 4;
+    private static final int HUNTER = 5;
+
+    private IndexedGameState state;
+
+    @BeforeEach
+    void setUp() {
+        state = GameEngine.newGame(Board.standard(6), "model", null);
+    }
+
+    @Test
+    void killedPlayerDiesWhenNotSaved() {
+        GameRules.setWerewolfTarget(state, VILLAGER);
+
+        long deaths = GameRules.resolveNight(state);
+
+        assertEquals(bit(VILLAGER), deaths);
+        assertFalse(state.isAlive(VILLAGER));
+        assertEquals(5, state.aliveCount());
+    }
+
+    @Test
+    void savedPlayerSurvives() {
+        GameRules.setWerewolfTarget(state, SEER);
+        assertTrue(GameRules.witchSave(state, WITCH, SEER));
+
+        long deaths = GameRules.resolveNight(state);
+
+        assertEquals(0, deaths);
+        assertTrue(state.isAlive(SEER));
+    }
+
+    @Test
+    void poisonAndKillBothDie() {
+        GameRules.setWerewolfTarget(state, VILLAGER);
+        assertTrue(GameRules.witchPoison(state, WITCH, WOLF));
+
+        long deaths = GameRules.resolveNight(state);
+
+        assertEquals(bit(VILLAGER) | bit(WOLF), deaths);
+        assertTrue(state.isPoisoned(WOLF));
+        assertFalse(state.isPoisoned(VILLAGER));
+    }
+
+    @Test
+    void poisonedKillTargetDiesOnce() {
+        GameRules.setWerewolfTarget(state, HUNTER);
+        assertTrue(GameRules.witchPoison(state, WITCH, HUNTER));
+
+        long deaths = GameRules.resolveNight(state);
+
+        assertEquals(bit(HUNTER), deaths);
+        assertEquals(5, state.aliveCount());
+    }
+
+    @Test
+    void nightWithoutActionsKillsNobody() {
+        assertEquals(0, GameRules.resolveNight(state));
+        assertEquals(6, state.aliveCount());
+        assertFalse(state.isGameOver());
+    }
+
+    @Test
+    void witchCanOnlySaveTonightsKillTarget() {
+        GameRules.setWerewolfTarget(state, VILLAGER);
+
+        assertFalse(GameRules.witchSave(state, WITCH, SEER));
+        assertFalse(GameRules.witchSave(state, WITCH, NONE));
+        assertFalse(state.isSaveUsed(WITCH));
+        assertTrue(GameRules.witchSave(state, WITCH, VILLAGER));
+    }
+
+    @Test
+    void witchSavesOnlyOnce() {
+        GameRules.setWerewolfTarget(state, VILLAGER);
+        assertTrue(GameRules.witchSave(state, WITCH, VILLAGER));
+        GameRules.resolveNight(state);
+
+        state.resetNight();
+        GameRules.setWerewolfTarget(state, SEER);
+
+        assertFalse(GameRules.witchSave(state, WITCH, SEER));
+        assertEquals(bit(SEER), GameRules.resolveNight(state));
+    }
+
+    @Test
+    void witchPoisonsOnlyOnce() {
+        assertTrue(GameRules.witchPoison(state, WITCH, WOLF));
+        GameRules.resolveNight(state);
+
+        state.resetNight();
+
+        assertFalse(GameRules.witchPoison(state, WITCH, WOLF + 1));
+        assertEquals(0, GameRules.resolveNight(state));
+        assertTrue(state.isAlive(WOLF + 1));
+    }
+
+    @Test
+    void witchCannotPoisonDeadOrMissingPlayer() {
+        state.kill(VILLAGER);
+
+        assertFalse(GameRules.witchPoison(state, WITCH, VILLAGER));
+        assertFalse(GameRules.witchPoison(state, WITCH, NONE));
+        assertFalse(state.isPoisonUsed(WITCH));
+    }
+
+    @Test
+    void goodCampWinsWhenAllWerewolvesAreOut() {
+        state.kill(0);
+        assertFalse(state.checkGameOver());
+
+        state.kill(1);
+
+        assertTrue(state.checkGameOver());
+        assertEquals(GameRules.GOOD_CAMP, state.getWinnerCamp());
+    }
+
+    @Test
+    void werewolvesWinWhenTheyMatchGoodPlayers() {
+        state.kill(VILLAGER);
+        assertFalse(state.checkGameOver(), "2 wolves vs 3 good players keeps going");
+
+        state.kill(SEER);
+
+        assertTrue(state.checkGameOver(), "2 wolves vs 2 good players ends the game");
+        assertEquals(GameRules.WEREWOLF_CAMP, state.getWinnerCamp());
+        assertFalse(state.checkGameOver(), "a finished game is not finished again");
+    }
+
+    @Test
+    void resolveNightChecksGameOver() {
+        state.kill(VILLAGER);
+        GameRules.setWerewolfTarget(state, HUNTER);
+
+        GameRules.resolveNight(state);
+
+        assertTrue(state.isGameOver());
+        assertEquals(GameRules.WEREWOLF_CAMP, state.getWinnerCamp());
+    }
+}
@@ -0,0 +1,120 @@
+package xlike.top.werewolf.engine;
+
+import org.junit.jupiter.api.Test;
+import xlike.top.werewolf.bean.pojo.GameState;
+import xlike.top.werewolf.bean.pojo.PlayerState;
+import xlike.top.werewolf.enums.RoleEnum;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static xlike.top.werewolf.engine.IndexedGameState.NONE;
+import static xlike.top.werewolf.engine.IndexedGameState.bit;
+
+/**
+ * 游戏状态与座位索引状态的互相转换，以及玩家ID区间
+ *
+ * @author xlike
+ */
+class IndexedGameStateTest {
+
+    @Test
+    void roundTripKeepsEveryField() {
+        GameState original = midGame();
+
+        GameState copy = IndexedGameState.from(original).toGameState();
+
+        assertEquals(original, copy);
+    }
+
+    @Test
+    void fromResolvesSeatsAndKillTarget() {
+        IndexedGameState state = IndexedGameState.from(midGame());
+
+        assertEquals(6, state.seats());
+        assertEquals(2, state.seatOf("3"));
+        assertEquals(NONE, state.seatOf("7"));
+        assertEquals(NONE, state.seatOf(""));
+        assertEquals(bit(0) | bit(1), state.werewolfMask());
+        assertFalse(state.isAlive(2));
+        assertEquals(3, state.aliveGood());
+        assertEquals(2, state.aliveWerewolves());
+        assertEquals(3, state.killTarget(), "kill target comes from the first alive werewolf with a target");
+        assertTrue(state.isSaved(3));
+        assertTrue(state.isSaveUsed(4));
+        assertFalse(state.isPoisonUsed(4));
+        assertEquals(RoleEnum.WITCH, state.role(4));
+    }
+
+    @Test
+    void legacyStateInfersRolesFromPlayerIds() {
+        GameState legacy = midGame();
+        legacy.getPlayers().forEach(player -> player.setRole(null));
+
+        IndexedGameState state = IndexedGameState.from(legacy);
+
+        assertEquals(RoleEnum.WEREWOLF, state.role(0));
+        assertEquals(RoleEnum.SEER, state.role(3));
+        assertEquals(RoleEnum.HUNTER, state.role(5));
+        assertEquals(bit(0) | bit(1), state.werewolfMask());
+    }
+
+    @Test
+    void idRangesCompressConsecutiveIds() {
+        IndexedGameState state = GameEngine.newGame(Board.standard(12), "model", null);
+
+        assertEquals("1-4, 6", state.idRanges(bit(0) | bit(1) | bit(2) | bit(3) | bit(5)));
+        assertEquals("1, 2, 9-12", state.idRanges(bit(0) | bit(1) | bit(8) | bit(9) | bit(10) | bit(11)));
+        assertEquals("5", state.idRanges(bit(4)));
+        assertEquals("", state.idRanges(0));
+        assertEquals("1-12", state.idRanges(state.aliveMask()));
+    }
+
+    @Test
+    void idRangesListNonNumericIdsOneByOne() {
+        GameState gameState = midGame();
+        List<PlayerState> players = gameState.getPlayers();
+        players.get(0).setRoleId("a");
+        players.get(1).setRoleId("b");
+        players.get(2).setRoleId("03");
+        players.get(3).setNightTarget("");
+        players.get(0).setNightTarget("");
+        players.get(1).setNightTarget("");
+
+        IndexedGameState state = IndexedGameState.from(gameState);
+
+        assertEquals("a, b, 03, 4-6", state.idRanges(bit(0) | bit(1) | bit(2) | bit(3) | bit(4) | bit(5)));
+    }
+
+    /**
+     * 第 2 天夜晚：3 号村民已出局，狼人刀 4 号，女巫已用解药救下 4 号
+     */
+    static GameState midGame() {
+        RoleEnum[] roles = Board.standard(6).deal(null);
+        List<PlayerState> players = new ArrayList<>();
+        for (int seat = 0; seat < roles.length; seat++) {
+            PlayerState player = new PlayerState();
+            player.setRoleId(String.valueOf(seat + 1));
+            player.setRole(roles[seat].name());
+            player.setRoleAI("model-" + seat);
+            player.setAlive(seat != 2);
+            player.setNightTarget("");
+            players.add(player);
+        }
+        players.get(0).setNightTarget("4");
+        players.get(1).setNightTarget("4");
+        players.get(3).setNightTarget("1");
+        players.get(3).setSaved(true);
+        players.get(4).setWitchSaveUsed(true);
+        GameState gameState = new GameState();
+        gameState.setGameId("game-1");
+        gameState.setVersion(7);
+        gameState.setDay(2);
+        gameState.setWinnerCamp("");
+        gameState.setPlayers(players);
+        return gameState;
+    }
+}
@@ -0,0 +1,175 @@
+package xlike.top.werewolf.engine;
+
+import org.junit.jupiter.api.Test;
+import xlike.top.werewolf.bean.pojo.GameState;
+import xlike.top.werewolf.bean.pojo.PlayerState;
+import xlike.top.werewolf.enums.RoleEnum;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 座位索引状态与旧版按玩家ID处理的状态等价：固定种子生成的状态往返转换不丢失信息，
+ * 夜晚结算的死亡名单与旧版 GameService.processNightResults 一致
+ *
+ * @author xlike
+ */
+class LegacyEquivalenceTest {
+
+    private static final long SEED = 20240501L;
+    private static final int CASES = 2000;
+
+    @Test
+    void roundTripIsLosslessForSeededStates() {
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int i = 0; i < CASES; i++) {
+            GameState original = randomState(random, 6 + random.nextInt(IndexedGameState.MAX_SEATS - 5), false);
+
+            GameState copy = IndexedGameState.from(original).toGameState();
+
+            assertEquals(original, copy, "case " + i);
+        }
+    }
+
+    @Test
+    void resolveNightMatchesLegacyNightResults() {
+        SplittableRandom random = new SplittableRandom(SEED);
+        for (int i = 0; i < CASES; i++) {
+            GameState legacy = randomState(random, 6, true);
+            IndexedGameState state = IndexedGameState.from(legacy.copy());
+
+            List<String> expected = legacyNightDeaths(legacy);
+            long deaths = GameRules.resolveNight(state);
+
+            List<String> actual = new ArrayList<>();
+            for (long mask = deaths; mask != 0; mask &= mask - 1) {
+                actual.add(state.roleId(Long.numberOfTrailingZeros(mask)));
+            }
+            String context = "case " + i + ": " + legacy;
+            assertEquals(expected, actual, context);
+            assertEquals(legacy.isGameOver(), state.isGameOver(), context);
+            assertEquals(legacy.getWinnerCamp(), state.getWinnerCamp(), context);
+            for (int seat = 0; seat < state.seats(); seat++) {
+                assertEquals(legacy.getPlayers().get(seat).isAlive(), state.isAlive(seat), context);
+            }
+        }
+    }
+
+    /**
+     * 随机生成一个夜晚行动后、结算前的状态。legacy 为 true 时是旧版六人局（不写角色，按玩家ID推断），
+     * 且只生成旧版能够到达的状态：游戏未结束，狼人与女巫的目标都是存活玩家
+     */
+    private static GameState randomState(SplittableRandom random, int seats, boolean legacy) {
+        RoleEnum[] roles = Board.standard(seats).deal(legacy ? null : random);
+        List<PlayerState> players = new ArrayList<>(seats);
+        List<String> alive = new ArrayList<>();
+        int aliveWolves;
+        int aliveGood;
+        do {
+            players.clear();
+            alive.clear();
+            aliveWolves = 0;
+            aliveGood = 0;
+            for (int seat = 0; seat < seats; seat++) {
+                PlayerState player = new PlayerState();
+                player.setRoleId(String.valueOf(seat + 1));
+                player.setRole(legacy ? null : roles[seat].name());
+                player.setRoleAI("model-" + random.nextInt(3));
+                player.setAlive(random.nextInt(4) != 0);
+                player.setNightTarget("");
+                player.setWitchSaveUsed(roles[seat] == RoleEnum.WITCH && random.nextBoolean());
+                player.setWitchPoisonUsed(roles[seat] == RoleEnum.WITCH && random.nextBoolean());
+                players.add(player);
+                if (player.isAlive()) {
+                    alive.add(player.getRoleId());
+                    if (roles[seat] == RoleEnum.WEREWOLF) {
+                        aliveWolves++;
+                    } else {
+                        aliveGood++;
+                    }
+                }
+            }
+        } while (legacy && (aliveWolves == 0 || aliveWolves >= aliveGood));
+
+        String killTarget = random.nextInt(5) == 0 ? "" : alive.get(random.nextInt(alive.size()));
+        for (int seat = 0; seat < seats; seat++) {
+            PlayerState player = players.get(seat);
+            if (roles[seat] == RoleEnum.WEREWOLF) {
+                // 出局的狼人可能留有上一晚的目标，结算时应被忽略
+                player.setNightTarget(player.isAlive() ? killTarget : randomTarget(random, players));
+            } else if (random.nextBoolean()) {
+                player.setNightTarget(randomTarget(random, players));
+            }
+        }
+        if (!killTarget.isEmpty() && random.nextInt(3) == 0) {
+            players.get(Integer.parseInt(killTarget) - 1).setSaved(true);
+        }
+        if (random.nextInt(3) == 0) {
+            players.get(Integer.parseInt(alive.get(random.nextInt(alive.size()))) - 1).setPoisoned(true);
+        }
+
+        GameState gameState = new GameState();
+        gameState.setGameId(legacy ? null : "game-" + random.nextInt(1000));
+        gameState.setVersion(random.nextLong(100));
+        gameState.setDay(1 + random.nextInt(10));
+        gameState.setGameOver(!legacy && random.nextInt(10) == 0);
+        gameState.setWinnerCamp(gameState.isGameOver() ? GameRules.GOOD_CAMP : "");
+        gameState.setPlayers(players);
+        return gameState;
+    }
+
+    private static String randomTarget(SplittableRandom random, List<PlayerState> players) {
+        return players.get(random.nextInt(players.size())).getRoleId();
+    }
+
+    /**
+     * 旧版 GameService.processNightResults 的结算逻辑（去掉日志），玩家ID 1、2 为狼人
+     *
+     * @return 按玩家顺序的死亡玩家ID
+     */
+    private static List<String> legacyNightDeaths(GameState gameState) {
+        String killed = "";
+        for (PlayerState p : gameState.getPlayers()) {
+            if (isLegacyWerewolf(p.getRoleId()) && p.isAlive() && !p.getNightTarget().isEmpty()) {
+                killed = p.getNightTarget();
+                break;
+            }
+        }
+        List<String> deaths = new ArrayList<>();
+        for (PlayerState p : gameState.getPlayers()) {
+            if (p.isPoisoned()) {
+                p.setAlive(false);
+                deaths.add(p.getRoleId());
+            } else if (p.getRoleId().equals(killed) && !p.isSaved()) {
+                p.setAlive(false);
+                deaths.add(p.getRoleId());
+            }
+        }
+        int werewolfCount = 0;
+        int goodGuyCount = 0;
+        for (PlayerState p : gameState.getPlayers()) {
+            if (p.isAlive()) {
+                if (isLegacyWerewolf(p.getRoleId())) {
+                    werewolfCount++;
+                } else {
+                    goodGuyCount++;
+                }
+            }
+        }
+        if (werewolfCount == 0) {
+            gameState.setGameOver(true);
+            gameState.setWinnerCamp(GameRules.GOOD_CAMP);
+        } else if (werewolfCount >= goodGuyCount) {
+            gameState.setGameOver(true);
+            gameState.setWinnerCamp(GameRules.WEREWOLF_CAMP);
+        }
+        return deaths;
+    }
+
+    private static boolean isLegacyWerewolf(String roleId) {
+        return "1".equals(roleId) || "2".equals(roleId);
+    }
+}
@@ -0,0 +1,69 @@
+package xlike.top.werewolf.engine;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * 计票与平票处理
+ *
+ * @author xlike
+ */
+class VoteTallyTest {
+
+    @Test
+    void noVotesHasNoLeader() {
+        assertEquals(IndexedGameState.NONE, new VoteTally(6).leader());
+    }
+
+    @Test
+    void mostVotesWins() {
+        VoteTally tally = new VoteTally(6);
+        tally.add(1);
+        tally.add(4);
+        tally.add(4);
+        tally.add(2);
+
+        assertEquals(4, tally.leader());
+        assertEquals(2, tally.count(4));
+        assertEquals(0, tally.count(0));
+    }
+
+    @Test
+    void tieGoesToFirstPlayerToReceiveAVote() {
+        VoteTally tally = new VoteTally(6);
+        tally.add(5);
+        tally.add(2);
+        tally.add(2);
+        tally.add(5);
+
+        assertEquals(5, tally.leader());
+    }
+
+    @Test
+    void tieBreakIgnoresSeatOrder() {
+        VoteTally tally = new VoteTally(6);
+        tally.add(3);
+        tally.add(0);
+
+        assertEquals(3, tally.leader());
+    }
+
+    @Test
+    void toMapKeepsFirstVoteOrder() {
+        IndexedGameState state = GameEngine.newGame(Board.standard(6), "model", null);
+        VoteTally tally = new VoteTally(state.seats());
+        tally.add(5);
+        tally.add(0);
+        tally.add(5);
+
+        Map<String, Integer> votes = tally.toMap(state);
+
+        assertEquals(List.of("6", "1"), List.copyOf(votes.keySet()));
+        assertEquals(2, votes.get("6"));
+        assertEquals(1, votes.get("1"));
+    }
+}
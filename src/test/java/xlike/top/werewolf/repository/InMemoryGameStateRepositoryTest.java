@@ -0,0 +1,76 @@
+package xlike.top.werewolf.repository;
+
+import org.junit.jupiter.api.Test;
+import xlike.top.werewolf.bean.pojo.GameState;
+import xlike.top.werewolf.config.WerewolfProperties;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 进程内存储：版本比较与过期清理
+ *
+ * @author xlike
+ */
+class InMemoryGameStateRepositoryTest {
+
+    @Test
+    void saveComparesVersion() {
+        InMemoryGameStateRepository repository = repository(60, 10);
+
+        assertTrue(repository.save("a", state(1), null, 0L));
+        assertFalse(repository.save("a", state(2), null, 0L));
+        assertTrue(repository.save("a", state(2), null, 1L));
+        assertEquals(2, repository.load("a").getVersion());
+    }
+
+    @Test
+    void oldestGamesAreEvictedOverCapacity() throws InterruptedException {
+        InMemoryGameStateRepository repository = repository(60, 2);
+        repository.save("a", state(1), null, null);
+        Thread.sleep(2);
+        repository.save("b", state(1), null, null);
+        Thread.sleep(2);
+        repository.save("c", state(1), null, null);
+        repository.saveRoles("a", List.of());
+
+        repository.evictExpired();
+
+        assertNull(repository.load("a"));
+        assertNotNull(repository.load("b"));
+        assertNotNull(repository.load("c"));
+        assertNotNull(repository.getRoles("a"));
+        assertEquals(1L, repository.snapshot().get("evictions"));
+    }
+
+    @Test
+    void expiredGamesAreEvicted() {
+        InMemoryGameStateRepository repository = repository(-1, 10);
+        repository.save("a", state(1), null, null);
+        repository.saveRoles("a", List.of());
+
+        repository.evictExpired();
+
+        assertNull(repository.load("a"));
+        assertNull(repository.getRoles("a"));
+    }
+
+    private static InMemoryGameStateRepository repository(long ttlSeconds, int maxGames) {
+        WerewolfProperties properties = new WerewolfProperties();
+        properties.getStateStorage().setMemoryTtlSeconds(ttlSeconds);
+        properties.getStateStorage().setMemoryMaxGames(maxGames);
+        return new InMemoryGameStateRepository(properties, null);
+    }
+
+    private static GameState state(long version) {
+        GameState state = new GameState();
+        state.setVersion(version);
+        state.setPlayers(List.of());
+        return state;
+    }
+}
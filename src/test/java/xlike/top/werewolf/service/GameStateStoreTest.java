@@ -0,0 +1,86 @@
+package xlike.top.werewolf.service;
+
+import org.junit.jupiter.api.Test;
+import xlike.top.werewolf.bean.pojo.GameState;
+import xlike.top.werewolf.config.WerewolfProperties;
+import xlike.top.werewolf.repository.InMemoryGameStateRepository;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * write-behind 写回：正常写回，以及存储已被更新的提交覆盖时放弃写回
+ *
+ * @author xlike
+ */
+class GameStateStoreTest {
+
+    @Test
+    void flushWritesPendingState() {
+        InMemoryGameStateRepository repository = sharedRepository();
+        GameStateStore store = writeBehindStore(repository);
+
+        store.save("a", state(0, 1));
+        store.flush();
+
+        assertEquals(1, repository.load("a").getVersion());
+        assertEquals(0, store.snapshot().get("pendingWrites"));
+    }
+
+    @Test
+    void flushDiscardsStateOverwrittenByNewerCommit() {
+        InMemoryGameStateRepository repository = sharedRepository();
+        GameStateStore store = writeBehindStore(repository);
+        store.save("a", state(0, 1));
+        // 其他节点先提交了更新的阶段结果
+        assertTrue(repository.save("a", state(5, 2), null, null));
+
+        store.flush();
+
+        GameState stored = repository.load("a");
+        assertEquals(5, stored.getVersion());
+        assertEquals(2, stored.getDay());
+        assertEquals(0, store.snapshot().get("pendingWrites"));
+    }
+
+    @Test
+    void commitClaimsPendingStateBeforeFlush() {
+        InMemoryGameStateRepository repository = sharedRepository();
+        GameStateStore store = writeBehindStore(repository);
+        GameState state = state(0, 1);
+        store.save("a", state);
+
+        state.setDay(2);
+        assertTrue(store.commit("a", state));
+        store.flush();
+
+        GameState stored = repository.load("a");
+        assertEquals(2, stored.getVersion());
+        assertEquals(2, stored.getDay());
+    }
+
+    private static InMemoryGameStateRepository sharedRepository() {
+        return new InMemoryGameStateRepository(new WerewolfProperties(), null) {
+            @Override
+            public boolean shared() {
+                return true;
+            }
+        };
+    }
+
+    private static GameStateStore writeBehindStore(InMemoryGameStateRepository repository) {
+        WerewolfProperties properties = new WerewolfProperties();
+        properties.getNearCache().setMode(WerewolfProperties.NearCache.Mode.WRITE_BEHIND);
+        return new GameStateStore(properties, repository, null, null, null);
+    }
+
+    private static GameState state(long version, int day) {
+        GameState state = new GameState();
+        state.setVersion(version);
+        state.setDay(day);
+        state.setPlayers(List.of());
+        return state;
+    }
+}
@@ -0,0 +1,56 @@
+package xlike.top.werewolf.utils;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+/**
+ * 熔断器：只有代表模型不可用的失败才计入连续失败
+ *
+ * @author xlike
+ */
+class CircuitBreakerTest {
+
+    private static final CircuitBreaker.Settings DEFAULTS = new CircuitBreaker.Settings(5, 30_000, 1, 3, 500, 8_000, 0.2, 10);
+
+    @BeforeEach
+    void singleAttempt() {
+        CircuitBreaker.configure(new CircuitBreaker.Settings(2, 30_000, 1, 1, 0, 0, 0.2, 10));
+    }
+
+    @AfterEach
+    void restore() {
+        CircuitBreaker.configure(DEFAULTS);
+    }
+
+    @Test
+    void clientErrorsDoNotOpen() {
+        CircuitBreaker breaker = CircuitBreaker.forModel("https://api.example.com", "model");
+        for (int i = 0; i < 5; i++) {
+            assertFailure(breaker, HttpStatusException.class, 401);
+        }
+        assertFailure(breaker, HttpStatusException.class, 404);
+    }
+
+    @Test
+    void serverErrorsOpen() {
+        CircuitBreaker breaker = CircuitBreaker.forModel("https://api.example.com", "model");
+        assertFailure(breaker, HttpStatusException.class, 500);
+        assertFailure(breaker, HttpStatusException.class, 503);
+
+        assertFailure(breaker, CircuitBreaker.CircuitOpenException.class, 500);
+    }
+
+    private static void assertFailure(CircuitBreaker breaker, Class<?> expected, int status) {
+        CompletableFuture<String> result = breaker.execute(
+                () -> CompletableFuture.failedFuture(new HttpStatusException(status, "HTTP " + status)));
+        CompletionException e = assertThrows(CompletionException.class, result::join);
+        assertInstanceOf(expected, e.getCause());
+    }
+}
@@ -0,0 +1,99 @@
+package xlike.top.werewolf.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 限制并发数的异步扇出：结果顺序、并发上限与取消
+ *
+ * @author xlike
+ */
+class FanOutTest {
+
+    @Test
+    void resultsFollowTaskIndexNotCompletionOrder() {
+        List<CompletableFuture<String>> tasks = pending(3);
+
+        List<CompletableFuture<String>> results = FanOut.launch(3, 0, tasks::get);
+        tasks.get(2).complete("c");
+        tasks.get(0).complete("a");
+        tasks.get(1).complete("b");
+
+        assertEquals(List.of("a", "b", "c"), results.stream().map(CompletableFuture::join).toList());
+    }
+
+    @Test
+    void launchesAtMostParallelismTasksAtOnce() {
+        List<CompletableFuture<String>> tasks = pending(5);
+        AtomicInteger launched = new AtomicInteger();
+
+        FanOut.launch(5, 2, index -> {
+            launched.incrementAndGet();
+            return tasks.get(index);
+        });
+        assertEquals(2, launched.get());
+
+        tasks.get(1).complete("b");
+        assertEquals(3, launched.get());
+
+        tasks.get(0).complete("a");
+        tasks.get(2).complete("c");
+        assertEquals(5, launched.get());
+    }
+
+    @Test
+    void failedTaskFailsOnlyItsResult() {
+        List<CompletableFuture<String>> results = FanOut.launch(2, 1, index -> {
+            if (index == 0) {
+                throw new IllegalStateException("boom");
+            }
+            return CompletableFuture.completedFuture("ok");
+        });
+
+        assertTrue(results.get(0).isCompletedExceptionally());
+        assertEquals("ok", results.get(1).join());
+    }
+
+    @Test
+    void cancellingALaunchedResultCancelsItsTask() {
+        List<CompletableFuture<String>> tasks = pending(2);
+
+        List<CompletableFuture<String>> results = FanOut.launch(2, 1, tasks::get);
+        results.get(0).cancel(true);
+
+        assertTrue(tasks.get(0).isCancelled());
+        assertFalse(tasks.get(1).isDone());
+    }
+
+    @Test
+    void cancelledResultIsNeverLaunched() {
+        List<CompletableFuture<String>> tasks = pending(3);
+        List<Integer> launched = new ArrayList<>();
+
+        List<CompletableFuture<String>> results = FanOut.launch(3, 1, index -> {
+            launched.add(index);
+            return tasks.get(index);
+        });
+        results.get(1).cancel(true);
+        tasks.get(0).complete("a");
+
+        assertEquals(List.of(0, 2), launched);
+        assertTrue(results.get(1).isCancelled());
+    }
+
+    private static List<CompletableFuture<String>> pending(int count) {
+        List<CompletableFuture<String>> tasks = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            tasks.add(new CompletableFuture<>());
+        }
+        return tasks;
+    }
+}
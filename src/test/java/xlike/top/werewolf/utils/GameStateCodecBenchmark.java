@@ -0,0 +1,87 @@
+package xlike.top.werewolf.utils;
+
+import org.springframework.data.redis.serializer.GenericJackson2JsonRedisSerializer;
+import xlike.top.werewolf.bean.pojo.GameState;
+import xlike.top.werewolf.bean.pojo.PlayerState;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 游戏状态编码的基准测试，手动运行（不属于单元测试）：
+ * mvn test-compile 后以测试类路径运行本类的 main 方法
+ *
+ * @author xlike
+ */
+public class GameStateCodecBenchmark {
+
+    /**
+     * 对比旧的 JSON 格式、紧凑编码与哈希布局在 6 / 12 / 20 人局下的大小与编解码耗时
+     */
+    public static void main(String[] args) {
+        GenericJackson2JsonRedisSerializer json = new GenericJackson2JsonRedisSerializer();
+        int iterations = 20_000;
+        System.out.printf("%-8s %-10s %10s %14s %14s%n", "players", "format", "bytes", "encode(ns)", "decode(ns)");
+        for (int size : new int[]{6, 12, 20}) {
+            GameState state = sampleState(size);
+            GameState changed = state.copy();
+            changed.setVersion(state.getVersion() + 1);
+            PlayerState victim = changed.getPlayers().get(size / 2);
+            victim.setAlive(!victim.isAlive());
+
+            byte[] jsonBytes = json.serialize(state);
+            byte[] compactBytes = GameStateCodec.encode(state);
+            int hashBytes = GameStateCodec.toHash(state).values().stream().mapToInt(b -> b.length).sum();
+            int diffBytes = GameStateCodec.diffHash(state, changed).values().stream().mapToInt(b -> b.length).sum();
+
+            // 预热
+            for (int i = 0; i < iterations; i++) {
+                json.deserialize(json.serialize(state));
+                GameStateCodec.decode(GameStateCodec.encode(state));
+                GameStateCodec.fromHash(GameStateCodec.toHash(state));
+            }
+            long jsonEncode = time(iterations, () -> json.serialize(state));
+            long jsonDecode = time(iterations, () -> json.deserialize(jsonBytes));
+            long compactEncode = time(iterations, () -> GameStateCodec.encode(state));
+            long compactDecode = time(iterations, () -> GameStateCodec.decode(compactBytes));
+            Map<String, byte[]> hash = GameStateCodec.toHash(state);
+            long hashEncode = time(iterations, () -> GameStateCodec.toHash(state));
+            long hashDecode = time(iterations, () -> GameStateCodec.fromHash(hash));
+            long diffEncode = time(iterations, () -> GameStateCodec.diffHash(state, changed));
+
+            System.out.printf("%-8d %-10s %10d %14d %14d%n", size, "json", jsonBytes.length, jsonEncode, jsonDecode);
+            System.out.printf("%-8d %-10s %10d %14d %14d%n", size, "compact", compactBytes.length, compactEncode, compactDecode);
+            System.out.printf("%-8d %-10s %10d %14d %14d%n", size, "hash", hashBytes, hashEncode, hashDecode);
+            System.out.printf("%-8d %-10s %10d %14d %14s%n", size, "hash-diff", diffBytes, diffEncode, "-");
+        }
+    }
+
+    private static long time(int iterations, Runnable task) {
+        long start = System.nanoTime();
+        for (int i = 0; i < iterations; i++) {
+            task.run();
+        }
+        return (System.nanoTime() - start) / iterations;
+    }
+
+    private static GameState sampleState(int size) {
+        String[] models = {"gpt-4o-mini", "deepseek-chat", "qwen-plus", "glm-4-flash"};
+        GameState state = new GameState();
+        state.setGameId("3f2b9c7d1e0a4b6c8d5e7f9a1b3c5d7e");
+        state.setVersion(17);
+        state.setDay(3);
+        List<PlayerState> players = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            PlayerState player = new PlayerState();
+            player.setRoleId(String.valueOf(i + 1));
+            player.setRoleAI(models[i % models.length]);
+            player.setAlive(i % 5 != 0);
+            player.setNightTarget(i % 3 == 0 ? String.valueOf((i + 2) % size + 1) : "");
+            player.setWitchSaveUsed(i == 4);
+            players.add(player);
+        }
+        state.setPlayers(players);
+        return state;
+    }
+}
@@ -0,0 +1,72 @@
+package xlike.top.werewolf.utils;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 近端缓存：LRU 淘汰与加载期间的失效
+ *
+ * @author xlike
+ */
+class NearCacheTest {
+
+    @Test
+    void loadIsCachedWhenNothingChanged() {
+        NearCache<String, String> cache = new NearCache<>("test", 4, 0);
+        long stamp = cache.stamp("game");
+
+        assertTrue(cache.putIfUnchanged("game", "v1", stamp));
+        assertEquals("v1", cache.get("game"));
+    }
+
+    @Test
+    void invalidationDuringLoadDropsTheLoadedValue() {
+        NearCache<String, String> cache = new NearCache<>("test", 4, 0);
+        long stamp = cache.stamp("game");
+
+        // 加载旧值期间收到失效通知，此时缓存中还没有该键
+        cache.invalidate("game");
+
+        assertFalse(cache.putIfUnchanged("game", "stale", stamp));
+        assertNull(cache.get("game"));
+    }
+
+    @Test
+    void localWriteDuringLoadWins() {
+        NearCache<String, String> cache = new NearCache<>("test", 4, 0);
+        long stamp = cache.stamp("game");
+
+        cache.put("game", "v2");
+
+        assertFalse(cache.putIfUnchanged("game", "v1", stamp));
+        assertEquals("v2", cache.get("game"));
+    }
+
+    @Test
+    void prefixInvalidationDropsConcurrentLoads() {
+        NearCache<String, String> cache = new NearCache<>("test", 4, 0);
+        long stamp = cache.stamp("history:game:1");
+
+        cache.invalidateIf(key -> key.startsWith("history:game:"));
+
+        assertFalse(cache.putIfUnchanged("history:game:1", "stale", stamp));
+    }
+
+    @Test
+    void leastRecentlyUsedEntryIsEvicted() {
+        NearCache<String, String> cache = new NearCache<>("test", 2, 0);
+        cache.put("a", "1");
+        cache.put("b", "2");
+        cache.get("a");
+
+        cache.put("c", "3");
+
+        assertEquals("1", cache.peek("a"));
+        assertNull(cache.peek("b"));
+        assertEquals(1L, cache.snapshot().get("evictions"));
+    }
+}
@@ -0,0 +1,72 @@
+package xlike.top.werewolf.utils;
+
+import okhttp3.RequestBody;
+import okio.Buffer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 请求追踪：脱敏规则，以及请求体在发送时统计字节数与截取采样内容
+ *
+ * @author xlike
+ */
+class RequestTracerTest {
+
+    @AfterEach
+    void restore() {
+        RequestTracer.configure(new RequestTracer.Settings(true, 1024, 0.01, 2048));
+    }
+
+    @Test
+    void masksApiKeysAndBearerTokens() {
+        assertEquals("key sk-*** end", RequestTracer.redact("key sk-abcdEFGH1234 end", 1000));
+        assertEquals("Authorization: Bearer ***", RequestTracer.redact("Authorization: Bearer abc.def", 1000));
+        assertEquals("{\"api_key\":\"***\"}", RequestTracer.redact("{\"api_key\":\"secret-value\"}", 1000));
+    }
+
+    @Test
+    void leavesWordsContainingSkAlone() {
+        String text = "task-12345678 desk-lamp-00000000 risk-assessment sk-short";
+        assertEquals(text, RequestTracer.redact(text, 1000));
+    }
+
+    @Test
+    void countsWrittenBytesAndCapsSampledBody() throws Exception {
+        RequestTracer.configure(new RequestTracer.Settings(true, 16, 1.0, 8));
+        Map<String, Object> trace = send(false);
+
+        assertEquals(trace.get("written"), trace.get("requestBytes"));
+        String body = (String) trace.get("requestBody");
+        assertTrue(body.startsWith("{\"model\""), body);
+        assertTrue(body.endsWith("...(truncated)"), body);
+    }
+
+    @Test
+    void skipsCompressedBody() throws Exception {
+        RequestTracer.configure(new RequestTracer.Settings(true, 16, 1.0, 8));
+        Map<String, Object> trace = send(true);
+
+        assertEquals(trace.get("written"), trace.get("requestBytes"));
+        assertNull(trace.get("requestBody"));
+    }
+
+    private static Map<String, Object> send(boolean gzip) throws Exception {
+        RequestTracer.Span span = RequestTracer.start("POST", "https://api.example.com/v1/chat/completions");
+        RequestBody body = span.requestBody(ChatCodec.requestBody("model",
+                List.of(Map.of("role", "user", "content", "hello ".repeat(100))), false, 0, gzip), gzip);
+        Buffer sink = new Buffer();
+        body.writeTo(sink);
+        span.finish(null);
+
+        Map<String, Object> trace = RequestTracer.snapshot(1, null, false).get(0);
+        trace.put("written", sink.size());
+        return trace;
+    }
+}